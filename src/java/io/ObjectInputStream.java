@@ -299,7 +299,7 @@ public class ObjectInputStream
     private boolean closed;
 
     /** wire handle -> obj/exception map */
-    private final HandleTable handles;
+    private HandleTable handles;
     /** scratch field for passing handle values up/down call stack */
     private int passHandle = NULL_HANDLE;
     /** flag set when at end of field value block with no TC_ENDBLOCKDATA */
@@ -307,6 +307,8 @@ public class ObjectInputStream
 
     /** buffer for reading primitive field values */
     private byte[] primVals;
+    /** buffers for reading object field values, indexed by depth */
+    private Object[][] objValsCache;
 
     /** if true, invoke readObjectOverride() instead of readObject() */
     private final boolean enableOverride;
@@ -351,7 +353,8 @@ public class ObjectInputStream
     public ObjectInputStream(InputStream in) throws IOException {
         verifySubclass();
         bin = new BlockDataInputStream(in);
-        handles = new HandleTable(10);
+        handles = ObjectStreamClass.fastPath ?
+            HandleTable.take() : new HandleTable(10);
         vlist = new ValidationList();
         serialFilter = ObjectInputFilter.Config.getSerialFilter();
         enableOverride = false;
@@ -951,6 +954,12 @@ public class ObjectInputStream
         closed = true;
         if (depth == 0) {
             clear();
+            if (ObjectStreamClass.fastPath && handles != null) {
+                // replace the table first, as the stream remains readable
+                HandleTable h = handles;
+                handles = new HandleTable(10);
+                HandleTable.release(h);
+            }
         }
         bin.close();
     }
@@ -1537,9 +1546,13 @@ public class ObjectInputStream
         }
 
         byte tc;
-        while ((tc = bin.peekByte()) == TC_RESET) {
+        while ((tc = bin.peekByte()) == TC_RESET || tc == TC_RESETOBJECTS) {
             bin.readByte();
-            handleReset();
+            if (tc == TC_RESET) {
+                handleReset();
+            } else {
+                handleResetObjects();
+            }
         }
 
         depth++;
@@ -1703,6 +1716,44 @@ public class ObjectInputStream
         return obj;
     }
 
+    /**
+     * Reads in compact reference to class descriptor, sets passHandle to the
+     * read handle, and returns the class descriptor associated with the
+     * handle.
+     */
+    private ObjectStreamClass readClassDescRef(boolean unshared)
+        throws IOException
+    {
+        if (bin.readByte() != TC_CLASSDESCREF) {
+            throw new InternalError();
+        }
+        int handle = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = bin.readByte();
+            if (shift == 28 && (b & 0xF8) != 0) {
+                throw new StreamCorruptedException("invalid handle encoding");
+            }
+            handle |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (unshared) {
+            throw new InvalidObjectException(
+                "cannot read back reference as unshared");
+        }
+        Object obj = (handle < handles.size()) ?
+            handles.lookupObject(handle) : null;
+        if (!(obj instanceof ObjectStreamClass)) {
+            throw new StreamCorruptedException(
+                String.format("invalid class descriptor handle: %08X",
+                handle + baseWireHandle));
+        }
+        passHandle = handle;
+        filterCheck(null, -1);       // just a check for number of references, depth, no class
+        return (ObjectStreamClass) obj;
+    }
+
     /**
      * Reads in and returns class object.  Sets passHandle to class object's
      * assigned handle.  Returns null if class is unresolvable (in which case a
@@ -1715,7 +1766,8 @@ public class ObjectInputStream
         }
         ObjectStreamClass desc = readClassDesc(false);
         Class<?> cl = desc.forClass();
-        passHandle = handles.assign(unshared ? unsharedMarker : cl);
+        passHandle = unshared ?
+            handles.assign(unsharedMarker) : handles.assignClass(cl);
 
         ClassNotFoundException resolveEx = desc.getResolveException();
         if (resolveEx != null) {
@@ -1744,6 +1796,9 @@ public class ObjectInputStream
             case TC_REFERENCE:
                 descriptor = (ObjectStreamClass) readHandle(unshared);
                 break;
+            case TC_CLASSDESCREF:
+                descriptor = readClassDescRef(unshared);
+                break;
             case TC_PROXYCLASSDESC:
                 descriptor = readProxyDesc(unshared);
                 break;
@@ -1780,7 +1835,8 @@ public class ObjectInputStream
         }
 
         ObjectStreamClass desc = new ObjectStreamClass();
-        int descHandle = handles.assign(unshared ? unsharedMarker : desc);
+        int descHandle = unshared ?
+            handles.assign(unsharedMarker) : handles.assignClass(desc);
         passHandle = NULL_HANDLE;
 
         int numIfaces = bin.readInt();
@@ -1849,7 +1905,8 @@ public class ObjectInputStream
         }
 
         ObjectStreamClass desc = new ObjectStreamClass();
-        int descHandle = handles.assign(unshared ? unsharedMarker : desc);
+        int descHandle = unshared ?
+            handles.assign(unsharedMarker) : handles.assignClass(desc);
         passHandle = NULL_HANDLE;
 
         ObjectStreamClass readDesc = null;
@@ -2280,21 +2337,55 @@ public class ObjectInputStream
 
         int objHandle = passHandle;
         ObjectStreamField[] fields = desc.getFields(false);
-        Object[] objVals = new Object[desc.getNumObjFields()];
-        int numPrimFields = fields.length - objVals.length;
-        for (int i = 0; i < objVals.length; i++) {
-            ObjectStreamField f = fields[numPrimFields + i];
-            objVals[i] = readObject0(f.isUnshared());
-            if (f.getField() != null) {
-                handles.markDependency(objHandle, passHandle);
+        int numObjFields = desc.getNumObjFields();
+        Object[] objVals = objValsBuffer(numObjFields);
+        int numPrimFields = fields.length - numObjFields;
+        try {
+            for (int i = 0; i < numObjFields; i++) {
+                ObjectStreamField f = fields[numPrimFields + i];
+                objVals[i] = readObject0(f.isUnshared());
+                if (f.getField() != null) {
+                    handles.markDependency(objHandle, passHandle);
+                }
+            }
+            if (obj != null) {
+                desc.setObjFieldValues(obj, objVals);
+            }
+        } finally {
+            if (ObjectStreamClass.fastPath) {
+                Arrays.fill(objVals, 0, numObjFields, null);
             }
-        }
-        if (obj != null) {
-            desc.setObjFieldValues(obj, objVals);
         }
         passHandle = objHandle;
     }
 
+    /**
+     * Returns a buffer with room for at least the given number of object
+     * field values.  In fast path mode the buffer is reused by later calls at
+     * the same recursion depth, which is safe since the nested objects read
+     * while the buffer is in use are read at greater depths.
+     */
+    private Object[] objValsBuffer(int numObjFields) {
+        if (!ObjectStreamClass.fastPath ||
+            depth >= ObjectStreamClass.MAX_CACHED_DEPTH)
+        {
+            return new Object[numObjFields];
+        }
+        int d = (int) depth;
+        if (objValsCache == null || objValsCache.length <= d) {
+            objValsCache = (objValsCache == null) ?
+                new Object[Math.max(d + 1, 8)][] :
+                Arrays.copyOf(objValsCache,
+                    Math.min(Math.max(d + 1, objValsCache.length << 1),
+                             ObjectStreamClass.MAX_CACHED_DEPTH));
+        }
+        Object[] objVals = objValsCache[d];
+        if (objVals == null || objVals.length < numObjFields) {
+            objValsCache[d] = objVals = new Object[numObjFields];
+        }
+        return objVals;
+    }
+
     /**
      * Reads in and returns IOException that caused serialization to abort.
      * All stream state is discarded prior to reading in fatal exception.  Sets
@@ -2321,6 +2412,21 @@ public class ObjectInputStream
         clear();
     }
 
+    /**
+     * If recursion depth is 0, discards the handles of all objects other than
+     * class descriptors and classes; otherwise, throws a
+     * StreamCorruptedException.  This method is called when a
+     * TC_RESETOBJECTS typecode is encountered.
+     */
+    private void handleResetObjects() throws StreamCorruptedException {
+        if (depth > 0) {
+            throw new StreamCorruptedException(
+                "unexpected reset; recursion depth: " + depth);
+        }
+        handles.retainClasses();
+        vlist.clear();
+    }
+
     /**
      * Converts specified span of bytes into float values.
      */
@@ -2865,6 +2971,15 @@ public class ObjectInputStream
                             handleReset();
                             break;
 
+                        /*
+                         * TC_RESETOBJECTS lies above TC_MAX, so it must be
+                         * matched here, ahead of the range check below.
+                         */
+                        case TC_RESETOBJECTS:
+                            in.read();
+                            handleResetObjects();
+                            break;
+
                         default:
                             if (tc >= 0 && (tc < TC_BASE || tc > TC_MAX)) {
                                 throw new StreamCorruptedException(
@@ -3617,6 +3732,8 @@ public class ObjectInputStream
         Object[] entries;
         /** array mapping handle -> list of dependent handles (if any) */
         HandleList[] deps;
+        /** array mapping handle -> whether kept by retainClasses() */
+        boolean[] classes;
         /** lowest unresolved dependency */
         int lowDep = -1;
         /** number of handles in table */
@@ -3629,6 +3746,7 @@ public class ObjectInputStream
             status = new byte[initialCapacity];
             entries = new Object[initialCapacity];
             deps = new HandleList[initialCapacity];
+            classes = new boolean[initialCapacity];
         }
 
         /**
@@ -3646,6 +3764,40 @@ public class ObjectInputStream
             return size++;
         }
 
+        /**
+         * Assigns next available handle to given class or class descriptor,
+         * as by assign(), and marks the handle to be kept by
+         * retainClasses().
+         */
+        int assignClass(Object obj) {
+            int handle = assign(obj);
+            classes[handle] = true;
+            return handle;
+        }
+
+        /**
+         * Discards all handles except those assigned by assignClass(), which
+         * are renumbered in ascending order starting at 0.  Must only be
+         * called when no handles are unfinished.
+         */
+        void retainClasses() {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (classes[i]) {
+                    status[n] = status[i];
+                    entries[n] = entries[i];
+                    classes[n] = true;
+                    n++;
+                }
+            }
+            Arrays.fill(status, n, size, (byte) 0);
+            Arrays.fill(entries, n, size, null);
+            Arrays.fill(classes, n, size, false);
+            Arrays.fill(deps, 0, size, null);
+            lowDep = -1;
+            size = n;
+        }
+
         /**
          * Registers a dependency (in exception status) of one handle on
          * another.  The dependent handle must be "open" (i.e., assigned, but
@@ -3814,6 +3966,7 @@ public class ObjectInputStream
             Arrays.fill(status, 0, size, (byte) 0);
             Arrays.fill(entries, 0, size, null);
             Arrays.fill(deps, 0, size, null);
+            Arrays.fill(classes, 0, size, false);
             lowDep = -1;
             size = 0;
         }
@@ -3825,6 +3978,45 @@ public class ObjectInputStream
             return size;
         }
 
+        /** maximum number of tables kept for reuse in fast path mode */
+        private static final int MAX_POOLED = 8;
+        /** maximum capacity of a table kept for reuse */
+        private static final int MAX_POOLED_CAPACITY = 1 << 16;
+        /** cleared tables released by closed streams */
+        private static final HandleTable[] pool = new HandleTable[MAX_POOLED];
+        /** number of tables in pool */
+        private static int pooled;
+
+        /**
+         * Returns a cleared table from the pool, or a new table if the pool
+         * is empty.
+         */
+        static HandleTable take() {
+            synchronized (pool) {
+                if (pooled > 0) {
+                    HandleTable h = pool[--pooled];
+                    pool[pooled] = null;
+                    return h;
+                }
+            }
+            return new HandleTable(10);
+        }
+
+        /**
+         * Returns the given cleared table to the pool.  Only tables that have
+         * grown, but not beyond MAX_POOLED_CAPACITY, are kept.
+         */
+        static void release(HandleTable h) {
+            int capacity = h.entries.length;
+            if (capacity > 10 && capacity <= MAX_POOLED_CAPACITY) {
+                synchronized (pool) {
+                    if (pooled < MAX_POOLED) {
+                        pool[pooled++] = h;
+                    }
+                }
+            }
+        }
+
         /**
          * Expands capacity of internal arrays.
          */
@@ -3834,14 +4026,17 @@ public class ObjectInputStream
             byte[] newStatus = new byte[newCapacity];
             Object[] newEntries = new Object[newCapacity];
             HandleList[] newDeps = new HandleList[newCapacity];
+            boolean[] newClasses = new boolean[newCapacity];
 
             System.arraycopy(status, 0, newStatus, 0, size);
             System.arraycopy(entries, 0, newEntries, 0, size);
             System.arraycopy(deps, 0, newDeps, 0, size);
+            System.arraycopy(classes, 0, newClasses, 0, size);
 
             status = newStatus;
             entries = newEntries;
             deps = newDeps;
+            classes = newClasses;
         }
 
         /**
@@ -176,16 +176,28 @@ public class ObjectOutputStream
     /** filter stream for handling block data conversion */
     private final BlockDataOutputStream bout;
     /** obj -> wire handle map */
-    private final HandleTable handles;
+    private HandleTable handles;
     /** obj -> replacement obj map */
-    private final ReplaceTable subs;
+    private ReplaceTable subs;
     /** stream protocol version */
     private int protocol = PROTOCOL_VERSION_2;
     /** recursion depth */
     private int depth;
+    /** number of handles kept by the last reset of object handles */
+    private int retainedHandles;
+    /** maximum number of object handles kept, or 0 if not limited */
+    private int maxWindowHandles;
+    /** maximum number of bytes written between object resets, or 0 */
+    private long maxWindowBytes;
+    /** number of bytes written at the last reset */
+    private long windowStart;
+    /** true if class descriptors are referred to by TC_CLASSDESCREF */
+    private boolean compactDescriptorReferences;
 
     /** buffer for writing primitive field values */
     private byte[] primVals;
+    /** buffers for writing object field values, indexed by depth */
+    private Object[][] objValsCache;
 
     /** if true, invoke writeObjectOverride() instead of writeObject() */
     private final boolean enableOverride;
@@ -240,8 +252,13 @@ public class ObjectOutputStream
     public ObjectOutputStream(OutputStream out) throws IOException {
         verifySubclass();
         bout = new BlockDataOutputStream(out);
-        handles = new HandleTable(10, (float) 3.00);
-        subs = new ReplaceTable(10, (float) 3.00);
+        if (ObjectStreamClass.fastPath) {
+            handles = HandleTable.take();
+            subs = ReplaceTable.take();
+        } else {
+            handles = new HandleTable(10, (float) 3.00);
+            subs = new ReplaceTable(10, (float) 3.00);
+        }
         enableOverride = false;
         writeStreamHeader();
         bout.setBlockDataMode(true);
@@ -344,6 +361,9 @@ public class ObjectOutputStream
             writeObjectOverride(obj);
             return;
         }
+        if (depth == 0 && handleWindowExceeded()) {
+            resetObjects();
+        }
         try {
             writeObject0(obj, false);
         } catch (IOException ex) {
@@ -411,6 +431,9 @@ public class ObjectOutputStream
      * @since 1.4
      */
     public void writeUnshared(Object obj) throws IOException {
+        if (depth == 0 && handleWindowExceeded()) {
+            resetObjects();
+        }
         try {
             writeObject0(obj, true);
         } catch (IOException ex) {
@@ -501,6 +524,100 @@ public class ObjectOutputStream
         bout.writeByte(TC_RESET);
         clear();
         bout.setBlockDataMode(true);
+        windowStart = bout.getBytesWritten();
+    }
+
+    /**
+     * Resets the handles of the objects already written to the stream, while
+     * keeping the handles of the class descriptors and classes.  Objects
+     * previously written to the stream will be written to the stream again,
+     * as after {@link #reset}, but their class descriptors will not be.  The
+     * corresponding ObjectInputStream likewise discards its references to the
+     * objects read so far.  This allows a long-running stream to be written
+     * in constant memory without the cost of retransmitting the descriptors
+     * of all classes after each reset.
+     *
+     * <p>The stream written after this method is called can only be read by
+     * an ObjectInputStream that recognizes the
+     * {@link ObjectStreamConstants#TC_RESETOBJECTS} type code.
+     *
+     * @throws  IOException if resetObjects() is invoked while serializing an
+     *          object, or if I/O errors occur while writing to the underlying
+     *          stream
+     * @see     #setHandleWindow
+     * @since   1.8
+     */
+    public void resetObjects() throws IOException {
+        if (depth != 0) {
+            throw new IOException("stream active");
+        }
+        bout.setBlockDataMode(false);
+        bout.writeByte(TC_RESETOBJECTS);
+        subs.clear();
+        retainedHandles = handles.retainClasses();
+        bout.setBlockDataMode(true);
+        windowStart = bout.getBytesWritten();
+    }
+
+    /**
+     * Limits the object handles kept by this stream.  Before an object is
+     * written at the top level, if more than the given number of object
+     * handles have been assigned, or more than the given number of bytes
+     * have been written, since the last reset, the object handles are reset
+     * as by {@link #resetObjects}.  A long-running stream thus uses memory
+     * bounded by the window, plus that needed for the class descriptors
+     * written to it.
+     *
+     * @param   maxHandles the maximum number of object handles assigned
+     *          between resets, or 0 for no limit
+     * @param   maxBytes the maximum number of bytes written between resets,
+     *          or 0 for no limit
+     * @throws  IllegalArgumentException if either argument is negative
+     * @see     #resetObjects
+     * @since   1.8
+     */
+    public void setHandleWindow(int maxHandles, long maxBytes) {
+        if (maxHandles < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("negative window");
+        }
+        maxWindowHandles = maxHandles;
+        maxWindowBytes = maxBytes;
+    }
+
+    /**
+     * Enables or disables compact references to class descriptors.  When
+     * enabled, a class descriptor already written to the stream is referred
+     * to by the {@link ObjectStreamConstants#TC_CLASSDESCREF} type code and
+     * its handle in a variable-length encoding, rather than by a five byte
+     * TC_REFERENCE.  Every object written refers to the descriptor of its
+     * class, so this shrinks streams of many small objects, particularly
+     * together with {@link #resetObjects}, which gives the descriptors the
+     * lowest handles.
+     *
+     * <p>The stream written while compact references are enabled can only
+     * be read by an ObjectInputStream that recognizes the TC_CLASSDESCREF
+     * type code.
+     *
+     * @param   enable true to enable compact references to class
+     *          descriptors, false to disable them
+     * @since   1.8
+     */
+    public void setCompactDescriptorReferences(boolean enable) {
+        compactDescriptorReferences = enable;
+    }
+
+    /**
+     * Returns true if the limits set by setHandleWindow have been exceeded
+     * since the last reset.
+     */
+    private boolean handleWindowExceeded() {
+        if (maxWindowHandles > 0 &&
+            handles.size() - retainedHandles > maxWindowHandles)
+        {
+            return true;
+        }
+        return maxWindowBytes > 0 &&
+            bout.getBytesWritten() - windowStart > maxWindowBytes;
     }
 
     /**
@@ -739,6 +856,18 @@ public class ObjectOutputStream
     public void close() throws IOException {
         flush();
         clear();
+        if (ObjectStreamClass.fastPath && depth == 0 && handles != null) {
+            /*
+             * The stream remains usable after close, so hand the tables to
+             * the pool only after replacing them with fresh ones.
+             */
+            HandleTable h = handles;
+            ReplaceTable r = subs;
+            handles = new HandleTable(10, (float) 3.00);
+            subs = new ReplaceTable(10, (float) 3.00);
+            HandleTable.release(h);
+            ReplaceTable.release(r);
+        }
         bout.close();
     }
 
@@ -1097,6 +1226,7 @@ public class ObjectOutputStream
     private void clear() {
         subs.clear();
         handles.clear();
+        retainedHandles = 0;
     }
 
     /**
@@ -1205,6 +1335,19 @@ public class ObjectOutputStream
         bout.writeInt(baseWireHandle + handle);
     }
 
+    /**
+     * Writes compact reference to class descriptor with given handle to
+     * stream.
+     */
+    private void writeClassDescRef(int handle) throws IOException {
+        bout.writeByte(TC_CLASSDESCREF);
+        while ((handle & ~0x7F) != 0) {
+            bout.writeByte((handle & 0x7F) | 0x80);
+            handle >>>= 7;
+        }
+        bout.writeByte(handle);
+    }
+
     /**
      * Writes representation of given class to stream.
      */
@@ -1224,7 +1367,12 @@ public class ObjectOutputStream
         if (desc == null) {
             writeNull();
         } else if (!unshared && (handle = handles.lookup(desc)) != -1) {
-            writeHandle(handle);
+            // a compact reference is shorter below 2^21
+            if (compactDescriptorReferences && handle < (1 << 21)) {
+                writeClassDescRef(handle);
+            } else {
+                writeHandle(handle);
+            }
         } else if (desc.isProxy()) {
             writeProxyDesc(desc, unshared);
         } else {
@@ -1534,25 +1682,58 @@ public class ObjectOutputStream
         bout.write(primVals, 0, primDataSize, false);
 
         ObjectStreamField[] fields = desc.getFields(false);
-        Object[] objVals = new Object[desc.getNumObjFields()];
-        int numPrimFields = fields.length - objVals.length;
+        int numObjFields = desc.getNumObjFields();
+        Object[] objVals = objValsBuffer(numObjFields);
+        int numPrimFields = fields.length - numObjFields;
         desc.getObjFieldValues(obj, objVals);
-        for (int i = 0; i < objVals.length; i++) {
-            if (extendedDebugInfo) {
-                debugInfoStack.push(
-                    "field (class \"" + desc.getName() + "\", name: \"" +
-                    fields[numPrimFields + i].getName() + "\", type: \"" +
-                    fields[numPrimFields + i].getType() + "\")");
-            }
-            try {
-                writeObject0(objVals[i],
-                             fields[numPrimFields + i].isUnshared());
-            } finally {
+        try {
+            for (int i = 0; i < numObjFields; i++) {
                 if (extendedDebugInfo) {
-                    debugInfoStack.pop();
+                    debugInfoStack.push(
+                        "field (class \"" + desc.getName() + "\", name: \"" +
+                        fields[numPrimFields + i].getName() + "\", type: \"" +
+                        fields[numPrimFields + i].getType() + "\")");
+                }
+                try {
+                    writeObject0(objVals[i],
+                                 fields[numPrimFields + i].isUnshared());
+                } finally {
+                    if (extendedDebugInfo) {
+                        debugInfoStack.pop();
+                    }
                 }
             }
+        } finally {
+            if (ObjectStreamClass.fastPath) {
+                Arrays.fill(objVals, 0, numObjFields, null);
+            }
+        }
+    }
+
+    /**
+     * Returns a buffer with room for at least the given number of object
+     * field values.  In fast path mode the buffer is reused by later calls at
+     * the same recursion depth, which is safe since the nested objects
+     * written while the buffer is in use are written at greater depths.
+     */
+    private Object[] objValsBuffer(int numObjFields) {
+        if (!ObjectStreamClass.fastPath ||
+            depth >= ObjectStreamClass.MAX_CACHED_DEPTH)
+        {
+            return new Object[numObjFields];
+        }
+        if (objValsCache == null || objValsCache.length <= depth) {
+            objValsCache = (objValsCache == null) ?
+                new Object[Math.max(depth + 1, 8)][] :
+                Arrays.copyOf(objValsCache,
+                    Math.min(Math.max(depth + 1, objValsCache.length << 1),
+                             ObjectStreamClass.MAX_CACHED_DEPTH));
         }
+        Object[] objVals = objValsCache[depth];
+        if (objVals == null || objVals.length < numObjFields) {
+            objValsCache[depth] = objVals = new Object[numObjFields];
+        }
+        return objVals;
     }
 
     /**
@@ -1757,6 +1938,8 @@ public class ObjectOutputStream
         private boolean blkmode = false;
         /** current offset into buf */
         private int pos = 0;
+        /** number of bytes written to underlying stream */
+        private long written = 0;
 
         /** underlying output stream */
         private final OutputStream out;
@@ -1840,6 +2023,7 @@ public class ObjectOutputStream
             if (!(copy || blkmode)) {           // write directly
                 drain();
                 out.write(b, off, len);
+                written += len;
                 return;
             }
 
@@ -1851,6 +2035,7 @@ public class ObjectOutputStream
                     // avoid unnecessary copy
                     writeBlockHeader(MAX_BLOCK_SIZE);
                     out.write(b, off, MAX_BLOCK_SIZE);
+                    written += MAX_BLOCK_SIZE;
                     off += MAX_BLOCK_SIZE;
                     len -= MAX_BLOCK_SIZE;
                 } else {
@@ -1875,9 +2060,18 @@ public class ObjectOutputStream
                 writeBlockHeader(pos);
             }
             out.write(buf, 0, pos);
+            written += pos;
             pos = 0;
         }
 
+        /**
+         * Returns the number of bytes written to the underlying stream,
+         * excluding any data still buffered.
+         */
+        long getBytesWritten() {
+            return written;
+        }
+
         /**
          * Writes block data header.  Data blocks shorter than 256 bytes are
          * prefixed with a 2-byte header; all others start with a 5-byte
@@ -1888,10 +2082,12 @@ public class ObjectOutputStream
                 hbuf[0] = TC_BLOCKDATA;
                 hbuf[1] = (byte) len;
                 out.write(hbuf, 0, 2);
+                written += 2;
             } else {
                 hbuf[0] = TC_BLOCKDATALONG;
                 Bits.putInt(hbuf, 1, len);
                 out.write(hbuf, 0, 5);
+                written += 5;
             }
         }
 
@@ -2315,6 +2511,74 @@ public class ObjectOutputStream
             return size;
         }
 
+        /**
+         * Returns the number of mappings the table can hold without growing.
+         */
+        int capacity() {
+            return next.length;
+        }
+
+        /** maximum number of tables kept for reuse in fast path mode */
+        private static final int MAX_POOLED = 8;
+        /** maximum capacity of a table kept for reuse */
+        private static final int MAX_POOLED_CAPACITY = 1 << 16;
+        /** cleared tables released by closed streams */
+        private static final HandleTable[] pool = new HandleTable[MAX_POOLED];
+        /** number of tables in pool */
+        private static int pooled;
+
+        /**
+         * Returns a cleared table from the pool, or a new table if the pool
+         * is empty.
+         */
+        static HandleTable take() {
+            synchronized (pool) {
+                if (pooled > 0) {
+                    HandleTable h = pool[--pooled];
+                    pool[pooled] = null;
+                    return h;
+                }
+            }
+            return new HandleTable(10, (float) 3.00);
+        }
+
+        /**
+         * Returns the given cleared table to the pool.  Only tables that have
+         * grown, but not beyond MAX_POOLED_CAPACITY, are kept.
+         */
+        static void release(HandleTable h) {
+            int capacity = h.capacity();
+            if (capacity > 10 && capacity <= MAX_POOLED_CAPACITY) {
+                synchronized (pool) {
+                    if (pooled < MAX_POOLED) {
+                        pool[pooled++] = h;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes all mappings except those for class descriptors and
+         * classes, which are renumbered in ascending order starting at 0.
+         * Returns the number of mappings kept.
+         */
+        int retainClasses() {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                Object obj = objs[i];
+                if (obj instanceof ObjectStreamClass || obj instanceof Class) {
+                    objs[n++] = obj;
+                }
+            }
+            Arrays.fill(objs, n, size, null);
+            Arrays.fill(spine, -1);
+            size = n;
+            for (int i = 0; i < n; i++) {
+                insert(objs[i], i);
+            }
+            return n;
+        }
+
         /**
          * Inserts mapping object -> handle mapping into table.  Assumes table
          * is large enough to accommodate new mapping.
@@ -2415,6 +2679,53 @@ public class ObjectOutputStream
             return htab.size();
         }
 
+        /**
+         * Returns the number of mappings the table can hold without growing.
+         */
+        int capacity() {
+            return Math.min(htab.capacity(), reps.length);
+        }
+
+        /** maximum number of tables kept for reuse in fast path mode */
+        private static final int MAX_POOLED = 8;
+        /** maximum capacity of a table kept for reuse */
+        private static final int MAX_POOLED_CAPACITY = 1 << 16;
+        /** cleared tables released by closed streams */
+        private static final ReplaceTable[] pool =
+            new ReplaceTable[MAX_POOLED];
+        /** number of tables in pool */
+        private static int pooled;
+
+        /**
+         * Returns a cleared table from the pool, or a new table if the pool
+         * is empty.
+         */
+        static ReplaceTable take() {
+            synchronized (pool) {
+                if (pooled > 0) {
+                    ReplaceTable r = pool[--pooled];
+                    pool[pooled] = null;
+                    return r;
+                }
+            }
+            return new ReplaceTable(10, (float) 3.00);
+        }
+
+        /**
+         * Returns the given cleared table to the pool.  Only tables that have
+         * grown, but not beyond MAX_POOLED_CAPACITY, are kept.
+         */
+        static void release(ReplaceTable r) {
+            int capacity = r.capacity();
+            if (capacity > 10 && capacity <= MAX_POOLED_CAPACITY) {
+                synchronized (pool) {
+                    if (pooled < MAX_POOLED) {
+                        pool[pooled++] = r;
+                    }
+                }
+            }
+        }
+
         /**
          * Increases table capacity.
          */
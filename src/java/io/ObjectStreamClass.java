@@ -98,6 +98,23 @@ public class ObjectStreamClass implements Serializable {
             }
         ).booleanValue();
 
+    /**
+     * value of "jdk.serialFastPath" property, as true or false for reusing
+     * field value buffers and handle tables in ObjectInputStream and
+     * ObjectOutputStream instead of allocating them for every object and
+     * stream
+     */
+    static final boolean fastPath =
+        AccessController.doPrivileged(
+            new sun.security.action.GetBooleanAction(
+                "jdk.serialFastPath")).booleanValue();
+
+    /**
+     * recursion depth up to which object streams reuse field value buffers
+     * in fast path mode
+     */
+    static final int MAX_CACHED_DEPTH = 64;
+
     /** reflection factory for obtaining serialization constructors */
     private static final ReflectionFactory reflFactory =
         AccessController.doPrivileged(
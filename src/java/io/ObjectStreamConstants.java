@@ -129,6 +129,26 @@ public interface ObjectStreamConstants {
      */
     final static byte TC_ENUM =         (byte)0x7E;
 
+    /**
+     * Reset object handles. The handles of class descriptors and classes
+     * written into stream are kept, and renumbered in ascending order; all
+     * other handles are reset.  This tag lies above {@link #TC_MAX}, which
+     * is kept unchanged for code compiled against earlier releases, so
+     * readers must recognize it explicitly.
+     * @since 1.8
+     */
+    final static byte TC_RESETOBJECTS = (byte)0x7F;
+
+    /**
+     * Compact reference to a class descriptor already written into stream,
+     * followed by its handle, less {@link #baseWireHandle}, as an unsigned
+     * integer in seven-bit groups, least significant first.  This tag lies
+     * below {@link #TC_BASE} and only occurs where a class descriptor is
+     * expected, so readers must recognize it explicitly.
+     * @since 1.8
+     */
+    final static byte TC_CLASSDESCREF = (byte)0x6F;
+
     /**
      * Last tag value.
      */
@@ -36,6 +36,7 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Arrays;
 import sun.misc.MessageUtils;
@@ -118,6 +119,67 @@ class StringCoding {
     }
 
 
+    // -- Latin-1 and ASCII fast paths --
+    //
+    // ISO-8859-1 maps every byte to the char of the same value, and
+    // US-ASCII and UTF-8 map the ASCII range so.  Text that only uses
+    // these chars, which is most text in practice, is converted directly
+    // into an array of the exact length, without creating a coder, and
+    // without the oversized buffer and trimming copy that encoding into
+    // UTF-8 otherwise takes.  Only the standard charset instances are
+    // recognized, so a charset of another provider that merely has one of
+    // these names still goes through its own coder.
+
+    /**
+     * Decodes the given bytes if the charset maps all of them to the chars
+     * of the same value; returns null otherwise.
+     */
+    private static char[] decodeLatin1(Charset cs, byte[] ba, int off, int len) {
+        if (cs == StandardCharsets.ISO_8859_1) {
+            char[] ca = new char[len];
+            for (int i = 0; i < len; i++)
+                ca[i] = (char)(ba[off + i] & 0xff);
+            return ca;
+        }
+        if (cs == StandardCharsets.UTF_8 ||
+            cs == StandardCharsets.US_ASCII) {
+            int end = off + len;
+            for (int i = off; i < end; i++) {
+                if (ba[i] < 0)
+                    return null;
+            }
+            char[] ca = new char[len];
+            for (int i = 0; i < len; i++)
+                ca[i] = (char)ba[off + i];
+            return ca;
+        }
+        return null;
+    }
+
+    /**
+     * Encodes the given chars if the charset maps all of them to the bytes
+     * of the same value; returns null otherwise.
+     */
+    private static byte[] encodeLatin1(Charset cs, char[] ca, int off, int len) {
+        int max;
+        if (cs == StandardCharsets.ISO_8859_1)
+            max = 0xff;
+        else if (cs == StandardCharsets.UTF_8 ||
+                 cs == StandardCharsets.US_ASCII)
+            max = 0x7f;
+        else
+            return null;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (ca[i] > max)
+                return null;
+        }
+        byte[] ba = new byte[len];
+        for (int i = 0; i < len; i++)
+            ba[i] = (byte)ca[off + i];
+        return ba;
+    }
+
     // -- Decoding --
     private static class StringDecoder {
         private final String requestedCharsetName;
@@ -145,6 +207,9 @@ class StringCoding {
         }
 
         char[] decode(byte[] ba, int off, int len) {
+            char[] fast = decodeLatin1(cs, ba, off, len);
+            if (fast != null)
+                return fast;
             int en = scale(len, cd.maxCharsPerByte());
             char[] ca = new char[en];
             if (len == 0)
@@ -210,6 +275,11 @@ class StringCoding {
         // check (... && (isTrusted || SM == null || getClassLoader0())) in trim
         // but it then can be argued that the SM is null when the opertaion
         // is started...
+        // (5)The fast path only applies to the JDK's own charsets, which
+        // are trusted, and neither exposes nor keeps the given array.
+        char[] fast = decodeLatin1(cs, ba, off, len);
+        if (fast != null)
+            return fast;
         CharsetDecoder cd = cs.newDecoder();
         int en = scale(len, cd.maxCharsPerByte());
         char[] ca = new char[en];
@@ -296,6 +366,9 @@ class StringCoding {
         }
 
         byte[] encode(char[] ca, int off, int len) {
+            byte[] fast = encodeLatin1(cs, ca, off, len);
+            if (fast != null)
+                return fast;
             int en = scale(len, ce.maxBytesPerChar());
             byte[] ba = new byte[en];
             if (len == 0)
@@ -345,6 +418,9 @@ class StringCoding {
     }
 
     static byte[] encode(Charset cs, char[] ca, int off, int len) {
+        byte[] fast = encodeLatin1(cs, ca, off, len);
+        if (fast != null)
+            return fast;
         CharsetEncoder ce = cs.newEncoder();
         int en = scale(len, ce.maxBytesPerChar());
         byte[] ba = new byte[en];
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.invoke;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import sun.misc.JavaLangAccess;
+import sun.misc.SharedSecrets;
+
+import static java.lang.invoke.MethodHandles.Lookup.IMPL_LOOKUP;
+
+/**
+ * <p>Methods to facilitate the creation of String concatenation methods,
+ * that can be used to efficiently concatenate a known number of arguments
+ * of known types, possibly after type adaptation and partial evaluation of
+ * arguments.  These methods are typically used as <em>bootstrap methods</em>
+ * for {@code invokedynamic} call sites, to support the <em>string
+ * concatenation</em> feature of the Java Programming Language.
+ *
+ * <p>Indirect access to the behavior specified by the provided
+ * {@code MethodHandle} proceeds in order through two phases:
+ *
+ * <ol>
+ *     <li><em>Linkage</em> occurs when the methods in this class are invoked.
+ * They take as arguments a method type describing the concatenated
+ * arguments count and types, and optionally the String <em>recipe</em>,
+ * plus the constants that participate in the String concatenation.  The
+ * details on accepted recipe shapes are described further below.  The
+ * {@code CallSite} holds the {@code MethodHandle} pointing to the exact
+ * concatenation method.</li>
+ *
+ *     <li><em>Invocation</em> occurs when a generated concatenation method is
+ * invoked with the exact dynamic arguments.  The result is the String
+ * representation of each argument, as by {@link String#valueOf(Object)}
+ * and the other {@code valueOf} methods for primitive arguments, and of
+ * the constants, concatenated in recipe order.</li>
+ * </ol>
+ *
+ * <p>Unlike a {@code StringBuilder} chain, the methods linked by this
+ * class compute the exact length of the result before copying anything.
+ * The recipe's constant text is measured once at linkage; the lengths of
+ * {@code String}, integral, {@code char} and {@code boolean} arguments are
+ * computed without converting them to strings, and the characters are
+ * written once into an array that becomes the value of the resulting
+ * String without being copied again.  The linked shape of each recipe is
+ * cached, so that call sites with the same recipe share it.
+ *
+ * @since 1.8
+ */
+public final class StringConcatFactory {
+
+    /**
+     * Tag used to demarcate an ordinary argument.
+     */
+    private static final char TAG_ARG = '\u0001';
+
+    /**
+     * Tag used to demarcate a constant.
+     */
+    private static final char TAG_CONST = '\u0002';
+
+    /**
+     * Maximum number of argument slots in String Concat call.
+     *
+     * Every call site is linked to a collector that boxes its arguments
+     * into an Object[] for the recipe.  An invokedynamic call can pass up
+     * to 253 slots; the limit keeps the collector and its adaptation to the
+     * call site type clear of the method handle arity limit.
+     */
+    private static final int MAX_INDY_CONCAT_ARG_SLOTS = 200;
+
+    /**
+     * Maximum number of recipes whose linked shape is cached.
+     */
+    private static final int MAX_CACHED_RECIPES = 1024;
+
+    private static final JavaLangAccess JLA = SharedSecrets.getJavaLangAccess();
+
+    /**
+     * Linked shapes, (Object[])String collectors, keyed by recipe.
+     */
+    private static final ConcurrentMap<Recipe, MethodHandle> CACHE =
+        new ConcurrentHashMap<>();
+
+    private static final MethodHandle CONCAT;
+    static {
+        try {
+            CONCAT = IMPL_LOOKUP.findVirtual(Recipe.class, "concat",
+                MethodType.methodType(String.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    // no instances
+    private StringConcatFactory() {
+    }
+
+    /**
+     * Facilitates the creation of optimized String concatenation methods,
+     * that can be used to efficiently concatenate a known number of arguments
+     * of known types, possibly after type adaptation and partial evaluation of
+     * arguments.  Typically used as a <em>bootstrap method</em> for {@code
+     * invokedynamic} call sites, to support the <em>string concatenation</em>
+     * feature of the Java Programming Language.
+     *
+     * <p>When the target of the {@code CallSite} returned from this method is
+     * invoked, it returns the result of String concatenation, taking all
+     * function arguments passed to the linkage method as inputs for
+     * concatenation, in the order they are passed.
+     *
+     * @param lookup   Represents a lookup context with the accessibility
+     *                 privileges of the caller.  When used with {@code
+     *                 invokedynamic}, this is stacked automatically by the VM.
+     * @param name     The name of the method to implement.  This name is
+     *                 arbitrary, and has no meaning for this linkage method.
+     *                 When used with {@code invokedynamic}, this is provided by
+     *                 the {@code NameAndType} of the {@code InvokeDynamic}
+     *                 structure and is stacked automatically by the VM.
+     * @param concatType The expected signature of the {@code CallSite}.  The
+     *                   parameter types represent the types of concatenation
+     *                   arguments; the return type is always assignable from
+     *                   {@link java.lang.String}.  When used with {@code
+     *                   invokedynamic}, this is provided by the {@code
+     *                   NameAndType} of the {@code InvokeDynamic} structure and
+     *                   is stacked automatically by the VM.
+     * @return a CallSite whose target can be used to perform String
+     * concatenation, with dynamic concatenation arguments described by the given
+     * {@code concatType}.
+     * @throws StringConcatException If any of the linkage invariants are
+     *                               violated, including the return type not
+     *                               being assignable from String or too many
+     *                               argument slots.
+     * @throws NullPointerException If any of the incoming arguments is null.
+     *
+     * @see #makeConcatWithConstants(MethodHandles.Lookup, String, MethodType, String, Object...)
+     */
+    public static CallSite makeConcat(MethodHandles.Lookup lookup,
+                                      String name,
+                                      MethodType concatType) throws StringConcatException {
+        Objects.requireNonNull(concatType, "Concat type is null");
+        char[] recipe = new char[concatType.parameterCount()];
+        Arrays.fill(recipe, TAG_ARG);
+        return makeConcatWithConstants(lookup, name, concatType,
+                                       new String(recipe));
+    }
+
+    /**
+     * Facilitates the creation of optimized String concatenation methods,
+     * that can be used to efficiently concatenate a known number of arguments
+     * of known types, possibly after type adaptation and partial evaluation of
+     * arguments.  Typically used as a <em>bootstrap method</em> for {@code
+     * invokedynamic} call sites, to support the <em>string concatenation</em>
+     * feature of the Java Programming Language.
+     *
+     * <p>When the target of the {@code CallSite} returned from this method is
+     * invoked, it returns the result of String concatenation, taking all
+     * function arguments and constants passed to the linkage method as inputs
+     * for concatenation.  The target signature is given by {@code concatType},
+     * and the arguments are interleaved with the constants as the
+     * {@code recipe} describes.  The recipe is processed left to right:
+     *
+     * <ul>
+     *     <li><em>The tag {@code \1}</em> stands for the next dynamic
+     *     argument.  The number of {@code \1} tags must equal the number of
+     *     parameters of {@code concatType}.</li>
+     *
+     *     <li><em>The tag {@code \2}</em> stands for the next element of
+     *     {@code constants}, converted as by {@link String#valueOf(Object)}
+     *     at linkage.  The number of {@code \2} tags must equal the length
+     *     of {@code constants}.</li>
+     *
+     *     <li><em>Any other char</em> is copied to the result as is.</li>
+     * </ul>
+     *
+     * @param lookup   Represents a lookup context with the accessibility
+     *                 privileges of the caller.  When used with {@code
+     *                 invokedynamic}, this is stacked automatically by the
+     *                 VM.
+     * @param name     The name of the method to implement.  This name is
+     *                 arbitrary, and has no meaning for this linkage method.
+     *                 When used with {@code invokedynamic}, this is provided
+     *                 by the {@code NameAndType} of the {@code InvokeDynamic}
+     *                 structure and is stacked automatically by the VM.
+     * @param concatType The expected signature of the {@code CallSite}.  The
+     *                   parameter types represent the types of dynamic concatenation
+     *                   arguments; the return type is always assignable from
+     *                   {@link java.lang.String}.  When used with {@code
+     *                   invokedynamic}, this is provided by the {@code
+     *                   NameAndType} of the {@code InvokeDynamic} structure and
+     *                   is stacked automatically by the VM.
+     * @param recipe Concatenation recipe, described above.
+     * @param constants A vararg parameter representing the constants passed to
+     *                  the linkage method.
+     * @return a CallSite whose target can be used to perform String
+     * concatenation, with dynamic concatenation arguments described by the given
+     * {@code concatType}.
+     * @throws StringConcatException If any of the linkage invariants are
+     *                               violated, including the return type not
+     *                               being assignable from String, too many
+     *                               argument slots, or the recipe not matching
+     *                               the arguments or constants.
+     * @throws NullPointerException If any of the incoming arguments is null, or
+     *                              any of the {@code constants} is null.
+     */
+    public static CallSite makeConcatWithConstants(MethodHandles.Lookup lookup,
+                                                   String name,
+                                                   MethodType concatType,
+                                                   String recipe,
+                                                   Object... constants) throws StringConcatException {
+        Objects.requireNonNull(lookup, "Lookup is null");
+        Objects.requireNonNull(name, "Name is null");
+        Objects.requireNonNull(concatType, "Concat type is null");
+        Objects.requireNonNull(recipe, "Recipe is null");
+        Objects.requireNonNull(constants, "Constants are null");
+
+        for (Object o : constants) {
+            Objects.requireNonNull(o, "Cannot accept null constants");
+        }
+
+        if (!concatType.returnType().isAssignableFrom(String.class)) {
+            throw new StringConcatException(
+                    "The return type should be compatible with String, but it is " +
+                            concatType.returnType());
+        }
+
+        if (concatType.parameterSlotCount() > MAX_INDY_CONCAT_ARG_SLOTS) {
+            throw new StringConcatException("Too many concat argument slots: " +
+                    concatType.parameterSlotCount() +
+                    ", can only accept " +
+                    MAX_INDY_CONCAT_ARG_SLOTS);
+        }
+
+        Recipe rec = parseRecipe(concatType, recipe, constants);
+        MethodHandle shape = CACHE.get(rec);
+        if (shape == null) {
+            shape = CONCAT.bindTo(rec).asCollector(Object[].class,
+                                                   concatType.parameterCount());
+            if (CACHE.size() < MAX_CACHED_RECIPES) {
+                MethodHandle prev = CACHE.putIfAbsent(rec, shape);
+                if (prev != null) {
+                    shape = prev;
+                }
+            }
+        }
+        try {
+            return new ConstantCallSite(shape.asType(concatType));
+        } catch (WrongMethodTypeException e) {
+            throw new StringConcatException("Cannot adapt to " + concatType, e);
+        }
+    }
+
+    /**
+     * Splits the recipe into the constant text around each argument,
+     * folding in the constants.
+     */
+    private static Recipe parseRecipe(MethodType concatType,
+                                      String recipe,
+                                      Object[] constants) throws StringConcatException {
+        int argCount = concatType.parameterCount();
+        List<String> texts = new ArrayList<>(argCount + 1);
+        StringBuilder acc = new StringBuilder();
+        int cIdx = 0;
+        for (int i = 0; i < recipe.length(); i++) {
+            char c = recipe.charAt(i);
+            if (c == TAG_CONST) {
+                if (cIdx >= constants.length) {
+                    throw new StringConcatException("Constants count mismatch: " +
+                            "recipe has more \\2 tags than the " +
+                            constants.length + " constants given");
+                }
+                acc.append(constants[cIdx++]);
+            } else if (c == TAG_ARG) {
+                texts.add(acc.toString());
+                acc.setLength(0);
+            } else {
+                acc.append(c);
+            }
+        }
+        texts.add(acc.toString());
+
+        if (texts.size() - 1 != argCount) {
+            throw new StringConcatException("Mismatched number of concat arguments: " +
+                    "recipe wants " + (texts.size() - 1) + " arguments, but signature provides " +
+                    argCount);
+        }
+        if (cIdx != constants.length) {
+            throw new StringConcatException("Mismatched number of concat constants: " +
+                    "recipe wants " + cIdx + " constants, but only " +
+                    constants.length + " are passed");
+        }
+        return new Recipe(texts.toArray(new String[texts.size()]));
+    }
+
+    /**
+     * A parsed recipe: the constant text before each argument, and after
+     * the last.  Recipes are compared by their text, so that call sites
+     * with the same recipe share the linked shape.
+     */
+    private static final class Recipe {
+        private final String[] texts;
+        private final int textLength;
+        private final int hash;
+
+        Recipe(String[] texts) {
+            this.texts = texts;
+            long len = 0;
+            for (String t : texts) {
+                len += t.length();
+            }
+            if (len > Integer.MAX_VALUE) {
+                throw new OutOfMemoryError("Overflow: String length out of range");
+            }
+            this.textLength = (int) len;
+            this.hash = Arrays.hashCode(texts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof Recipe) &&
+                Arrays.equals(texts, ((Recipe) o).texts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Concatenates the arguments with the constant text.  The arguments
+         * array is owned by this invocation, and the String form of any
+         * argument whose length cannot be computed directly is stored back
+         * into it between the two passes.
+         */
+        String concat(Object[] args) {
+            int len = textLength;
+            for (int i = 0; i < args.length; i++) {
+                Object a = args[i];
+                int n;
+                if (a instanceof String) {
+                    n = ((String) a).length();
+                } else if (a instanceof Integer || a instanceof Long ||
+                           a instanceof Short || a instanceof Byte) {
+                    n = stringSize(((Number) a).longValue());
+                } else if (a instanceof Character) {
+                    n = 1;
+                } else if (a instanceof Boolean) {
+                    n = ((Boolean) a) ? 4 : 5;
+                } else {
+                    String s = String.valueOf(a);
+                    if (s == null) {
+                        // toString() returned null; append as StringBuilder would
+                        s = "null";
+                    }
+                    args[i] = s;
+                    n = s.length();
+                }
+                len += n;
+                if (len < 0) {
+                    throw new OutOfMemoryError("Overflow: String length out of range");
+                }
+            }
+
+            char[] buf = new char[len];
+            int pos = 0;
+            for (int i = 0; i < args.length; i++) {
+                String t = texts[i];
+                t.getChars(0, t.length(), buf, pos);
+                pos += t.length();
+                Object a = args[i];
+                if (a instanceof String) {
+                    String s = (String) a;
+                    s.getChars(0, s.length(), buf, pos);
+                    pos += s.length();
+                } else if (a instanceof Character) {
+                    buf[pos++] = (Character) a;
+                } else if (a instanceof Boolean) {
+                    String s = ((Boolean) a) ? "true" : "false";
+                    s.getChars(0, s.length(), buf, pos);
+                    pos += s.length();
+                } else {
+                    pos = putLong(((Number) a).longValue(), buf, pos);
+                }
+            }
+            String t = texts[args.length];
+            t.getChars(0, t.length(), buf, pos);
+            return JLA.newStringUnsafe(buf);
+        }
+    }
+
+    /**
+     * Returns the number of chars in the decimal form of the given value.
+     */
+    static int stringSize(long v) {
+        int n = 1;
+        long q = v;
+        if (q < 0) {
+            n++;
+        } else {
+            q = -q;
+        }
+        // negative values cover Long.MIN_VALUE
+        while (q <= -10) {
+            q /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Writes the decimal form of the given value at the given position, and
+     * returns the position after it.
+     */
+    static int putLong(long v, char[] buf, int pos) {
+        int end = pos + stringSize(v);
+        int p = end;
+        long q = (v < 0) ? v : -v;
+        do {
+            buf[--p] = (char) ('0' - (q % 10));
+            q /= 10;
+        } while (q != 0);
+        if (v < 0) {
+            buf[--p] = '-';
+        }
+        return end;
+    }
+}
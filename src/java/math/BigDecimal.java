@@ -225,7 +225,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * @serial
      * @see #unscaledValue
      */
-    private final BigInteger intVal;
+    final BigInteger intVal;
 
     /**
      * The scale of this BigDecimal, as returned by {@link #scale}.
@@ -233,7 +233,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * @serial
      * @see #scale
      */
-    private final int scale;  // Note: this may have any value, so
+    final int scale;  // Note: this may have any value, so
                               // calculations must be done in longs
 
     /**
@@ -265,7 +265,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * less than or equal to {@code Long.MAX_VALUE}, the value can be
      * compactly stored in this field and used in computations.
      */
-    private final transient long intCompact;
+    final transient long intCompact;
 
     // All 18-digit base ten strings fit into a long; not all 19-digit
     // strings will
@@ -3559,7 +3559,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * @param  n the power of ten to be returned (>=0)
      * @return a {@code BigInteger} with the value (10<sup>n</sup>)
      */
-    private static BigInteger bigTenToThe(int n) {
+    static BigInteger bigTenToThe(int n) {
         if (n < 0)
             return BigInteger.ZERO;
 
@@ -3605,7 +3605,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
         }
     }
 
-    private static final long[] LONG_TEN_POWERS_TABLE = {
+    static final long[] LONG_TEN_POWERS_TABLE = {
         1,                     // 0 / 10^0
         10,                    // 1 / 10^1
         100,                   // 2 / 10^2
@@ -3680,7 +3680,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
      * Compute val * 10 ^ n; return this product if it is
      * representable as a long, INFLATED otherwise.
      */
-    private static long longMultiplyPowerTen(long val, int n) {
+    static long longMultiplyPowerTen(long val, int n) {
         if (val == 0 || n <= 0)
             return val;
         long[] tab = LONG_TEN_POWERS_TABLE;
@@ -4172,8 +4172,8 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
     /**
      * Shared logic of need increment computation.
      */
-    private static boolean commonNeedIncrement(int roundingMode, int qsign,
-                                        int cmpFracHalf, boolean oddQuot) {
+    static boolean commonNeedIncrement(int roundingMode, int qsign,
+                                       int cmpFracHalf, boolean oddQuot) {
         switch(roundingMode) {
         case ROUND_UNNECESSARY:
             throw new ArithmeticException("Rounding necessary");
@@ -5048,7 +5048,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal> {
         }
     }
 
-    private static long multiply(long x, long y){
+    static long multiply(long x, long y){
                 long product = x * y;
         long ax = Math.abs(x);
         long ay = Math.abs(y);
@@ -35,6 +35,8 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamField;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
 import sun.misc.DoubleConsts;
 import sun.misc.FloatConsts;
@@ -242,6 +244,25 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      */
     private static final int TOOM_COOK_SQUARE_THRESHOLD = 216;
 
+    /**
+     * The threshold value for using number-theoretic transform multiplication.
+     * If the number of ints in both mag arrays are greater than this number,
+     * and the product is not longer than {@code
+     * NumberTheoreticTransform.MAX_LENGTH} ints, then multiplication by
+     * number-theoretic transforms will be used.  This value is found
+     * experimentally to work well.
+     */
+    private static final int NTT_THRESHOLD = 5000;
+
+    /**
+     * The threshold value for using number-theoretic transform squaring.  If
+     * the number of ints in the number are larger than this value, and the
+     * square is not longer than {@code NumberTheoreticTransform.MAX_LENGTH}
+     * ints, then squaring by number-theoretic transforms will be used.  This
+     * value is found experimentally to work well.
+     */
+    private static final int NTT_SQUARE_THRESHOLD = 6000;
+
     /**
      * The threshold value for using Burnikel-Ziegler division.  If the number
      * of ints in the divisor are larger than this value, Burnikel-Ziegler
@@ -1166,7 +1187,9 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
             && TOOM_COOK_THRESHOLD < Integer.MAX_VALUE
             && 0 < KARATSUBA_SQUARE_THRESHOLD
             && KARATSUBA_SQUARE_THRESHOLD < TOOM_COOK_SQUARE_THRESHOLD
-            && TOOM_COOK_SQUARE_THRESHOLD < Integer.MAX_VALUE :
+            && TOOM_COOK_SQUARE_THRESHOLD < Integer.MAX_VALUE
+            && TOOM_COOK_THRESHOLD < NTT_THRESHOLD
+            && TOOM_COOK_SQUARE_THRESHOLD < NTT_SQUARE_THRESHOLD :
             "Algorithm thresholds are inconsistent";
 
         for (int i = 1; i <= MAX_CONSTANT; i++) {
@@ -1490,7 +1513,33 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * @return {@code this * val}
      */
     public BigInteger multiply(BigInteger val) {
-        return multiply(val, false);
+        return multiply(val, false, false, 0);
+    }
+
+    /**
+     * Returns a BigInteger whose value is {@code (this * val)}.  When both
+     * {@code this} and {@code val} are large, typically in the thousands of
+     * bits, the multiplication may be split into subproducts that are
+     * computed in parallel.  This method returns exactly the same
+     * mathematical result as {@link #multiply}.
+     *
+     * @implNote An implementation may offer better algorithmic
+     * performance when {@code val == this}.
+     *
+     * @implNote This implementation forks the subproducts of 3-way
+     * Toom-Cook multiplication, and the transforms of number-theoretic
+     * transform multiplication, onto the {@linkplain
+     * ForkJoinPool#commonPool() common pool}.  Compared to {@link
+     * #multiply}, it typically uses more CPU time and some more memory to
+     * compute the result faster.
+     *
+     * @param  val value to be multiplied by this BigInteger.
+     * @return {@code this * val}
+     * @see #multiply
+     * @since 1.8
+     */
+    public BigInteger parallelMultiply(BigInteger val) {
+        return multiply(val, false, true, 0);
     }
 
     /**
@@ -1499,16 +1548,19 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      *
      * @param  val value to be multiplied by this BigInteger.
      * @param  isRecursion whether this is a recursive invocation
+     * @param  parallel whether subproducts may be computed in parallel
+     * @param  depth the depth of recursion of a parallel multiplication
      * @return {@code this * val}
      */
-    private BigInteger multiply(BigInteger val, boolean isRecursion) {
+    private BigInteger multiply(BigInteger val, boolean isRecursion,
+                                boolean parallel, int depth) {
         if (val.signum == 0 || signum == 0)
             return ZERO;
 
         int xlen = mag.length;
 
         if (val == this && xlen > MULTIPLY_SQUARE_THRESHOLD) {
-            return square();
+            return square(isRecursion, parallel, depth);
         }
 
         int ylen = val.mag.length;
@@ -1586,7 +1638,15 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
                     }
                 }
 
-                return multiplyToomCook3(this, val);
+                if (xlen >= NTT_THRESHOLD && ylen >= NTT_THRESHOLD &&
+                    xlen + ylen <= NumberTheoreticTransform.MAX_LENGTH) {
+                    int[] result = NumberTheoreticTransform.multiply(mag,
+                            val.mag, parallel && RecursiveOp.forks(depth));
+                    return new BigInteger(trustedStripLeadingZeroInts(result),
+                                          signum == val.signum ? 1 : -1);
+                }
+
+                return multiplyToomCook3(this, val, parallel, depth);
             }
         }
     }
@@ -1762,7 +1822,8 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * LNCS #4547. Springer, Madrid, Spain, June 21-22, 2007.
      *
      */
-    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b) {
+    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b,
+                                                boolean parallel, int depth) {
         int alen = a.mag.length;
         int blen = b.mag.length;
 
@@ -1786,16 +1847,26 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
 
         BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1, db1;
 
-        v0 = a0.multiply(b0, true);
+        // The subproducts are forked as tasks if the multiplication is
+        // parallel and not too deep, or else computed in turn.
+        depth++;
+        RecursiveOp v0Op, v1Op, v2Op, vm1Op;
+        v0Op = RecursiveOp.multiply(a0, b0, parallel, depth);
         da1 = a2.add(a0);
         db1 = b2.add(b0);
-        vm1 = da1.subtract(a1).multiply(db1.subtract(b1), true);
+        vm1Op = RecursiveOp.multiply(da1.subtract(a1), db1.subtract(b1),
+                                     parallel, depth);
         da1 = da1.add(a1);
         db1 = db1.add(b1);
-        v1 = da1.multiply(db1, true);
-        v2 = da1.add(a2).shiftLeft(1).subtract(a0).multiply(
-             db1.add(b2).shiftLeft(1).subtract(b0), true);
-        vinf = a2.multiply(b2, true);
+        v1Op = RecursiveOp.multiply(da1, db1, parallel, depth);
+        v2Op = RecursiveOp.multiply(da1.add(a2).shiftLeft(1).subtract(a0),
+                                    db1.add(b2).shiftLeft(1).subtract(b0),
+                                    parallel, depth);
+        vinf = a2.multiply(b2, true, parallel, depth);
+        v0 = v0Op.join();
+        vm1 = vm1Op.join();
+        v1 = v1Op.join();
+        v2 = v2Op.join();
 
         // The algorithm requires two divisions by 2 and one by 3.
         // All divisions are known to be exact, that is, they do not produce
@@ -1961,7 +2032,7 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * @return {@code this<sup>2</sup>}
      */
     private BigInteger square() {
-        return square(false);
+        return square(false, false, 0);
     }
 
     /**
@@ -1969,9 +2040,12 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * the invocation is recursive certain overflow checks are skipped.
      *
      * @param isRecursion whether this is a recursive invocation
+     * @param parallel whether subproducts may be computed in parallel
+     * @param depth the depth of recursion of a parallel squaring
      * @return {@code this<sup>2</sup>}
      */
-    private BigInteger square(boolean isRecursion) {
+    private BigInteger square(boolean isRecursion, boolean parallel,
+                              int depth) {
         if (signum == 0) {
             return ZERO;
         }
@@ -1993,7 +2067,15 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
                     }
                 }
 
-                return squareToomCook3();
+                if (len >= NTT_SQUARE_THRESHOLD &&
+                    2 * len <= NumberTheoreticTransform.MAX_LENGTH) {
+                    int[] result = NumberTheoreticTransform.multiply(mag,
+                            null, parallel && RecursiveOp.forks(depth));
+                    return new BigInteger(trustedStripLeadingZeroInts(result),
+                                          1);
+                }
+
+                return squareToomCook3(parallel, depth);
             }
         }
     }
@@ -2126,7 +2208,7 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
      * that has better asymptotic performance than the algorithm used in
      * squareToLen or squareKaratsuba.
      */
-    private BigInteger squareToomCook3() {
+    private BigInteger squareToomCook3(boolean parallel, int depth) {
         int len = mag.length;
 
         // k is the size (in ints) of the lower-order slices.
@@ -2143,13 +2225,20 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         a0 = getToomSlice(k, r, 2, len);
         BigInteger v0, v1, v2, vm1, vinf, t1, t2, tm1, da1;
 
-        v0 = a0.square(true);
+        depth++;
+        RecursiveOp v0Op, v1Op, v2Op, vm1Op;
+        v0Op = RecursiveOp.square(a0, parallel, depth);
         da1 = a2.add(a0);
-        vm1 = da1.subtract(a1).square(true);
+        vm1Op = RecursiveOp.square(da1.subtract(a1), parallel, depth);
         da1 = da1.add(a1);
-        v1 = da1.square(true);
-        vinf = a2.square(true);
-        v2 = da1.add(a2).shiftLeft(1).subtract(a0).square(true);
+        v1Op = RecursiveOp.square(da1, parallel, depth);
+        v2Op = RecursiveOp.square(da1.add(a2).shiftLeft(1).subtract(a0),
+                                  parallel, depth);
+        vinf = a2.square(true, parallel, depth);
+        v0 = v0Op.join();
+        vm1 = vm1Op.join();
+        v1 = v1Op.join();
+        v2 = v2Op.join();
 
         // The algorithm requires two divisions by 2 and one by 3.
         // All divisions are known to be exact, that is, they do not produce
@@ -2171,6 +2260,68 @@ public class BigInteger extends Number implements Comparable<BigInteger> {
         return vinf.shiftLeft(ss).add(t2).shiftLeft(ss).add(t1).shiftLeft(ss).add(tm1).shiftLeft(ss).add(v0);
     }
 
+    /**
+     * A subproduct of a multiplication or squaring.  If the operation is
+     * parallel and the recursion is not too deep, the subproduct is forked
+     * onto the common pool, otherwise it is computed when it is created.
+     */
+    @SuppressWarnings("serial")
+    private static final class RecursiveOp extends RecursiveTask<BigInteger> {
+        private final BigInteger a;
+        private final BigInteger b;     // null when squaring
+        private final boolean parallel;
+        private final int depth;
+
+        private RecursiveOp(BigInteger a, BigInteger b, boolean parallel,
+                            int depth) {
+            this.a = a;
+            this.b = b;
+            this.parallel = parallel;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            return b == null ? a.square(true, parallel, depth)
+                             : a.multiply(b, true, parallel, depth);
+        }
+
+        private RecursiveOp forkOrInvoke() {
+            if (parallel && forks(depth)) {
+                fork();
+            } else {
+                invoke();
+            }
+            return this;
+        }
+
+        static RecursiveOp multiply(BigInteger a, BigInteger b,
+                                    boolean parallel, int depth) {
+            return new RecursiveOp(a, b, parallel, depth).forkOrInvoke();
+        }
+
+        static RecursiveOp square(BigInteger a, boolean parallel, int depth) {
+            return new RecursiveOp(a, null, parallel, depth).forkOrInvoke();
+        }
+
+        /**
+         * Returns true if a parallel operation at the given depth of
+         * recursion should fork its subproducts.  Each level of Toom-Cook
+         * recursion multiplies the number of subproducts by five, so forking
+         * stops once there are about as many as the parallelism of the
+         * common pool.
+         */
+        static boolean forks(int depth) {
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            if (parallelism <= 1)
+                return false;
+            int limit = 1;
+            for (long tasks = 5; tasks < parallelism; tasks *= 5)
+                limit++;
+            return depth <= limit;
+        }
+    }
+
     // Division
 
     /**
@@ -0,0 +1,1149 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.math;
+
+import static java.math.BigDecimal.INFLATED;
+import static java.math.BigDecimal.LONG_TEN_POWERS_TABLE;
+import static java.math.BigInteger.LONG_MASK;
+
+/**
+ * A mutable decimal number for repeated arithmetic without allocation.  A
+ * {@code MutableDecimal} holds an unscaled value and a scale like a {@link
+ * BigDecimal}, but its arithmetic methods replace the value of the object
+ * itself instead of returning a new one.  It is intended for accumulating
+ * sums and products in loops, such as
+ *
+ * <pre>{@code
+ *     MutableDecimal total = new MutableDecimal(MathContext.DECIMAL64);
+ *     for (Order order : orders)
+ *         total.add(order.price()).subtract(order.discount());
+ *     BigDecimal result = total.toBigDecimal();
+ * }</pre>
+ *
+ * <p>Each arithmetic method computes the same value, with the same scale,
+ * as the corresponding method of {@code BigDecimal} taking the {@link
+ * MathContext} of this object; for example {@code x.add(y)} leaves in
+ * {@code x} the value of {@code x.toBigDecimal().add(y, x.mathContext())}.
+ * The exceptions thrown are also the same.  The {@code set} methods and
+ * {@link #negate} do not round.
+ *
+ * <p>While the unscaled value fits in a {@code long}, arithmetic is done
+ * on {@code long} values and allocates nothing.  Larger values are held in
+ * a {@code MutableBigInteger} whose storage is reused by later operations.
+ *
+ * <p>Instances of {@code MutableDecimal} are not safe for use by multiple
+ * threads.
+ *
+ * @see     BigDecimal
+ * @since   1.8
+ */
+public final class MutableDecimal implements Comparable<MutableDecimal> {
+
+    /** The context that results are rounded to. */
+    private final MathContext mc;
+
+    /**
+     * The unscaled value if it fits in a {@code long}, otherwise {@code
+     * INFLATED}.
+     */
+    private long intCompact;
+
+    /**
+     * The magnitude of the unscaled value if {@code intCompact} is {@code
+     * INFLATED}, otherwise unused.  Created on first use.
+     */
+    private MutableBigInteger intVal;
+
+    /** The sign of the unscaled value if {@code intCompact} is INFLATED. */
+    private int sign;
+
+    /** The scale. */
+    private int scale;
+
+    /*
+     * Work space for operations on inflated values.  Results are computed
+     * into tmp or quo, which is then exchanged with intVal.
+     */
+    private MutableBigInteger tmp;
+    private MutableBigInteger quo;
+
+    /*
+     * The operand of the current operation.  If argCompact is INFLATED,
+     * arg holds its magnitude and argSign its sign.  arg may be the
+     * magnitude of another MutableDecimal or a view of the magnitude of a
+     * BigInteger, so it is never modified.
+     */
+    private long argCompact;
+    private int argSign;
+    private int argScale;
+    private MutableBigInteger arg;
+
+    /** A copy of an operand magnitude that has no other storage. */
+    private MutableBigInteger argCopy;
+
+    /** A view of the magnitude of an operand BigInteger; never modified. */
+    private MutableBigInteger argView;
+
+    /** A view of the magnitude of a power of ten; never modified. */
+    private MutableBigInteger powView;
+
+    /** Powers of ten that fit in an int, for multiplying magnitudes. */
+    private static final int[] INT_TEN_POWERS = {
+        1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+        1000000000
+    };
+
+    /**
+     * Creates a {@code MutableDecimal} with the value zero, a scale of
+     * zero, and unlimited precision.
+     */
+    public MutableDecimal() {
+        this(MathContext.UNLIMITED);
+    }
+
+    /**
+     * Creates a {@code MutableDecimal} with the value zero and a scale of
+     * zero, whose arithmetic results are rounded according to the given
+     * context.
+     *
+     * @param  mc the context to use.
+     * @throws NullPointerException if {@code mc} is null.
+     */
+    public MutableDecimal(MathContext mc) {
+        if (mc == null)
+            throw new NullPointerException();
+        this.mc = mc;
+    }
+
+    /**
+     * Returns the context that the results of the arithmetic methods of
+     * this {@code MutableDecimal} are rounded to.
+     *
+     * @return the context of this {@code MutableDecimal}.
+     */
+    public MathContext mathContext() {
+        return mc;
+    }
+
+    // Setting the value
+
+    /**
+     * Sets the value of this {@code MutableDecimal} to that of the given
+     * {@code BigDecimal}, with the same scale.  The value is not rounded.
+     *
+     * @param  val the new value.
+     * @return this {@code MutableDecimal}.
+     */
+    public MutableDecimal set(BigDecimal val) {
+        scale = val.scale;
+        long v = val.intCompact;
+        if (v != INFLATED) {
+            intCompact = v;
+        } else {
+            magnitude().copyValue(val.intVal.mag);
+            sign = val.intVal.signum;
+            intCompact = INFLATED;
+            compact();
+        }
+        return this;
+    }
+
+    /**
+     * Sets the value of this {@code MutableDecimal} to {@code (unscaledVal
+     * &times; 10<sup>-scale</sup>)}.  The value is not rounded.
+     *
+     * @param  unscaledVal the unscaled value.
+     * @param  scale the scale.
+     * @return this {@code MutableDecimal}.
+     */
+    public MutableDecimal set(long unscaledVal, int scale) {
+        this.scale = scale;
+        if (unscaledVal != INFLATED) {
+            intCompact = unscaledVal;
+        } else {
+            setMinLong(magnitude());
+            sign = -1;
+            intCompact = INFLATED;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the value of this {@code MutableDecimal} to that of another,
+     * with the same scale.  The value is not rounded.
+     *
+     * @param  val the new value.
+     * @return this {@code MutableDecimal}.
+     */
+    public MutableDecimal set(MutableDecimal val) {
+        if (val != this) {
+            scale = val.scale;
+            intCompact = val.intCompact;
+            if (intCompact == INFLATED) {
+                magnitude().copyValue(val.intVal);
+                sign = val.sign;
+            }
+        }
+        return this;
+    }
+
+    // Arithmetic
+
+    /**
+     * Adds {@code augend} to this {@code MutableDecimal}, with rounding
+     * according to the context settings.
+     *
+     * @param  augend value to be added.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#add(BigDecimal, MathContext)
+     */
+    public MutableDecimal add(BigDecimal augend) {
+        load(augend);
+        add();
+        return this;
+    }
+
+    /**
+     * Adds {@code (unscaledVal &times; 10<sup>-scale</sup>)} to this
+     * {@code MutableDecimal}, with rounding according to the context
+     * settings.
+     *
+     * @param  unscaledVal the unscaled value to be added.
+     * @param  scale the scale of the value to be added.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#add(BigDecimal, MathContext)
+     */
+    public MutableDecimal add(long unscaledVal, int scale) {
+        load(unscaledVal, scale);
+        add();
+        return this;
+    }
+
+    /**
+     * Adds the value of {@code augend}, which may be this object, to this
+     * {@code MutableDecimal}, with rounding according to the context
+     * settings.
+     *
+     * @param  augend value to be added.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#add(BigDecimal, MathContext)
+     */
+    public MutableDecimal add(MutableDecimal augend) {
+        load(augend);
+        add();
+        return this;
+    }
+
+    /**
+     * Subtracts {@code subtrahend} from this {@code MutableDecimal}, with
+     * rounding according to the context settings.
+     *
+     * @param  subtrahend value to be subtracted.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#subtract(BigDecimal, MathContext)
+     */
+    public MutableDecimal subtract(BigDecimal subtrahend) {
+        load(subtrahend);
+        negateArg();
+        add();
+        return this;
+    }
+
+    /**
+     * Subtracts {@code (unscaledVal &times; 10<sup>-scale</sup>)} from this
+     * {@code MutableDecimal}, with rounding according to the context
+     * settings.
+     *
+     * @param  unscaledVal the unscaled value to be subtracted.
+     * @param  scale the scale of the value to be subtracted.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#subtract(BigDecimal, MathContext)
+     */
+    public MutableDecimal subtract(long unscaledVal, int scale) {
+        load(unscaledVal, scale);
+        negateArg();
+        add();
+        return this;
+    }
+
+    /**
+     * Subtracts the value of {@code subtrahend}, which may be this object,
+     * from this {@code MutableDecimal}, with rounding according to the
+     * context settings.
+     *
+     * @param  subtrahend value to be subtracted.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}.
+     * @see    BigDecimal#subtract(BigDecimal, MathContext)
+     */
+    public MutableDecimal subtract(MutableDecimal subtrahend) {
+        load(subtrahend);
+        negateArg();
+        add();
+        return this;
+    }
+
+    /**
+     * Multiplies this {@code MutableDecimal} by {@code multiplicand}, with
+     * rounding according to the context settings.
+     *
+     * @param  multiplicand value to be multiplied by.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}, or if the scale of
+     *         the result overflows.
+     * @see    BigDecimal#multiply(BigDecimal, MathContext)
+     */
+    public MutableDecimal multiply(BigDecimal multiplicand) {
+        load(multiplicand);
+        multiply();
+        return this;
+    }
+
+    /**
+     * Multiplies this {@code MutableDecimal} by {@code (unscaledVal &times;
+     * 10<sup>-scale</sup>)}, with rounding according to the context
+     * settings.
+     *
+     * @param  unscaledVal the unscaled value to be multiplied by.
+     * @param  scale the scale of the value to be multiplied by.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}, or if the scale of
+     *         the result overflows.
+     * @see    BigDecimal#multiply(BigDecimal, MathContext)
+     */
+    public MutableDecimal multiply(long unscaledVal, int scale) {
+        load(unscaledVal, scale);
+        multiply();
+        return this;
+    }
+
+    /**
+     * Multiplies this {@code MutableDecimal} by the value of {@code
+     * multiplicand}, which may be this object, with rounding according to
+     * the context settings.
+     *
+     * @param  multiplicand value to be multiplied by.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the result is inexact but the
+     *         rounding mode is {@code UNNECESSARY}, or if the scale of
+     *         the result overflows.
+     * @see    BigDecimal#multiply(BigDecimal, MathContext)
+     */
+    public MutableDecimal multiply(MutableDecimal multiplicand) {
+        load(multiplicand);
+        multiply();
+        return this;
+    }
+
+    /**
+     * Divides this {@code MutableDecimal} by {@code divisor}, with rounding
+     * according to the context settings.  If the precision of the context
+     * is zero, the quotient must be exact, as for {@link
+     * BigDecimal#divide(BigDecimal)}, and this method allocates.
+     *
+     * @param  divisor value by which this {@code MutableDecimal} is to be
+     *         divided.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if {@code divisor} is zero, if the
+     *         result is inexact but the rounding mode is {@code
+     *         UNNECESSARY} or the precision is zero, or if the scale of
+     *         the result overflows.
+     * @see    BigDecimal#divide(BigDecimal, MathContext)
+     */
+    public MutableDecimal divide(BigDecimal divisor) {
+        if (mc.precision == 0)
+            return set(toBigDecimal().divide(divisor));
+        load(divisor);
+        divide();
+        return this;
+    }
+
+    /**
+     * Divides this {@code MutableDecimal} by {@code (unscaledVal &times;
+     * 10<sup>-scale</sup>)}, with rounding according to the context
+     * settings.  If the precision of the context is zero, the quotient
+     * must be exact, as for {@link BigDecimal#divide(BigDecimal)}, and this
+     * method allocates.
+     *
+     * @param  unscaledVal the unscaled value of the divisor.
+     * @param  scale the scale of the divisor.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if the divisor is zero, if the result is
+     *         inexact but the rounding mode is {@code UNNECESSARY} or the
+     *         precision is zero, or if the scale of the result overflows.
+     * @see    BigDecimal#divide(BigDecimal, MathContext)
+     */
+    public MutableDecimal divide(long unscaledVal, int scale) {
+        if (mc.precision == 0)
+            return set(toBigDecimal().divide(
+                    BigDecimal.valueOf(unscaledVal, scale)));
+        load(unscaledVal, scale);
+        divide();
+        return this;
+    }
+
+    /**
+     * Divides this {@code MutableDecimal} by the value of {@code divisor},
+     * which may be this object, with rounding according to the context
+     * settings.  If the precision of the context is zero, the quotient
+     * must be exact, as for {@link BigDecimal#divide(BigDecimal)}, and this
+     * method allocates.
+     *
+     * @param  divisor value by which this {@code MutableDecimal} is to be
+     *         divided.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if {@code divisor} is zero, if the
+     *         result is inexact but the rounding mode is {@code
+     *         UNNECESSARY} or the precision is zero, or if the scale of
+     *         the result overflows.
+     * @see    BigDecimal#divide(BigDecimal, MathContext)
+     */
+    public MutableDecimal divide(MutableDecimal divisor) {
+        if (mc.precision == 0)
+            return set(toBigDecimal().divide(divisor.toBigDecimal()));
+        load(divisor);
+        divide();
+        return this;
+    }
+
+    /**
+     * Sets the scale of this {@code MutableDecimal}, multiplying or
+     * dividing its unscaled value by the appropriate power of ten to
+     * maintain its overall value.  If the scale is reduced, the value is
+     * rounded with the given rounding mode; the precision of the context
+     * does not apply.
+     *
+     * @param  newScale the new scale.
+     * @param  roundingMode the rounding mode to apply.
+     * @return this {@code MutableDecimal}.
+     * @throws ArithmeticException if {@code roundingMode==UNNECESSARY}
+     *         and the specified scaling operation would require rounding.
+     * @see    BigDecimal#setScale(int, RoundingMode)
+     */
+    public MutableDecimal setScale(int newScale, RoundingMode roundingMode) {
+        int oldScale = scale;
+        if (newScale > oldScale && signum() != 0) {
+            raise((long)newScale - oldScale);
+        } else if (newScale < oldScale && signum() != 0) {
+            long drop = (long)oldScale - newScale;
+            if (drop > precision())
+                roundAway(roundingMode.oldMode);
+            else
+                dropDigits((int)drop, roundingMode.oldMode);
+        }
+        scale = newScale;
+        return this;
+    }
+
+    /**
+     * Negates this {@code MutableDecimal}.  The value is not rounded.
+     *
+     * @return this {@code MutableDecimal}.
+     */
+    public MutableDecimal negate() {
+        if (intCompact != INFLATED)
+            intCompact = -intCompact;
+        else
+            sign = -sign;
+        return this;
+    }
+
+    // Queries
+
+    /**
+     * Returns the signum function of this {@code MutableDecimal}.
+     *
+     * @return -1, 0, or 1 as the value of this {@code MutableDecimal}
+     *         is negative, zero, or positive.
+     */
+    public int signum() {
+        long v = intCompact;
+        return v != INFLATED ? Long.signum(v) : sign;
+    }
+
+    /**
+     * Returns the scale of this {@code MutableDecimal}.
+     *
+     * @return the scale of this {@code MutableDecimal}.
+     * @see    BigDecimal#scale()
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Returns the precision of this {@code MutableDecimal}, the number of
+     * digits in its unscaled value.  The precision of a zero value is 1.
+     *
+     * @return the precision of this {@code MutableDecimal}.
+     * @see    BigDecimal#precision()
+     */
+    public int precision() {
+        long v = intCompact;
+        if (v != INFLATED)
+            return BigDecimal.longDigitLength(v);
+        return digitLength(intVal);
+    }
+
+    /**
+     * Compares this {@code MutableDecimal} with the specified one
+     * numerically.  Two values that are equal in value but have a
+     * different scale (like 2.0 and 2.00) are considered equal.
+     *
+     * @param  val {@code MutableDecimal} to which this one is to be
+     *         compared.
+     * @return -1, 0, or 1 as this {@code MutableDecimal} is numerically
+     *         less than, equal to, or greater than {@code val}.
+     */
+    @Override
+    public int compareTo(MutableDecimal val) {
+        int xsign = signum();
+        int ysign = val.signum();
+        if (xsign != ysign)
+            return xsign > ysign ? 1 : -1;
+        if (xsign == 0 || val == this)
+            return 0;
+        long xs = intCompact;
+        long ys = val.intCompact;
+        if (xs != INFLATED && ys != INFLATED) {
+            long sdiff = (long)scale - val.scale;
+            if (sdiff < 0 && sdiff > -LONG_TEN_POWERS_TABLE.length)
+                xs = BigDecimal.longMultiplyPowerTen(xs, (int)-sdiff);
+            else if (sdiff > 0 && sdiff < LONG_TEN_POWERS_TABLE.length)
+                ys = BigDecimal.longMultiplyPowerTen(ys, (int)sdiff);
+            else if (sdiff != 0)
+                xs = ys = INFLATED;
+            if (xs != INFLATED && ys != INFLATED)
+                return xs < ys ? -1 : (xs == ys ? 0 : 1);
+        }
+        return toBigDecimal().compareTo(val.toBigDecimal());
+    }
+
+    // Conversions
+
+    /**
+     * Returns a {@code BigDecimal} with the value and scale of this
+     * {@code MutableDecimal}.
+     *
+     * @return the value of this {@code MutableDecimal} as a {@code
+     *         BigDecimal}.
+     */
+    public BigDecimal toBigDecimal() {
+        long v = intCompact;
+        if (v != INFLATED)
+            return BigDecimal.valueOf(v, scale);
+        return intVal.toBigDecimal(sign, scale);
+    }
+
+    /**
+     * Returns the string representation of this {@code MutableDecimal},
+     * which is that of {@link #toBigDecimal()}.
+     *
+     * @return string representation of this {@code MutableDecimal}.
+     * @see    BigDecimal#toString()
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+    // Operands
+
+    private void load(BigDecimal val) {
+        argScale = val.scale;
+        argCompact = val.intCompact;
+        if (argCompact == INFLATED) {
+            BigInteger b = val.intVal;
+            argSign = b.signum;
+            if (argView == null)
+                argView = new MutableBigInteger();
+            argView.setValue(b.mag, b.mag.length);
+            arg = argView;
+        }
+    }
+
+    private void load(long unscaledVal, int scale) {
+        argScale = scale;
+        argCompact = unscaledVal;
+        if (unscaledVal == INFLATED) {
+            argSign = -1;
+            setMinLong(argCopy());
+            arg = argCopy;
+        }
+    }
+
+    private void load(MutableDecimal val) {
+        argScale = val.scale;
+        argCompact = val.intCompact;
+        if (argCompact == INFLATED) {
+            argSign = val.sign;
+            if (val == this) {
+                argCopy().copyValue(intVal);
+                arg = argCopy;
+            } else {
+                arg = val.intVal;
+            }
+        }
+    }
+
+    private void negateArg() {
+        if (argCompact != INFLATED)
+            argCompact = -argCompact;
+        else
+            argSign = -argSign;
+    }
+
+    private int argSignum() {
+        long v = argCompact;
+        return v != INFLATED ? Long.signum(v) : argSign;
+    }
+
+    /**
+     * Returns the magnitude of the operand, copying a compact operand into
+     * argCopy.
+     */
+    private MutableBigInteger argMagnitude() {
+        long v = argCompact;
+        if (v != INFLATED) {
+            argSign = Long.signum(v);
+            setLong(argCopy(), Math.abs(v));
+            arg = argCopy;
+        }
+        return arg;
+    }
+
+    // The operations
+
+    /** Adds the operand to this value. */
+    private void add() {
+        if (mc.precision > 0 && (signum() == 0 || argSignum() == 0)) {
+            addToZero();
+            return;
+        }
+        long xs = intCompact;
+        long ys = argCompact;
+        if (xs != INFLATED && ys != INFLATED) {
+            long sdiff = (long)scale - argScale;
+            if (sdiff < 0)
+                xs = sdiff > -LONG_TEN_POWERS_TABLE.length ?
+                    BigDecimal.longMultiplyPowerTen(xs, (int)-sdiff) : INFLATED;
+            else if (sdiff > 0)
+                ys = sdiff < LONG_TEN_POWERS_TABLE.length ?
+                    BigDecimal.longMultiplyPowerTen(ys, (int)sdiff) : INFLATED;
+            if (xs != INFLATED && ys != INFLATED) {
+                long sum = xs + ys;
+                // Overflow iff both arguments have the opposite sign of
+                // the result; Long.MIN_VALUE is INFLATED
+                if (((sum ^ xs) & (sum ^ ys)) >= 0 && sum != INFLATED) {
+                    intCompact = sum;
+                    scale = Math.max(scale, argScale);
+                    round();
+                    return;
+                }
+            }
+        }
+
+        inflate();
+        MutableBigInteger y = argMagnitude();
+        if (scale < argScale) {
+            raise((long)argScale - scale);
+            inflate();
+            scale = argScale;
+        } else if (scale > argScale && argSign != 0) {
+            multiplyPowerTen(y, (long)scale - argScale, tmp());
+            y = tmp;
+        }
+        if (argSign == 0) {
+            // Nothing to add
+        } else if (sign == 0) {
+            intVal.copyValue(y);
+            sign = argSign;
+        } else if (sign == argSign) {
+            intVal.add(y);
+        } else {
+            int cmp = intVal.subtract(y);
+            sign = cmp * sign;
+        }
+        compact();
+        round();
+    }
+
+    /**
+     * Adds the operand to this value when one of them is zero and the
+     * precision is not, which like BigDecimal keeps the scale of the
+     * result as close as possible to the larger of the two scales.
+     */
+    private void addToZero() {
+        int preferredScale = Math.max(scale, argScale);
+        if (signum() == 0) {
+            if (argSignum() == 0) {
+                intCompact = 0;
+                scale = preferredScale;
+                return;
+            }
+            scale = argScale;
+            intCompact = argCompact;
+            if (argCompact == INFLATED) {
+                magnitude().copyValue(arg);
+                sign = argSign;
+            }
+        }
+        round();
+        if (scale > preferredScale) {
+            stripZeros(preferredScale);
+        } else if (scale < preferredScale) {
+            int precisionDiff = mc.precision - precision();
+            int scaleDiff = preferredScale - scale;
+            int newScale = precisionDiff >= scaleDiff ? preferredScale
+                                                      : scale + precisionDiff;
+            raise((long)newScale - scale);
+            scale = newScale;
+        }
+    }
+
+    /** Multiplies this value by the operand. */
+    private void multiply() {
+        long productScale = (long)scale + argScale;
+        long xs = intCompact;
+        long ys = argCompact;
+        if (xs != INFLATED && ys != INFLATED) {
+            long product = BigDecimal.multiply(xs, ys);
+            if (product != INFLATED) {
+                intCompact = product;
+                scale = checkScale(productScale);
+                round();
+                return;
+            }
+        }
+
+        inflate();
+        MutableBigInteger y = argMagnitude();
+        if (sign == 0 || argSign == 0) {
+            intCompact = 0;
+        } else {
+            intVal.multiply(y, tmp());
+            swapTmp();
+            sign *= argSign;
+            compact();
+        }
+        scale = checkScale(productScale);
+        round();
+    }
+
+    /**
+     * Divides this value by the operand, rounding the quotient to the
+     * precision of the context, which must not be zero.
+     */
+    private void divide() {
+        int prec = mc.precision;
+        int ysign = argSignum();
+        if (ysign == 0) {
+            if (signum() == 0)
+                throw new ArithmeticException("Division undefined");  // NaN
+            throw new ArithmeticException("Division by zero");
+        }
+        long preferredScale = (long)scale - argScale;
+        if (signum() == 0) {
+            scale = saturateLong(preferredScale);
+            return;
+        }
+        int qsign = signum() * ysign;
+        int roundingMode = mc.roundingMode.oldMode;
+
+        // The quotient of |x| * 10^k by |y| has exactly prec digits.
+        int xdigits = precision();
+        int ydigits = argPrecision();
+        long k = (long)prec + ydigits - xdigits;
+        if (compareNormalized(xdigits, ydigits) >= 0)
+            k--;
+
+        long xs = intCompact;
+        long ys = argCompact;
+        if (xs != INFLATED && ys != INFLATED) {
+            long n = Math.abs(xs);
+            long d = Math.abs(ys);
+            if (k > 0)
+                n = k < LONG_TEN_POWERS_TABLE.length ?
+                    BigDecimal.longMultiplyPowerTen(n, (int)k) : INFLATED;
+            else if (k < 0)
+                d = k > -LONG_TEN_POWERS_TABLE.length ?
+                    BigDecimal.longMultiplyPowerTen(d, (int)-k) : INFLATED;
+            if (n != INFLATED && d != INFLATED) {
+                long q = n / d;
+                long r = n - q * d;
+                if (r != 0) {
+                    int cmpFracHalf = r < d - r ? -1 : (r == d - r ? 0 : 1);
+                    if (BigDecimal.commonNeedIncrement(roundingMode, qsign,
+                                                       cmpFracHalf,
+                                                       (q & 1) != 0)) {
+                        q++;
+                        if (prec < LONG_TEN_POWERS_TABLE.length &&
+                            q == LONG_TEN_POWERS_TABLE[prec]) {
+                            q /= 10;
+                            k--;
+                        }
+                    }
+                }
+                intCompact = qsign * q;
+                scale = checkScale(preferredScale + k);
+                if (r == 0)
+                    stripZeros(preferredScale);
+                return;
+            }
+        }
+
+        inflate();
+        MutableBigInteger y = argMagnitude();
+        if (k > 0) {
+            multiplyPowerTen(intVal, k, tmp());
+            swapTmp();
+        } else if (k < 0) {
+            multiplyPowerTen(y, -k, tmp());
+            y = tmp;
+        }
+        if (y.offset != 0) {
+            // compareHalf requires the divisor to start at offset zero
+            MutableBigInteger c = (y == tmp) ? tmp : argCopy();
+            c.copyValue(y);
+            y = c;
+        }
+        MutableBigInteger r = intVal.divide(y, quo());
+        boolean exact = r.isZero();
+        if (!exact && BigDecimal.commonNeedIncrement(roundingMode, qsign,
+                                                     r.compareHalf(y),
+                                                     quo.isOdd())) {
+            quo.add(MutableBigInteger.ONE);
+            if (quo.compare(tenPow(prec)) == 0) {
+                quo.divideOneWord(10, tmp());
+                MutableBigInteger t = quo;
+                quo = tmp;
+                tmp = t;
+                k--;
+            }
+        }
+        MutableBigInteger t = intVal;
+        intVal = quo;
+        quo = t;
+        sign = qsign;
+        compact();
+        scale = checkScale(preferredScale + k);
+        if (exact)
+            stripZeros(preferredScale);
+    }
+
+    /**
+     * Compares |x| / 10^xdigits with |y| / 10^ydigits, where x is this
+     * value and y the operand, which are both nonzero.
+     */
+    private int compareNormalized(int xdigits, int ydigits) {
+        long xs = intCompact;
+        long ys = argCompact;
+        if (xs != INFLATED && ys != INFLATED) {
+            xs = Math.abs(xs);
+            ys = Math.abs(ys);
+            if (xdigits < ydigits)
+                xs = BigDecimal.longMultiplyPowerTen(xs, ydigits - xdigits);
+            else if (ydigits < xdigits)
+                ys = BigDecimal.longMultiplyPowerTen(ys, xdigits - ydigits);
+            // Both have at most 19 digits, so only one can overflow
+            if (xs == INFLATED)
+                return 1;
+            if (ys == INFLATED)
+                return -1;
+            return xs < ys ? -1 : (xs == ys ? 0 : 1);
+        }
+        inflate();
+        MutableBigInteger x = intVal;
+        MutableBigInteger y = argMagnitude();
+        if (xdigits < ydigits) {
+            multiplyPowerTen(x, ydigits - xdigits, tmp());
+            x = tmp;
+        } else if (ydigits < xdigits) {
+            multiplyPowerTen(y, xdigits - ydigits, tmp());
+            y = tmp;
+        }
+        int cmp = x.compare(y);
+        compact();
+        return cmp;
+    }
+
+    // Rounding and scaling
+
+    /**
+     * Rounds this value to the precision of the context, reducing the
+     * scale by the number of digits dropped.
+     */
+    private void round() {
+        int prec = mc.precision;
+        if (prec == 0)
+            return;
+        int drop;
+        while ((drop = precision() - prec) > 0) {
+            dropDigits(drop, mc.roundingMode.oldMode);
+            scale = checkScale((long)scale - drop);
+        }
+    }
+
+    /**
+     * Divides the unscaled value by 10^n, where n is at most the
+     * precision, rounding with the given rounding mode.  The scale is not
+     * changed.
+     */
+    private void dropDigits(int n, int roundingMode) {
+        long xs = intCompact;
+        if (xs != INFLATED && n < LONG_TEN_POWERS_TABLE.length) {
+            long d = LONG_TEN_POWERS_TABLE[n];
+            long q = xs / d;
+            long r = Math.abs(xs - q * d);
+            if (r != 0) {
+                int qsign = xs < 0 ? -1 : 1;
+                int cmpFracHalf = r < d - r ? -1 : (r == d - r ? 0 : 1);
+                if (BigDecimal.commonNeedIncrement(roundingMode, qsign,
+                                                   cmpFracHalf,
+                                                   (q & 1) != 0))
+                    q += qsign;
+            }
+            intCompact = q;
+            return;
+        }
+
+        inflate();
+        MutableBigInteger d = tenPow(n);
+        MutableBigInteger r = intVal.divide(d, quo());
+        if (!r.isZero() &&
+            BigDecimal.commonNeedIncrement(roundingMode, sign,
+                                           r.compareHalf(d), quo.isOdd()))
+            quo.add(MutableBigInteger.ONE);
+        MutableBigInteger t = intVal;
+        intVal = quo;
+        quo = t;
+        if (intVal.isZero())
+            sign = 0;
+        compact();
+    }
+
+    /**
+     * Rounds this value to zero digits when more digits are dropped than
+     * it has, so that the discarded fraction is less than one half.
+     */
+    private void roundAway(int roundingMode) {
+        int qsign = signum();
+        boolean increment = BigDecimal.commonNeedIncrement(roundingMode,
+                                                           qsign, -1, false);
+        intCompact = increment ? qsign : 0;
+    }
+
+    /**
+     * Multiplies the unscaled value by 10^n.  The scale is not changed.
+     */
+    private void raise(long n) {
+        if (signum() == 0)
+            return;
+        long xs = intCompact;
+        if (xs != INFLATED && n < LONG_TEN_POWERS_TABLE.length) {
+            long v = BigDecimal.longMultiplyPowerTen(xs, (int)n);
+            if (v != INFLATED) {
+                intCompact = v;
+                return;
+            }
+        }
+        if (n > Integer.MAX_VALUE)
+            throw new ArithmeticException("Overflow");
+        inflate();
+        multiplyPowerTen(intVal, n, tmp());
+        swapTmp();
+        compact();
+    }
+
+    /**
+     * Removes trailing zeros from the unscaled value while the scale is
+     * greater than the preferred scale.
+     */
+    private void stripZeros(long preferredScale) {
+        while (scale > preferredScale) {
+            long xs = intCompact;
+            if (xs != INFLATED) {
+                if (xs % 10 != 0 || xs == 0)
+                    return;
+                intCompact = xs / 10;
+            } else {
+                if (intVal.divideOneWord(10, tmp()) != 0)
+                    return;
+                swapTmp();
+                compact();
+            }
+            scale--;
+        }
+    }
+
+    // Magnitudes
+
+    /**
+     * Sets z to x * 10^n, where x is not zero and z is neither x nor a
+     * view.
+     */
+    private void multiplyPowerTen(MutableBigInteger x, long n,
+                                  MutableBigInteger z) {
+        if (n < INT_TEN_POWERS.length)
+            x.mul(INT_TEN_POWERS[(int)n], z);
+        else
+            x.multiply(tenPow((int)n), z);
+    }
+
+    /** Returns a view of 10^n. */
+    private MutableBigInteger tenPow(int n) {
+        int[] mag = BigDecimal.bigTenToThe(n).mag;
+        if (powView == null)
+            powView = new MutableBigInteger();
+        powView.setValue(mag, mag.length);
+        return powView;
+    }
+
+    /** Returns the number of decimal digits in the nonzero magnitude x. */
+    private int digitLength(MutableBigInteger x) {
+        // As in BigDecimal.bigDigitLength
+        int r = (int)(((x.bitLength() + 1) * 646456993) >>> 31);
+        return x.compare(tenPow(r)) < 0 ? r : r + 1;
+    }
+
+    private int argPrecision() {
+        long v = argCompact;
+        if (v != INFLATED)
+            return BigDecimal.longDigitLength(v);
+        return digitLength(arg);
+    }
+
+    /**
+     * Moves a compact value into intVal and sign, so that intCompact is
+     * INFLATED.
+     */
+    private void inflate() {
+        long v = intCompact;
+        if (v != INFLATED) {
+            sign = Long.signum(v);
+            setLong(magnitude(), Math.abs(v));
+            intCompact = INFLATED;
+        }
+    }
+
+    /** Makes the value compact if it fits in a long. */
+    private void compact() {
+        MutableBigInteger m = intVal;
+        int len = m.intLen;
+        if (len == 0) {
+            intCompact = 0;
+        } else if (len == 1) {
+            long v = m.value[m.offset] & LONG_MASK;
+            intCompact = sign < 0 ? -v : v;
+        } else if (len == 2 && m.value[m.offset] >= 0) {
+            long v = ((long)m.value[m.offset] << 32) |
+                     (m.value[m.offset + 1] & LONG_MASK);
+            intCompact = sign < 0 ? -v : v;
+        } else {
+            intCompact = INFLATED;
+        }
+    }
+
+    private static void setLong(MutableBigInteger m, long v) {
+        if (m.value.length < 2)
+            m.value = new int[2];
+        m.value[0] = (int)(v >>> 32);
+        m.value[1] = (int)v;
+        m.offset = 0;
+        m.intLen = 2;
+        m.normalize();
+    }
+
+    private static void setMinLong(MutableBigInteger m) {
+        setLong(m, 0);
+        m.value[0] = 0x80000000;
+        m.offset = 0;
+        m.intLen = 2;
+    }
+
+    private MutableBigInteger magnitude() {
+        if (intVal == null)
+            intVal = new MutableBigInteger();
+        return intVal;
+    }
+
+    private MutableBigInteger tmp() {
+        if (tmp == null)
+            tmp = new MutableBigInteger();
+        return tmp;
+    }
+
+    private MutableBigInteger quo() {
+        if (quo == null)
+            quo = new MutableBigInteger();
+        return quo;
+    }
+
+    private MutableBigInteger argCopy() {
+        if (argCopy == null)
+            argCopy = new MutableBigInteger();
+        return argCopy;
+    }
+
+    private void swapTmp() {
+        MutableBigInteger t = intVal;
+        intVal = tmp;
+        tmp = t;
+    }
+
+    /**
+     * Returns the scale as an int, throwing if it is out of range and the
+     * value is not zero.
+     */
+    private int checkScale(long val) {
+        int asInt = (int)val;
+        if (asInt != val) {
+            if (signum() != 0)
+                throw new ArithmeticException(val > 0 ? "Underflow" : "Overflow");
+            asInt = saturateLong(val);
+        }
+        return asInt;
+    }
+
+    private static int saturateLong(long s) {
+        int i = (int)s;
+        return (s == i) ? i : (s < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.math;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Multiplication of large magnitudes by number-theoretic transforms.
+ *
+ * The magnitudes are split into 16-bit digits, and the digit sequences are
+ * convolved by transforms modulo two primes of the form c*2^k + 1, both of
+ * which are less than 2^31.  Each coefficient of the convolution is less than
+ * 2^55 as long as the transform length does not exceed 2^24, so that it is
+ * determined exactly by its residues modulo the two primes, whose product
+ * exceeds 2^60.  The residues are combined with Garner's algorithm and the
+ * carries are propagated to form the product.  The asymptotic complexity is
+ * O(n log n) multiplications of ints, compared to O(n^1.465) for 3-way
+ * Toom-Cook multiplication.
+ *
+ * Arithmetic modulo each prime uses Montgomery reduction with R = 2^32.  The
+ * roots of unity are kept in Montgomery form, so that the transformed values
+ * themselves need no conversion.
+ *
+ * @see     BigInteger
+ * @since   1.8
+ */
+final class NumberTheoreticTransform {
+
+    /**
+     * The largest sum of the lengths, in ints, of two magnitudes that can be
+     * multiplied.  Longer products would need a transform length greater
+     * than 2^24, which is the largest power of two dividing P1 - 1.
+     */
+    static final int MAX_LENGTH = 1 << 23;
+
+    /** The first prime, 15 * 2^27 + 1, and a primitive root modulo it. */
+    private static final int P0 = 2013265921;
+    private static final int G0 = 31;
+
+    /** The second prime, 45 * 2^24 + 1, and a primitive root modulo it. */
+    private static final int P1 = 754974721;
+    private static final int G1 = 11;
+
+    /**
+     * The inverse of P0 modulo P1, in Montgomery form, used to combine the
+     * residues of a coefficient.
+     */
+    private static final int P0_INVERSE;
+
+    static {
+        long inv = modPow(P0 % P1, P1 - 2, P1);
+        P0_INVERSE = (int)((inv << 32) % P1);
+    }
+
+    private static final long LONG_MASK = 0xffffffffL;
+
+    private NumberTheoreticTransform() {
+    }
+
+    /**
+     * Returns the product of the magnitudes x and y, which must not be
+     * zero-length.  The returned array has length {@code x.length +
+     * y.length} and may have leading zeros.  If y is null, the square of x
+     * is returned.  If parallel is true, the transforms for the two primes
+     * run in parallel.
+     */
+    static int[] multiply(int[] x, int[] y, boolean parallel) {
+        int zlen = x.length + (y == null ? x.length : y.length);
+        int n = Integer.highestOneBit(2*zlen - 1) << 1;
+
+        int[] c0, c1;
+        if (parallel) {
+            Convolution task = new Convolution(x, y, n, P1, G1);
+            task.fork();
+            c0 = convolve(x, y, n, P0, G0);
+            c1 = task.join();
+        } else {
+            c0 = convolve(x, y, n, P0, G0);
+            c1 = convolve(x, y, n, P1, G1);
+        }
+
+        // Combine the residues of each coefficient and propagate the carries,
+        // two 16-bit digits at a time.
+        int pinv1 = negativeInverse(P1);
+        int[] z = new int[zlen];
+        long carry = 0;
+        for (int i = 0, j = zlen - 1; j >= 0; i += 2, j--) {
+            carry += combine(c0[i], c1[i], pinv1);
+            int lo = (int)carry & 0xffff;
+            carry >>>= 16;
+            carry += combine(c0[i+1], c1[i+1], pinv1);
+            z[j] = lo | ((int)carry << 16);
+            carry >>>= 16;
+        }
+        return z;
+    }
+
+    /**
+     * Returns the coefficient whose residues modulo P0 and P1 are r0 and r1.
+     */
+    private static long combine(int r0, int r1, int pinv1) {
+        int d = r1 - r0 % P1;
+        if (d < 0)
+            d += P1;
+        return r0 + (long)P0 * mulMont(d, P0_INVERSE, P1, pinv1);
+    }
+
+    /**
+     * A task computing the convolution modulo one prime.
+     */
+    @SuppressWarnings("serial")
+    private static final class Convolution extends RecursiveTask<int[]> {
+        private final int[] x, y;
+        private final int n, p, g;
+
+        Convolution(int[] x, int[] y, int n, int p, int g) {
+            this.x = x;
+            this.y = y;
+            this.n = n;
+            this.p = p;
+            this.g = g;
+        }
+
+        @Override
+        protected int[] compute() {
+            return convolve(x, y, n, p, g);
+        }
+    }
+
+    /**
+     * Returns the cyclic convolution of length n of the 16-bit digits of x
+     * and y modulo p, where g is a primitive root modulo p.  If y is null,
+     * x is convolved with itself.
+     */
+    private static int[] convolve(int[] x, int[] y, int n, int p, int g) {
+        int pinv = negativeInverse(p);
+        int r1 = (int)((1L << 32) % p);
+        int r2 = (int)((long)r1 * r1 % p);
+
+        // The powers of a primitive 2h-th root of unity needed by the
+        // butterflies of half-length h are stored contiguously from index h,
+        // in Montgomery form, followed by the same for the inverse roots.
+        int half = n >>> 1;
+        int w = mulMont((int)modPow(g, (p - 1) / n, p), r2, p, pinv);
+        int[] roots = new int[n];
+        int[] inverseRoots = new int[n];
+        roots[half] = r1;
+        for (int j = 1; j < half; j++)
+            roots[half + j] = mulMont(roots[half + j - 1], w, p, pinv);
+        for (int h = half >>> 1; h >= 1; h >>>= 1) {
+            for (int j = 0; j < h; j++)
+                roots[h + j] = roots[2*h + 2*j];
+        }
+        // The inverse of w^j is w^(2h-j), which is -w^(h-j)
+        for (int h = half; h >= 1; h >>>= 1) {
+            inverseRoots[h] = r1;
+            for (int j = 1; j < h; j++)
+                inverseRoots[h + j] = p - roots[2*h - j];
+        }
+
+        int[] a = digits(x, n);
+        forward(a, roots, p, pinv);
+        if (y == null) {
+            for (int i = 0; i < n; i++)
+                a[i] = mulMont(a[i], a[i], p, pinv);
+        } else {
+            int[] b = digits(y, n);
+            forward(b, roots, p, pinv);
+            for (int i = 0; i < n; i++)
+                a[i] = mulMont(a[i], b[i], p, pinv);
+        }
+        inverse(a, inverseRoots, p, pinv);
+
+        // The pointwise products carry a factor of R^-1 and the inverse
+        // transform a factor of n; scale by R/n, given in Montgomery form.
+        int scale = (int)modPow(n, p - 2, p);
+        scale = mulMont(mulMont(scale, r2, p, pinv), r2, p, pinv);
+        for (int i = 0; i < n; i++)
+            a[i] = mulMont(a[i], scale, p, pinv);
+        return a;
+    }
+
+    /**
+     * Returns the 16-bit digits of the magnitude x, least significant first,
+     * padded with zeros to length n.
+     */
+    private static int[] digits(int[] x, int n) {
+        int[] a = new int[n];
+        for (int i = 0, j = x.length - 1; j >= 0; i += 2, j--) {
+            a[i] = x[j] & 0xffff;
+            a[i+1] = x[j] >>> 16;
+        }
+        return a;
+    }
+
+    /**
+     * Transforms a in place by decimation in frequency.  The result is in
+     * bit-reversed order, which is the order the inverse transform expects.
+     */
+    private static void forward(int[] a, int[] roots, int p, int pinv) {
+        int n = a.length;
+        for (int h = n >>> 1; h >= 1; h >>>= 1) {
+            for (int s = 0; s < n; s += 2*h) {
+                for (int j = 0; j < h; j++) {
+                    int u = a[s+j];
+                    int v = a[s+j+h];
+                    a[s+j] = addMod(u, v, p);
+                    a[s+j+h] = mulMont(subMod(u, v, p), roots[h+j], p, pinv);
+                }
+            }
+        }
+    }
+
+    /**
+     * Transforms a in place by decimation in time, taking the input in
+     * bit-reversed order.  The result is n times the inverse transform.
+     */
+    private static void inverse(int[] a, int[] inverseRoots, int p, int pinv) {
+        int n = a.length;
+        for (int h = 1; h < n; h <<= 1) {
+            for (int s = 0; s < n; s += 2*h) {
+                for (int j = 0; j < h; j++) {
+                    int u = a[s+j];
+                    int v = mulMont(a[s+j+h], inverseRoots[h+j], p, pinv);
+                    a[s+j] = addMod(u, v, p);
+                    a[s+j+h] = subMod(u, v, p);
+                }
+            }
+        }
+    }
+
+    private static int addMod(int u, int v, int p) {
+        // u - p + v cannot overflow as both are in [0, p)
+        int t = u - p + v;
+        return t < 0 ? t + p : t;
+    }
+
+    private static int subMod(int u, int v, int p) {
+        int t = u - v;
+        return t < 0 ? t + p : t;
+    }
+
+    /**
+     * Returns a * b * 2^-32 modulo p, for a and b in [0, p), where pinv is
+     * -p^-1 modulo 2^32.  As p is less than 2^31, the intermediate sum is
+     * less than 2^64 and the result before the final subtraction is less
+     * than 2p.
+     */
+    private static int mulMont(int a, int b, int p, int pinv) {
+        long t = (long)a * b;
+        long m = ((int)t * pinv) & LONG_MASK;
+        long u = (t + m * p) >>> 32;
+        return (int)(u >= p ? u - p : u);
+    }
+
+    /**
+     * Returns -p^-1 modulo 2^32 for odd p, by Newton's iteration.
+     */
+    private static int negativeInverse(int p) {
+        int inv = p;                // correct to 3 bits
+        for (int i = 0; i < 4; i++)
+            inv *= 2 - p * inv;     // doubles the number of correct bits
+        return -inv;
+    }
+
+    /**
+     * Returns base^exp modulo m, for base in [0, m) and m less than 2^31.
+     */
+    private static long modPow(long base, int exp, int m) {
+        long result = 1;
+        while (exp != 0) {
+            if ((exp & 1) != 0)
+                result = result * base % m;
+            base = base * base % m;
+            exp >>>= 1;
+        }
+        return result;
+    }
+}
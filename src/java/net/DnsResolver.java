@@ -0,0 +1,897 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import sun.net.InetAddressCachePolicy;
+import sun.net.dns.ResolverConfiguration;
+import sun.net.util.IPAddressUtil;
+
+/**
+ * An asynchronous resolver of host names to IP addresses that queries DNS
+ * name servers directly.
+ *
+ * <p> The {@link InetAddress#getAllByName InetAddress.getAllByName} method
+ * blocks the calling thread while the host name is resolved by the operating
+ * system. The {@link #resolve resolve} method of this class instead returns a
+ * {@link CompletableFuture} immediately. Queries for {@code A} and {@code AAAA}
+ * records are sent over a single {@link DatagramChannel} and their responses
+ * are received by one thread, so many names can be resolved concurrently
+ * without blocking a thread for each of them.
+ *
+ * <p> The resolver caches the addresses of each name for the time to live
+ * given by the name server, limited by the {@code networkaddress.cache.ttl}
+ * security property when that is set. Names that do not exist are cached for
+ * the time given by the {@code networkaddress.cache.negative.ttl} property.
+ * Lookups read the cache without locking. Concurrent lookups of a name that is
+ * not cached share a single query. When a cached entry has expired but is
+ * younger than the configured <em>stale window</em>, the cached addresses are
+ * returned immediately and the name is queried again in the background.
+ *
+ * <p> Queries are sent to the name servers configured with {@link
+ * Builder#nameServer nameServer}, or to the name servers configured for the
+ * operating system if none are specified. A query that is not answered within
+ * the timeout is sent to the next name server, up to the configured number of
+ * attempts. A query whose response is truncated is sent again over TCP to
+ * the same name server. Host files are not consulted.
+ *
+ * <p> An instance of this class is safe for use by multiple concurrent threads.
+ *
+ * @since 1.8
+ */
+public final class DnsResolver implements Closeable {
+
+    private static final int DNS_PORT = 53;
+    private static final int TYPE_A = 1;
+    private static final int TYPE_AAAA = 28;
+    private static final int CLASS_IN = 1;
+    private static final int RCODE_NXDOMAIN = 3;
+    private static final int FLAG_TC = 0x0200;
+    private static final int MAX_UDP_SIZE = 512;
+
+    private final InetSocketAddress[] servers;
+    private final long timeoutNanos;
+    private final int attempts;
+    private final long staleWindowNanos;
+    private final int maxCacheSize;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread receiver;
+
+    // cache and lookups in progress, keyed by lower case host name
+    private final ConcurrentHashMap<String,CacheEntry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,CompletableFuture<InetAddress[]>> lookups =
+        new ConcurrentHashMap<>();
+
+    // queries awaiting a response, keyed by query id
+    private final ConcurrentHashMap<Integer,Query> queries = new ConcurrentHashMap<>();
+
+    private final AtomicLong queriesSent = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * A builder of {@link DnsResolver} instances.
+     *
+     * @since 1.8
+     */
+    public static final class Builder {
+        private final List<InetSocketAddress> servers = new ArrayList<>();
+        private long timeoutNanos = TimeUnit.SECONDS.toNanos(2);
+        private int attempts = 4;
+        private long staleWindowNanos = 0L;
+        private int maxCacheSize = 4096;
+
+        /**
+         * Constructs a builder with the default configuration: the name
+         * servers of the operating system, a two second timeout, four attempts,
+         * no stale window and a cache of at most 4096 names.
+         */
+        public Builder() { }
+
+        /**
+         * Adds a name server. Name servers are queried in the order that they
+         * are added.
+         *
+         * @param  server
+         *         The address of the name server
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If the address is unresolved
+         */
+        public Builder nameServer(InetSocketAddress server) {
+            if (server.isUnresolved())
+                throw new IllegalArgumentException("Unresolved address");
+            servers.add(server);
+            return this;
+        }
+
+        /**
+         * Sets the time to wait for the response to a query before it is sent
+         * again.
+         *
+         * @param  timeout
+         *         The timeout, must be positive
+         * @param  unit
+         *         The time unit of the {@code timeout} argument
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code timeout} is not positive
+         */
+        public Builder timeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0)
+                throw new IllegalArgumentException("timeout <= 0");
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the number of times that a query is sent before the lookup
+         * fails. Successive attempts are sent to successive name servers.
+         *
+         * @param  attempts
+         *         The number of attempts, must be positive
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code attempts} is not positive
+         */
+        public Builder attempts(int attempts) {
+            if (attempts <= 0)
+                throw new IllegalArgumentException("attempts <= 0");
+            this.attempts = attempts;
+            return this;
+        }
+
+        /**
+         * Sets the time after the expiry of a cached entry during which its
+         * addresses are still returned while the name is queried again.
+         *
+         * @param  window
+         *         The stale window, or {@code 0} to never return expired
+         *         addresses
+         * @param  unit
+         *         The time unit of the {@code window} argument
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code window} is negative
+         */
+        public Builder staleWindow(long window, TimeUnit unit) {
+            if (window < 0)
+                throw new IllegalArgumentException("window < 0");
+            this.staleWindowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of names in the cache.
+         *
+         * @param  size
+         *         The maximum number of names, or {@code 0} to disable caching
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code size} is negative
+         */
+        public Builder maxCacheSize(int size) {
+            if (size < 0)
+                throw new IllegalArgumentException("size < 0");
+            this.maxCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Returns a new resolver with the configuration of this builder.
+         *
+         * @return  A new resolver
+         *
+         * @throws  UnknownHostException
+         *          If no name servers were added and none are configured for
+         *          the operating system
+         * @throws  IOException
+         *          If an I/O error occurs opening the resolver's channel
+         */
+        public DnsResolver build() throws IOException {
+            List<InetSocketAddress> list = new ArrayList<>(servers);
+            if (list.isEmpty()) {
+                for (String ns: ResolverConfiguration.open().nameservers()) {
+                    try {
+                        InetAddress ia = InetAddress.getByAddress(
+                            IPAddressUtil.isIPv4LiteralAddress(ns) ?
+                                IPAddressUtil.textToNumericFormatV4(ns) :
+                                IPAddressUtil.textToNumericFormatV6(ns));
+                        list.add(new InetSocketAddress(ia, DNS_PORT));
+                    } catch (UnknownHostException | NullPointerException x) {
+                        // not a numeric address, ignore
+                    }
+                }
+                if (list.isEmpty())
+                    throw new UnknownHostException("No name servers configured");
+            }
+            return new DnsResolver(this, list);
+        }
+    }
+
+    /**
+     * A cached lookup result: the addresses of a name, or the reason that
+     * the name has no addresses.
+     */
+    private static final class CacheEntry {
+        final InetAddress[] addresses;
+        final String failure;
+        final long expiry;              // System.nanoTime
+        final long staleExpiry;
+
+        CacheEntry(InetAddress[] addresses, String failure,
+                   long expiry, long staleExpiry)
+        {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiry = expiry;
+            this.staleExpiry = staleExpiry;
+        }
+    }
+
+    /**
+     * The answer to a query for one record type.
+     */
+    private static final class Answer {
+        final List<InetAddress> addresses;
+        final long ttl;                 // seconds
+        final boolean nameError;
+
+        Answer(List<InetAddress> addresses, long ttl, boolean nameError) {
+            this.addresses = addresses;
+            this.ttl = ttl;
+            this.nameError = nameError;
+        }
+    }
+
+    /**
+     * A query awaiting a response.
+     */
+    private static final class Query {
+        final String host;
+        final int type;
+        final ByteBuffer message;
+        final CompletableFuture<Answer> future = new CompletableFuture<>();
+        volatile int id;
+        volatile int attempt;
+        volatile long deadline;
+
+        Query(String host, int type, ByteBuffer message) {
+            this.host = host;
+            this.type = type;
+            this.message = message;
+        }
+    }
+
+    private DnsResolver(Builder builder, List<InetSocketAddress> servers)
+        throws IOException
+    {
+        this.servers = servers.toArray(new InetSocketAddress[servers.size()]);
+        this.timeoutNanos = builder.timeoutNanos;
+        this.attempts = builder.attempts;
+        this.staleWindowNanos = builder.staleWindowNanos;
+        this.maxCacheSize = builder.maxCacheSize;
+
+        this.channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.bind(null);
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException x) {
+            channel.close();
+            throw x;
+        }
+        this.receiver = new Thread(new Runnable() {
+            public void run() {
+                receiveLoop();
+            }
+        }, "DnsResolver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    /**
+     * Resolves a host name to its IP addresses.
+     *
+     * <p> If the host name is a literal IP address then the future is
+     * completed immediately with that address. Otherwise the future is
+     * completed with the addresses from the cache, or from the name servers
+     * if the name is not cached. The IPv4 addresses of the host precede its
+     * IPv6 addresses, unless the {@code java.net.preferIPv6Addresses} system
+     * property is {@code true}. If the name does not exist, or has no
+     * addresses, then the future completes exceptionally with an {@link
+     * UnknownHostException}. The future is completed by the resolver's
+     * receiving thread; dependent actions that block should be executed
+     * asynchronously.
+     *
+     * @param  host
+     *         The host name
+     *
+     * @return  A future representing the pending result
+     *
+     * @throws  SecurityException
+     *          If a security manager exists and its {@code checkConnect}
+     *          method doesn't allow the operation
+     * @throws  IllegalStateException
+     *          If the resolver is closed
+     */
+    public CompletableFuture<InetAddress[]> resolve(String host) {
+        if (closed)
+            throw new IllegalStateException("Resolver is closed");
+        if (host.isEmpty())
+            return failed(new UnknownHostException("Empty host name"));
+
+        // literal addresses are not looked up
+        byte[] literal = IPAddressUtil.textToNumericFormatV4(host);
+        if (literal == null) {
+            String h = host;
+            if (h.charAt(0) == '[' && h.charAt(h.length() - 1) == ']')
+                h = h.substring(1, h.length() - 1);
+            if (IPAddressUtil.isIPv6LiteralAddress(h))
+                literal = IPAddressUtil.textToNumericFormatV6(h);
+        }
+        if (literal != null) {
+            try {
+                return CompletableFuture.completedFuture(
+                    new InetAddress[] { InetAddress.getByAddress(literal) });
+            } catch (UnknownHostException x) {
+                return failed(x);
+            }
+        }
+
+        SecurityManager security = System.getSecurityManager();
+        if (security != null)
+            security.checkConnect(host, -1);
+
+        final String name = host.toLowerCase(Locale.ROOT);
+        CacheEntry entry = cache.get(name);
+        if (entry != null) {
+            long now = System.nanoTime();
+            if (now - entry.expiry < 0) {
+                return (entry.failure != null) ?
+                    failed(new UnknownHostException(entry.failure)) :
+                    CompletableFuture.completedFuture(entry.addresses.clone());
+            }
+            if (entry.failure == null && now - entry.staleExpiry < 0) {
+                // serve stale, revalidate in the background
+                lookup(name, host);
+                return CompletableFuture.completedFuture(entry.addresses.clone());
+            }
+        }
+        // each caller gets its own array, and its own exception
+        return lookup(name, host).handle((addresses, exc) -> {
+            if (exc != null)
+                throw new CompletionException(copy(exc));
+            return addresses.clone();
+        });
+    }
+
+    /**
+     * Returns a copy of the exception that a lookup failed with, so that the
+     * callers that share the lookup do not share an exception.
+     */
+    private static Throwable copy(Throwable exc) {
+        if (exc instanceof CompletionException && exc.getCause() != null)
+            exc = exc.getCause();
+        if (exc instanceof UnknownHostException) {
+            UnknownHostException uhe = new UnknownHostException(exc.getMessage());
+            if (exc.getCause() != null)
+                uhe.initCause(exc.getCause());
+            return uhe;
+        }
+        return exc;
+    }
+
+    /**
+     * Starts a lookup of the given name, or joins the lookup in progress.
+     */
+    private CompletableFuture<InetAddress[]> lookup(final String name, final String host) {
+        CompletableFuture<InetAddress[]> future = lookups.get(name);
+        if (future != null)
+            return future;
+        CompletableFuture<InetAddress[]> newFuture = new CompletableFuture<>();
+        future = lookups.putIfAbsent(name, newFuture);
+        if (future != null)
+            return future;
+
+        final CompletableFuture<InetAddress[]> result = newFuture;
+        final CompletableFuture<Answer> a, aaaa;
+        try {
+            String ascii = IDN.toASCII(name);
+            a = query(host, ascii, TYPE_A);
+            aaaa = query(host, ascii, TYPE_AAAA);
+        } catch (IllegalArgumentException x) {
+            UnknownHostException uhe = new UnknownHostException(host);
+            uhe.initCause(x);
+            lookups.remove(name, result);
+            result.completeExceptionally(uhe);
+            return result;
+        }
+        a.thenCombine(aaaa, (v4, v6) -> {
+            complete(name, host, v4, v6, result);
+            return null;
+        }).exceptionally(exc -> {
+            lookups.remove(name, result);
+            result.completeExceptionally((exc instanceof CompletionException) ?
+                                         exc.getCause() : exc);
+            return null;
+        });
+        return result;
+    }
+
+    private void complete(String name, String host, Answer v4, Answer v6,
+                          CompletableFuture<InetAddress[]> result)
+    {
+        boolean preferIPv6 = Boolean.getBoolean("java.net.preferIPv6Addresses");
+        List<InetAddress> list = new ArrayList<>(v4.addresses.size() + v6.addresses.size());
+        list.addAll(preferIPv6 ? v6.addresses : v4.addresses);
+        list.addAll(preferIPv6 ? v4.addresses : v6.addresses);
+
+        long now = System.nanoTime();
+        CacheEntry entry;
+        if (list.isEmpty()) {
+            String failure = host +
+                ((v4.nameError || v6.nameError) ? ": Name does not exist" :
+                 ": No address associated with name");
+            long ttl = policyTtl(InetAddressCachePolicy.getNegative(), Long.MAX_VALUE);
+            entry = new CacheEntry(null, failure, now + ttl, now + ttl);
+        } else {
+            InetAddress[] addresses = list.toArray(new InetAddress[list.size()]);
+            long v4ttl = v4.addresses.isEmpty() ? Long.MAX_VALUE : v4.ttl;
+            long v6ttl = v6.addresses.isEmpty() ? Long.MAX_VALUE : v6.ttl;
+            long ttl = policyTtl(InetAddressCachePolicy.get(),
+                                 TimeUnit.SECONDS.toNanos(Math.min(v4ttl, v6ttl)));
+            entry = new CacheEntry(addresses, null, now + ttl,
+                                   now + ttl + staleWindowNanos);
+        }
+        if (entry.staleExpiry - now > 0)
+            putCache(name, entry);
+        lookups.remove(name, result);
+        if (entry.failure != null) {
+            result.completeExceptionally(new UnknownHostException(entry.failure));
+        } else {
+            result.complete(entry.addresses);
+        }
+    }
+
+    /**
+     * Returns the time to cache an entry in nanoseconds, given the cache
+     * policy in seconds and the time to live given by the name server.
+     */
+    private static long policyTtl(int policy, long ttlNanos) {
+        if (policy == InetAddressCachePolicy.NEVER)
+            return 0L;
+        if (policy == InetAddressCachePolicy.FOREVER)
+            return Math.min(ttlNanos, Long.MAX_VALUE / 4);
+        return Math.min(ttlNanos, TimeUnit.SECONDS.toNanos(policy));
+    }
+
+    private void putCache(String name, CacheEntry entry) {
+        if (maxCacheSize == 0)
+            return;
+        if (cache.size() >= maxCacheSize && !cache.containsKey(name)) {
+            // purge expired entries, then arbitrary entries if still full
+            long now = System.nanoTime();
+            Iterator<CacheEntry> it = cache.values().iterator();
+            while (it.hasNext()) {
+                if (now - it.next().staleExpiry >= 0)
+                    it.remove();
+            }
+            it = cache.values().iterator();
+            while (cache.size() >= maxCacheSize && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(name, entry);
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void flush() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of queries sent to name servers, including queries
+     * that were sent again after a timeout.
+     *
+     * @return  The number of queries sent
+     */
+    public long getQueryCount() {
+        return queriesSent.get();
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable exc) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exc);
+        return future;
+    }
+
+    // -- queries --
+
+    /**
+     * Sends a query for the given record type, returning a future that is
+     * completed with the answer. The addresses in the answer have the given
+     * host name.
+     */
+    private CompletableFuture<Answer> query(String host, String qname, int type) {
+        Query q = new Query(host, type, encodeQuery(qname, type));
+        send(q);
+        return q.future;
+    }
+
+    private void send(Query q) {
+        // the query is complete before it is published in the map, as the
+        // receiver thread may expire or retry it as soon as it is visible
+        InetSocketAddress server = servers[q.attempt % servers.length];
+        q.deadline = System.nanoTime() + timeoutNanos;
+
+        // allocate an unused id
+        int id;
+        do {
+            id = ThreadLocalRandom.current().nextInt(0x10000);
+            q.id = id;
+            q.message.putShort(0, (short)id);
+        } while (queries.putIfAbsent(id, q) != null);
+
+        try {
+            channel.send(q.message.duplicate(), server);
+            queriesSent.incrementAndGet();
+        } catch (IOException x) {
+            // treated as a lost datagram, the query times out
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Encodes a query message with an id of zero.
+     */
+    private static ByteBuffer encodeQuery(String host, int type) {
+        if (host.endsWith("."))
+            host = host.substring(0, host.length() - 1);
+        ByteBuffer bb = ByteBuffer.allocate(12 + host.length() + 2 + 4);
+        bb.putShort((short)0);          // id
+        bb.putShort((short)0x0100);     // standard query, recursion desired
+        bb.putShort((short)1);          // one question
+        bb.putShort((short)0);
+        bb.putShort((short)0);
+        bb.putShort((short)0);
+        int start = 0;
+        do {
+            int end = host.indexOf('.', start);
+            if (end < 0)
+                end = host.length();
+            int len = end - start;
+            if (len == 0 || len > 63)
+                throw new IllegalArgumentException("Invalid host name: " + host);
+            bb.put((byte)len);
+            for (int i = start; i < end; i++)
+                bb.put((byte)host.charAt(i));
+            start = end + 1;
+        } while (start < host.length());
+        bb.put((byte)0);
+        bb.putShort((short)type);
+        bb.putShort((short)CLASS_IN);
+        bb.flip();
+        return bb;
+    }
+
+    /**
+     * Skips a possibly compressed domain name.
+     */
+    private static void skipName(ByteBuffer bb) {
+        for (;;) {
+            int len = bb.get() & 0xff;
+            if (len == 0)
+                return;
+            if ((len & 0xc0) == 0xc0) {
+                bb.get();               // pointer, name ends here
+                return;
+            }
+            bb.position(bb.position() + len);
+        }
+    }
+
+    /**
+     * Decodes the answer section of a response to the given query, returning
+     * null if another name server should be tried.
+     */
+    private static Answer decodeAnswer(Query q, ByteBuffer bb) throws UnknownHostException {
+        int flags = bb.getShort(2) & 0xffff;
+        int rcode = flags & 0xf;
+        int qdcount = bb.getShort(4) & 0xffff;
+        int ancount = bb.getShort(6) & 0xffff;
+        if ((flags & FLAG_TC) != 0)
+            return null;                // incomplete, even if a name error
+        if (rcode == RCODE_NXDOMAIN)
+            return new Answer(new ArrayList<InetAddress>(0), 0L, true);
+        if (rcode != 0)
+            return null;                // server failure, try another server
+
+        bb.position(12);
+        for (int i = 0; i < qdcount; i++) {
+            skipName(bb);
+            bb.position(bb.position() + 4);
+        }
+        List<InetAddress> addresses = new ArrayList<>();
+        long ttl = Long.MAX_VALUE;
+        for (int i = 0; i < ancount; i++) {
+            skipName(bb);
+            int type = bb.getShort() & 0xffff;
+            int clazz = bb.getShort() & 0xffff;
+            long recordTtl = bb.getInt() & 0xffffffffL;
+            int rdlength = bb.getShort() & 0xffff;
+            int next = bb.position() + rdlength;
+            if (clazz == CLASS_IN) {
+                // CNAME records also limit how long the chain may be cached
+                ttl = Math.min(ttl, recordTtl);
+                if (type == q.type && (rdlength == 4 || rdlength == 16)) {
+                    byte[] addr = new byte[rdlength];
+                    bb.get(addr);
+                    addresses.add(InetAddress.getByAddress(q.host, addr));
+                }
+            }
+            bb.position(next);
+        }
+        return new Answer(addresses, (ttl == Long.MAX_VALUE) ? 0L : ttl, false);
+    }
+
+    private void receiveLoop() {
+        ByteBuffer bb = ByteBuffer.allocate(MAX_UDP_SIZE * 128);
+        try {
+            while (!closed) {
+                long timeout = nextTimeout();
+                if (timeout > 0) {
+                    selector.select(TimeUnit.NANOSECONDS.toMillis(timeout) + 1);
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                for (;;) {
+                    bb.clear();
+                    SocketAddress sa = channel.receive(bb);
+                    if (sa == null)
+                        break;
+                    bb.flip();
+                    received(sa, bb);
+                }
+                expireQueries();
+            }
+        } catch (IOException | ClosedSelectorException x) {
+            // closed
+        } finally {
+            IOException exc = new IOException("Resolver is closed");
+            for (Query q: queries.values())
+                q.future.completeExceptionally(exc);
+            queries.clear();
+        }
+    }
+
+    private void received(SocketAddress source, ByteBuffer bb) {
+        if (bb.remaining() < 12)
+            return;
+        int id = bb.getShort(0) & 0xffff;
+        boolean response = (bb.get(2) & 0x80) != 0;
+        Query q = queries.get(id);
+        if (q == null || !response ||
+            !source.equals(servers[q.attempt % servers.length]))
+            return;
+        if ((bb.getShort(2) & FLAG_TC) != 0) {
+            if (queries.remove(id, q))
+                new TcpQuery(q, servers[q.attempt % servers.length]).start();
+            return;
+        }
+        Answer answer;
+        try {
+            answer = decodeAnswer(q, bb);
+        } catch (RuntimeException | UnknownHostException x) {
+            answer = null;              // malformed, try another server
+        }
+        if (!queries.remove(id, q))
+            return;
+        if (answer != null) {
+            q.future.complete(answer);
+        } else {
+            retry(q);
+        }
+    }
+
+    /**
+     * A query sent over TCP after its response over UDP was truncated. Each
+     * read and write is limited by the timeout; if the query fails, or its
+     * response is also truncated, then the next name server is tried.
+     */
+    private final class TcpQuery implements CompletionHandler<Integer,ByteBuffer> {
+        final Query q;
+        final InetSocketAddress server;
+        final ByteBuffer request;
+        final ByteBuffer length = ByteBuffer.allocate(2);
+        AsynchronousSocketChannel ch;
+        ByteBuffer response;
+
+        TcpQuery(Query q, InetSocketAddress server) {
+            this.q = q;
+            this.server = server;
+            ByteBuffer message = q.message.duplicate();
+            request = ByteBuffer.allocate(2 + message.remaining());
+            request.putShort((short)message.remaining()).put(message).flip();
+        }
+
+        void start() {
+            try {
+                ch = AsynchronousSocketChannel.open();
+                queriesSent.incrementAndGet();
+                ch.connect(server, null, new CompletionHandler<Void,Void>() {
+                    public void completed(Void result, Void att) {
+                        ch.write(request, timeoutNanos, TimeUnit.NANOSECONDS,
+                                 request, TcpQuery.this);
+                    }
+                    public void failed(Throwable exc, Void att) {
+                        TcpQuery.this.failed(exc, null);
+                    }
+                });
+            } catch (IOException | RuntimeException x) {
+                failed(x, null);
+            }
+        }
+
+        public void completed(Integer n, ByteBuffer bb) {
+            if (n < 0) {
+                failed(null, bb);
+                return;
+            }
+            if (bb.hasRemaining()) {
+                if (bb == request) {
+                    ch.write(bb, timeoutNanos, TimeUnit.NANOSECONDS, bb, this);
+                } else {
+                    ch.read(bb, timeoutNanos, TimeUnit.NANOSECONDS, bb, this);
+                }
+                return;
+            }
+            if (bb == request || bb == length) {
+                ByteBuffer next = length;
+                if (bb == length) {
+                    int size = length.getShort(0) & 0xffff;
+                    if (size < 12) {
+                        failed(null, bb);
+                        return;
+                    }
+                    next = response = ByteBuffer.allocate(size);
+                }
+                ch.read(next, timeoutNanos, TimeUnit.NANOSECONDS, next, this);
+                return;
+            }
+            closeChannel();
+            response.flip();
+            Answer answer;
+            try {
+                answer = ((response.getShort(0) & 0xffff) == q.id &&
+                          (response.get(2) & 0x80) != 0) ? decodeAnswer(q, response) : null;
+            } catch (RuntimeException | UnknownHostException x) {
+                answer = null;
+            }
+            if (answer != null) {
+                q.future.complete(answer);
+            } else {
+                retry(q);
+            }
+        }
+
+        public void failed(Throwable exc, ByteBuffer bb) {
+            closeChannel();
+            retry(q);
+        }
+
+        private void closeChannel() {
+            if (ch != null) {
+                try {
+                    ch.close();
+                } catch (IOException ignore) { }
+            }
+        }
+    }
+
+    private long nextTimeout() {
+        if (queries.isEmpty())
+            return Long.MAX_VALUE / 2;
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE / 2;
+        for (Query q: queries.values())
+            next = Math.min(next, q.deadline - now);
+        return next;
+    }
+
+    private void expireQueries() {
+        long now = System.nanoTime();
+        for (Map.Entry<Integer,Query> e: queries.entrySet()) {
+            Query q = e.getValue();
+            if (now - q.deadline >= 0 && queries.remove(e.getKey(), q))
+                retry(q);
+        }
+    }
+
+    private void retry(Query q) {
+        if (++q.attempt >= attempts || closed) {
+            q.future.completeExceptionally(new UnknownHostException(q.host +
+                ": No response from name server"));
+        } else {
+            send(q);
+        }
+    }
+
+    /**
+     * Closes this resolver. Lookups that are in progress complete
+     * exceptionally.
+     *
+     * @throws  IOException
+     *          If an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        selector.wakeup();
+        try {
+            channel.close();
+        } finally {
+            selector.close();
+        }
+    }
+}
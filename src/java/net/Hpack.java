@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * HPACK header compression for HTTP/2, as specified by RFC 7541.
+ *
+ * <p> The {@link Encoder} does not use the dynamic table: it refers to the
+ * static table where it can and otherwise writes literal fields that are
+ * not indexed, so it keeps no state and never needs to be told of the
+ * peer's table size.  The {@link Decoder} implements the whole of the
+ * specification, including the dynamic table and Huffman coded strings.
+ *
+ * @since 1.8
+ */
+final class Hpack {
+
+    private Hpack() { }
+
+    /**
+     * The default size, in octets, of the dynamic table.
+     */
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    // RFC 7541 Appendix A
+    private static final String[] STATIC_NAMES = {
+        null,
+        ":authority", ":method", ":method", ":path", ":path", ":scheme",
+        ":scheme", ":status", ":status", ":status", ":status", ":status",
+        ":status", ":status", "accept-charset", "accept-encoding",
+        "accept-language", "accept-ranges", "accept",
+        "access-control-allow-origin", "age", "allow", "authorization",
+        "cache-control", "content-disposition", "content-encoding",
+        "content-language", "content-length", "content-location",
+        "content-range", "content-type", "cookie", "date", "etag", "expect",
+        "expires", "from", "host", "if-match", "if-modified-since",
+        "if-none-match", "if-range", "if-unmodified-since", "last-modified",
+        "link", "location", "max-forwards", "proxy-authenticate",
+        "proxy-authorization", "range", "referer", "refresh", "retry-after",
+        "server", "set-cookie", "strict-transport-security",
+        "transfer-encoding", "user-agent", "vary", "via", "www-authenticate"
+    };
+
+    private static final String[] STATIC_VALUES = {
+        null,
+        "", "GET", "POST", "/", "/index.html", "http", "https", "200", "204",
+        "206", "304", "400", "404", "500", "", "gzip, deflate", "", "", "",
+        "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "",
+        "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "",
+        "", "", "", "", "", "", ""
+    };
+
+    private static final int STATIC_TABLE_LENGTH = STATIC_NAMES.length - 1;
+
+    // RFC 7541 Appendix B: the code of each symbol, right-aligned, and its
+    // length in bits; symbol 256 is EOS
+    private static final int[] CODES = {
+        0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5,
+        0xfffffe6, 0xfffffe7, 0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9,
+        0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec, 0xfffffed, 0xfffffee,
+        0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+        0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9,
+        0xffffffa, 0xffffffb, 0x14, 0x3f8, 0x3f9, 0xffa,
+        0x1ff9, 0x15, 0xf8, 0x7fa, 0x3fa, 0x3fb,
+        0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+        0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b,
+        0x1c, 0x1d, 0x1e, 0x1f, 0x5c, 0xfb,
+        0x7ffc, 0x20, 0xffb, 0x3fc, 0x1ffa, 0x21,
+        0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+        0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+        0x69, 0x6a, 0x6b, 0x6c, 0x6d, 0x6e,
+        0x6f, 0x70, 0x71, 0x72, 0xfc, 0x73,
+        0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+        0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5,
+        0x25, 0x26, 0x27, 0x6, 0x74, 0x75,
+        0x28, 0x29, 0x2a, 0x7, 0x2b, 0x76,
+        0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+        0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd,
+        0x1ffd, 0xffffffc, 0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8,
+        0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9, 0x3fffd6, 0x7fffda,
+        0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+        0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1,
+        0x7fffe2, 0x7fffe3, 0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5,
+        0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef, 0x3fffda, 0x1fffdd,
+        0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+        0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf,
+        0x7fffeb, 0x7fffec, 0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2,
+        0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef, 0xfffea, 0x3fffe2,
+        0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+        0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2,
+        0x3fffe8, 0x1ffffec, 0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde,
+        0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed, 0x7fff2, 0x1fffe3,
+        0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+        0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3,
+        0x7ffffe4, 0x7ffffe5, 0xfffec, 0xfffff3, 0xfffed, 0x1fffe6,
+        0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3, 0x3fffea, 0x3fffeb,
+        0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+        0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8,
+        0x7ffffe9, 0x7ffffea, 0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed,
+        0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee, 0x3fffffff
+    };
+
+    private static final byte[] LENGTHS = {
+        13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+        28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+        6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+        5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+        13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+        7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+        15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+        6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+        20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+        24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+        22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+        21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+        26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+        19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+        20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+        26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+        30
+    };
+
+    private static final int EOS = 256;
+
+    // Binary tree of the Huffman code: the children of node n are at 2n and
+    // 2n + 1, a positive entry is the index of an inner node, and a negative
+    // entry -(s + 1) is a leaf for symbol s
+    private static final int[] TREE = new int[2 * EOS];
+
+    static {
+        int nodes = 1;
+        for (int sym = 0; sym <= EOS; sym++) {
+            int code = CODES[sym];
+            int node = 0;
+            for (int bit = LENGTHS[sym] - 1; bit >= 0; bit--) {
+                int i = 2 * node + ((code >>> bit) & 1);
+                if (bit == 0) {
+                    TREE[i] = -(sym + 1);
+                } else {
+                    if (TREE[i] == 0)
+                        TREE[i] = nodes++;
+                    node = TREE[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes header fields as an HPACK header block.
+     */
+    static final class Encoder {
+        private final ByteArrayOutputStream out =
+            new ByteArrayOutputStream(256);
+
+        /**
+         * Appends a header field to the block.  The name must be in lower
+         * case.
+         */
+        void header(String name, String value) {
+            int nameIndex = 0;
+            for (int i = 1; i <= STATIC_TABLE_LENGTH; i++) {
+                if (STATIC_NAMES[i].equals(name)) {
+                    if (STATIC_VALUES[i].equals(value)) {
+                        writeInt(0x80, 7, i);       // indexed field
+                        return;
+                    }
+                    if (nameIndex == 0)
+                        nameIndex = i;
+                }
+            }
+            // credentials are marked never to be indexed by intermediaries
+            boolean sensitive = name.equals("authorization") ||
+                                name.equals("proxy-authorization");
+            writeInt(sensitive ? 0x10 : 0x00, 4, nameIndex);
+            if (nameIndex == 0)
+                writeString(name);
+            writeString(value);
+        }
+
+        /**
+         * Returns the header block and resets this encoder.
+         */
+        byte[] toByteArray() {
+            byte[] block = out.toByteArray();
+            out.reset();
+            return block;
+        }
+
+        private void writeInt(int flags, int prefix, int value) {
+            int max = (1 << prefix) - 1;
+            if (value < max) {
+                out.write(flags | value);
+                return;
+            }
+            out.write(flags | max);
+            value -= max;
+            while (value >= 0x80) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+            long bits = 0;
+            for (byte b : bytes)
+                bits += LENGTHS[b & 0xff];
+            int huffmanLength = (int)((bits + 7) >>> 3);
+            if (huffmanLength >= bytes.length) {
+                writeInt(0x00, 7, bytes.length);
+                out.write(bytes, 0, bytes.length);
+                return;
+            }
+            writeInt(0x80, 7, huffmanLength);
+            long acc = 0;
+            int n = 0;                      // number of bits in acc
+            for (byte b : bytes) {
+                int sym = b & 0xff;
+                acc = (acc << LENGTHS[sym]) | CODES[sym];
+                n += LENGTHS[sym];
+                while (n >= 8) {
+                    n -= 8;
+                    out.write((int)(acc >>> n));
+                }
+            }
+            if (n > 0)                      // pad with the high bits of EOS
+                out.write((int)((acc << (8 - n)) | (0xff >>> n)));
+        }
+    }
+
+    /**
+     * Reads HPACK header blocks.  The blocks of a connection must all be
+     * decoded, in the order in which they are received, by the same decoder.
+     */
+    static final class Decoder {
+        // upper bound of the table size that the peer may choose
+        private final int maxTableSize;
+        private int tableSize;
+
+        // dynamic table, a ring of entries with the newest at head
+        private String[] names = new String[16];
+        private String[] values = new String[16];
+        private int head;
+        private int count;
+        private int size;
+
+        Decoder(int maxTableSize) {
+            this.maxTableSize = maxTableSize;
+            this.tableSize = maxTableSize;
+        }
+
+        /**
+         * Decodes a header block, appending the name and then the value of
+         * each field to the given list.
+         */
+        void decode(ByteBuffer src, List<String> fields)
+            throws ProtocolException
+        {
+            boolean first = true;
+            while (src.hasRemaining()) {
+                int b = src.get(src.position()) & 0xff;
+                if ((b & 0x80) != 0) {                  // indexed field
+                    int index = readInt(src, 7);
+                    if (index == 0)
+                        throw new ProtocolException("HPACK: index 0");
+                    fields.add(name(index));
+                    fields.add(value(index));
+                } else if ((b & 0xe0) == 0x20) {        // table size update
+                    if (!first)
+                        throw new ProtocolException(
+                            "HPACK: table size update after a field");
+                    int newSize = readInt(src, 5);
+                    if (newSize > maxTableSize)
+                        throw new ProtocolException(
+                            "HPACK: table size " + newSize + " too large");
+                    tableSize = newSize;
+                    evict(0);
+                    continue;
+                } else {
+                    // literal, with incremental indexing (01), without
+                    // indexing (0000) or never indexed (0001)
+                    boolean indexing = (b & 0xc0) == 0x40;
+                    int index = readInt(src, indexing ? 6 : 4);
+                    String name = (index == 0) ? readString(src) : name(index);
+                    String value = readString(src);
+                    if (indexing)
+                        add(name, value);
+                    fields.add(name);
+                    fields.add(value);
+                }
+                first = false;
+            }
+        }
+
+        private String name(int index) throws ProtocolException {
+            if (index <= STATIC_TABLE_LENGTH)
+                return STATIC_NAMES[index];
+            return names[entry(index)];
+        }
+
+        private String value(int index) throws ProtocolException {
+            if (index <= STATIC_TABLE_LENGTH)
+                return STATIC_VALUES[index];
+            return values[entry(index)];
+        }
+
+        private int entry(int index) throws ProtocolException {
+            int i = index - STATIC_TABLE_LENGTH - 1;
+            if (i >= count)
+                throw new ProtocolException("HPACK: invalid index " + index);
+            return (head + i) & (names.length - 1);
+        }
+
+        private void add(String name, String value) {
+            int entrySize = 32 + name.length() + value.length();
+            if (entrySize > tableSize) {
+                // an entry larger than the table empties it
+                count = 0;
+                size = 0;
+                return;
+            }
+            evict(entrySize);
+            if (count == names.length) {
+                String[] n = new String[names.length * 2];
+                String[] v = new String[n.length];
+                for (int i = 0; i < count; i++) {
+                    n[i] = names[(head + i) & (names.length - 1)];
+                    v[i] = values[(head + i) & (names.length - 1)];
+                }
+                names = n;
+                values = v;
+                head = 0;
+            }
+            head = (head - 1) & (names.length - 1);
+            names[head] = name;
+            values[head] = value;
+            count++;
+            size += entrySize;
+        }
+
+        // evicts the oldest entries until an entry of the given size fits
+        private void evict(int entrySize) {
+            while (count > 0 && size + entrySize > tableSize) {
+                int last = (head + count - 1) & (names.length - 1);
+                size -= 32 + names[last].length() + values[last].length();
+                names[last] = null;
+                values[last] = null;
+                count--;
+            }
+        }
+
+        private static int readInt(ByteBuffer src, int prefix)
+            throws ProtocolException
+        {
+            int max = (1 << prefix) - 1;
+            int value = src.get() & max;
+            if (value < max)
+                return value;
+            for (int shift = 0; ; shift += 7) {
+                if (!src.hasRemaining())
+                    throw new ProtocolException("HPACK: truncated integer");
+                int b = src.get() & 0xff;
+                long v = value + ((long)(b & 0x7f) << shift);
+                if (shift > 28 || v > Integer.MAX_VALUE)
+                    throw new ProtocolException("HPACK: integer overflow");
+                value = (int)v;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+        }
+
+        private static String readString(ByteBuffer src)
+            throws ProtocolException
+        {
+            if (!src.hasRemaining())
+                throw new ProtocolException("HPACK: truncated string");
+            boolean huffman = (src.get(src.position()) & 0x80) != 0;
+            int length = readInt(src, 7);
+            if (length > src.remaining())
+                throw new ProtocolException("HPACK: truncated string");
+            if (!huffman) {
+                byte[] bytes = new byte[length];
+                src.get(bytes);
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            StringBuilder sb = new StringBuilder(length + (length >>> 1));
+            int node = 0;
+            int pending = 0;            // bits read since the last symbol
+            boolean ones = true;        // whether those bits are all ones
+            for (int i = 0; i < length; i++) {
+                int b = src.get() & 0xff;
+                for (int bit = 7; bit >= 0; bit--) {
+                    int next = TREE[2 * node + ((b >>> bit) & 1)];
+                    pending++;
+                    ones &= ((b >>> bit) & 1) != 0;
+                    if (next < 0) {
+                        int sym = -next - 1;
+                        if (sym == EOS)
+                            throw new ProtocolException("HPACK: EOS in string");
+                        sb.append((char)sym);
+                        node = 0;
+                        pending = 0;
+                        ones = true;
+                    } else {
+                        node = next;
+                    }
+                }
+            }
+            // the padding is the shortest prefix of EOS that fills the octet
+            if (pending > 7 || !ones)
+                throw new ProtocolException("HPACK: invalid padding");
+            return sb.toString();
+        }
+    }
+}
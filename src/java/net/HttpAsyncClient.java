@@ -0,0 +1,2284 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous HTTP/1.1 and HTTP/2 client with a pool of persistent
+ * connections for each host.
+ *
+ * <p> Unlike {@link HttpURLConnection}, which blocks the calling thread for the
+ * duration of an exchange, the {@link #send send} methods of this class return
+ * immediately with a {@link CompletableFuture} that is completed when the
+ * response has been received. Requests and responses are written and read
+ * with {@link AsynchronousSocketChannel}s, so no thread is blocked waiting for
+ * a server.
+ *
+ * <p> The client keeps a pool of connections for each combination of host and
+ * port. A request is sent on an idle connection to the host if there is one;
+ * otherwise a new connection is opened, unless the number of connections to
+ * the host has reached the limit configured with {@link
+ * Builder#maxConnectionsPerHost maxConnectionsPerHost}, in which case the
+ * request waits for a connection to become available. When <em>pipelining</em>
+ * is enabled with {@link Builder#maxPipelineDepth maxPipelineDepth}, {@code
+ * GET} and {@code HEAD} requests may also be written to a connection that is
+ * still waiting for the responses of other such requests. A connection is
+ * returned to the pool when all of its responses have been read, unless the
+ * server indicated that it will close the connection. A request that fails on
+ * a pooled connection before any of its response has been read, because the
+ * server had closed the idle connection for example, is retried once on a new
+ * connection if its method is idempotent.
+ *
+ * <p> A client configured with {@link Builder#version version} {@link
+ * Version#HTTP_2 HTTP_2} speaks HTTP/2 over cleartext connections ("h2c"),
+ * which it opens with prior knowledge that the server supports HTTP/2, as
+ * described in section 3.4 of RFC 7540. Each connection then carries many
+ * requests at once, each on its own stream, up to the number of concurrent
+ * streams that the server allows; further connections are opened only when
+ * all open ones are at that limit. Requests that the server refuses, or
+ * does not process before it shuts a connection down, are retried once.
+ *
+ * <p> Only the {@code http} scheme is supported. An HTTP/1.1 response body is
+ * delimited by its {@code Content-Length}, by chunked transfer coding, or by
+ * the server closing the connection.
+ *
+ * <p> Statistics for the pool of each host are available from the {@link
+ * #getStatistics getStatistics} method.
+ *
+ * <p> An instance of this class is safe for use by multiple concurrent threads.
+ *
+ * @since 1.8
+ */
+public final class HttpAsyncClient implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int H2_READ_BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    // Largest buffer allocated for a body up front, whatever the declared
+    // Content-Length; the buffer grows as body data actually arrives
+    private static final int INITIAL_BODY_SIZE = 64 * 1024;
+
+    private final AsynchronousChannelGroup group;
+    private final Version version;
+    private final int maxConnectionsPerHost;
+    private final int maxPipelineDepth;
+    private final long idleTimeoutNanos;
+    private final long readTimeoutMillis;
+    private final ConcurrentHashMap<String,HostPool> pools = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * The version of HTTP that a client speaks.
+     *
+     * @since 1.8
+     */
+    public enum Version {
+        /**
+         * HTTP/1.1, with one request at a time on each connection, or a
+         * pipeline of requests if configured.
+         */
+        HTTP_1_1,
+
+        /**
+         * HTTP/2 over cleartext connections, opened with prior knowledge
+         * that the server supports it, with many concurrent requests on
+         * each connection.
+         */
+        HTTP_2
+    }
+
+    /**
+     * A builder of {@link HttpAsyncClient} instances.
+     *
+     * @since 1.8
+     */
+    public static final class Builder {
+        private AsynchronousChannelGroup group;
+        private Version version = Version.HTTP_1_1;
+        private int maxConnectionsPerHost = 8;
+        private int maxPipelineDepth = 1;
+        private long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(60);
+        private long readTimeoutMillis = 0L;
+
+        /**
+         * Constructs a builder with the default configuration: HTTP/1.1, at
+         * most eight connections to each host, no pipelining, a sixty second
+         * idle timeout, no read timeout and the default channel group.
+         */
+        public Builder() { }
+
+        /**
+         * Sets the version of HTTP that the client speaks.
+         *
+         * @param  version
+         *         The HTTP version
+         *
+         * @return  This builder
+         */
+        public Builder version(Version version) {
+            this.version = Objects.requireNonNull(version);
+            return this;
+        }
+
+        /**
+         * Sets the channel group of the client's connections.
+         *
+         * @param  group
+         *         The channel group, or {@code null} for the default group
+         *
+         * @return  This builder
+         */
+        public Builder channelGroup(AsynchronousChannelGroup group) {
+            this.group = group;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of connections that are open to a host at
+         * any time.
+         *
+         * @param  max
+         *         The maximum number of connections per host
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code max} is not positive
+         */
+        public Builder maxConnectionsPerHost(int max) {
+            if (max <= 0)
+                throw new IllegalArgumentException("max <= 0");
+            this.maxConnectionsPerHost = max;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests that may be outstanding on an
+         * HTTP/1.1 connection. A value of {@code 1} disables pipelining. The
+         * number of concurrent requests on an HTTP/2 connection is limited
+         * by the server instead.
+         *
+         * @param  depth
+         *         The maximum number of outstanding requests per connection
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code depth} is not positive
+         */
+        public Builder maxPipelineDepth(int depth) {
+            if (depth <= 0)
+                throw new IllegalArgumentException("depth <= 0");
+            this.maxPipelineDepth = depth;
+            return this;
+        }
+
+        /**
+         * Sets the time after which an idle connection is not reused.
+         *
+         * @param  timeout
+         *         The idle timeout
+         * @param  unit
+         *         The time unit of the {@code timeout} argument
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code timeout} is negative
+         */
+        public Builder idleTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0)
+                throw new IllegalArgumentException("timeout < 0");
+            this.idleTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum time to wait for a read from a server to complete.
+         *
+         * @param  timeout
+         *         The read timeout, or {@code 0} for no timeout
+         * @param  unit
+         *         The time unit of the {@code timeout} argument
+         *
+         * @return  This builder
+         *
+         * @throws  IllegalArgumentException
+         *          If {@code timeout} is negative
+         */
+        public Builder readTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0)
+                throw new IllegalArgumentException("timeout < 0");
+            this.readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Returns a new client with the configuration of this builder.
+         *
+         * @return  A new client
+         */
+        public HttpAsyncClient build() {
+            return new HttpAsyncClient(this);
+        }
+    }
+
+    /**
+     * An HTTP request.
+     *
+     * @since 1.8
+     */
+    public static final class Request {
+        private final String method;
+        private final URI uri;
+        private final Map<String,List<String>> headers = new LinkedHashMap<>();
+        private ByteBuffer body;
+
+        /**
+         * Constructs a request without a body.
+         *
+         * @param  method
+         *         The request method, {@code "GET"} for example
+         * @param  uri
+         *         The absolute {@code http} URI of the resource
+         *
+         * @throws  IllegalArgumentException
+         *          If the method is not a valid token, or the URI is not an
+         *          absolute {@code http} URI with a host
+         */
+        public Request(String method, URI uri) {
+            if (method.isEmpty() || !isToken(method))
+                throw new IllegalArgumentException("Invalid method: " + method);
+            if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null)
+                throw new IllegalArgumentException("Not an http URI: " + uri);
+            this.method = method;
+            this.uri = uri;
+        }
+
+        /**
+         * Adds a header field to this request.
+         *
+         * @param  name
+         *         The field name
+         * @param  value
+         *         The field value
+         *
+         * @return  This request
+         *
+         * @throws  IllegalArgumentException
+         *          If the name is not a valid token or the value contains a
+         *          line terminator
+         */
+        public Request header(String name, String value) {
+            if (name.isEmpty() || !isToken(name))
+                throw new IllegalArgumentException("Invalid header name: " + name);
+            if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0)
+                throw new IllegalArgumentException("Invalid header value");
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<>(1);
+                headers.put(name, values);
+            }
+            values.add(value);
+            return this;
+        }
+
+        /**
+         * Sets the body of this request. The body is the remaining bytes of
+         * the buffer when the request is sent; the buffer's position is not
+         * changed.
+         *
+         * @param  body
+         *         The body
+         *
+         * @return  This request
+         */
+        public Request body(ByteBuffer body) {
+            this.body = Objects.requireNonNull(body);
+            return this;
+        }
+
+        /**
+         * Returns the request method.
+         *
+         * @return  The request method
+         */
+        public String method() {
+            return method;
+        }
+
+        /**
+         * Returns the request URI.
+         *
+         * @return  The request URI
+         */
+        public URI uri() {
+            return uri;
+        }
+
+        boolean isIdempotent() {
+            switch (method) {
+                case "GET": case "HEAD": case "OPTIONS": case "TRACE":
+                case "PUT": case "DELETE":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        boolean isPipelinable() {
+            return body == null && (method.equals("GET") || method.equals("HEAD"));
+        }
+
+        /**
+         * Encodes the request line, the header fields and the body.
+         */
+        ByteBuffer encode() {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append(method).append(' ').append(target());
+            sb.append(" HTTP/1.1\r\n");
+            if (!containsHeader("Host")) {
+                sb.append("Host: ").append(uri.getHost());
+                if (uri.getPort() != -1)
+                    sb.append(':').append(uri.getPort());
+                sb.append("\r\n");
+            }
+            for (Map.Entry<String,List<String>> e: headers.entrySet()) {
+                for (String value: e.getValue())
+                    sb.append(e.getKey()).append(": ").append(value).append("\r\n");
+            }
+            int bodyLength = (body == null) ? 0 : body.remaining();
+            if (body != null && !containsHeader("Content-Length"))
+                sb.append("Content-Length: ").append(bodyLength).append("\r\n");
+            sb.append("\r\n");
+            byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+            ByteBuffer bb = ByteBuffer.allocate(head.length + bodyLength);
+            bb.put(head);
+            if (body != null)
+                bb.put(body.duplicate());
+            bb.flip();
+            return bb;
+        }
+
+        /**
+         * Encodes the pseudo-header fields and the header fields as an
+         * HTTP/2 header block. The fields that are specific to an HTTP/1.1
+         * connection are left out, and the Host field becomes the
+         * {@code :authority} pseudo-header field.
+         */
+        byte[] encodeHeaderBlock() {
+            String authority = null;
+            for (Map.Entry<String,List<String>> e: headers.entrySet()) {
+                if (e.getKey().equalsIgnoreCase("Host"))
+                    authority = e.getValue().get(0);
+            }
+            if (authority == null) {
+                authority = (uri.getPort() == -1) ? uri.getHost()
+                                                  : uri.getHost() + ":" + uri.getPort();
+            }
+            Hpack.Encoder enc = new Hpack.Encoder();
+            enc.header(":method", method);
+            enc.header(":scheme", "http");
+            enc.header(":authority", authority);
+            enc.header(":path", target());
+            for (Map.Entry<String,List<String>> e: headers.entrySet()) {
+                String name = e.getKey().toLowerCase(Locale.ROOT);
+                if (name.equals("host") || name.equals("connection") ||
+                    name.equals("keep-alive") || name.equals("proxy-connection") ||
+                    name.equals("transfer-encoding") || name.equals("upgrade"))
+                    continue;
+                for (String value: e.getValue()) {
+                    // TE may only announce that trailers are accepted
+                    if (!name.equals("te") || value.equalsIgnoreCase("trailers"))
+                        enc.header(name, value);
+                }
+            }
+            if (body != null && !containsHeader("Content-Length"))
+                enc.header("content-length", Integer.toString(body.remaining()));
+            return enc.toByteArray();
+        }
+
+        private String target() {
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty())
+                path = "/";
+            return (uri.getRawQuery() == null) ? path : path + "?" + uri.getRawQuery();
+        }
+
+        private boolean containsHeader(String name) {
+            for (String key: headers.keySet()) {
+                if (key.equalsIgnoreCase(name))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An HTTP response.
+     *
+     * @since 1.8
+     */
+    public static final class Response {
+        private final int statusCode;
+        private final String reasonPhrase;
+        private final Map<String,List<String>> headers;
+        private final ByteBuffer body;
+
+        Response(int statusCode, String reasonPhrase,
+                 Map<String,List<String>> headers, ByteBuffer body)
+        {
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Returns the status code.
+         *
+         * @return  The status code
+         */
+        public int statusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Returns the reason phrase of the status line.
+         *
+         * @return  The reason phrase, possibly empty
+         */
+        public String reasonPhrase() {
+            return reasonPhrase;
+        }
+
+        /**
+         * Returns an unmodifiable map of the header fields. The keys are
+         * compared without regard to case.
+         *
+         * @return  The header fields
+         */
+        public Map<String,List<String>> headers() {
+            return headers;
+        }
+
+        /**
+         * Returns the first value of the given header field.
+         *
+         * @param  name
+         *         The field name
+         *
+         * @return  The value, or {@code null} if the field is not present
+         */
+        public String header(String name) {
+            List<String> values = headers.get(name);
+            return (values == null || values.isEmpty()) ? null : values.get(0);
+        }
+
+        /**
+         * Returns a read-only buffer containing the body. The buffer is empty
+         * if the response has no body or the body was delivered to a {@link
+         * BodyHandler}.
+         *
+         * @return  The body
+         */
+        public ByteBuffer body() {
+            return body.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * A handler that consumes the body of a response as it is received.
+     *
+     * @since 1.8
+     */
+    @FunctionalInterface
+    public interface BodyHandler {
+        /**
+         * Invoked with each part of the body in the order that the parts are
+         * received. The buffer is only valid for the duration of the call; its
+         * contents must be consumed or copied before the method returns.
+         *
+         * @param  data
+         *         A buffer containing the next part of the body
+         */
+        void onData(ByteBuffer data);
+    }
+
+    /**
+     * A snapshot of the statistics of the connection pool for one host.
+     *
+     * @since 1.8
+     */
+    public static final class HostStatistics {
+        private final String host;
+        private final int openConnections;
+        private final int idleConnections;
+        private final int activeRequests;
+        private final int queuedRequests;
+        private final long completedRequests;
+        private final long failedRequests;
+        private final long connectionsOpened;
+
+        HostStatistics(String host, int openConnections, int idleConnections,
+                       int activeRequests, int queuedRequests,
+                       long completedRequests, long failedRequests,
+                       long connectionsOpened)
+        {
+            this.host = host;
+            this.openConnections = openConnections;
+            this.idleConnections = idleConnections;
+            this.activeRequests = activeRequests;
+            this.queuedRequests = queuedRequests;
+            this.completedRequests = completedRequests;
+            this.failedRequests = failedRequests;
+            this.connectionsOpened = connectionsOpened;
+        }
+
+        /**
+         * Returns the host and port of the pool, in the form
+         * <i>host</i>{@code :}<i>port</i>.
+         *
+         * @return  The host and port
+         */
+        public String getHost() { return host; }
+
+        /**
+         * Returns the number of connections that are open or opening.
+         *
+         * @return  The number of connections
+         */
+        public int getOpenConnections() { return openConnections; }
+
+        /**
+         * Returns the number of open connections with no outstanding request.
+         *
+         * @return  The number of idle connections
+         */
+        public int getIdleConnections() { return idleConnections; }
+
+        /**
+         * Returns the number of requests that have been assigned to a
+         * connection and whose responses have not been read.
+         *
+         * @return  The number of active requests
+         */
+        public int getActiveRequests() { return activeRequests; }
+
+        /**
+         * Returns the number of requests waiting for a connection.
+         *
+         * @return  The number of queued requests
+         */
+        public int getQueuedRequests() { return queuedRequests; }
+
+        /**
+         * Returns the number of requests whose responses were received.
+         *
+         * @return  The number of completed requests
+         */
+        public long getCompletedRequests() { return completedRequests; }
+
+        /**
+         * Returns the number of requests that failed.
+         *
+         * @return  The number of failed requests
+         */
+        public long getFailedRequests() { return failedRequests; }
+
+        /**
+         * Returns the number of connections opened to the host.
+         *
+         * @return  The number of connections opened
+         */
+        public long getConnectionsOpened() { return connectionsOpened; }
+
+        @Override
+        public String toString() {
+            return host + "[open=" + openConnections + ",idle=" + idleConnections +
+                ",active=" + activeRequests + ",queued=" + queuedRequests +
+                ",completed=" + completedRequests + ",failed=" + failedRequests +
+                ",opened=" + connectionsOpened + "]";
+        }
+    }
+
+    private HttpAsyncClient(Builder builder) {
+        this.group = builder.group;
+        this.version = builder.version;
+        this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+        this.maxPipelineDepth = builder.maxPipelineDepth;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+    }
+
+    /**
+     * Sends a request, returning a future that is completed with the
+     * response. The body of the response is available from the response's
+     * {@link Response#body body} method.
+     *
+     * @param  request
+     *         The request
+     *
+     * @return  A future representing the pending response
+     *
+     * @throws  IllegalStateException
+     *          If the client is closed
+     */
+    public CompletableFuture<Response> send(Request request) {
+        return send(request, null);
+    }
+
+    /**
+     * Sends a request, returning a future that is completed with the
+     * response when all of its body has been delivered to the given handler.
+     * The handler is invoked by a thread of the client's channel group.
+     *
+     * @param  request
+     *         The request
+     * @param  handler
+     *         The handler that consumes the body, or {@code null} to
+     *         accumulate the body in the response
+     *
+     * @return  A future representing the pending response
+     *
+     * @throws  IllegalStateException
+     *          If the client is closed
+     */
+    public CompletableFuture<Response> send(Request request, BodyHandler handler) {
+        if (closed)
+            throw new IllegalStateException("Client is closed");
+        URI uri = request.uri();
+        int port = (uri.getPort() == -1) ? 80 : uri.getPort();
+        String key = uri.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+        HostPool pool = pools.get(key);
+        if (pool == null) {
+            HostPool newPool = new HostPool(key, uri.getHost(), port);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null)
+                pool = newPool;
+        }
+        Exchange ex = new Exchange(request, handler);
+        pool.submit(ex);
+        return ex.future;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the pool of each host to which
+     * this client has sent a request, keyed by <i>host</i>{@code :}<i>port</i>.
+     *
+     * @return  The statistics of each host
+     */
+    public Map<String,HostStatistics> getStatistics() {
+        Map<String,HostStatistics> result = new TreeMap<>();
+        for (HostPool pool: pools.values())
+            result.put(pool.key, pool.statistics());
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Closes this client. Idle connections are closed immediately; requests
+     * that are waiting for a connection fail with an {@link IOException}.
+     * Connections with outstanding requests are closed when their responses
+     * have been read.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (HostPool pool: pools.values())
+            pool.close();
+    }
+
+    private static boolean isToken(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c <= ' ' || c >= 0x7f || "()<>@,;:\\\"/[]?={}".indexOf(c) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static void closeQuietly(AsynchronousSocketChannel ch) {
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException ignore) { }
+        }
+    }
+
+    /**
+     * A request and the state of its response.
+     */
+    private static final class Exchange {
+        final Request request;
+        final BodyHandler handler;
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        ByteBuffer encoded;
+        boolean retried;
+
+        Exchange(Request request, BodyHandler handler) {
+            this.request = request;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * The connections to one host and the requests waiting for them. All
+     * mutable state is guarded by the lock on the pool.
+     */
+    private final class HostPool {
+        final String key;
+        final String host;
+        final int port;
+        final ArrayDeque<Connection> idle = new ArrayDeque<>();
+        final Set<Connection> connections = new HashSet<>();
+        final List<Http2Connection> h2Connections = new ArrayList<>();
+        final ArrayDeque<Exchange> waiting = new ArrayDeque<>();
+        long completed;
+        long failed;
+        long opened;
+        boolean poolClosed;
+
+        HostPool(String key, String host, int port) {
+            this.key = key;
+            this.host = host;
+            this.port = port;
+        }
+
+        synchronized HostStatistics statistics() {
+            int active = 0;
+            int idleCount = idle.size();
+            for (Connection c: connections)
+                active += c.inFlight.size();
+            for (Http2Connection c: h2Connections) {
+                active += c.streams.size() + c.pending.size();
+                if (c.isIdle())
+                    idleCount++;
+            }
+            return new HostStatistics(key, connections.size() + h2Connections.size(),
+                                      idleCount, active, waiting.size(),
+                                      completed, failed, opened);
+        }
+
+        void submit(Exchange ex) {
+            if (version == Version.HTTP_2) {
+                submitStream(ex);
+                return;
+            }
+            ex.encoded = ex.request.encode();
+            Connection conn;
+            boolean connect = false;
+            synchronized (this) {
+                if (poolClosed) {
+                    failed++;
+                    ex.future.completeExceptionally(new IOException("Client is closed"));
+                    return;
+                }
+                conn = assign(ex);
+                if (conn == null) {
+                    if (connections.size() < maxConnectionsPerHost) {
+                        conn = new Connection(this);
+                        connections.add(conn);
+                        opened++;
+                        conn.inFlight.add(ex);
+                        connect = true;
+                    } else {
+                        waiting.add(ex);
+                        return;
+                    }
+                }
+            }
+            if (connect) {
+                conn.connect();
+            } else {
+                conn.writeNext();
+            }
+        }
+
+        /**
+         * Assigns an exchange to the first HTTP/2 connection that can open
+         * another stream, opening a new connection if there is none and the
+         * limit on connections allows.
+         */
+        void submitStream(Exchange ex) {
+            Http2Connection conn = null;
+            boolean connect = false;
+            List<Http2Connection> expired = new ArrayList<>();
+            synchronized (this) {
+                if (poolClosed) {
+                    failed++;
+                    ex.future.completeExceptionally(new IOException("Client is closed"));
+                    return;
+                }
+                long now = System.nanoTime();
+                for (Http2Connection c: h2Connections) {
+                    if (c.isIdle() && now - c.idleSince >= idleTimeoutNanos) {
+                        expired.add(c);
+                    } else if (conn == null && c.canAccept()) {
+                        conn = c;
+                    }
+                }
+                h2Connections.removeAll(expired);
+                if (conn == null) {
+                    if (h2Connections.size() < maxConnectionsPerHost) {
+                        conn = new Http2Connection(this);
+                        h2Connections.add(conn);
+                        opened++;
+                        connect = true;
+                    } else {
+                        waiting.add(ex);
+                    }
+                }
+                if (conn != null)
+                    conn.pending.add(ex);
+            }
+            for (Http2Connection c: expired)
+                c.shutdown();
+            if (connect) {
+                conn.connect();
+            } else if (conn != null) {
+                conn.startStreams();
+            }
+        }
+
+        /**
+         * Invoked when a stream of an HTTP/2 connection has closed, or when
+         * the connection stops accepting streams; closes the connection if
+         * it has no more streams and will not be used again.
+         */
+        void streamClosed(Http2Connection conn) {
+            Exchange next = null;
+            synchronized (this) {
+                if (!conn.isIdle() || !(poolClosed || conn.closing))
+                    return;
+                h2Connections.remove(conn);
+                if (!poolClosed)
+                    next = waiting.pollFirst();
+            }
+            conn.shutdown();
+            if (next != null)
+                submitStream(next);
+        }
+
+        /**
+         * Invoked when an HTTP/2 connection fails. The streams that the
+         * server did not process, and the exchanges that were not yet sent,
+         * are retried on another connection; the others fail.
+         */
+        void failed(Http2Connection conn, Throwable exc,
+                    List<Http2Connection.Stream> streams, List<Exchange> unsent)
+        {
+            List<Exchange> retry = new ArrayList<>();
+            List<Exchange> toFail = new ArrayList<>();
+            Exchange next = null;
+            synchronized (this) {
+                h2Connections.remove(conn);
+                for (Http2Connection.Stream s: streams) {
+                    if (s.reused && !s.responseStarted() && !s.ex.retried &&
+                        s.ex.request.isIdempotent() && !poolClosed) {
+                        s.ex.retried = true;
+                        retry.add(s.ex);
+                    } else {
+                        toFail.add(s.ex);
+                    }
+                }
+                // a connection that never connected fails everything
+                // assigned to it, as an HTTP/1.1 connection does
+                if (conn.connected && !poolClosed) {
+                    retry.addAll(unsent);
+                } else {
+                    toFail.addAll(unsent);
+                }
+                failed += toFail.size();
+                if (!poolClosed)
+                    next = waiting.pollFirst();
+            }
+            closeQuietly(conn.ch);
+            for (Exchange ex: toFail)
+                ex.future.completeExceptionally(exc);
+            for (Exchange ex: retry)
+                submitStream(ex);
+            if (next != null)
+                submitStream(next);
+        }
+
+        synchronized void failed() {
+            failed++;
+        }
+
+        /**
+         * Assigns an exchange to an idle or pipelining connection, returning
+         * the connection or {@code null} if there is none.
+         */
+        private Connection assign(Exchange ex) {
+            assert Thread.holdsLock(this);
+            long now = System.nanoTime();
+            Connection conn;
+            while ((conn = idle.pollFirst()) != null) {
+                if (now - conn.idleSince < idleTimeoutNanos && conn.ch.isOpen()) {
+                    conn.reused = true;
+                    conn.inFlight.add(ex);
+                    return conn;
+                }
+                connections.remove(conn);
+                closeQuietly(conn.ch);
+            }
+            if (maxPipelineDepth > 1 && ex.request.isPipelinable()) {
+                for (Connection c: connections) {
+                    if (c.canPipeline()) {
+                        c.inFlight.add(ex);
+                        return c;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Invoked when a connection has read all of its responses.
+         */
+        void release(Connection conn, boolean reusable) {
+            Exchange next = null;
+            synchronized (this) {
+                if (reusable && !poolClosed) {
+                    next = waiting.pollFirst();
+                    if (next != null) {
+                        conn.reused = true;
+                        conn.inFlight.add(next);
+                    } else {
+                        conn.idleSince = System.nanoTime();
+                        idle.addFirst(conn);
+                        return;
+                    }
+                } else {
+                    connections.remove(conn);
+                    closeQuietly(conn.ch);
+                    next = waiting.pollFirst();
+                    if (next == null)
+                        return;
+                }
+            }
+            if (reusable) {
+                conn.writeNext();
+            } else {
+                submit(next);
+            }
+        }
+
+        /**
+         * Invoked when a connection fails; fails or retries its exchanges.
+         */
+        void failed(Connection conn, Throwable exc, List<Exchange> exchanges,
+                    boolean responseStarted)
+        {
+            List<Exchange> retry = new ArrayList<>();
+            Exchange next = null;
+            synchronized (this) {
+                connections.remove(conn);
+                idle.remove(conn);
+                for (int i = 0; i < exchanges.size(); i++) {
+                    Exchange ex = exchanges.get(i);
+                    boolean started = (i == 0) && responseStarted;
+                    if (conn.reused && !started && !ex.retried &&
+                        ex.request.isIdempotent() && !poolClosed) {
+                        ex.retried = true;
+                        retry.add(ex);
+                    } else {
+                        failed++;
+                    }
+                }
+                if (!poolClosed)
+                    next = waiting.pollFirst();
+            }
+            closeQuietly(conn.ch);
+            for (Exchange ex: exchanges) {
+                if (!retry.contains(ex))
+                    ex.future.completeExceptionally(exc);
+            }
+            for (Exchange ex: retry)
+                submit(ex);
+            if (next != null)
+                submit(next);
+        }
+
+        synchronized void completed() {
+            completed++;
+        }
+
+        void close() {
+            List<Exchange> toFail;
+            List<Http2Connection> toClose = new ArrayList<>();
+            synchronized (this) {
+                poolClosed = true;
+                for (Connection conn: idle) {
+                    connections.remove(conn);
+                    closeQuietly(conn.ch);
+                }
+                idle.clear();
+                for (Http2Connection conn: h2Connections) {
+                    if (conn.isIdle())
+                        toClose.add(conn);
+                }
+                h2Connections.removeAll(toClose);
+                toFail = new ArrayList<>(waiting);
+                waiting.clear();
+                failed += toFail.size();
+            }
+            for (Http2Connection conn: toClose)
+                conn.shutdown();
+            for (Exchange ex: toFail)
+                ex.future.completeExceptionally(new IOException("Client is closed"));
+        }
+    }
+
+    // response parser states
+    private static final int STATUS_LINE = 0;
+    private static final int HEADERS     = 1;
+    private static final int BODY        = 2;
+    private static final int CHUNK_SIZE  = 3;
+    private static final int CHUNK_DATA  = 4;
+    private static final int CHUNK_END   = 5;
+    private static final int TRAILERS    = 6;
+    private static final int BODY_TO_EOF = 7;
+
+    /**
+     * A connection to a host. The exchanges assigned to the connection are
+     * written in order and their responses are read in the same order.
+     */
+    private final class Connection {
+        final HostPool pool;
+        volatile AsynchronousSocketChannel ch;
+
+        // guarded by the pool lock
+        final ArrayDeque<Exchange> inFlight = new ArrayDeque<>();
+        int written;            // number of exchanges in inFlight written
+        boolean writing;
+        boolean reading;
+        boolean connected;
+        boolean reused;
+        boolean failed;
+        long idleSince;
+
+        // read side, only accessed by the thread completing a read
+        final ByteBuffer readBuf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final byte[] lineBuf = new byte[256];
+        byte[] line = lineBuf;
+        int lineLength;
+        int state = STATUS_LINE;
+        int statusCode;
+        String reasonPhrase;
+        Map<String,List<String>> headers;
+        long remaining;
+        ByteBuffer body;
+        boolean keepAlive;
+        boolean responseStarted;
+
+        Connection(HostPool pool) {
+            this.pool = pool;
+        }
+
+        boolean canPipeline() {
+            assert Thread.holdsLock(pool);
+            if (!connected || inFlight.isEmpty() || inFlight.size() >= maxPipelineDepth)
+                return false;
+            for (Exchange ex: inFlight) {
+                if (!ex.request.isPipelinable())
+                    return false;
+            }
+            return true;
+        }
+
+        void connect() {
+            InetSocketAddress address;
+            try {
+                address = new InetSocketAddress(pool.host, pool.port);
+                if (address.isUnresolved())
+                    throw new UnknownHostException(pool.host);
+                ch = AsynchronousSocketChannel.open(group);
+            } catch (IOException | RuntimeException x) {
+                fail(x);
+                return;
+            }
+            ch.connect(address, null, new CompletionHandler<Void,Void>() {
+                public void completed(Void result, Void att) {
+                    synchronized (pool) {
+                        connected = true;
+                    }
+                    writeNext();
+                }
+                public void failed(Throwable exc, Void att) {
+                    fail(exc);
+                }
+            });
+        }
+
+        /**
+         * Writes the next unwritten exchange, if any and if a write is not in
+         * progress, and starts reading if not already reading.
+         */
+        void writeNext() {
+            Exchange ex = null;
+            boolean startRead = false;
+            synchronized (pool) {
+                if (!connected)
+                    return;
+                if (!writing && written < inFlight.size()) {
+                    int i = 0;
+                    for (Exchange e: inFlight) {
+                        if (i++ == written) {
+                            ex = e;
+                            break;
+                        }
+                    }
+                    writing = true;
+                }
+                if (!reading && !inFlight.isEmpty()) {
+                    reading = true;
+                    startRead = true;
+                }
+            }
+            if (ex != null)
+                write(ex.encoded.duplicate());
+            if (startRead)
+                read();
+        }
+
+        private void write(ByteBuffer bb) {
+            ch.write(bb, bb, new CompletionHandler<Integer,ByteBuffer>() {
+                public void completed(Integer n, ByteBuffer bb) {
+                    if (bb.hasRemaining()) {
+                        ch.write(bb, bb, this);
+                        return;
+                    }
+                    synchronized (pool) {
+                        writing = false;
+                        written++;
+                    }
+                    writeNext();
+                }
+                public void failed(Throwable exc, ByteBuffer bb) {
+                    fail(exc);
+                }
+            });
+        }
+
+        private void read() {
+            CompletionHandler<Integer,Void> handler =
+                new CompletionHandler<Integer,Void>() {
+                    public void completed(Integer n, Void att) {
+                        readCompleted(n);
+                    }
+                    public void failed(Throwable exc, Void att) {
+                        fail(exc);
+                    }
+                };
+            if (readTimeoutMillis > 0L) {
+                ch.read(readBuf, readTimeoutMillis, TimeUnit.MILLISECONDS, null, handler);
+            } else {
+                ch.read(readBuf, null, handler);
+            }
+        }
+
+        private void readCompleted(int n) {
+            readBuf.flip();
+            boolean eof = (n < 0);
+            try {
+                for (;;) {
+                    if (!parse(eof))
+                        break;
+                    // a response is complete
+                    Exchange ex;
+                    boolean more;
+                    synchronized (pool) {
+                        ex = inFlight.pollFirst();
+                        written--;
+                        more = !inFlight.isEmpty();
+                        if (!more)
+                            reading = false;
+                    }
+                    Response response = new Response(statusCode, reasonPhrase,
+                        Collections.unmodifiableMap(headers),
+                        (body == null) ? ByteBuffer.allocate(0) : (ByteBuffer)body.flip());
+                    boolean reusable = keepAlive && state != BODY_TO_EOF && !eof;
+                    resetParser();
+                    pool.completed();
+                    ex.future.complete(response);
+                    if (!more) {
+                        if (readBuf.hasRemaining())
+                            reusable = false;   // unsolicited data
+                        readBuf.clear();
+                        pool.release(this, reusable);
+                        return;
+                    }
+                    if (!reusable) {
+                        fail(new IOException("Connection closed by server"));
+                        return;
+                    }
+                }
+                if (eof) {
+                    fail(new IOException("Connection closed by server"));
+                    return;
+                }
+            } catch (IOException | RuntimeException x) {
+                fail(x);
+                return;
+            }
+            readBuf.compact();
+            read();
+        }
+
+        private void resetParser() {
+            state = STATUS_LINE;
+            headers = null;
+            body = null;
+            responseStarted = false;
+            line = lineBuf;
+            lineLength = 0;
+        }
+
+        /**
+         * Reads a line into the line buffer, returning the line without its
+         * terminator, or {@code null} if more input is needed.
+         */
+        private String readLine() throws IOException {
+            while (readBuf.hasRemaining()) {
+                byte b = readBuf.get();
+                if (b == '\n') {
+                    int len = lineLength;
+                    if (len > 0 && line[len - 1] == '\r')
+                        len--;
+                    String s = new String(line, 0, len, StandardCharsets.ISO_8859_1);
+                    lineLength = 0;
+                    return s;
+                }
+                if (lineLength == line.length) {
+                    if (line.length >= MAX_LINE_LENGTH)
+                        throw new ProtocolException("Line too long");
+                    line = java.util.Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+            return null;
+        }
+
+        /**
+         * Parses the buffered input, returning true if a response is complete.
+         */
+        private boolean parse(boolean eof) throws IOException {
+            if (readBuf.hasRemaining())
+                responseStarted = true;
+            for (;;) {
+                switch (state) {
+                    case STATUS_LINE: {
+                        String s = readLine();
+                        if (s == null)
+                            return false;
+                        if (s.isEmpty())
+                            continue;   // tolerate leading empty lines
+                        parseStatusLine(s);
+                        headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                        state = HEADERS;
+                        break;
+                    }
+                    case HEADERS: {
+                        String s = readLine();
+                        if (s == null)
+                            return false;
+                        if (!s.isEmpty()) {
+                            addHeader(headers, s);
+                            break;
+                        }
+                        if (statusCode >= 100 && statusCode < 200) {
+                            // interim response, the final response follows
+                            state = STATUS_LINE;
+                            break;
+                        }
+                        if (startBody())
+                            return true;
+                        break;
+                    }
+                    case BODY: {
+                        consume(remaining);
+                        if (remaining > 0)
+                            return false;
+                        return true;
+                    }
+                    case CHUNK_SIZE: {
+                        String s = readLine();
+                        if (s == null)
+                            return false;
+                        int semi = s.indexOf(';');
+                        String hex = ((semi >= 0) ? s.substring(0, semi) : s).trim();
+                        try {
+                            remaining = Long.parseLong(hex, 16);
+                        } catch (NumberFormatException x) {
+                            throw new ProtocolException("Invalid chunk size");
+                        }
+                        if (remaining < 0)
+                            throw new ProtocolException("Invalid chunk size");
+                        state = (remaining == 0) ? TRAILERS : CHUNK_DATA;
+                        break;
+                    }
+                    case CHUNK_DATA: {
+                        consume(remaining);
+                        if (remaining > 0)
+                            return false;
+                        state = CHUNK_END;
+                        break;
+                    }
+                    case CHUNK_END: {
+                        String s = readLine();
+                        if (s == null)
+                            return false;
+                        state = CHUNK_SIZE;
+                        break;
+                    }
+                    case TRAILERS: {
+                        String s = readLine();
+                        if (s == null)
+                            return false;
+                        if (s.isEmpty())
+                            return true;
+                        addHeader(headers, s);
+                        break;
+                    }
+                    case BODY_TO_EOF: {
+                        consume(Long.MAX_VALUE);
+                        return eof;
+                    }
+                    default:
+                        throw new AssertionError();
+                }
+            }
+        }
+
+        private void parseStatusLine(String s) throws IOException {
+            // HTTP-version SP status-code SP reason-phrase
+            if (!s.startsWith("HTTP/1.") || s.length() < 12 || s.charAt(8) != ' ')
+                throw new ProtocolException("Invalid status line: " + s);
+            try {
+                statusCode = Integer.parseInt(s.substring(9, 12));
+            } catch (NumberFormatException x) {
+                throw new ProtocolException("Invalid status line: " + s);
+            }
+            reasonPhrase = (s.length() > 13) ? s.substring(13) : "";
+            keepAlive = !s.startsWith("HTTP/1.0");
+        }
+
+        private void addHeader(Map<String,List<String>> map, String s)
+            throws IOException
+        {
+            int colon = s.indexOf(':');
+            if (colon <= 0)
+                throw new ProtocolException("Invalid header field: " + s);
+            String name = s.substring(0, colon).trim();
+            String value = s.substring(colon + 1).trim();
+            List<String> values = map.get(name);
+            if (values == null) {
+                values = new ArrayList<>(1);
+                map.put(name, values);
+            }
+            values.add(value);
+        }
+
+        private String headerValue(String name) {
+            List<String> values = headers.get(name);
+            return (values == null || values.isEmpty()) ? null : values.get(0);
+        }
+
+        /**
+         * Determines how the body is delimited, returning true if the
+         * response has no body.
+         */
+        private boolean startBody() throws IOException {
+            String connection = headerValue("Connection");
+            if (connection != null) {
+                if (connection.equalsIgnoreCase("close"))
+                    keepAlive = false;
+                else if (connection.equalsIgnoreCase("keep-alive"))
+                    keepAlive = true;
+            }
+            Exchange ex;
+            synchronized (pool) {
+                ex = inFlight.peekFirst();
+            }
+            if (ex.request.method().equals("HEAD") ||
+                statusCode == 204 || statusCode == 304)
+                return true;
+            String te = headerValue("Transfer-Encoding");
+            if (te != null && te.toLowerCase(Locale.ROOT).endsWith("chunked")) {
+                state = CHUNK_SIZE;
+                return false;
+            }
+            String cl = headerValue("Content-Length");
+            if (cl != null) {
+                try {
+                    remaining = Long.parseLong(cl);
+                } catch (NumberFormatException x) {
+                    throw new ProtocolException("Invalid Content-Length: " + cl);
+                }
+                if (remaining < 0)
+                    throw new ProtocolException("Invalid Content-Length: " + cl);
+                state = BODY;
+                return remaining == 0;
+            }
+            state = BODY_TO_EOF;
+            return false;
+        }
+
+        /**
+         * Consumes up to max bytes of body from the read buffer.
+         */
+        private void consume(long max) {
+            int n = (int)Math.min(readBuf.remaining(), max);
+            if (n == 0)
+                return;
+            ByteBuffer data = readBuf.duplicate();
+            data.limit(data.position() + n);
+            readBuf.position(readBuf.position() + n);
+            if (max != Long.MAX_VALUE)
+                remaining -= n;
+
+            Exchange ex;
+            synchronized (pool) {
+                ex = inFlight.peekFirst();
+            }
+            if (ex.handler != null) {
+                ex.handler.onData(data.asReadOnlyBuffer());
+                return;
+            }
+            if (body == null) {
+                body = ByteBuffer.allocate((state == BODY) ?
+                    (int)Math.max(n, Math.min(remaining + n, INITIAL_BODY_SIZE)) :
+                    Math.max(n, 1024));
+            } else if (body.remaining() < n) {
+                long needed = (long)body.position() + n;
+                long grown = Math.max(needed, 2L * body.capacity());
+                if (state == BODY)      // no more than the rest of the body
+                    grown = Math.min(grown, needed + remaining);
+                int cap = (int)Math.min(grown, Integer.MAX_VALUE - 8);
+                ByteBuffer bb = ByteBuffer.allocate(cap);
+                body.flip();
+                bb.put(body);
+                body = bb;
+            }
+            body.put(data);
+        }
+
+        /**
+         * Fails all exchanges assigned to this connection.
+         */
+        void fail(Throwable exc) {
+            List<Exchange> exchanges;
+            boolean started = responseStarted;
+            synchronized (pool) {
+                if (failed)
+                    return;
+                failed = true;
+                exchanges = new ArrayList<>(inFlight);
+                inFlight.clear();
+                written = 0;
+                writing = false;
+                reading = false;
+            }
+            if (!(exc instanceof IOException))
+                exc = new IOException(exc);
+            pool.failed(this, exc, exchanges, started);
+        }
+    }
+
+    // HTTP/2 frame types, flags, settings and error codes (RFC 7540)
+    private static final int TYPE_DATA          = 0x0;
+    private static final int TYPE_HEADERS       = 0x1;
+    private static final int TYPE_RST_STREAM    = 0x3;
+    private static final int TYPE_SETTINGS      = 0x4;
+    private static final int TYPE_PUSH_PROMISE  = 0x5;
+    private static final int TYPE_PING          = 0x6;
+    private static final int TYPE_GOAWAY        = 0x7;
+    private static final int TYPE_WINDOW_UPDATE = 0x8;
+    private static final int TYPE_CONTINUATION  = 0x9;
+
+    private static final int FLAG_END_STREAM  = 0x1;
+    private static final int FLAG_ACK         = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED      = 0x8;
+    private static final int FLAG_PRIORITY    = 0x20;
+
+    private static final int SETTINGS_ENABLE_PUSH            = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE    = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE         = 0x5;
+
+    private static final int REFUSED_STREAM = 0x7;
+    private static final int CANCEL         = 0x8;
+
+    private static final byte[] PREFACE =
+        "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    private static final int MAX_STREAM_ID = Integer.MAX_VALUE;
+    private static final int MAX_HEADER_BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    // the windows advertised to the server, large enough that the server is
+    // rarely blocked as the body is consumed as soon as it is read
+    private static final int STREAM_WINDOW_SIZE = 1 << 20;
+    private static final int CONNECTION_WINDOW_SIZE = 1 << 24;
+
+    /**
+     * Writes a frame header into the given buffer.
+     */
+    private static void putFrameHeader(ByteBuffer bb, int length, int type,
+                                       int flags, int streamId) {
+        bb.put((byte)(length >>> 16)).put((byte)(length >>> 8)).put((byte)length)
+          .put((byte)type).put((byte)flags).putInt(streamId);
+    }
+
+    /**
+     * An HTTP/2 connection to a host. Each exchange assigned to the
+     * connection is sent on a stream of its own, and the frames of all
+     * streams are written through a single queue so that the frames of a
+     * header block are never interleaved with others.
+     */
+    private final class Http2Connection {
+        final HostPool pool;
+        volatile AsynchronousSocketChannel ch;
+
+        // guarded by the pool lock
+        final ArrayDeque<Exchange> pending = new ArrayDeque<>();
+        final Map<Integer,Stream> streams = new HashMap<>();
+        final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        int nextStreamId = 1;
+        int maxStreams = 100;   // assumed until the server's settings are read
+        int peerInitialWindow = DEFAULT_WINDOW_SIZE;
+        int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        long sendWindow = DEFAULT_WINDOW_SIZE;
+        long streamsClosed;
+        boolean settingsReceived;
+        boolean writing;
+        boolean connected;
+        boolean closing;        // no new streams, after GOAWAY
+        boolean failed;
+        long idleSince;
+
+        // read side, only accessed by the thread completing a read
+        final ByteBuffer readBuf = ByteBuffer.allocate(H2_READ_BUFFER_SIZE);
+        final Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_TABLE_SIZE);
+        ByteBuffer headerBlock;
+        int headerStreamId;
+        boolean headerEndStream;
+        int recvUnacked;
+
+        /**
+         * A stream and the response being read from it.
+         */
+        final class Stream {
+            final int id;
+            final Exchange ex;
+            final boolean reused;
+
+            // guarded by the pool lock
+            ByteBuffer data;    // the rest of the request body
+            long sendWindow;
+
+            // read side
+            int statusCode;
+            Map<String,List<String>> headers;
+            ByteBuffer body;
+            int recvUnacked;
+
+            Stream(int id, Exchange ex, boolean reused) {
+                this.id = id;
+                this.ex = ex;
+                this.reused = reused;
+            }
+
+            boolean responseStarted() {
+                return statusCode != 0;
+            }
+
+            void append(ByteBuffer data) {
+                int n = data.remaining();
+                if (body == null) {
+                    body = ByteBuffer.allocate(Math.max(n, 1024));
+                } else if (body.remaining() < n) {
+                    long needed = (long)body.position() + n;
+                    int cap = (int)Math.min(Math.max(needed, 2L * body.capacity()),
+                                            Integer.MAX_VALUE - 8);
+                    ByteBuffer bb = ByteBuffer.allocate(cap);
+                    body.flip();
+                    bb.put(body);
+                    body = bb;
+                }
+                body.put(data);
+            }
+        }
+
+        Http2Connection(HostPool pool) {
+            this.pool = pool;
+        }
+
+        boolean isIdle() {
+            assert Thread.holdsLock(pool);
+            return streams.isEmpty() && pending.isEmpty();
+        }
+
+        boolean canAccept() {
+            assert Thread.holdsLock(pool);
+            int n = streams.size() + pending.size();
+            return !closing && !failed && n < maxStreams &&
+                   nextStreamId <= MAX_STREAM_ID - 2 * pending.size();
+        }
+
+        void connect() {
+            InetSocketAddress address;
+            try {
+                address = new InetSocketAddress(pool.host, pool.port);
+                if (address.isUnresolved())
+                    throw new UnknownHostException(pool.host);
+                ch = AsynchronousSocketChannel.open(group);
+            } catch (IOException | RuntimeException x) {
+                fail(x);
+                return;
+            }
+            ch.connect(address, null, new CompletionHandler<Void,Void>() {
+                public void completed(Void result, Void att) {
+                    synchronized (pool) {
+                        connected = true;
+                        ByteBuffer bb = ByteBuffer.allocate(PREFACE.length + 9 + 12 + 9 + 4);
+                        bb.put(PREFACE);
+                        putFrameHeader(bb, 12, TYPE_SETTINGS, 0, 0);
+                        bb.putShort((short)SETTINGS_ENABLE_PUSH).putInt(0);
+                        bb.putShort((short)SETTINGS_INITIAL_WINDOW_SIZE).putInt(STREAM_WINDOW_SIZE);
+                        putFrameHeader(bb, 4, TYPE_WINDOW_UPDATE, 0, 0);
+                        bb.putInt(CONNECTION_WINDOW_SIZE - DEFAULT_WINDOW_SIZE);
+                        bb.flip();
+                        output.add(bb);
+                    }
+                    flush();
+                    read();
+                }
+                public void failed(Throwable exc, Void att) {
+                    fail(exc);
+                }
+            });
+        }
+
+        /**
+         * Opens streams for the pending exchanges, and for exchanges waiting
+         * in the pool, as far as the server's limit on concurrent streams
+         * allows. Streams are only opened once the server's settings have
+         * been read, so that the limit is known; the exchanges assigned
+         * beyond it are handed back to the pool.
+         */
+        void startStreams() {
+            List<Exchange> resubmit = null;
+            synchronized (pool) {
+                if (!connected || failed || !settingsReceived)
+                    return;
+                Exchange ex;
+                while (canAccept() && (ex = pool.waiting.pollFirst()) != null)
+                    pending.add(ex);
+                while (!closing && streams.size() < maxStreams &&
+                       (ex = pending.pollFirst()) != null)
+                    openStream(ex);
+                if (!pending.isEmpty()) {
+                    resubmit = new ArrayList<>(pending);
+                    pending.clear();
+                }
+            }
+            flush();
+            if (resubmit != null) {
+                for (Exchange ex: resubmit)
+                    pool.submitStream(ex);
+                pool.streamClosed(this);
+            }
+        }
+
+        private void openStream(Exchange ex) {
+            assert Thread.holdsLock(pool);
+            int id = nextStreamId;
+            if (id >= MAX_STREAM_ID - 1)
+                closing = true;         // stream identifiers are exhausted
+            else
+                nextStreamId += 2;
+            Stream s = new Stream(id, ex, streamsClosed > 0);
+            s.sendWindow = peerInitialWindow;
+            streams.put(id, s);
+
+            byte[] block = ex.request.encodeHeaderBlock();
+            ByteBuffer body = ex.request.body;
+            boolean endStream = (body == null || !body.hasRemaining());
+            int off = 0;
+            int type = TYPE_HEADERS;
+            do {
+                int n = Math.min(block.length - off, peerMaxFrameSize);
+                int flags = (off + n == block.length) ? FLAG_END_HEADERS : 0;
+                if (type == TYPE_HEADERS && endStream)
+                    flags |= FLAG_END_STREAM;
+                ByteBuffer bb = ByteBuffer.allocate(9 + n);
+                putFrameHeader(bb, n, type, flags, id);
+                bb.put(block, off, n);
+                bb.flip();
+                output.add(bb);
+                off += n;
+                type = TYPE_CONTINUATION;
+            } while (off < block.length);
+            if (!endStream) {
+                s.data = body.duplicate();
+                sendData(s);
+            }
+        }
+
+        /**
+         * Queues as much of the request body of a stream as the flow control
+         * windows allow.
+         */
+        private void sendData(Stream s) {
+            assert Thread.holdsLock(pool);
+            ByteBuffer data = s.data;
+            while (data != null && sendWindow > 0 && s.sendWindow > 0) {
+                int n = (int)Math.min(Math.min(data.remaining(), peerMaxFrameSize),
+                                      Math.min(sendWindow, s.sendWindow));
+                boolean last = (n == data.remaining());
+                ByteBuffer header = ByteBuffer.allocate(9);
+                putFrameHeader(header, n, TYPE_DATA, last ? FLAG_END_STREAM : 0, s.id);
+                header.flip();
+                ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + n);
+                data.position(data.position() + n);
+                output.add(header);
+                output.add(chunk);
+                sendWindow -= n;
+                s.sendWindow -= n;
+                if (last)
+                    s.data = data = null;
+            }
+        }
+
+        /**
+         * Queues a control frame with a payload of up to eight bytes.
+         */
+        private void queueFrame(int type, int flags, int streamId, int length,
+                                long payload) {
+            assert Thread.holdsLock(pool);
+            ByteBuffer bb = ByteBuffer.allocate(9 + length);
+            putFrameHeader(bb, length, type, flags, streamId);
+            if (length == 4)
+                bb.putInt((int)payload);
+            else if (length == 8)
+                bb.putLong(payload);
+            bb.flip();
+            output.add(bb);
+        }
+
+        /**
+         * Writes the queued frames if a write is not in progress.
+         */
+        void flush() {
+            ByteBuffer[] srcs;
+            synchronized (pool) {
+                if (writing || failed || !connected || output.isEmpty())
+                    return;
+                srcs = new ByteBuffer[Math.min(output.size(), MAX_GATHER)];
+                for (int i = 0; i < srcs.length; i++)
+                    srcs[i] = output.pollFirst();
+                writing = true;
+            }
+            write(srcs, 0);
+        }
+
+        private void write(ByteBuffer[] srcs, int offset) {
+            ch.write(srcs, offset, srcs.length - offset, 0L, TimeUnit.MILLISECONDS,
+                     srcs, new CompletionHandler<Long,ByteBuffer[]>() {
+                public void completed(Long n, ByteBuffer[] srcs) {
+                    for (int i = 0; i < srcs.length; i++) {
+                        if (srcs[i].hasRemaining()) {
+                            write(srcs, i);
+                            return;
+                        }
+                    }
+                    synchronized (pool) {
+                        writing = false;
+                    }
+                    flush();
+                }
+                public void failed(Throwable exc, ByteBuffer[] srcs) {
+                    fail(exc);
+                }
+            });
+        }
+
+        private void read() {
+            CompletionHandler<Integer,Void> handler =
+                new CompletionHandler<Integer,Void>() {
+                    public void completed(Integer n, Void att) {
+                        readCompleted(n);
+                    }
+                    public void failed(Throwable exc, Void att) {
+                        fail(exc);
+                    }
+                };
+            // the read timeout also closes a connection without streams
+            if (readTimeoutMillis > 0L) {
+                ch.read(readBuf, readTimeoutMillis, TimeUnit.MILLISECONDS, null, handler);
+            } else {
+                ch.read(readBuf, null, handler);
+            }
+        }
+
+        private void readCompleted(int n) {
+            if (n < 0) {
+                fail(new IOException("Connection closed by server"));
+                return;
+            }
+            readBuf.flip();
+            try {
+                while (readBuf.remaining() >= 9) {
+                    int p = readBuf.position();
+                    int length = ((readBuf.get(p) & 0xff) << 16) |
+                                 ((readBuf.get(p + 1) & 0xff) << 8) |
+                                 (readBuf.get(p + 2) & 0xff);
+                    if (length > DEFAULT_MAX_FRAME_SIZE)
+                        throw new ProtocolException("Frame too large: " + length);
+                    if (readBuf.remaining() < 9 + length)
+                        break;
+                    int type = readBuf.get(p + 3) & 0xff;
+                    int flags = readBuf.get(p + 4) & 0xff;
+                    int streamId = readBuf.getInt(p + 5) & 0x7fffffff;
+                    ByteBuffer payload = readBuf.duplicate();
+                    payload.limit(p + 9 + length).position(p + 9);
+                    readBuf.position(p + 9 + length);
+                    frame(type, flags, streamId, payload);
+                }
+            } catch (IOException | RuntimeException x) {
+                fail(x);
+                return;
+            }
+            readBuf.compact();
+            boolean done;
+            synchronized (pool) {
+                done = failed;
+            }
+            flush();
+            startStreams();
+            if (!done)
+                read();
+        }
+
+        private void frame(int type, int flags, int streamId, ByteBuffer payload)
+            throws IOException
+        {
+            if (headerStreamId != 0 && type != TYPE_CONTINUATION)
+                throw new ProtocolException("Expected CONTINUATION frame");
+            switch (type) {
+                case TYPE_DATA:
+                    data(flags, streamId, payload);
+                    break;
+                case TYPE_HEADERS:
+                    if (streamId == 0)
+                        throw new ProtocolException("HEADERS frame on stream 0");
+                    if ((flags & FLAG_PADDED) != 0)
+                        unpad(payload);
+                    if ((flags & FLAG_PRIORITY) != 0) {
+                        if (payload.remaining() < 5)
+                            throw new ProtocolException("Invalid HEADERS frame");
+                        payload.position(payload.position() + 5);
+                    }
+                    headerStreamId = streamId;
+                    headerEndStream = (flags & FLAG_END_STREAM) != 0;
+                    headerBlock = ByteBuffer.allocate(Math.max(payload.remaining(), 256));
+                    headerBlock.put(payload);
+                    if ((flags & FLAG_END_HEADERS) != 0)
+                        endHeaders();
+                    break;
+                case TYPE_CONTINUATION:
+                    if (streamId == 0 || streamId != headerStreamId)
+                        throw new ProtocolException("Unexpected CONTINUATION frame");
+                    if (headerBlock.remaining() < payload.remaining()) {
+                        int needed = headerBlock.position() + payload.remaining();
+                        if (needed > MAX_HEADER_BLOCK_SIZE)
+                            throw new ProtocolException("Header block too large");
+                        ByteBuffer bb = ByteBuffer.allocate(
+                            Math.min(Math.max(needed, 2 * headerBlock.capacity()),
+                                     MAX_HEADER_BLOCK_SIZE));
+                        headerBlock.flip();
+                        bb.put(headerBlock);
+                        headerBlock = bb;
+                    }
+                    headerBlock.put(payload);
+                    if ((flags & FLAG_END_HEADERS) != 0)
+                        endHeaders();
+                    break;
+                case TYPE_RST_STREAM:
+                    if (streamId == 0 || payload.remaining() != 4)
+                        throw new ProtocolException("Invalid RST_STREAM frame");
+                    reset(streamId, payload.getInt());
+                    break;
+                case TYPE_SETTINGS:
+                    settings(flags, streamId, payload);
+                    break;
+                case TYPE_PUSH_PROMISE:
+                    throw new ProtocolException("Server push was not enabled");
+                case TYPE_PING:
+                    if (streamId != 0 || payload.remaining() != 8)
+                        throw new ProtocolException("Invalid PING frame");
+                    if ((flags & FLAG_ACK) == 0) {
+                        synchronized (pool) {
+                            queueFrame(TYPE_PING, FLAG_ACK, 0, 8, payload.getLong());
+                        }
+                    }
+                    break;
+                case TYPE_GOAWAY:
+                    if (streamId != 0 || payload.remaining() < 8)
+                        throw new ProtocolException("Invalid GOAWAY frame");
+                    goAway(payload.getInt() & 0x7fffffff);
+                    break;
+                case TYPE_WINDOW_UPDATE:
+                    if (payload.remaining() != 4)
+                        throw new ProtocolException("Invalid WINDOW_UPDATE frame");
+                    windowUpdate(streamId, payload.getInt() & 0x7fffffff);
+                    break;
+                default:
+                    // PRIORITY and unknown frame types are ignored
+                    break;
+            }
+        }
+
+        private void unpad(ByteBuffer payload) throws ProtocolException {
+            if (!payload.hasRemaining())
+                throw new ProtocolException("Invalid padding");
+            int padLength = payload.get() & 0xff;
+            if (padLength > payload.remaining())
+                throw new ProtocolException("Invalid padding");
+            payload.limit(payload.limit() - padLength);
+        }
+
+        private void data(int flags, int streamId, ByteBuffer payload)
+            throws IOException
+        {
+            if (streamId == 0)
+                throw new ProtocolException("DATA frame on stream 0");
+            // padding counts against the flow control windows
+            int length = payload.remaining();
+            if ((flags & FLAG_PADDED) != 0)
+                unpad(payload);
+            Stream s;
+            synchronized (pool) {
+                s = streams.get(streamId);
+                recvUnacked += length;
+                if (recvUnacked >= CONNECTION_WINDOW_SIZE / 2) {
+                    queueFrame(TYPE_WINDOW_UPDATE, 0, 0, 4, recvUnacked);
+                    recvUnacked = 0;
+                }
+            }
+            if (s == null)
+                return;                 // a stream that was reset
+            if (!s.responseStarted())
+                throw new ProtocolException("DATA frame before HEADERS");
+            if (payload.hasRemaining()) {
+                if (s.ex.handler != null) {
+                    s.ex.handler.onData(payload.asReadOnlyBuffer());
+                } else {
+                    s.append(payload);
+                }
+            }
+            if ((flags & FLAG_END_STREAM) != 0) {
+                complete(s);
+                return;
+            }
+            s.recvUnacked += length;
+            if (s.recvUnacked >= STREAM_WINDOW_SIZE / 2) {
+                synchronized (pool) {
+                    queueFrame(TYPE_WINDOW_UPDATE, 0, s.id, 4, s.recvUnacked);
+                }
+                s.recvUnacked = 0;
+            }
+        }
+
+        /**
+         * Decodes a complete header block; a block is decoded even if its
+         * stream was reset so that the decoder's table stays in step.
+         */
+        private void endHeaders() throws IOException {
+            List<String> fields = new ArrayList<>();
+            headerBlock.flip();
+            decoder.decode(headerBlock, fields);
+            headerBlock = null;
+            int streamId = headerStreamId;
+            headerStreamId = 0;
+            Stream s;
+            synchronized (pool) {
+                s = streams.get(streamId);
+            }
+            if (s == null)
+                return;
+            if (!s.responseStarted()) {
+                int status = 0;
+                Map<String,List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 0; i < fields.size(); i += 2) {
+                    String name = fields.get(i);
+                    String value = fields.get(i + 1);
+                    if (name.equals(":status")) {
+                        try {
+                            status = Integer.parseInt(value);
+                        } catch (NumberFormatException x) {
+                            throw new ProtocolException("Invalid :status: " + value);
+                        }
+                    } else if (!name.startsWith(":")) {
+                        map.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+                    }
+                }
+                if (status < 100 || status > 999)
+                    throw new ProtocolException("Missing or invalid :status");
+                if (status < 200) {
+                    if (headerEndStream)
+                        throw new ProtocolException("Interim response ends stream");
+                    return;             // an interim response is skipped
+                }
+                s.statusCode = status;
+                s.headers = map;
+            } else {
+                if (!headerEndStream)
+                    throw new ProtocolException("Trailers do not end stream");
+                for (int i = 0; i < fields.size(); i += 2) {
+                    String name = fields.get(i);
+                    if (!name.startsWith(":")) {
+                        s.headers.computeIfAbsent(name, k -> new ArrayList<>(1))
+                                 .add(fields.get(i + 1));
+                    }
+                }
+            }
+            if (headerEndStream)
+                complete(s);
+        }
+
+        private void complete(Stream s) {
+            synchronized (pool) {
+                streams.remove(s.id);
+                if (s.data != null) {
+                    // the server responded before reading all of the body
+                    s.data = null;
+                    queueFrame(TYPE_RST_STREAM, 0, s.id, 4, CANCEL);
+                }
+                streamsClosed++;
+                if (isIdle())
+                    idleSince = System.nanoTime();
+            }
+            Response response = new Response(s.statusCode, "",
+                Collections.unmodifiableMap(s.headers),
+                (s.body == null) ? ByteBuffer.allocate(0) : (ByteBuffer)s.body.flip());
+            pool.completed();
+            s.ex.future.complete(response);
+            pool.streamClosed(this);
+        }
+
+        private void reset(int streamId, int errorCode) {
+            Stream s;
+            synchronized (pool) {
+                s = streams.remove(streamId);
+                if (s == null)
+                    return;
+                s.data = null;
+                streamsClosed++;
+                if (isIdle())
+                    idleSince = System.nanoTime();
+            }
+            // a refused stream was not processed and may be retried
+            if (errorCode == REFUSED_STREAM && !s.ex.retried) {
+                s.ex.retried = true;
+                pool.submitStream(s.ex);
+            } else {
+                pool.failed();
+                s.ex.future.completeExceptionally(new IOException(
+                    "Stream reset by server, error code " + errorCode));
+            }
+            pool.streamClosed(this);
+        }
+
+        private void settings(int flags, int streamId, ByteBuffer payload)
+            throws ProtocolException
+        {
+            if (streamId != 0)
+                throw new ProtocolException("SETTINGS frame on stream " + streamId);
+            if ((flags & FLAG_ACK) != 0) {
+                if (payload.hasRemaining())
+                    throw new ProtocolException("Invalid SETTINGS acknowledgement");
+                return;
+            }
+            if (payload.remaining() % 6 != 0)
+                throw new ProtocolException("Invalid SETTINGS frame");
+            synchronized (pool) {
+                if (!settingsReceived) {
+                    settingsReceived = true;
+                    maxStreams = Integer.MAX_VALUE;
+                }
+                while (payload.hasRemaining()) {
+                    int id = payload.getShort() & 0xffff;
+                    long value = payload.getInt() & 0xffffffffL;
+                    switch (id) {
+                        case SETTINGS_MAX_CONCURRENT_STREAMS:
+                            maxStreams = (int)Math.min(value, Integer.MAX_VALUE);
+                            break;
+                        case SETTINGS_INITIAL_WINDOW_SIZE:
+                            if (value > MAX_WINDOW_SIZE)
+                                throw new ProtocolException("Invalid initial window size");
+                            long delta = value - peerInitialWindow;
+                            for (Stream s: streams.values()) {
+                                s.sendWindow += delta;
+                                if (s.sendWindow > MAX_WINDOW_SIZE)
+                                    throw new ProtocolException("Flow control window overflow");
+                            }
+                            peerInitialWindow = (int)value;
+                            break;
+                        case SETTINGS_MAX_FRAME_SIZE:
+                            if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xffffff)
+                                throw new ProtocolException("Invalid maximum frame size");
+                            peerMaxFrameSize = (int)value;
+                            break;
+                        default:
+                            // the encoder does not use the dynamic table, so
+                            // the header table size does not matter
+                            break;
+                    }
+                }
+                queueFrame(TYPE_SETTINGS, FLAG_ACK, 0, 0, 0L);
+                for (Stream s: streams.values())
+                    sendData(s);
+            }
+        }
+
+        private void windowUpdate(int streamId, int increment)
+            throws ProtocolException
+        {
+            synchronized (pool) {
+                if (streamId == 0) {
+                    if (increment == 0 || sendWindow + increment > MAX_WINDOW_SIZE)
+                        throw new ProtocolException("Invalid WINDOW_UPDATE frame");
+                    sendWindow += increment;
+                    for (Stream s: streams.values())
+                        sendData(s);
+                } else {
+                    Stream s = streams.get(streamId);
+                    if (s != null) {
+                        if (increment == 0 || s.sendWindow + increment > MAX_WINDOW_SIZE)
+                            throw new ProtocolException("Invalid WINDOW_UPDATE frame");
+                        s.sendWindow += increment;
+                        sendData(s);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stops opening streams; the streams that the server will not
+         * process are retried on another connection. A retry is only
+         * charged to an exchange if the server processed no stream at all,
+         * as otherwise each connection makes progress.
+         */
+        private void goAway(int lastStreamId) {
+            List<Stream> unprocessed = new ArrayList<>();
+            synchronized (pool) {
+                closing = true;
+                for (Stream s: streams.values()) {
+                    if (s.id > lastStreamId)
+                        unprocessed.add(s);
+                }
+                for (Stream s: unprocessed) {
+                    streams.remove(s.id);
+                    s.data = null;
+                }
+            }
+            for (Stream s: unprocessed) {
+                if (lastStreamId > 0 || !s.ex.retried) {
+                    if (lastStreamId == 0)
+                        s.ex.retried = true;
+                    pool.submitStream(s.ex);
+                } else {
+                    pool.failed();
+                    s.ex.future.completeExceptionally(
+                        new IOException("Request not processed by server"));
+                }
+            }
+            pool.streamClosed(this);
+        }
+
+        /**
+         * Closes a connection that has no streams.
+         */
+        void shutdown() {
+            synchronized (pool) {
+                failed = true;
+                output.clear();
+            }
+            closeQuietly(ch);
+        }
+
+        /**
+         * Fails or retries all streams of this connection.
+         */
+        void fail(Throwable exc) {
+            List<Stream> active;
+            List<Exchange> unsent;
+            synchronized (pool) {
+                if (failed)
+                    return;
+                failed = true;
+                active = new ArrayList<>(streams.values());
+                streams.clear();
+                unsent = new ArrayList<>(pending);
+                pending.clear();
+                output.clear();
+            }
+            if (!(exc instanceof IOException))
+                exc = new IOException(exc);
+            pool.failed(this, exc, active, unsent);
+        }
+    }
+}
@@ -301,6 +301,91 @@ public abstract class AsynchronousFileChannel
         return open(file, set, null, NO_ATTRIBUTES);
     }
 
+    /**
+     * Opens or creates a file, returning an asynchronous file channel that
+     * services its operations in batches from a fixed number of submitter
+     * threads.
+     *
+     * <p> The channel returned by the {@link #open(Path,Set,ExecutorService,
+     * FileAttribute[]) open} methods may dedicate a thread to each read or
+     * write that is outstanding. The channel returned by this method instead
+     * places each operation on a submission queue. Each of the {@code
+     * submitters} threads repeatedly removes all queued operations (up to an
+     * implementation specific limit), performs them in ascending order of file
+     * position, and then dispatches their completions as a single batch. An
+     * application may therefore keep a large number of reads or writes
+     * outstanding on a small number of threads.
+     *
+     * <p> The file is opened as if by invoking the {@link
+     * FileChannel#open(Path,Set,FileAttribute[]) FileChannel.open} method with
+     * the given options and attributes. The {@link StandardOpenOption#APPEND
+     * APPEND} option is not allowed.
+     *
+     * <p> The {@code executor} parameter is the {@link ExecutorService} to which
+     * a task is submitted for each batch of completions. If {@code executor} is
+     * {@code null} then completion handlers are invoked directly by the
+     * submitter threads, and so should complete quickly and should not block.
+     * The submitter threads are daemon threads; they terminate when the channel
+     * is closed.
+     *
+     * <p> Operations that are outstanding when the channel is closed complete
+     * by failing with {@link AsynchronousCloseException}. An operation that
+     * acquires a lock occupies its submitter thread until the lock is acquired.
+     *
+     * @param   file
+     *          The path of the file to open or create
+     * @param   options
+     *          Options specifying how the file is opened
+     * @param   submitters
+     *          The number of submitter threads, must be positive
+     * @param   executor
+     *          The executor to which completions are dispatched, or {@code
+     *          null} to invoke completion handlers on the submitter threads
+     * @param   attrs
+     *          An optional list of file attributes to set atomically when
+     *          creating the file
+     *
+     * @return  A new asynchronous file channel
+     *
+     * @throws  IllegalArgumentException
+     *          If {@code submitters} is not positive or the set contains an
+     *          invalid combination of options
+     * @throws  UnsupportedOperationException
+     *          If the {@code file} is associated with a provider that does not
+     *          support creating file channels, or an unsupported open option is
+     *          specified, or the array contains an attribute that cannot be set
+     *          atomically when creating the file
+     * @throws  IOException
+     *          If an I/O error occurs
+     * @throws  SecurityException
+     *          If a security manager is installed and it denies an
+     *          unspecified permission required by the implementation.
+     *          In the case of the default provider, the {@link
+     *          SecurityManager#checkRead(String)} method is invoked to check
+     *          read access if the file is opened for reading. The {@link
+     *          SecurityManager#checkWrite(String)} method is invoked to check
+     *          write access if the file is opened for writing
+     *
+     * @since 1.8
+     */
+    public static AsynchronousFileChannel openBatched(Path file,
+                                                      Set<? extends OpenOption> options,
+                                                      int submitters,
+                                                      ExecutorService executor,
+                                                      FileAttribute<?>... attrs)
+        throws IOException
+    {
+        if (submitters <= 0)
+            throw new IllegalArgumentException("'submitters' must be positive");
+        if (options.contains(StandardOpenOption.APPEND))
+            throw new UnsupportedOperationException("APPEND not allowed");
+        boolean writing = options.contains(StandardOpenOption.WRITE);
+        boolean reading = options.contains(StandardOpenOption.READ) || !writing;
+        FileChannel fc = FileChannel.open(file, options, attrs);
+        return new BatchedAsynchronousFileChannel(fc, reading, writing,
+                                                  submitters, executor);
+    }
+
     /**
      * Returns the current size of this channel's file.
      *
@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.channels;
+
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An {@link AsynchronousFileChannel} that services its operations from a
+ * submission queue drained in batches by a small, fixed number of submitter
+ * threads, rather than dedicating a thread to each outstanding operation.
+ *
+ * <p> Each submitter thread takes all of the requests that are queued at the
+ * time it wakes up (up to the batch size), orders them by file position and
+ * performs them with positional reads and writes on the underlying {@link
+ * FileChannel}. The completions of a batch are then delivered together, either
+ * by a single task submitted to the channel's executor or, if the channel was
+ * created without an executor, directly by the submitter thread.
+ *
+ * @see AsynchronousFileChannel#openBatched
+ */
+
+class BatchedAsynchronousFileChannel
+    extends AsynchronousFileChannel
+{
+    // maximum number of requests taken off the queue by one submitter wakeup
+    private static final int MAX_BATCH = 64;
+
+    // request kinds
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int LOCK = 2;
+    private static final int SHUTDOWN = 3;
+
+    // orders a batch by file position so that the device sees ascending offsets
+    private static final Comparator<Request> BY_POSITION =
+        new Comparator<Request>() {
+            public int compare(Request r1, Request r2) {
+                return Long.compare(r1.position, r2.position);
+            }
+        };
+
+    private final FileChannel fc;
+    private final boolean reading;
+    private final boolean writing;
+    private final ExecutorService executor;
+    private final BlockingQueue<Request> queue;
+    private final Thread[] submitters;
+    private final Object closeLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * A queued operation. A request completes either through its handler or,
+     * when no handler was given, through its future.
+     */
+    private static final class Request {
+        final int kind;
+        final ByteBuffer buffer;
+        final long position;
+        final long size;
+        final boolean shared;
+        final Object attachment;
+        final CompletionHandler<Object,Object> handler;
+        final CompletableFuture<Object> future;
+
+        // set by the submitter thread
+        Object result;
+        Throwable exc;
+
+        @SuppressWarnings("unchecked")
+        Request(int kind, ByteBuffer buffer, long position, long size,
+                boolean shared, Object attachment,
+                CompletionHandler<?,?> handler)
+        {
+            this.kind = kind;
+            this.buffer = buffer;
+            this.position = position;
+            this.size = size;
+            this.shared = shared;
+            this.attachment = attachment;
+            this.handler = (CompletionHandler<Object,Object>)handler;
+            this.future = (handler == null) ? new CompletableFuture<Object>() : null;
+        }
+
+        boolean isCancelled() {
+            return future != null && future.isCancelled();
+        }
+
+        void complete() {
+            if (handler != null) {
+                if (exc == null) {
+                    handler.completed(result, attachment);
+                } else {
+                    handler.failed(exc, attachment);
+                }
+            } else {
+                if (exc == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(exc);
+                }
+            }
+        }
+    }
+
+    BatchedAsynchronousFileChannel(FileChannel fc,
+                                   boolean reading,
+                                   boolean writing,
+                                   int nSubmitters,
+                                   ExecutorService executor)
+    {
+        this.fc = fc;
+        this.reading = reading;
+        this.writing = writing;
+        this.executor = executor;
+        this.queue = new LinkedBlockingQueue<Request>();
+        this.submitters = new Thread[nSubmitters];
+        for (int i = 0; i < nSubmitters; i++) {
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    submitLoop();
+                }
+            }, "AsynchronousFileChannel-submitter-" + i);
+            t.setDaemon(true);
+            submitters[i] = t;
+        }
+        for (Thread t: submitters)
+            t.start();
+    }
+
+    private void submitLoop() {
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        for (;;) {
+            Request first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException x) {
+                // only interrupted when the channel is closed
+                if (closed)
+                    return;
+                continue;
+            }
+            if (first.kind == SHUTDOWN)
+                return;
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            // this submitter consumes one drained shutdown request and puts
+            // back any others so that each of them still stops one submitter
+            boolean shutdown = false;
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                if (batch.get(i).kind == SHUTDOWN) {
+                    Request r = batch.remove(i);
+                    if (shutdown) {
+                        queue.add(r);
+                    } else {
+                        shutdown = true;
+                    }
+                }
+            }
+            if (batch.size() > 1)
+                Collections.sort(batch, BY_POSITION);
+
+            for (Request r: batch)
+                perform(r);
+            deliver(batch);
+            batch = new ArrayList<>(MAX_BATCH);
+            if (shutdown)
+                return;
+        }
+    }
+
+    private void perform(Request r) {
+        if (r.isCancelled())
+            return;
+        if (closed) {
+            r.exc = new AsynchronousCloseException();
+            return;
+        }
+        try {
+            switch (r.kind) {
+                case READ  : r.result = fc.read(r.buffer, r.position); break;
+                case WRITE : r.result = fc.write(r.buffer, r.position); break;
+                case LOCK  : r.result = wrap(fc.lock(r.position, r.size, r.shared)); break;
+                default    : throw new AssertionError();
+            }
+        } catch (ClosedChannelException x) {
+            r.exc = new AsynchronousCloseException();
+        } catch (IOException | RuntimeException x) {
+            r.exc = x;
+        }
+    }
+
+    private void deliver(final List<Request> batch) {
+        if (executor != null) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        completeAll(batch);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException x) {
+                // executor has been shut down; fall through and complete
+                // the batch on this thread so that no result is lost
+            }
+        }
+        completeAll(batch);
+    }
+
+    private static void completeAll(List<Request> batch) {
+        for (Request r: batch) {
+            try {
+                r.complete();
+            } catch (Throwable ignore) {
+                // a failing handler must not prevent delivery to the others
+            }
+        }
+    }
+
+    private Future<?> submit(Request r) {
+        synchronized (closeLock) {
+            if (!closed) {
+                queue.add(r);
+                return r.future;
+            }
+        }
+        // fail the request without holding the lock, as the handler may
+        // take a while or call back into this channel
+        r.exc = new ClosedChannelException();
+        deliver(Collections.singletonList(r));
+        return r.future;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (closeLock) {
+            if (closed)
+                return;
+            closed = true;
+            for (int i = 0; i < submitters.length; i++)
+                queue.add(new Request(SHUTDOWN, null, 0L, 0L, false, null, null));
+        }
+        fc.close();
+
+        // fail any requests that the submitters did not get to
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int i = remaining.size() - 1; i >= 0; i--) {
+            if (remaining.get(i).kind == SHUTDOWN) {
+                queue.add(remaining.remove(i));
+            } else {
+                remaining.get(i).exc = new AsynchronousCloseException();
+            }
+        }
+        if (!remaining.isEmpty())
+            deliver(remaining);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return fc.size();
+    }
+
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        if (size < 0L)
+            throw new IllegalArgumentException("Negative size");
+        if (!writing)
+            throw new NonWritableChannelException();
+        fc.truncate(size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        fc.force(metaData);
+    }
+
+    /**
+     * A lock acquired through the wrapped file channel, presented as
+     * acquired by this channel as the AsynchronousFileChannel.lock
+     * contract requires.
+     */
+    private static final class BatchedFileLock extends FileLock {
+        private final FileLock lock;
+
+        BatchedFileLock(AsynchronousFileChannel channel, FileLock lock) {
+            super(channel, lock.position(), lock.size(), lock.isShared());
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean isValid() {
+            return lock.isValid();
+        }
+
+        @Override
+        public void release() throws IOException {
+            lock.release();
+        }
+    }
+
+    private FileLock wrap(FileLock lock) {
+        return (lock == null) ? null : new BatchedFileLock(this, lock);
+    }
+
+    private static void checkLockArgs(long position, long size) {
+        if (position < 0 || size < 0)
+            throw new IllegalArgumentException("Negative position or size");
+        if (position + size < 0)
+            throw new IllegalArgumentException("Negative position + size");
+    }
+
+    @Override
+    public <A> void lock(long position,
+                         long size,
+                         boolean shared,
+                         A attachment,
+                         CompletionHandler<FileLock,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        checkLockArgs(position, size);
+        if (shared && !reading)
+            throw new NonReadableChannelException();
+        if (!shared && !writing)
+            throw new NonWritableChannelException();
+        submit(new Request(LOCK, null, position, size, shared, attachment, handler));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        checkLockArgs(position, size);
+        if (shared && !reading)
+            throw new NonReadableChannelException();
+        if (!shared && !writing)
+            throw new NonWritableChannelException();
+        return (Future<FileLock>)
+            submit(new Request(LOCK, null, position, size, shared, null, null));
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared)
+        throws IOException
+    {
+        checkLockArgs(position, size);
+        if (shared && !reading)
+            throw new NonReadableChannelException();
+        if (!shared && !writing)
+            throw new NonWritableChannelException();
+        return wrap(fc.tryLock(position, size, shared));
+    }
+
+    private void checkRead(ByteBuffer dst, long position) {
+        if (dst == null)
+            throw new NullPointerException();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+        if (!reading)
+            throw new NonReadableChannelException();
+    }
+
+    private void checkWrite(ByteBuffer src, long position) {
+        if (src == null)
+            throw new NullPointerException();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (!writing)
+            throw new NonWritableChannelException();
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst,
+                         long position,
+                         A attachment,
+                         CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        checkRead(dst, position);
+        submit(new Request(READ, dst, position, 0L, false, attachment, handler));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        checkRead(dst, position);
+        return (Future<Integer>)
+            submit(new Request(READ, dst, position, 0L, false, null, null));
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src,
+                          long position,
+                          A attachment,
+                          CompletionHandler<Integer,? super A> handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("'handler' is null");
+        checkWrite(src, position);
+        submit(new Request(WRITE, src, position, 0L, false, attachment, handler));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Future<Integer> write(ByteBuffer src, long position) {
+        checkWrite(src, position);
+        return (Future<Integer>)
+            submit(new Request(WRITE, src, position, 0L, false, null, null));
+    }
+}
@@ -33,6 +33,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
@@ -373,6 +374,20 @@ public final class Channels {
             int totalRead = 0;
             int bytesRead = 0;
             synchronized (readLock) {
+                if (dst.hasArray()) {
+                    // read straight into the backing array, no copy needed
+                    int pos = dst.position();
+                    try {
+                        begin();
+                        bytesRead = in.read(dst.array(),
+                                            dst.arrayOffset() + pos, len);
+                    } finally {
+                        end(bytesRead > 0);
+                    }
+                    if (bytesRead > 0)
+                        dst.position(pos + bytesRead);
+                    return bytesRead;
+                }
                 while (totalRead < len) {
                     int bytesToRead = Math.min((len - totalRead),
                                                TRANSFER_SIZE);
@@ -447,6 +462,18 @@ public final class Channels {
             int len = src.remaining();
             int totalWritten = 0;
             synchronized (writeLock) {
+                if (src.hasArray()) {
+                    // write straight from the backing array, no copy needed
+                    int pos = src.position();
+                    try {
+                        begin();
+                        out.write(src.array(), src.arrayOffset() + pos, len);
+                    } finally {
+                        end(len > 0);
+                    }
+                    src.position(pos + len);
+                    return len;
+                }
                 while (totalWritten < len) {
                     int bytesToWrite = Math.min((len - totalWritten),
                                                 TRANSFER_SIZE);
@@ -612,4 +639,222 @@ public final class Channels {
         checkNotNull(csName, "csName");
         return newWriter(ch, Charset.forName(csName).newEncoder(), -1);
     }
+
+
+    // -- Transfers between channels --
+
+    // Size of the direct buffer used to copy between arbitrary channels
+    private static final int BULK_TRANSFER_SIZE = 64 * 1024;
+
+    // Regions of a file channel at least this large are copied to an
+    // arbitrary channel through a mapping rather than through a buffer
+    private static final long MAPPED_TRANSFER_THRESHOLD = 256L * 1024L;
+
+    // Maximum size of each mapping used by a mapped transfer
+    private static final long MAPPED_TRANSFER_SIZE = 8L * 1024L * 1024L;
+
+    // Maximum number of buffers passed to a single gathering write
+    private static final int MAX_GATHER = 1024;
+
+    /**
+     * Throws IllegalBlockingModeException if the given channel is selectable
+     * and configured non-blocking.
+     */
+    private static void checkBlocking(Channel ch) {
+        if (ch instanceof SelectableChannel &&
+            !((SelectableChannel)ch).isBlocking())
+            throw new IllegalBlockingModeException();
+    }
+
+    /**
+     * Transfers all remaining bytes from the given readable channel to the
+     * given writable channel.
+     *
+     * <p> This method reads bytes from {@code src} until end-of-stream is
+     * reached and writes each of them to {@code dst}. The copy strategy is
+     * chosen from the types of the two channels so that, where possible, bytes
+     * are not copied through the Java heap:
+     *
+     * <ul>
+     *   <li><p> If {@code src} is a {@link FileChannel} and {@code dst} is a
+     *   {@code FileChannel} or a {@link SelectableChannel} such as a {@link
+     *   SocketChannel} then the bytes are transferred by the source channel's
+     *   {@link FileChannel#transferTo transferTo} method, which many operating
+     *   systems implement without copying the bytes into user space. </p></li>
+     *
+     *   <li><p> If {@code src} is a {@code FileChannel} and {@code dst} is some
+     *   other kind of channel then regions of the file are mapped into memory
+     *   and written directly from the mapping. Small files are copied as
+     *   described below. </p></li>
+     *
+     *   <li><p> Otherwise the bytes are copied through a temporary direct
+     *   buffer. </p></li>
+     * </ul>
+     *
+     * <p> Bytes are read from the source channel starting at its current
+     * position, if it has one, and the position is updated to reflect the
+     * number of bytes transferred. Bytes are written to the target channel as
+     * if by its {@link WritableByteChannel#write write} method.
+     *
+     * <p> Neither channel is closed by this method. If an I/O error occurs then
+     * some bytes may have been transferred.
+     *
+     * @param  src
+     *         The channel from which bytes are to be read
+     * @param  dst
+     *         The channel to which bytes are to be written
+     *
+     * @return  The number of bytes transferred
+     *
+     * @throws  IllegalBlockingModeException
+     *          If either channel is selectable and configured non-blocking
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @since 1.8
+     */
+    public static long transfer(ReadableByteChannel src,
+                                WritableByteChannel dst)
+        throws IOException
+    {
+        checkNotNull(src, "src");
+        checkNotNull(dst, "dst");
+        checkBlocking(src);
+        checkBlocking(dst);
+        if (src instanceof FileChannel) {
+            FileChannel fc = (FileChannel)src;
+            long position = fc.position();
+            long count = fc.size() - position;
+            if (dst instanceof FileChannel || dst instanceof SelectableChannel)
+                return transferFromFile(fc, position, count, dst);
+            if (count >= MAPPED_TRANSFER_THRESHOLD)
+                return transferMapped(fc, position, count, dst);
+        }
+        return transferBuffered(src, dst);
+    }
+
+    /**
+     * Transfers count bytes from the given position in a file channel using
+     * the channel's transferTo method, then updates the channel's position.
+     */
+    private static long transferFromFile(FileChannel fc, long position,
+                                         long count, WritableByteChannel dst)
+        throws IOException
+    {
+        long transferred = 0L;
+        try {
+            while (transferred < count) {
+                long n = fc.transferTo(position + transferred,
+                                       count - transferred, dst);
+                if (n <= 0)
+                    break;      // file truncated concurrently
+                transferred += n;
+            }
+        } finally {
+            fc.position(position + transferred);
+        }
+        return transferred;
+    }
+
+    /**
+     * Transfers count bytes from the given position in a file channel by
+     * writing successive read-only mappings of the file, then updates the
+     * channel's position.
+     */
+    private static long transferMapped(FileChannel fc, long position,
+                                       long count, WritableByteChannel dst)
+        throws IOException
+    {
+        long transferred = 0L;
+        try {
+            while (transferred < count) {
+                long size = Math.min(count - transferred, MAPPED_TRANSFER_SIZE);
+                MappedByteBuffer mbb =
+                    fc.map(FileChannel.MapMode.READ_ONLY,
+                           position + transferred, size);
+                try {
+                    writeFullyImpl(dst, mbb);
+                } finally {
+                    sun.misc.Cleaner cl = ((sun.nio.ch.DirectBuffer)mbb).cleaner();
+                    if (cl != null)
+                        cl.clean();
+                }
+                transferred += size;
+            }
+        } finally {
+            fc.position(position + transferred);
+        }
+        return transferred;
+    }
+
+    /**
+     * Copies bytes from src to dst through a temporary direct buffer.
+     */
+    private static long transferBuffered(ReadableByteChannel src,
+                                         WritableByteChannel dst)
+        throws IOException
+    {
+        ByteBuffer bb =
+            sun.nio.ch.Util.getTemporaryDirectBuffer(BULK_TRANSFER_SIZE);
+        try {
+            long transferred = 0L;
+            for (;;) {
+                int n = src.read(bb);
+                if (n < 0)
+                    break;
+                bb.flip();
+                writeFullyImpl(dst, bb);
+                bb.clear();
+                transferred += n;
+            }
+            return transferred;
+        } finally {
+            sun.nio.ch.Util.releaseTemporaryDirectBuffer(bb);
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of the given buffers to the given channel.
+     *
+     * <p> The buffers are written by repeated invocations of the channel's
+     * {@link GatheringByteChannel#write(ByteBuffer[],int,int) gathering write}
+     * method, so that a sequence of many small buffers is normally written by
+     * a small number of system calls. Each invocation is passed only the
+     * buffers that still have bytes remaining. Upon return every buffer has no
+     * remaining bytes.
+     *
+     * @param  ch
+     *         The channel to which bytes are to be written
+     * @param  srcs
+     *         The buffers from which bytes are to be retrieved
+     *
+     * @return  The number of bytes written
+     *
+     * @throws  IllegalBlockingModeException
+     *          If the channel is selectable and configured non-blocking
+     * @throws  IOException
+     *          If an I/O error occurs
+     *
+     * @since 1.8
+     */
+    public static long write(GatheringByteChannel ch, ByteBuffer[] srcs)
+        throws IOException
+    {
+        checkNotNull(ch, "ch");
+        checkNotNull(srcs, "srcs");
+        checkBlocking(ch);
+        long written = 0L;
+        int offset = 0;
+        for (;;) {
+            while (offset < srcs.length && !srcs[offset].hasRemaining())
+                offset++;
+            if (offset == srcs.length)
+                return written;
+            int length = Math.min(srcs.length - offset, MAX_GATHER);
+            long n = ch.write(srcs, offset, length);
+            if (n <= 0)
+                throw new RuntimeException("no bytes written");
+            written += n;
+        }
+    }
 }
@@ -463,6 +463,180 @@ public abstract class DatagramChannel
     public abstract int send(ByteBuffer src, SocketAddress target)
         throws IOException;
 
+    /**
+     * Receives a batch of datagrams via this channel.
+     *
+     * <p> This method receives up to <tt>length</tt> datagrams. The
+     * <i>i</i>th datagram received is transferred into the buffer
+     * <tt>dsts[offset+</tt><i>i</i><tt>]</tt>, as if by the {@link
+     * #receive(ByteBuffer) receive} method, and its source address is stored
+     * in <tt>sources[offset+</tt><i>i</i><tt>]</tt>. The buffers and the
+     * array of source addresses may be reused from one invocation to the next,
+     * so that a loop that receives datagrams need not allocate new objects for
+     * each batch.
+     *
+     * <p> If this channel is in non-blocking mode then this method receives
+     * the datagrams that are immediately available, and returns zero if none
+     * are. If this channel is in blocking mode then this method blocks until
+     * at least one datagram is available. An implementation may then transfer
+     * further datagrams, but only those that are immediately available; the
+     * implementation in this class returns after receiving one datagram when
+     * the channel is in blocking mode.
+     *
+     * <p> An implementation may receive the whole batch with a single
+     * operation of the underlying operating system. The implementation in this
+     * class invokes the {@link #receive(ByteBuffer) receive} method for each
+     * datagram. </p>
+     *
+     * @param  dsts
+     *         The buffers into which datagrams are to be transferred
+     *
+     * @param  sources
+     *         The array into which the source addresses of the datagrams are
+     *         to be stored
+     *
+     * @param  offset
+     *         The offset within the arrays of the first buffer and source
+     *         address; must be non-negative
+     *
+     * @param  length
+     *         The maximum number of datagrams to be received; must be
+     *         non-negative and no larger than <tt>dsts.length</tt>&nbsp;-&nbsp;
+     *         <tt>offset</tt> and <tt>sources.length</tt>&nbsp;-&nbsp;
+     *         <tt>offset</tt>
+     *
+     * @return  The number of datagrams received, possibly zero
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the <tt>offset</tt> and
+     *          <tt>length</tt> parameters do not hold
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the read operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the read operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be accepted
+     *          from a datagram's sender
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 1.8
+     */
+    public int receive(ByteBuffer[] dsts, SocketAddress[] sources,
+                       int offset, int length)
+        throws IOException
+    {
+        if ((offset < 0) || (length < 0) ||
+            (offset > dsts.length - length) ||
+            (offset > sources.length - length))
+            throw new IndexOutOfBoundsException();
+        int n = 0;
+        while (n < length) {
+            SocketAddress sa = receive(dsts[offset + n]);
+            if (sa == null)
+                break;
+            sources[offset + n] = sa;
+            n++;
+            if (isBlocking())
+                break;
+        }
+        return n;
+    }
+
+    /**
+     * Sends a batch of datagrams via this channel.
+     *
+     * <p> This method sends up to <tt>length</tt> datagrams. The
+     * <i>i</i>th datagram is formed of the remaining bytes of the buffer
+     * <tt>srcs[offset+</tt><i>i</i><tt>]</tt> and is sent, as if by the {@link
+     * #send(ByteBuffer,SocketAddress) send} method, to the address
+     * <tt>targets[offset+</tt><i>i</i><tt>]</tt>.
+     *
+     * <p> If this channel is in blocking mode then all of the datagrams are
+     * sent. If this channel is in non-blocking mode then the datagrams are
+     * sent in order until there is insufficient room for a datagram in the
+     * underlying output buffer; the buffer of that datagram and of each of the
+     * following datagrams is not changed.
+     *
+     * <p> An implementation may send the whole batch with a single operation
+     * of the underlying operating system. The implementation in this class
+     * invokes the {@link #send(ByteBuffer,SocketAddress) send} method for each
+     * datagram. </p>
+     *
+     * @param  srcs
+     *         The buffers containing the datagrams to be sent
+     *
+     * @param  targets
+     *         The addresses to which the datagrams are to be sent
+     *
+     * @param  offset
+     *         The offset within the arrays of the first buffer and target
+     *         address; must be non-negative
+     *
+     * @param  length
+     *         The number of datagrams to be sent; must be non-negative and no
+     *         larger than <tt>srcs.length</tt>&nbsp;-&nbsp;<tt>offset</tt> and
+     *         <tt>targets.length</tt>&nbsp;-&nbsp;<tt>offset</tt>
+     *
+     * @return  The number of datagrams sent
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the <tt>offset</tt> and
+     *          <tt>length</tt> parameters do not hold
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the write operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the write operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be sent
+     *          to a given address
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 1.8
+     */
+    public int send(ByteBuffer[] srcs, SocketAddress[] targets,
+                    int offset, int length)
+        throws IOException
+    {
+        if ((offset < 0) || (length < 0) ||
+            (offset > srcs.length - length) ||
+            (offset > targets.length - length))
+            throw new IndexOutOfBoundsException();
+        int n = 0;
+        while (n < length) {
+            ByteBuffer src = srcs[offset + n];
+            if (send(src, targets[offset + n]) == 0 && src.hasRemaining())
+                break;
+            n++;
+        }
+        return n;
+    }
+
 
     // -- ByteChannel operations --
 
@@ -0,0 +1,734 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.file;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A {@link WatchService} that can watch a directory together with all of its
+ * subdirectories, and that coalesces the events reported for each registered
+ * directory over a time window.
+ *
+ * <p> A watch service of this type is layered on the watch service of a
+ * {@link FileSystem}. Directories are registered with it by invoking its
+ * {@link #register register} method rather than the {@link Path#register
+ * Path.register} method. When a directory is registered <em>recursively</em>
+ * then every subdirectory is registered with the underlying watch service, and
+ * directories that are created later are registered as they are detected.
+ * Files created in a new directory before it could be registered are reported
+ * as {@link StandardWatchEventKinds#ENTRY_CREATE ENTRY_CREATE} events. The
+ * {@link WatchEvent#context context} of each event is the path of the file
+ * relative to the registered directory, and so may have more than one name
+ * element when the directory is registered recursively.
+ *
+ * <p> A key is not signalled as soon as an event is detected. Instead, the
+ * events for the key are accumulated until the coalescing window, measured
+ * from the first accumulated event, has elapsed. While events accumulate,
+ * repeated events of the same kind for the same file are merged into a
+ * single event whose {@link WatchEvent#count count} is the total number of
+ * repetitions, and a modification of a file whose creation is pending is
+ * merged into the creation event. Events that are detected while a key is
+ * signalled continue to accumulate, and the key is signalled again after it is
+ * {@link WatchKey#reset reset}.
+ *
+ * <p> The number of events that are waiting to be retrieved, the number of
+ * events that were merged, and the number of {@link
+ * StandardWatchEventKinds#OVERFLOW OVERFLOW} events reported by the underlying
+ * watch service are available from the {@link #getQueueDepth}, {@link
+ * #getCoalescedCount} and {@link #getOverflowCount} methods.
+ *
+ * <p> A watch service of this type is safe for use by multiple concurrent
+ * consumers. Events are processed by a daemon thread that terminates when the
+ * watch service is closed.
+ *
+ * @since 1.8
+ */
+
+public final class CoalescingWatchService implements WatchService {
+    private final WatchService watcher;
+    private final long windowNanos;
+    private final Thread processor;
+
+    // keys that have been signalled and not yet retrieved
+    private final LinkedBlockingDeque<Key> signalled = new LinkedBlockingDeque<>();
+
+    // registered keys, and the directories that each underlying key watches
+    // on behalf of registered keys; the underlying watch service returns the
+    // same key when a directory is registered again, so a key may watch its
+    // directory for several owners. Only accessed while holding the lock on
+    // this object
+    private final Set<Key> keys = new HashSet<>();
+    private final Map<WatchKey,List<Directory>> directories = new HashMap<>();
+
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private volatile boolean closed;
+
+    // key signalled to wakeup consumers when the watch service is closed
+    private final Key closeKey = new Key(null, false, Collections.<WatchEvent.Kind<?>>emptySet());
+
+    /**
+     * A directory watched by the underlying watch service on behalf of a key.
+     */
+    private static class Directory {
+        final Key owner;
+        final Path dir;
+
+        Directory(Key owner, Path dir) {
+            this.owner = owner;
+            this.dir = dir;
+        }
+    }
+
+    /**
+     * An event that is accumulated by a key.
+     */
+    private static final class Event<T> implements WatchEvent<T> {
+        private final WatchEvent.Kind<T> kind;
+        private final T context;
+        private int count;
+
+        Event(WatchEvent.Kind<T> kind, T context, int count) {
+            this.kind = kind;
+            this.context = context;
+            this.count = count;
+        }
+
+        @Override
+        public WatchEvent.Kind<T> kind() {
+            return kind;
+        }
+
+        @Override
+        public T context() {
+            return context;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        void increment(int n) {
+            int c = count + n;
+            count = (c < 0) ? Integer.MAX_VALUE : c;
+        }
+    }
+
+    private static Map.Entry<WatchEvent.Kind<?>,Object> eventKey(WatchEvent.Kind<?> kind,
+                                                                 Object context)
+    {
+        return new AbstractMap.SimpleImmutableEntry<WatchEvent.Kind<?>,Object>(kind, context);
+    }
+
+    /**
+     * The key returned by {@link #register register}.
+     */
+    private final class Key implements WatchKey {
+        private final Path root;
+        private final boolean recursive;
+        private final Set<WatchEvent.Kind<?>> kinds;
+
+        // events accumulating, keyed by kind and context, in the order in
+        // which they were first detected
+        private final Map<Map.Entry<WatchEvent.Kind<?>,Object>,Event<?>> pending =
+            new LinkedHashMap<>();
+        private long firstPendingTime;
+
+        private boolean valid = true;
+        private boolean isSignalled;
+        private boolean isQueued;
+        private List<WatchEvent<?>> events = new ArrayList<>();
+
+        Key(Path root, boolean recursive, Set<WatchEvent.Kind<?>> kinds) {
+            this.root = root;
+            this.recursive = recursive;
+            this.kinds = kinds;
+        }
+
+        /**
+         * Accumulates an event, merging it with a pending event if possible.
+         */
+        @SuppressWarnings("unchecked")
+        synchronized void add(WatchEvent.Kind<?> kind, Object context, int count) {
+            if (!valid)
+                return;
+            if (kind != OVERFLOW) {
+                if (!kinds.contains(kind))
+                    return;
+                if (kind == ENTRY_MODIFY &&
+                    pending.containsKey(eventKey(ENTRY_CREATE, context)))
+                {
+                    coalescedCount.addAndGet(count);
+                    return;
+                }
+            }
+            Map.Entry<WatchEvent.Kind<?>,Object> k = eventKey(kind, context);
+            Event<?> ev = pending.get(k);
+            if (ev != null) {
+                ev.increment(count);
+                coalescedCount.addAndGet(count);
+                return;
+            }
+            if (pending.isEmpty())
+                firstPendingTime = System.nanoTime();
+            pending.put(k, new Event<Object>((WatchEvent.Kind<Object>)kind, context, count));
+        }
+
+        /**
+         * Returns the time at which the pending events are due, or
+         * {@code Long.MAX_VALUE} if there are no events pending or the key is
+         * signalled.
+         */
+        synchronized long dueTime() {
+            if (pending.isEmpty() || isSignalled)
+                return Long.MAX_VALUE;
+            return firstPendingTime + windowNanos;
+        }
+
+        /**
+         * Signals and queues this key if its pending events are due.
+         */
+        void signalIfDue(long now) {
+            synchronized (this) {
+                if (pending.isEmpty() || isSignalled)
+                    return;
+                if (now - firstPendingTime < windowNanos && valid)
+                    return;
+                events.addAll(pending.values());
+                pending.clear();
+                isSignalled = true;
+                isQueued = true;
+            }
+            signalled.offer(this);
+        }
+
+        /**
+         * Invalidates this key, signalling it so that the consumer is
+         * notified.
+         */
+        void invalidate() {
+            synchronized (this) {
+                if (!valid)
+                    return;
+                valid = false;
+                if (isSignalled)
+                    return;
+                isSignalled = true;
+                isQueued = true;
+            }
+            signalled.offer(this);
+        }
+
+        synchronized int queuedEvents() {
+            return pending.size() + (isQueued ? events.size() : 0);
+        }
+
+        synchronized void retrieved() {
+            isQueued = false;
+        }
+
+        @Override
+        public synchronized boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public synchronized List<WatchEvent<?>> pollEvents() {
+            List<WatchEvent<?>> result = events;
+            events = new ArrayList<>();
+            return result;
+        }
+
+        @Override
+        public boolean reset() {
+            synchronized (this) {
+                if (!valid)
+                    return false;
+                if (!isSignalled || isQueued)
+                    return true;
+                if (events.isEmpty()) {
+                    isSignalled = false;
+                } else {
+                    // events not retrieved so re-queue the key
+                    isQueued = true;
+                    signalled.offer(this);
+                    return true;
+                }
+            }
+            processor.interrupt();      // re-evaluate pending events
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            cancelKey(this);
+        }
+
+        @Override
+        public Path watchable() {
+            return root;
+        }
+    }
+
+    private CoalescingWatchService(WatchService watcher, long windowNanos) {
+        this.watcher = watcher;
+        this.windowNanos = windowNanos;
+        this.processor = new Thread(new Runnable() {
+            public void run() {
+                processEvents();
+            }
+        }, "FileSystemWatchService-coalescer");
+        this.processor.setDaemon(true);
+    }
+
+    /**
+     * Opens a coalescing watch service on the given file system.
+     *
+     * @param   fs
+     *          the file system whose watch service is to be used to watch
+     *          directories
+     * @param   window
+     *          the time, from the first event accumulated by a key, during
+     *          which further events are accumulated before the key is
+     *          signalled; may be zero
+     * @param   unit
+     *          the time unit of the {@code window} argument
+     *
+     * @return  a new watch service
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code window} is negative
+     * @throws  UnsupportedOperationException
+     *          if the file system does not support watching file system
+     *          objects for changes and events
+     * @throws  IOException
+     *          if an I/O error occurs
+     */
+    public static CoalescingWatchService newWatchService(FileSystem fs,
+                                                         long window,
+                                                         TimeUnit unit)
+        throws IOException
+    {
+        if (window < 0)
+            throw new IllegalArgumentException("'window' is negative");
+        CoalescingWatchService ws =
+            new CoalescingWatchService(fs.newWatchService(), unit.toNanos(window));
+        ws.processor.start();
+        return ws;
+    }
+
+    /**
+     * Registers a directory with this watch service.
+     *
+     * <p> The {@code events} parameter is the events to watch for, and may be
+     * any of {@link StandardWatchEventKinds#ENTRY_CREATE ENTRY_CREATE}, {@link
+     * StandardWatchEventKinds#ENTRY_DELETE ENTRY_DELETE} and {@link
+     * StandardWatchEventKinds#ENTRY_MODIFY ENTRY_MODIFY}. {@link
+     * StandardWatchEventKinds#OVERFLOW OVERFLOW} events are always reported.
+     *
+     * <p> When {@code recursive} is {@code true} then all subdirectories of
+     * the directory are registered, and new subdirectories are registered as
+     * they are created. Symbolic links are not followed. A subdirectory that
+     * cannot be registered, because access is denied for example, is not
+     * watched. Each registration of a directory, recursive or not, returns a
+     * new key.
+     *
+     * @param   dir
+     *          the directory to register
+     * @param   recursive
+     *          {@code true} to also watch all subdirectories of the directory
+     * @param   events
+     *          the events for which the directory should be registered
+     *
+     * @return  a key representing the registration
+     *
+     * @throws  UnsupportedOperationException
+     *          if an unsupported event is specified
+     * @throws  IllegalArgumentException
+     *          if no events are specified
+     * @throws  ClosedWatchServiceException
+     *          if this watch service is closed
+     * @throws  NotDirectoryException
+     *          if {@code dir} is not a directory
+     * @throws  IOException
+     *          if an I/O error occurs
+     * @throws  SecurityException
+     *          in the case of the default provider, if a security manager is
+     *          installed and its {@link SecurityManager#checkRead(String)
+     *          checkRead} method denies read access to a directory
+     */
+    public WatchKey register(Path dir,
+                             boolean recursive,
+                             WatchEvent.Kind<?>... events)
+        throws IOException
+    {
+        Objects.requireNonNull(dir);
+        Set<WatchEvent.Kind<?>> kinds = new HashSet<>();
+        for (WatchEvent.Kind<?> kind: events) {
+            if (kind == ENTRY_CREATE || kind == ENTRY_DELETE || kind == ENTRY_MODIFY) {
+                kinds.add(kind);
+            } else if (kind != OVERFLOW) {
+                if (kind == null)
+                    throw new NullPointerException("An element in event set is 'null'");
+                throw new UnsupportedOperationException(kind.name());
+            }
+        }
+        if (kinds.isEmpty())
+            throw new IllegalArgumentException("No events to register");
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+            throw new NotDirectoryException(dir.toString());
+
+        Key key = new Key(dir, recursive, kinds);
+        synchronized (this) {
+            if (closed)
+                throw new ClosedWatchServiceException();
+            keys.add(key);
+        }
+        try {
+            if (recursive) {
+                registerTree(key, dir, false);
+            } else {
+                registerDirectory(key, dir);
+            }
+        } catch (IOException | RuntimeException x) {
+            cancelKey(key);
+            throw x;
+        }
+        return key;
+    }
+
+    /**
+     * Registers a directory with the underlying watch service. Directory
+     * creation is always watched so that new subdirectories can be found.
+     * Returns false if the key has been cancelled.
+     *
+     * @throws  ClosedWatchServiceException if the watch service is closed
+     */
+    private synchronized boolean registerDirectory(Key key, Path dir)
+        throws IOException
+    {
+        if (!keys.contains(key)) {
+            if (closed)
+                throw new ClosedWatchServiceException();
+            return false;
+        }
+        WatchKey wk = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        List<Directory> owners = directories.get(wk);
+        if (owners == null) {
+            owners = new ArrayList<>(1);
+            directories.put(wk, owners);
+        }
+        for (Directory d: owners) {
+            if (d.owner == key)
+                return true;    // already watched for this key
+        }
+        owners.add(new Directory(key, dir));
+        return true;
+    }
+
+    /**
+     * Registers a directory and all of its subdirectories. If {@code
+     * synthesize} is true then a creation event is accumulated for each file
+     * found below the directory, since those files were created before their
+     * directory could be watched. The tree is walked without holding the lock
+     * on this object, which is only held to register each directory.
+     */
+    private void registerTree(final Key key, final Path top, final boolean synthesize)
+        throws IOException
+    {
+        assert !Thread.holdsLock(this);
+        Files.walkFileTree(top, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                throws IOException
+            {
+                try {
+                    if (!registerDirectory(key, dir))
+                        return FileVisitResult.TERMINATE;   // key cancelled
+                } catch (IOException | SecurityException x) {
+                    if (dir == top && !synthesize)
+                        throw x;
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (synthesize && dir != top)
+                    key.add(ENTRY_CREATE, key.root.relativize(dir), 1);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (synthesize)
+                    key.add(ENTRY_CREATE, key.root.relativize(file), 1);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc)
+                throws IOException
+            {
+                if (file == top && !synthesize)
+                    throw exc;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Cancels a key and the underlying keys of the directories it watches.
+     */
+    private synchronized void cancelKey(Key key) {
+        if (!keys.remove(key))
+            return;
+        removeDirectories(key);
+        synchronized (key) {
+            key.valid = false;
+        }
+    }
+
+    /**
+     * Removes a key from the directories it watches, cancelling the
+     * underlying keys that no other key shares.
+     */
+    private void removeDirectories(Key key) {
+        assert Thread.holdsLock(this);
+        Iterator<Map.Entry<WatchKey,List<Directory>>> it =
+            directories.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey,List<Directory>> e = it.next();
+            List<Directory> owners = e.getValue();
+            for (Iterator<Directory> i = owners.iterator(); i.hasNext(); ) {
+                if (i.next().owner == key)
+                    i.remove();
+            }
+            if (owners.isEmpty()) {
+                it.remove();
+                e.getKey().cancel();
+            }
+        }
+    }
+
+    /**
+     * Processes the events of one underlying key, delivering each event to
+     * every key that watches the directory. Subdirectories created in the
+     * directories of recursive keys are registered after the lock on this
+     * object is released, so that walking them does not block other threads.
+     */
+    private void processKey(WatchKey wk) {
+        // directories that may have been created, and the keys to watch them
+        List<Directory> created = new ArrayList<>();
+        synchronized (this) {
+            List<Directory> owners = directories.get(wk);
+            if (owners == null) {
+                wk.cancel();
+                return;
+            }
+            // copy as removing invalid keys below modifies the list
+            owners = new ArrayList<>(owners);
+            for (WatchEvent<?> ev: wk.pollEvents()) {
+                WatchEvent.Kind<?> kind = ev.kind();
+                if (kind == OVERFLOW)
+                    overflowCount.incrementAndGet();
+                for (Directory d: owners) {
+                    Key key = d.owner;
+                    if (kind == OVERFLOW) {
+                        key.add(OVERFLOW, null, ev.count());
+                        continue;
+                    }
+                    Path child = d.dir.resolve((Path)ev.context());
+                    key.add(kind, key.root.relativize(child), ev.count());
+                    if (kind == ENTRY_CREATE && key.recursive)
+                        created.add(new Directory(key, child));
+                }
+            }
+            if (!wk.reset()) {
+                directories.remove(wk);
+                for (Directory d: owners) {
+                    Key key = d.owner;
+                    if (d.dir.equals(key.root) && keys.remove(key)) {
+                        // registered directory no longer accessible
+                        removeDirectories(key);
+                        key.invalidate();
+                    }
+                }
+            }
+        }
+        for (Directory d: created) {
+            if (Files.isDirectory(d.dir, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    registerTree(d.owner, d.dir, true);
+                } catch (IOException | SecurityException x) {
+                    // directory deleted or not accessible, not watched
+                }
+            }
+        }
+    }
+
+    /**
+     * Signals the keys whose events are due and returns the number of
+     * nanoseconds until the next key is due.
+     */
+    private long signalDueKeys() {
+        List<Key> toCheck;
+        synchronized (this) {
+            toCheck = new ArrayList<>(keys);
+        }
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (Key key: toCheck) {
+            key.signalIfDue(now);
+            long due = key.dueTime();
+            if (due != Long.MAX_VALUE)
+                next = Math.min(next, Math.max(0L, due - now));
+        }
+        return next;
+    }
+
+    private void processEvents() {
+        long timeout = Long.MAX_VALUE;
+        while (!closed) {
+            try {
+                WatchKey wk = (timeout == Long.MAX_VALUE) ? watcher.take() :
+                    watcher.poll(timeout, TimeUnit.NANOSECONDS);
+                while (wk != null) {
+                    processKey(wk);
+                    wk = watcher.poll();
+                }
+            } catch (InterruptedException x) {
+                // key reset or watch service closed
+            } catch (ClosedWatchServiceException x) {
+                return;
+            }
+            timeout = signalDueKeys();
+        }
+    }
+
+    /**
+     * Returns the number of events that are accumulating or have been
+     * signalled and not yet retrieved from their keys.
+     *
+     * @return  the number of events waiting to be retrieved
+     */
+    public int getQueueDepth() {
+        List<Key> toCheck;
+        synchronized (this) {
+            toCheck = new ArrayList<>(keys);
+        }
+        long depth = 0L;
+        for (Key key: toCheck)
+            depth += key.queuedEvents();
+        return (int)Math.min(depth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of {@link StandardWatchEventKinds#OVERFLOW OVERFLOW}
+     * events reported by the underlying watch service since this watch
+     * service was opened.
+     *
+     * @return  the number of overflow events
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Returns the number of events that have been merged into other events
+     * since this watch service was opened.
+     *
+     * @return  the number of events merged
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private WatchKey checkKey(Key key) {
+        if (key == closeKey) {
+            // re-queue in case there are other threads blocked in take/poll
+            signalled.offer(key);
+            throw new ClosedWatchServiceException();
+        }
+        if (key != null)
+            key.retrieved();
+        return key;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new ClosedWatchServiceException();
+    }
+
+    @Override
+    public WatchKey poll() {
+        checkOpen();
+        return checkKey(signalled.poll());
+    }
+
+    @Override
+    public WatchKey poll(long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        checkOpen();
+        return checkKey(signalled.poll(timeout, unit));
+    }
+
+    @Override
+    public WatchKey take() throws InterruptedException {
+        checkOpen();
+        return checkKey(signalled.take());
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            for (Key key: new ArrayList<>(keys))
+                cancelKey(key);
+        }
+        try {
+            watcher.close();
+        } finally {
+            processor.interrupt();
+            signalled.clear();
+            signalled.offer(closeKey);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.file;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import sun.nio.fs.BasicFileAttributesHolder;
+
+/**
+ * A {@code Spliterator} over the files in a file tree that can be split by
+ * subtree, so that the directories of a large tree are read in parallel.
+ *
+ * <p> Unlike {@link FileTreeWalker}, which keeps a stack of open directories,
+ * this spliterator reads each directory completely when it is reached: the
+ * entries that satisfy the filter are queued for the consumer and the
+ * subdirectories are queued for traversal. The queued subdirectories are what
+ * {@link #trySplit} hands to the new spliterator. No directory stream is left
+ * open between calls, so the elements are not reported in any particular
+ * order.
+ *
+ * <p> The file attributes of an entry are only needed to decide whether to
+ * descend into it. They are taken from the directory stream when the provider
+ * caches them, are not read at all for the entries of directories at the
+ * maximum depth, and the filter is applied to each entry without reading its
+ * attributes.
+ *
+ * @see Files#walkParallel
+ */
+
+class FileTreeSpliterator implements Spliterator<Path> {
+    // minimum number of pending directories for trySplit to split them
+    // rather than first reading a directory to find more
+    private static final int MIN_SPLIT_DIRECTORIES = 2;
+
+    private final PathMatcher matcher;
+    private final boolean followLinks;
+    private final LinkOption[] linkOptions;
+    private final int maxDepth;
+    private final AtomicBoolean closed;     // shared by all splits
+
+    // directories yet to be read, and entries yet to be reported
+    private final ArrayDeque<DirectoryNode> pending;
+    private final ArrayDeque<Path> ready = new ArrayDeque<>();
+
+    // number of directories read and the number of entries found in them,
+    // used to estimate the size of the unread part of the tree
+    private long directoriesRead;
+    private long entriesRead;
+
+    /**
+     * A directory that is yet to be read. The parent chain is used for
+     * cycle detection when following links.
+     */
+    private static class DirectoryNode {
+        final Path dir;
+        final Object key;
+        final int depth;
+        final DirectoryNode parent;
+
+        DirectoryNode(Path dir, Object key, int depth, DirectoryNode parent) {
+            this.dir = dir;
+            this.key = key;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Creates a spliterator over the file tree rooted at the given file.
+     *
+     * @throws  IllegalArgumentException
+     *          if {@code maxDepth} is negative
+     * @throws  IOException
+     *          if an I/O error occurs reading the attributes of the starting file
+     * @throws  SecurityException
+     *          if the security manager denies access to the starting file
+     */
+    FileTreeSpliterator(Path start,
+                        int maxDepth,
+                        PathMatcher matcher,
+                        FileVisitOption... options)
+        throws IOException
+    {
+        boolean fl = false;
+        for (FileVisitOption option: Arrays.asList(options)) {
+            // will throw NPE if options contains null
+            switch (option) {
+                case FOLLOW_LINKS : fl = true; break;
+                default:
+                    throw new AssertionError("Should not get here");
+            }
+        }
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("'maxDepth' is negative");
+        if (matcher == null)
+            throw new NullPointerException();
+
+        this.matcher = matcher;
+        this.followLinks = fl;
+        this.linkOptions = (fl) ? new LinkOption[0] :
+            new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+        this.maxDepth = maxDepth;
+        this.closed = new AtomicBoolean();
+        this.pending = new ArrayDeque<>();
+
+        BasicFileAttributes attrs = getAttributes(start, false);
+        if (matcher.matches(start))
+            ready.add(start);
+        if (maxDepth > 0 && attrs.isDirectory())
+            pending.add(new DirectoryNode(start, attrs.fileKey(), 0, null));
+    }
+
+    private FileTreeSpliterator(FileTreeSpliterator parent,
+                                ArrayDeque<DirectoryNode> pending)
+    {
+        this.matcher = parent.matcher;
+        this.followLinks = parent.followLinks;
+        this.linkOptions = parent.linkOptions;
+        this.maxDepth = parent.maxDepth;
+        this.closed = parent.closed;
+        this.pending = pending;
+        this.directoriesRead = parent.directoriesRead;
+        this.entriesRead = parent.entriesRead;
+    }
+
+    /**
+     * Closes this spliterator and all spliterators split from it.
+     */
+    void close() {
+        closed.set(true);
+    }
+
+    /**
+     * Returns the attributes of the given file, taking into account whether
+     * the walk is following sym links is not. The {@code canUseCached}
+     * argument determines whether this method can use cached attributes.
+     */
+    private BasicFileAttributes getAttributes(Path file, boolean canUseCached)
+        throws IOException
+    {
+        // if attributes are cached then use them if possible
+        if (canUseCached &&
+            (file instanceof BasicFileAttributesHolder) &&
+            (System.getSecurityManager() == null))
+        {
+            BasicFileAttributes cached = ((BasicFileAttributesHolder)file).get();
+            if (cached != null && (!followLinks || !cached.isSymbolicLink())) {
+                return cached;
+            }
+        }
+
+        // attempt to get attributes of file. If fails and we are following
+        // links then a link target might not exist so get attributes of link
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, linkOptions);
+        } catch (IOException ioe) {
+            if (!followLinks)
+                throw ioe;
+            return Files.readAttributes(file,
+                                        BasicFileAttributes.class,
+                                        LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    /**
+     * Returns true if walking into the given directory, a child of the given
+     * node, would result in a file system loop/cycle.
+     */
+    private static boolean wouldLoop(Path dir, Object key, DirectoryNode node) {
+        for (DirectoryNode ancestor = node; ancestor != null;
+             ancestor = ancestor.parent)
+        {
+            if (key != null && ancestor.key != null) {
+                if (key.equals(ancestor.key))
+                    return true;
+            } else {
+                try {
+                    if (Files.isSameFile(dir, ancestor.dir))
+                        return true;
+                } catch (IOException | SecurityException x) {
+                    // ignore
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads all entries of the given directory, queueing the entries that
+     * match for the consumer and the subdirectories for traversal.
+     */
+    private void read(DirectoryNode node) {
+        int depth = node.depth + 1;
+        boolean descend = depth < maxDepth;
+        long count = 0L;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(node.dir)) {
+            for (Path entry: stream) {
+                count++;
+                if (descend) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = getAttributes(entry, true);
+                    } catch (SecurityException se) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        Object key = attrs.fileKey();
+                        if (followLinks && wouldLoop(entry, key, node))
+                            throw new FileSystemLoopException(entry.toString());
+                        pending.add(new DirectoryNode(entry, key, depth, node));
+                    }
+                }
+                if (matcher.matches(entry))
+                    ready.add(entry);
+            }
+        } catch (DirectoryIteratorException x) {
+            throw new UncheckedIOException(x.getCause());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } catch (SecurityException se) {
+            // directory is ignored when access is denied
+        }
+        directoriesRead++;
+        entriesRead += count;
+    }
+
+    /**
+     * Reads pending directories until there is at least one entry ready or
+     * the tree is exhausted.
+     */
+    private boolean fill() {
+        while (ready.isEmpty()) {
+            DirectoryNode node = pending.pollFirst();
+            if (node == null)
+                return false;
+            read(node);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Path> action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (closed.get())
+            throw new IllegalStateException();
+        if (!fill())
+            return false;
+        action.accept(ready.poll());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Path> action) {
+        if (action == null)
+            throw new NullPointerException();
+        for (;;) {
+            if (closed.get())
+                throw new IllegalStateException();
+            if (!fill())
+                return;
+            Path file;
+            while ((file = ready.poll()) != null)
+                action.accept(file);
+        }
+    }
+
+    @Override
+    public Spliterator<Path> trySplit() {
+        if (closed.get())
+            return null;
+
+        // read directories until there are enough queued to split them
+        while (pending.size() > 0 && pending.size() < MIN_SPLIT_DIRECTORIES)
+            read(pending.pollFirst());
+
+        int n = pending.size() / 2;
+        if (n == 0)
+            return null;
+
+        // hand over the most recently queued, and so deepest, directories
+        ArrayDeque<DirectoryNode> split = new ArrayDeque<>(n);
+        for (int i = 0; i < n; i++)
+            split.addFirst(pending.pollLast());
+        return new FileTreeSpliterator(this, split);
+    }
+
+    @Override
+    public long estimateSize() {
+        if (pending.isEmpty())
+            return ready.size();
+        if (directoriesRead == 0L)
+            return Long.MAX_VALUE;
+        long perDirectory = Math.max(1L, entriesRead / directoriesRead);
+        long estimate = ready.size() + pending.size() * perDirectory;
+        return (estimate < 0L) ? Long.MAX_VALUE : estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.DISTINCT | Spliterator.NONNULL;
+    }
+}
@@ -3625,6 +3625,76 @@ public final class Files {
         return walk(start, Integer.MAX_VALUE, options);
     }
 
+    /**
+     * Return a parallel {@code Stream} that is lazily populated with {@code
+     * Path} by walking the file tree rooted at a given starting file, reading
+     * the directories of the tree in parallel.
+     *
+     * <p> This method visits the same files as the {@link #walk(Path, int,
+     * FileVisitOption...) walk} method, but the returned stream is parallel and
+     * its elements are in no particular order. Splitting the stream splits the
+     * set of directories that are yet to be read, so that each subtree is read
+     * by one of the threads executing the stream pipeline (the {@link
+     * java.util.concurrent.ForkJoinPool#commonPool() common pool} unless the
+     * terminal operation is invoked from a task in some other pool). Each
+     * directory is read in full when it is reached and no directory remains
+     * open between elements.
+     *
+     * <p> Only the files that the given {@link PathMatcher} matches are
+     * included in the returned stream. The matcher is invoked with the {@code
+     * Path} of each file and so does not require the file's attributes to be
+     * read. The attributes of a file are only read when they are needed to
+     * determine whether it is a directory to walk into: they are never read
+     * for the files in directories at {@code maxDepth}, and are taken from the
+     * directory stream when the provider makes them available in the same
+     * pass that reads the directory entries.
+     *
+     * <p> When the {@link FileVisitOption#FOLLOW_LINKS FOLLOW_LINKS} option is
+     * specified, cycles are detected as specified by the {@code walk} method
+     * and result in an {@link UncheckedIOException} with an instance of {@link
+     * FileSystemLoopException} as its cause.
+     *
+     * <p> Operating on a closed stream will result in an {@link
+     * java.lang.IllegalStateException}. If an {@link IOException} is thrown
+     * when accessing a directory after this method has returned, it is wrapped
+     * in an {@link UncheckedIOException} which will be thrown from the method
+     * that caused the access to take place.
+     *
+     * @param   start
+     *          the starting file
+     * @param   maxDepth
+     *          the maximum number of directory levels to visit
+     * @param   matcher
+     *          the matcher used to decide whether a file should be included
+     *          in the returned stream
+     * @param   options
+     *          options to configure the traversal
+     *
+     * @return  the parallel {@link Stream} of {@link Path}
+     *
+     * @throws  IllegalArgumentException
+     *          if the {@code maxDepth} parameter is negative
+     * @throws  SecurityException
+     *          If the security manager denies access to the starting file.
+     *          In the case of the default provider, the {@link
+     *          SecurityManager#checkRead(String) checkRead} method is invoked
+     *          to check read access to the directory.
+     * @throws  IOException
+     *          if an I/O error is thrown when accessing the starting file.
+     * @since   1.8
+     */
+    public static Stream<Path> walkParallel(Path start,
+                                            int maxDepth,
+                                            PathMatcher matcher,
+                                            FileVisitOption... options)
+        throws IOException
+    {
+        FileTreeSpliterator spliterator =
+            new FileTreeSpliterator(start, maxDepth, matcher, options);
+        return StreamSupport.stream(spliterator, true)
+                            .onClose(spliterator::close);
+    }
+
     /**
      * Return a {@code Stream} that is lazily populated with {@code
      * Path} by searching for files in a file tree rooted at a given starting
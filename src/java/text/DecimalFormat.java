@@ -3916,7 +3916,7 @@ public class DecimalFormat extends NumberFormat {
      * True if this object represents a currency format.  This determines
      * whether the monetary decimal separator is used instead of the normal one.
      */
-    private transient boolean isCurrencyFormat = false;
+    transient boolean isCurrencyFormat = false;
 
     /**
      * The <code>DecimalFormatSymbols</code> object used by this format.
@@ -3936,7 +3936,7 @@ public class DecimalFormat extends NumberFormat {
      * @serial
      * @since 1.2
      */
-    private boolean useExponentialNotation;  // Newly persistent in the Java 2 platform v.1.2
+    boolean useExponentialNotation;  // Newly persistent in the Java 2 platform v.1.2
 
     /**
      * FieldPositions describing the positive prefix String. This is
@@ -3974,7 +3974,7 @@ public class DecimalFormat extends NumberFormat {
      * @serial
      * @since 1.2
      */
-    private byte    minExponentDigits;       // Newly persistent in the Java 2 platform v.1.2
+    byte    minExponentDigits;       // Newly persistent in the Java 2 platform v.1.2
 
     /**
      * The maximum number of digits allowed in the integer portion of a
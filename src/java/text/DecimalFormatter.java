@@ -0,0 +1,1123 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.text;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, thread-safe formatter and parser of decimal numbers,
+ * compiled from a {@link DecimalFormat} pattern.
+ *
+ * <p>A {@code DecimalFormatter} produces exactly the text that a
+ * {@code DecimalFormat} with the same pattern, symbols and rounding mode
+ * produces for {@code double} and {@code long} values, but it holds no
+ * mutable state, so a single instance may be shared by any number of
+ * threads without synchronization.  Formatted text is written directly
+ * into a {@code StringBuilder}, an {@code Appendable} or a {@code char}
+ * array.  A {@code double} is formatted from the decimal digits that
+ * {@link Double#toString(double)} produces for it, which are then rounded
+ * to the pattern.
+ *
+ * <p>Parsing accepts a range of any {@code CharSequence}, which must
+ * contain exactly one number in the format of the pattern: a prefix, the
+ * digits with optional grouping separators, an optional decimal separator
+ * and fraction, an optional exponent and a suffix.  No substring of the
+ * text is created.  Unlike {@link DecimalFormat#parse(String,
+ * ParsePosition)}, trailing text is an error rather than being ignored.
+ *
+ * <p>For example:
+ * <blockquote><pre>{@code
+ * static final DecimalFormatter AMOUNT =
+ *     DecimalFormatter.ofPattern("#,##0.00", Locale.GERMANY);
+ * ...
+ * AMOUNT.formatTo(1234.5, sb);            // appends "1.234,50"
+ * double d = AMOUNT.parseDouble(line, start, end);
+ * }</pre></blockquote>
+ *
+ * @see DecimalFormat
+ * @since 1.8
+ */
+public final class DecimalFormatter {
+
+    /**
+     * The locale specific symbols used by formatters, keyed by a private
+     * copy of the {@code DecimalFormatSymbols} they were taken from.
+     */
+    private static final ConcurrentMap<DecimalFormatSymbols, Symbols> symbolsCache
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of entries in the symbols cache.  Symbols that do
+     * not fit are still used, but not shared.
+     */
+    private static final int MAX_CACHED_SYMBOLS = 256;
+
+    /**
+     * The digit list and output buffer used by the current thread.
+     */
+    private static final ThreadLocal<Scratch> scratch =
+        ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] DOUBLE_TEN_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final String pattern;
+    private final Symbols symbols;
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final char decimal;
+    private final int multiplier;
+    private final int groupingSize;     // 0 if grouping is not used
+    private final int minIntDigits;
+    private final int maxIntDigits;
+    private final int minFraDigits;
+    private final int maxFraDigits;
+    private final boolean decimalSeparatorAlwaysShown;
+    private final boolean useExponentialNotation;
+    private final int minExponentDigits;
+    private final RoundingMode roundingMode;
+
+    private DecimalFormatter(DecimalFormat format, Symbols symbols,
+                             RoundingMode roundingMode) {
+        this.pattern = format.toPattern();
+        this.symbols = symbols;
+        this.positivePrefix = format.getPositivePrefix();
+        this.positiveSuffix = format.getPositiveSuffix();
+        this.negativePrefix = format.getNegativePrefix();
+        this.negativeSuffix = format.getNegativeSuffix();
+        this.decimal = format.isCurrencyFormat ?
+            symbols.monetaryDecimal : symbols.decimal;
+        this.multiplier = format.getMultiplier();
+        this.groupingSize = format.isGroupingUsed() ?
+            format.getGroupingSize() : 0;
+        // The double and long formats of DecimalFormat see the digit
+        // counts limited to those meaningful for a double
+        this.minIntDigits = Math.min(format.getMinimumIntegerDigits(),
+                                     DecimalFormat.DOUBLE_INTEGER_DIGITS);
+        this.maxIntDigits = Math.min(format.getMaximumIntegerDigits(),
+                                     DecimalFormat.DOUBLE_INTEGER_DIGITS);
+        this.minFraDigits = Math.min(format.getMinimumFractionDigits(),
+                                     DecimalFormat.DOUBLE_FRACTION_DIGITS);
+        this.maxFraDigits = Math.min(format.getMaximumFractionDigits(),
+                                     DecimalFormat.DOUBLE_FRACTION_DIGITS);
+        this.decimalSeparatorAlwaysShown =
+            format.isDecimalSeparatorAlwaysShown();
+        this.useExponentialNotation = format.useExponentialNotation;
+        this.minExponentDigits = format.minExponentDigits;
+        this.roundingMode = roundingMode;
+    }
+
+    private DecimalFormatter(DecimalFormatter other,
+                             RoundingMode roundingMode) {
+        this.pattern = other.pattern;
+        this.symbols = other.symbols;
+        this.positivePrefix = other.positivePrefix;
+        this.positiveSuffix = other.positiveSuffix;
+        this.negativePrefix = other.negativePrefix;
+        this.negativeSuffix = other.negativeSuffix;
+        this.decimal = other.decimal;
+        this.multiplier = other.multiplier;
+        this.groupingSize = other.groupingSize;
+        this.minIntDigits = other.minIntDigits;
+        this.maxIntDigits = other.maxIntDigits;
+        this.minFraDigits = other.minFraDigits;
+        this.maxFraDigits = other.maxFraDigits;
+        this.decimalSeparatorAlwaysShown = other.decimalSeparatorAlwaysShown;
+        this.useExponentialNotation = other.useExponentialNotation;
+        this.minExponentDigits = other.minExponentDigits;
+        this.roundingMode = roundingMode;
+    }
+
+    /**
+     * Creates a formatter for the given pattern and the symbols of the
+     * default {@link java.util.Locale.Category#FORMAT FORMAT} locale.
+     *
+     * @param pattern a non-localized pattern, as for
+     *        {@link DecimalFormat#applyPattern(String)}
+     * @return the formatter
+     * @exception NullPointerException if <code>pattern</code> is null
+     * @exception IllegalArgumentException if the pattern is invalid
+     */
+    public static DecimalFormatter ofPattern(String pattern) {
+        return ofPattern(pattern,
+            DecimalFormatSymbols.getInstance(
+                Locale.getDefault(Locale.Category.FORMAT)));
+    }
+
+    /**
+     * Creates a formatter for the given pattern and the symbols of the
+     * given locale.
+     *
+     * @param pattern a non-localized pattern, as for
+     *        {@link DecimalFormat#applyPattern(String)}
+     * @param locale the locale whose symbols are used
+     * @return the formatter
+     * @exception NullPointerException if <code>pattern</code> or
+     *            <code>locale</code> is null
+     * @exception IllegalArgumentException if the pattern is invalid
+     */
+    public static DecimalFormatter ofPattern(String pattern, Locale locale) {
+        return ofPattern(pattern, DecimalFormatSymbols.getInstance(locale));
+    }
+
+    /**
+     * Creates a formatter for the given pattern and symbols.  Later
+     * changes to <code>symbols</code> do not affect the formatter.
+     *
+     * @param pattern a non-localized pattern, as for
+     *        {@link DecimalFormat#applyPattern(String)}
+     * @param symbols the symbols to use
+     * @return the formatter
+     * @exception NullPointerException if <code>pattern</code> or
+     *            <code>symbols</code> is null
+     * @exception IllegalArgumentException if the pattern is invalid
+     */
+    public static DecimalFormatter ofPattern(String pattern,
+                                             DecimalFormatSymbols symbols) {
+        return of(new DecimalFormat(pattern, symbols));
+    }
+
+    /**
+     * Creates a formatter from the current settings of the given
+     * {@code DecimalFormat}, including its rounding mode.  Later changes
+     * to <code>format</code> do not affect the formatter.  The settings
+     * that only apply to {@code BigInteger} and {@code BigDecimal} values,
+     * and those that control {@code DecimalFormat.parse}, are ignored.
+     *
+     * @param format the format to copy
+     * @return the formatter
+     * @exception NullPointerException if <code>format</code> is null
+     */
+    public static DecimalFormatter of(DecimalFormat format) {
+        return new DecimalFormatter(format,
+                                    Symbols.of(format.getDecimalFormatSymbols()),
+                                    format.getRoundingMode());
+    }
+
+    /**
+     * Returns a copy of this formatter that uses the given rounding mode.
+     *
+     * @param roundingMode the rounding mode
+     * @return a formatter with the rounding mode
+     * @exception NullPointerException if <code>roundingMode</code> is null
+     */
+    public DecimalFormatter withRoundingMode(RoundingMode roundingMode) {
+        if (roundingMode == null) {
+            throw new NullPointerException();
+        }
+        if (roundingMode == this.roundingMode) {
+            return this;
+        }
+        return new DecimalFormatter(this, roundingMode);
+    }
+
+    /**
+     * Returns the rounding mode of this formatter.
+     *
+     * @return the rounding mode
+     */
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    /**
+     * Returns the pattern of this formatter.
+     *
+     * @return the pattern, as from {@link DecimalFormat#toPattern()}
+     */
+    public String toPattern() {
+        return pattern;
+    }
+
+    /**
+     * Formats a double.
+     *
+     * @param number the number to format
+     * @return the formatted text
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public String format(double number) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return new String(s.buf, 0, s.len);
+    }
+
+    /**
+     * Formats a long.
+     *
+     * @param number the number to format
+     * @return the formatted text
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public String format(long number) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return new String(s.buf, 0, s.len);
+    }
+
+    /**
+     * Formats a double, appending the text to a {@code StringBuilder}.
+     *
+     * @param number the number to format
+     * @param sb where the text is appended
+     * @return <code>sb</code>
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public StringBuilder formatTo(double number, StringBuilder sb) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return sb.append(s.buf, 0, s.len);
+    }
+
+    /**
+     * Formats a long, appending the text to a {@code StringBuilder}.
+     *
+     * @param number the number to format
+     * @param sb where the text is appended
+     * @return <code>sb</code>
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public StringBuilder formatTo(long number, StringBuilder sb) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return sb.append(s.buf, 0, s.len);
+    }
+
+    /**
+     * Formats a double, appending the text to an {@code Appendable}.
+     *
+     * @param number the number to format
+     * @param out where the text is appended
+     * @exception IOException if an I/O error occurs
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public void formatTo(double number, Appendable out) throws IOException {
+        Scratch s = scratch.get();
+        render(number, s);
+        s.writeTo(out);
+    }
+
+    /**
+     * Formats a long, appending the text to an {@code Appendable}.
+     *
+     * @param number the number to format
+     * @param out where the text is appended
+     * @exception IOException if an I/O error occurs
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public void formatTo(long number, Appendable out) throws IOException {
+        Scratch s = scratch.get();
+        render(number, s);
+        s.writeTo(out);
+    }
+
+    /**
+     * Formats a double into a {@code char} array.  Nothing is written if
+     * the text does not fit.
+     *
+     * @param number the number to format
+     * @param dst the destination array
+     * @param off the index in <code>dst</code> of the first character
+     * @return the index in <code>dst</code> after the last character
+     * @exception IndexOutOfBoundsException if <code>off</code> is negative
+     *            or the text does not fit between <code>off</code> and the
+     *            end of <code>dst</code>
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public int formatTo(double number, char[] dst, int off) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return s.copyTo(dst, off);
+    }
+
+    /**
+     * Formats a long into a {@code char} array.  Nothing is written if
+     * the text does not fit.
+     *
+     * @param number the number to format
+     * @param dst the destination array
+     * @param off the index in <code>dst</code> of the first character
+     * @return the index in <code>dst</code> after the last character
+     * @exception IndexOutOfBoundsException if <code>off</code> is negative
+     *            or the text does not fit between <code>off</code> and the
+     *            end of <code>dst</code>
+     * @exception ArithmeticException if rounding is needed with the rounding
+     *            mode {@code RoundingMode.UNNECESSARY}
+     */
+    public int formatTo(long number, char[] dst, int off) {
+        Scratch s = scratch.get();
+        render(number, s);
+        return s.copyTo(dst, off);
+    }
+
+    /**
+     * Parses a double from the whole of the given text.
+     *
+     * @param text the text to parse
+     * @return the parsed value, divided by the multiplier of the pattern
+     * @exception NullPointerException if <code>text</code> is null
+     * @exception NumberFormatException if the text is not a number in the
+     *            format of this formatter
+     */
+    public double parseDouble(CharSequence text) {
+        return parseDouble(text, 0, text.length());
+    }
+
+    /**
+     * Parses a double from a range of the given text.
+     *
+     * @param text the text to parse
+     * @param start the index of the first character of the number
+     * @param end the index after the last character of the number
+     * @return the parsed value, divided by the multiplier of the pattern
+     * @exception NullPointerException if <code>text</code> is null
+     * @exception IndexOutOfBoundsException if <code>start</code> or
+     *            <code>end</code> are out of bounds, or <code>start</code>
+     *            is greater than <code>end</code>
+     * @exception NumberFormatException if the range is not a number in the
+     *            format of this formatter
+     */
+    public double parseDouble(CharSequence text, int start, int end) {
+        checkRange(text, start, end);
+        Scratch s = scratch.get();
+        if (!parse(text, start, end, s)) {
+            throw forInput(text, start, end);
+        }
+        double value;
+        if (s.infinite) {
+            value = Double.POSITIVE_INFINITY;
+        } else if (s.nan) {
+            return Double.NaN;
+        } else {
+            value = s.toDouble();
+        }
+        if (s.negative) {
+            value = -value;
+        }
+        if (multiplier != 1) {
+            value = divideMultiplier(s, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the parsed value divided by the multiplier.  This follows
+     * {@code DecimalFormat.parse}: a value that is an integer and fits in a
+     * long is divided exactly when the multiplier divides it, and is only
+     * converted to a double afterwards.
+     */
+    private double divideMultiplier(Scratch s, double value) {
+        int count = s.count;
+        while (count > 0 && s.buf[count - 1] == '0') {
+            count--;
+        }
+        int exponent = s.exponent + (s.count - count);
+        if (count == 0 && !s.negative && multiplier != 0) {
+            return 0.0;                 // a long zero, unlike -0.0
+        }
+        if (s.infinite || count == 0 || multiplier == 0 ||
+            exponent < 0 || count + exponent > 19) {
+            return value / multiplier;
+        }
+        // Accumulate negatively so that Long.MIN_VALUE can be parsed
+        long limit = s.negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long n = 0;
+        for (int i = 0; i < count + exponent; i++) {
+            int d = (i < count) ? s.buf[i] - '0' : 0;
+            if (n < limit / 10 || n * 10 < limit + d) {
+                return value / multiplier;
+            }
+            n = n * 10 - d;
+        }
+        if (!s.negative) {
+            n = -n;
+        }
+        if (n % multiplier == 0 && (n != Long.MIN_VALUE || multiplier != -1)) {
+            return (double) (n / multiplier);
+        }
+        return (double) n / multiplier;
+    }
+
+    /**
+     * Parses a long from the whole of the given text.
+     *
+     * @param text the text to parse
+     * @return the parsed value, divided by the multiplier of the pattern
+     * @exception NullPointerException if <code>text</code> is null
+     * @exception NumberFormatException if the text is not a number in the
+     *            format of this formatter, or its value is not a long
+     */
+    public long parseLong(CharSequence text) {
+        return parseLong(text, 0, text.length());
+    }
+
+    /**
+     * Parses a long from a range of the given text.
+     *
+     * @param text the text to parse
+     * @param start the index of the first character of the number
+     * @param end the index after the last character of the number
+     * @return the parsed value, divided by the multiplier of the pattern
+     * @exception NullPointerException if <code>text</code> is null
+     * @exception IndexOutOfBoundsException if <code>start</code> or
+     *            <code>end</code> are out of bounds, or <code>start</code>
+     *            is greater than <code>end</code>
+     * @exception NumberFormatException if the range is not a number in the
+     *            format of this formatter, or its value is not a long
+     */
+    public long parseLong(CharSequence text, int start, int end) {
+        checkRange(text, start, end);
+        Scratch s = scratch.get();
+        if (!parse(text, start, end, s) || s.nan || s.infinite) {
+            throw forInput(text, start, end);
+        }
+        int exponent = s.exponent;
+        if (s.count == 0) {
+            exponent = 0;
+        } else if (exponent < 0) {
+            throw forInput(text, start, end);
+        } else if (exponent > 18) {
+            // Only the multiplier can bring the value back into range
+            if (multiplier == 1 || multiplier == 0 || exponent > 28) {
+                throw forInput(text, start, end);
+            }
+            return divideMultiplier(s, exponent, text, start, end);
+        }
+        // Accumulate negatively so that Long.MIN_VALUE can be parsed
+        long limit = s.negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int i = 0; i < s.count + exponent; i++) {
+            int d = (i < s.count) ? s.buf[i] - '0' : 0;
+            if (value < limit / 10 || value * 10 < limit + d) {
+                // Only the multiplier can bring the value back into range
+                if (multiplier == 1 || multiplier == 0) {
+                    throw forInput(text, start, end);
+                }
+                return divideMultiplier(s, exponent, text, start, end);
+            }
+            value = value * 10 - d;
+        }
+        if (!s.negative) {
+            value = -value;
+        }
+        if (multiplier != 1) {
+            if (multiplier == 0 || value % multiplier != 0 ||
+                (value == Long.MIN_VALUE && multiplier == -1)) {
+                throw forInput(text, start, end);
+            }
+            value /= multiplier;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the parsed value divided by the multiplier, for values that
+     * do not fit in a long before the division.
+     */
+    private long divideMultiplier(Scratch s, int exponent, CharSequence text,
+                                  int start, int end) {
+        BigInteger value = new BigInteger(new String(s.buf, 0, s.count))
+            .multiply(BigInteger.TEN.pow(exponent));
+        if (s.negative) {
+            value = value.negate();
+        }
+        BigInteger[] qr =
+            value.divideAndRemainder(BigInteger.valueOf(multiplier));
+        if (qr[1].signum() != 0 || qr[0].bitLength() > 63) {
+            throw forInput(text, start, end);
+        }
+        return qr[0].longValue();
+    }
+
+    /**
+     * Returns a string describing this formatter.
+     *
+     * @return a string describing this formatter
+     */
+    @Override
+    public String toString() {
+        return "DecimalFormatter[" + pattern + ',' + roundingMode + ']';
+    }
+
+    // ---------------------------------------------------------------------
+    // Formatting
+    // ---------------------------------------------------------------------
+
+    /**
+     * Formats a double into the buffer of the scratch.  This follows
+     * {@code DecimalFormat.format(double, StringBuffer, FieldDelegate)}.
+     */
+    private void render(double number, Scratch s) {
+        s.len = 0;
+        if (Double.isNaN(number) ||
+           (Double.isInfinite(number) && multiplier == 0)) {
+            s.append(symbols.nan);
+            return;
+        }
+
+        // -0.0 is formatted as negative, as by DecimalFormat
+        boolean isNegative = ((number < 0.0) ||
+                              (number == 0.0 && 1/number < 0.0)) ^
+                             (multiplier < 0);
+
+        if (multiplier != 1) {
+            number *= multiplier;
+        }
+
+        if (Double.isInfinite(number)) {
+            s.append(isNegative ? negativePrefix : positivePrefix);
+            s.append(symbols.infinity);
+            s.append(isNegative ? negativeSuffix : positiveSuffix);
+            return;
+        }
+
+        if (isNegative) {
+            number = -number;
+        }
+
+        DigitList digitList = s.digitList;
+        digitList.setRoundingMode(roundingMode);
+        digitList.set(isNegative, number, useExponentialNotation ?
+                      maxIntDigits + maxFraDigits : maxFraDigits,
+                      !useExponentialNotation);
+        subformat(s, isNegative, false);
+    }
+
+    /**
+     * Formats a long into the buffer of the scratch.  This follows
+     * {@code DecimalFormat.format(long, StringBuffer, FieldDelegate)}.
+     */
+    private void render(long number, Scratch s) {
+        s.len = 0;
+        DigitList digitList = s.digitList;
+        digitList.setRoundingMode(roundingMode);
+
+        boolean isNegative = (number < 0);
+        if (isNegative) {
+            number = -number;
+        }
+
+        // The multiplier can push the value outside the range of a long,
+        // in which case the digits are taken from a BigInteger
+        boolean useBigInteger = false;
+        if (number < 0) { // This can only happen if number == Long.MIN_VALUE.
+            if (multiplier != 0) {
+                useBigInteger = true;
+            }
+        } else if (multiplier != 1 && multiplier != 0) {
+            long cutoff = Long.MAX_VALUE / multiplier;
+            if (cutoff < 0) {
+                cutoff = -cutoff;
+            }
+            useBigInteger = (number > cutoff);
+        }
+
+        int maximumDigits =
+            useExponentialNotation ? maxIntDigits + maxFraDigits : 0;
+        if (useBigInteger) {
+            if (isNegative) {
+                number = -number;
+            }
+            BigInteger big = BigInteger.valueOf(number)
+                .multiply(BigInteger.valueOf(multiplier));
+            isNegative = big.signum() == -1;
+            digitList.set(isNegative, big.abs(), maximumDigits);
+        } else {
+            number *= multiplier;
+            if (number == 0) {
+                isNegative = false;
+            } else if (multiplier < 0) {
+                number = -number;
+                isNegative = !isNegative;
+            }
+            digitList.set(isNegative, number, maximumDigits);
+        }
+        subformat(s, isNegative, true);
+    }
+
+    /**
+     * Writes the digit list of the scratch to its buffer, with the prefix
+     * and suffix for the sign.  This follows {@code DecimalFormat.subformat}.
+     */
+    private void subformat(Scratch s, boolean isNegative, boolean isInteger) {
+        DigitList digitList = s.digitList;
+        char zero = symbols.zero;
+        int zeroDelta = zero - '0'; // '0' is the DigitList representation of zero
+
+        // Numbers that format as zero keep their sign
+        if (digitList.isZero()) {
+            digitList.decimalAt = 0; // Normalize
+        }
+
+        s.append(isNegative ? negativePrefix : positivePrefix);
+
+        if (useExponentialNotation) {
+            // Maximum integer digits greater than one and than the minimum
+            // define a repeating range for the exponent, as in engineering
+            // notation; otherwise the minimum integer digits are shown.
+            int exponent = digitList.decimalAt;
+            int repeat = maxIntDigits;
+            int minimumIntegerDigits = minIntDigits;
+            if (repeat > 1 && repeat > minIntDigits) {
+                if (exponent >= 1) {
+                    exponent = ((exponent - 1) / repeat) * repeat;
+                } else {
+                    // integer division rounds towards 0
+                    exponent = ((exponent - repeat) / repeat) * repeat;
+                }
+                minimumIntegerDigits = 1;
+            } else {
+                exponent -= minimumIntegerDigits;
+            }
+
+            int minimumDigits = minIntDigits + minFraDigits;
+            if (minimumDigits < 0) {    // overflow?
+                minimumDigits = Integer.MAX_VALUE;
+            }
+
+            // The number of integer digits is handled specially if the number
+            // is zero, since then there may be no digits.
+            int integerDigits = digitList.isZero() ? minimumIntegerDigits :
+                    digitList.decimalAt - exponent;
+            if (minimumDigits < integerDigits) {
+                minimumDigits = integerDigits;
+            }
+            int totalDigits = digitList.count;
+            if (minimumDigits > totalDigits) {
+                totalDigits = minimumDigits;
+            }
+
+            for (int i=0; i<totalDigits; ++i) {
+                if (i == integerDigits) {
+                    s.append(decimal);
+                }
+                s.append((i < digitList.count) ?
+                         (char)(digitList.digits[i] + zeroDelta) : zero);
+            }
+            if (decimalSeparatorAlwaysShown && totalDigits == integerDigits) {
+                s.append(decimal);
+            }
+
+            s.append(symbols.exponent);
+
+            // For zero values, we force the exponent to zero.
+            if (digitList.isZero()) {
+                exponent = 0;
+            }
+            if (exponent < 0) {
+                exponent = -exponent;
+                s.append(symbols.minus);
+            }
+            int exponentDigits = 1;
+            for (int e = exponent; e >= 10; e /= 10) {
+                exponentDigits++;
+            }
+            for (int i=exponentDigits; i<minExponentDigits; ++i) {
+                s.append(zero);
+            }
+            s.ensureCapacity(exponentDigits);
+            for (int i = s.len + exponentDigits - 1; i >= s.len; i--) {
+                s.buf[i] = (char)(exponent % 10 + zero);
+                exponent /= 10;
+            }
+            s.len += exponentDigits;
+        } else {
+            // Output the integer portion.  Here 'count' is the total
+            // number of integer digits we will display, including both
+            // leading zeros required by the minimum integer digits, and
+            // actual digits present in the number.  If the maximum is
+            // smaller, the least significant digits are shown.
+            int count = minIntDigits;
+            int digitIndex = 0; // Index into digitList.digits[]
+            if (digitList.decimalAt > 0 && count < digitList.decimalAt) {
+                count = digitList.decimalAt;
+            }
+            if (count > maxIntDigits) {
+                count = maxIntDigits;
+                digitIndex = digitList.decimalAt - count;
+            }
+
+            int sizeBeforeIntegerPart = s.len;
+            for (int i=count-1; i>=0; --i) {
+                if (i < digitList.decimalAt && digitIndex < digitList.count) {
+                    s.append((char)(digitList.digits[digitIndex++] + zeroDelta));
+                } else {
+                    s.append(zero);
+                }
+                if (groupingSize != 0 && i>0 && (i % groupingSize == 0)) {
+                    s.append(symbols.grouping);
+                }
+            }
+
+            boolean fractionPresent = (minFraDigits > 0) ||
+                (!isInteger && digitIndex < digitList.count);
+
+            // Print a zero if there would otherwise be no digits at all
+            if (!fractionPresent && s.len == sizeBeforeIntegerPart) {
+                s.append(zero);
+            }
+
+            if (decimalSeparatorAlwaysShown || fractionPresent) {
+                s.append(decimal);
+            }
+
+            for (int i=0; i < maxFraDigits; ++i) {
+                if (i >= minFraDigits &&
+                    (isInteger || digitIndex >= digitList.count)) {
+                    break;
+                }
+                // Leading fractional zeros of a number less than one
+                if (-1-i > (digitList.decimalAt-1)) {
+                    s.append(zero);
+                    continue;
+                }
+                if (!isInteger && digitIndex < digitList.count) {
+                    s.append((char)(digitList.digits[digitIndex++] + zeroDelta));
+                } else {
+                    s.append(zero);
+                }
+            }
+        }
+
+        s.append(isNegative ? negativeSuffix : positiveSuffix);
+    }
+
+    // ---------------------------------------------------------------------
+    // Parsing
+    // ---------------------------------------------------------------------
+
+    private static void checkRange(CharSequence text, int start, int end) {
+        if (start < 0 || start > end || end > text.length()) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " +
+                                                end + ", length " +
+                                                text.length());
+        }
+    }
+
+    private static NumberFormatException forInput(CharSequence text,
+                                                  int start, int end) {
+        return new NumberFormatException("For input string: \"" +
+                                         text.subSequence(start, end) + "\"");
+    }
+
+    /**
+     * Parses the range of the text into the scratch.  Either the prefix
+     * and suffix of positive or of negative numbers must surround the
+     * number; if both pairs fit, the one with the longer prefix is taken.
+     *
+     * @return false if the range is not a number in this format
+     */
+    private boolean parse(CharSequence text, int start, int end, Scratch s) {
+        if (matches(text, start, end, symbols.nan)) {
+            s.nan = true;
+            s.infinite = false;
+            s.negative = false;
+            return true;
+        }
+        boolean negativeFirst =
+            negativePrefix.length() > positivePrefix.length();
+        return parse(text, start, end, s, negativeFirst) ||
+               parse(text, start, end, s, !negativeFirst);
+    }
+
+    private boolean parse(CharSequence text, int start, int end, Scratch s,
+                          boolean negative) {
+        String prefix = negative ? negativePrefix : positivePrefix;
+        String suffix = negative ? negativeSuffix : positiveSuffix;
+        int from = start + prefix.length();
+        int to = end - suffix.length();
+        if (from > to ||
+            !matches(text, start, from, prefix) ||
+            !matches(text, to, end, suffix)) {
+            return false;
+        }
+        s.negative = negative;
+        s.nan = false;
+        s.infinite = matches(text, from, to, symbols.infinity);
+        return s.infinite || parseDigits(text, from, to, s);
+    }
+
+    private static boolean matches(CharSequence text, int start, int end,
+                                   String s) {
+        int n = s.length();
+        if (end - start != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a digit in the locale, or -1.
+     */
+    private int digit(char c) {
+        int d = c - symbols.zero;
+        if (d >= 0 && d <= 9) {
+            return d;
+        }
+        return Character.digit(c, 10);
+    }
+
+    /**
+     * Parses the number between the prefix and the suffix.  The significant
+     * digits are collected in the buffer of the scratch as characters from
+     * '0' to '9', with neither leading nor trailing zeros, and the value is
+     * their integer value times ten to the power of the exponent.
+     */
+    private boolean parseDigits(CharSequence text, int from, int to,
+                                Scratch s) {
+        s.len = 0;
+        int exponent = 0;
+        boolean digitSeen = false;
+        boolean sawDecimal = false;
+        int i = from;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            int d = digit(c);
+            if (d >= 0) {
+                digitSeen = true;
+                if (d != 0 || s.len != 0) {
+                    s.append((char)('0' + d));
+                }
+                if (sawDecimal) {
+                    exponent--;
+                }
+            } else if (c == decimal && !sawDecimal) {
+                sawDecimal = true;
+            } else if (c == symbols.grouping && groupingSize != 0 &&
+                       !sawDecimal && digitSeen && i + 1 < to &&
+                       digit(text.charAt(i + 1)) >= 0) {
+                // Grouping separators are skipped between digits
+            } else {
+                break;
+            }
+        }
+        if (!digitSeen) {
+            return false;
+        }
+        if (i < to) {
+            // The only thing that may follow is an exponent
+            String e = symbols.exponent;
+            int n = e.length();
+            if (n == 0 || to - i <= n ||
+                !matches(text, i, i + n, e)) {
+                return false;
+            }
+            i += n;
+            boolean negativeExponent = false;
+            if (text.charAt(i) == symbols.minus) {
+                negativeExponent = true;
+                if (++i == to) {
+                    return false;
+                }
+            }
+            long e10 = 0;
+            for (; i < to; i++) {
+                int d = digit(text.charAt(i));
+                if (d < 0) {
+                    return false;
+                }
+                if (e10 < Integer.MAX_VALUE) {
+                    e10 = e10 * 10 + d;
+                }
+            }
+            exponent = (int)Math.max(Integer.MIN_VALUE / 2,
+                Math.min(Integer.MAX_VALUE / 2,
+                         exponent + (negativeExponent ? -e10 : e10)));
+        }
+        // Drop trailing zeros
+        while (s.len > 0 && s.buf[s.len - 1] == '0') {
+            s.len--;
+            exponent++;
+        }
+        s.count = s.len;
+        s.exponent = exponent;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------
+    // Per-thread state and symbols
+    // ---------------------------------------------------------------------
+
+    /**
+     * The digit list and output buffer of a thread, together with the
+     * result of the last parse.
+     */
+    private static final class Scratch {
+        final DigitList digitList = new DigitList();
+        char[] buf = new char[64];
+        int len;
+
+        // The result of a parse
+        boolean negative;
+        boolean nan;
+        boolean infinite;
+        int count;
+        int exponent;
+
+        void ensureCapacity(int n) {
+            if (len + n > buf.length) {
+                char[] b = new char[Math.max(buf.length * 2, len + n)];
+                System.arraycopy(buf, 0, b, 0, len);
+                buf = b;
+            }
+        }
+
+        void append(char c) {
+            if (len == buf.length) {
+                ensureCapacity(1);
+            }
+            buf[len++] = c;
+        }
+
+        void append(String s) {
+            int n = s.length();
+            ensureCapacity(n);
+            s.getChars(0, n, buf, len);
+            len += n;
+        }
+
+        void writeTo(Appendable out) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder)out).append(buf, 0, len);
+            } else if (out instanceof StringBuffer) {
+                ((StringBuffer)out).append(buf, 0, len);
+            } else if (out instanceof Writer) {
+                ((Writer)out).write(buf, 0, len);
+            } else {
+                for (int i = 0; i < len; i++) {
+                    out.append(buf[i]);
+                }
+            }
+        }
+
+        int copyTo(char[] dst, int off) {
+            if (off < 0 || off > dst.length - len) {
+                throw new IndexOutOfBoundsException("offset " + off +
+                    ", length " + len + ", array length " + dst.length);
+            }
+            System.arraycopy(buf, 0, dst, off, len);
+            return off + len;
+        }
+
+        /**
+         * Returns the value of the parsed digits.  Values of at most
+         * fifteen digits with a small exponent are computed exactly with
+         * a single correctly rounded operation; the others are converted
+         * by FloatingDecimal.
+         */
+        double toDouble() {
+            if (count == 0) {
+                return 0.0;
+            }
+            if (count <= 15 && exponent >= -22 && exponent <= 22) {
+                long m = 0;
+                for (int i = 0; i < count; i++) {
+                    m = m * 10 + (buf[i] - '0');
+                }
+                return exponent >= 0 ? m * DOUBLE_TEN_POWERS[exponent]
+                                     : m / DOUBLE_TEN_POWERS[-exponent];
+            }
+            if (exponent > 400 - count) {
+                return Double.POSITIVE_INFINITY;
+            } else if (exponent < -400 - count) {
+                return 0.0;
+            }
+            len = count;
+            append('E');
+            append(Integer.toString(exponent));
+            return Double.parseDouble(new String(buf, 0, len));
+        }
+    }
+
+    /**
+     * The symbols of a {@code DecimalFormatSymbols} used to format and
+     * parse numbers.
+     */
+    private static final class Symbols {
+        final char zero;
+        final char grouping;
+        final char decimal;
+        final char monetaryDecimal;
+        final char minus;
+        final String nan;
+        final String infinity;
+        final String exponent;
+
+        private Symbols(DecimalFormatSymbols dfs) {
+            zero = dfs.getZeroDigit();
+            grouping = dfs.getGroupingSeparator();
+            decimal = dfs.getDecimalSeparator();
+            monetaryDecimal = dfs.getMonetaryDecimalSeparator();
+            minus = dfs.getMinusSign();
+            nan = dfs.getNaN();
+            infinity = dfs.getInfinity();
+            exponent = dfs.getExponentSeparator();
+        }
+
+        /**
+         * Returns the symbols of the given {@code DecimalFormatSymbols},
+         * which the caller must not change afterwards.
+         */
+        static Symbols of(DecimalFormatSymbols dfs) {
+            Symbols symbols = symbolsCache.get(dfs);
+            if (symbols == null) {
+                symbols = new Symbols(dfs);
+                if (symbolsCache.size() < MAX_CACHED_SYMBOLS) {
+                    Symbols prev = symbolsCache.putIfAbsent(dfs, symbols);
+                    if (prev != null) {
+                        symbols = prev;
+                    }
+                }
+            }
+            return symbols;
+        }
+    }
+}
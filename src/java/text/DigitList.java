@@ -292,11 +292,21 @@ final class DigitList implements Cloneable {
         boolean hasBeenRoundedUp = fdConverter.digitsRoundedUp();
         boolean valueExactAsDecimal = fdConverter.decimalDigitsExact();
         assert !fdConverter.isExceptional();
-        String digitsString = fdConverter.toJavaFormatString();
 
-        set(isNegative, digitsString,
-            hasBeenRoundedUp, valueExactAsDecimal,
-            maximumDigits, fixedPoint);
+        // Take the digits and the exponent straight from the converter
+        // rather than parsing them back out of the Java format string.
+        this.isNegative = isNegative;
+        count = fdConverter.getDigits(digits);
+        if (digits[0] == '0') {
+            // Only zero has a leading zero digit
+            count = 0;
+            decimalAt = 0;
+        } else {
+            decimalAt = fdConverter.getDecimalExponent();
+        }
+
+        truncate(hasBeenRoundedUp, valueExactAsDecimal,
+                 maximumDigits, fixedPoint);
     }
 
     /**
@@ -348,6 +358,18 @@ final class DigitList implements Cloneable {
             decimalAt += exponent - leadingZerosAfterDecimal;
         }
 
+        truncate(roundedUp, valueExactAsDecimal, maximumDigits, fixedPoint);
+    }
+
+    /**
+     * Reduce the digits collected by one of the set methods to those that
+     * will be displayed, rounding as appropriate.
+     * @param roundedUp whether or not rounding up has already happened.
+     * @param valueExactAsDecimal whether or not collected digits provide
+     * an exact decimal representation of the value.
+     */
+    private void truncate(boolean roundedUp, boolean valueExactAsDecimal,
+                          int maximumDigits, boolean fixedPoint) {
         if (fixedPoint) {
             // The negative of the exponent represents the number of leading
             // zeros between the decimal and the first non-zero digit, for
@@ -383,8 +405,7 @@ final class DigitList implements Cloneable {
         // Round up if appropriate.
         round(fixedPoint ? (maximumDigits + decimalAt) : maximumDigits,
               roundedUp, valueExactAsDecimal);
-
-     }
+    }
 
     /**
      * Round the representation to the given number of digits.
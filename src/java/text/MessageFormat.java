@@ -45,8 +45,14 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -827,6 +833,8 @@ public class MessageFormat extends Format {
      * <blockquote>
      *     <code>(new {@link #MessageFormat(String) MessageFormat}(pattern)).{@link #format(java.lang.Object[], java.lang.StringBuffer, java.text.FieldPosition) format}(arguments, new StringBuffer(), null).toString()</code>
      * </blockquote>
+     * except that the pattern is normally parsed only once, through the
+     * cache of {@link MessageFormat.Template#of(String) Template.of}.
      *
      * @param pattern   the pattern string
      * @param arguments object(s) to format
@@ -837,8 +845,7 @@ public class MessageFormat extends Format {
      *            that use it.
      */
     public static String format(String pattern, Object ... arguments) {
-        MessageFormat temp = new MessageFormat(pattern);
-        return temp.format(arguments);
+        return Template.of(pattern).format(arguments);
     }
 
     // Overrides
@@ -1172,6 +1179,307 @@ public class MessageFormat extends Format {
                            new Field("message argument field");
     }
 
+    /**
+     * A message pattern that has been parsed into its text and format
+     * elements for a locale.  Unlike a <code>MessageFormat</code>, a
+     * template is immutable and may be shared by any number of threads;
+     * the subformats of its format elements are used by one thread at a
+     * time.  Templates are kept in a bounded cache keyed by the pattern,
+     * the locale and the default time zone, which the date and time
+     * subformats capture when they are created, so a pattern is normally
+     * parsed once however often it is formatted.
+     *
+     * <p>A template formats its arguments exactly as a
+     * <code>MessageFormat</code> created with the same pattern and locale,
+     * but it appends the text to a <code>StringBuilder</code> or an
+     * <code>Appendable</code>:
+     * <blockquote><pre>
+     * static final MessageFormat.Template DISK_FILES = MessageFormat.Template.of(
+     *     "The disk \"{1}\" contains {0,number,integer} file(s).", Locale.US);
+     * ...
+     * DISK_FILES.formatTo(sb, fileCount, diskName);
+     * </pre></blockquote>
+     *
+     * @see MessageFormat#format(String, Object...)
+     * @since 1.8
+     */
+    public static final class Template {
+
+        /**
+         * The maximum number of templates in the cache.  When it is full,
+         * a template chosen at random is evicted to make room, so that the
+         * patterns in frequent use stay cached however many others are seen.
+         */
+        private static final int MAX_CACHED = 256;
+
+        /**
+         * The length beyond which the template of a pattern is not cached.
+         */
+        private static final int MAX_CACHED_LENGTH = 1024;
+
+        private static final ConcurrentMap<Key, Template> cache =
+            new ConcurrentHashMap<>();
+
+        private final String pattern;
+        private final Locale locale;
+        private final String text;
+        private final int[] offsets;
+        private final int[] argumentNumbers;
+        private final Format[] formats;
+
+        // The formats of numbers and dates that have no format element,
+        // created on first use
+        private volatile NumberFormat numberFormat;
+        private volatile DateFormat dateFormat;
+
+        private Template(String pattern, Locale locale) {
+            MessageFormat mf = new MessageFormat(pattern, locale);
+            int count = mf.maxOffset + 1;
+            this.pattern = pattern;
+            this.locale = locale;
+            this.text = mf.pattern;
+            this.offsets = Arrays.copyOf(mf.offsets, count);
+            this.argumentNumbers = Arrays.copyOf(mf.argumentNumbers, count);
+            this.formats = Arrays.copyOf(mf.formats, count);
+        }
+
+        /**
+         * Returns the template of a pattern for the default
+         * {@link java.util.Locale.Category#FORMAT FORMAT} locale.
+         *
+         * @param pattern the pattern, as for {@link MessageFormat#MessageFormat(String)}
+         * @return the template
+         * @exception NullPointerException if <code>pattern</code> is null
+         * @exception IllegalArgumentException if the pattern is invalid
+         */
+        public static Template of(String pattern) {
+            return of(pattern, Locale.getDefault(Locale.Category.FORMAT));
+        }
+
+        /**
+         * Returns the template of a pattern for the given locale.
+         *
+         * @param pattern the pattern, as for {@link MessageFormat#MessageFormat(String, Locale)}
+         * @param locale the locale of the subformats
+         * @return the template
+         * @exception NullPointerException if <code>pattern</code> or
+         *            <code>locale</code> is null
+         * @exception IllegalArgumentException if the pattern is invalid
+         */
+        public static Template of(String pattern, Locale locale) {
+            Key key = new Key(pattern, Objects.requireNonNull(locale),
+                              TimeZone.getDefault().getID());
+            Template t = cache.get(key);
+            if (t == null) {
+                t = new Template(pattern, locale);
+                if (pattern.length() <= MAX_CACHED_LENGTH) {
+                    if (cache.size() >= MAX_CACHED) {
+                        evictRandom();
+                    }
+                    Template prev = cache.putIfAbsent(key, t);
+                    if (prev != null) {
+                        t = prev;
+                    }
+                }
+            }
+            return t;
+        }
+
+        /**
+         * Removes a randomly chosen template from the cache.
+         */
+        private static void evictRandom() {
+            int skip = ThreadLocalRandom.current().nextInt(MAX_CACHED);
+            Iterator<Key> it = cache.keySet().iterator();
+            while (skip-- > 0 && it.hasNext()) {
+                it.next();
+            }
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        /**
+         * Returns the pattern of this template.
+         *
+         * @return the pattern from which the template was created
+         */
+        public String toPattern() {
+            return pattern;
+        }
+
+        /**
+         * Returns the locale of this template.
+         *
+         * @return the locale
+         */
+        public Locale getLocale() {
+            return locale;
+        }
+
+        /**
+         * Formats the arguments with this template.
+         *
+         * @param arguments the arguments to format
+         * @return the formatted string
+         * @exception IllegalArgumentException if an argument in the
+         *            <code>arguments</code> array is not of the type
+         *            expected by the format element(s) that use it.
+         */
+        public String format(Object... arguments) {
+            return formatTo(new StringBuilder(), arguments).toString();
+        }
+
+        /**
+         * Formats the arguments with this template, appending the text to a
+         * <code>StringBuilder</code>.
+         *
+         * @param sb where text is appended
+         * @param arguments the arguments to format
+         * @return <code>sb</code>
+         * @exception IllegalArgumentException if an argument in the
+         *            <code>arguments</code> array is not of the type
+         *            expected by the format element(s) that use it.
+         */
+        public StringBuilder formatTo(StringBuilder sb, Object... arguments) {
+            try {
+                render(sb, arguments);
+            } catch (IOException e) {
+                // A StringBuilder does not throw IOException
+                throw new AssertionError(e);
+            }
+            return sb;
+        }
+
+        /**
+         * Formats the arguments with this template, appending the text to an
+         * <code>Appendable</code>.
+         *
+         * @param out where text is appended
+         * @param arguments the arguments to format
+         * @exception IOException if an I/O error occurs
+         * @exception IllegalArgumentException if an argument in the
+         *            <code>arguments</code> array is not of the type
+         *            expected by the format element(s) that use it.
+         */
+        public void formatTo(Appendable out, Object... arguments)
+            throws IOException {
+            render(out, arguments);
+        }
+
+        /**
+         * Returns a string describing this template.
+         *
+         * @return a string describing this template
+         */
+        @Override
+        public String toString() {
+            return "MessageFormat.Template[" + pattern + ',' + locale + ']';
+        }
+
+        /**
+         * Appends the formatted arguments.  This follows
+         * <code>MessageFormat.subformat</code>.
+         */
+        private void render(Appendable out, Object[] arguments)
+            throws IOException {
+            int lastOffset = 0;
+            for (int i = 0; i < offsets.length; ++i) {
+                out.append(text, lastOffset, offsets[i]);
+                lastOffset = offsets[i];
+                int argumentNumber = argumentNumbers[i];
+                if (arguments == null || argumentNumber >= arguments.length) {
+                    out.append('{').append(Integer.toString(argumentNumber))
+                       .append('}');
+                    continue;
+                }
+                Object obj = arguments[argumentNumber];
+                String arg;
+                if (obj == null) {
+                    arg = "null";
+                } else if (formats[i] != null) {
+                    arg = subformat(formats[i], obj);
+                    if (formats[i] instanceof ChoiceFormat
+                        && arg.indexOf('{') >= 0) {
+                        // The choice is itself a message pattern
+                        of(arg, locale).render(out, arguments);
+                        continue;
+                    }
+                } else if (obj instanceof Number) {
+                    arg = subformat(numberFormat(), obj);
+                } else if (obj instanceof Date) {
+                    arg = subformat(dateFormat(), obj);
+                } else if (obj instanceof String) {
+                    arg = (String) obj;
+                } else {
+                    arg = obj.toString();
+                    if (arg == null) arg = "null";
+                }
+                out.append(arg);
+            }
+            out.append(text, lastOffset, text.length());
+        }
+
+        /**
+         * Formats an argument with a subformat, which is not thread-safe.
+         */
+        private static String subformat(Format format, Object obj) {
+            synchronized (format) {
+                return format.format(obj);
+            }
+        }
+
+        private NumberFormat numberFormat() {
+            NumberFormat nf = numberFormat;
+            if (nf == null) {
+                numberFormat = nf = NumberFormat.getInstance(locale);
+            }
+            return nf;
+        }
+
+        private DateFormat dateFormat() {
+            DateFormat df = dateFormat;
+            if (df == null) {
+                dateFormat = df = DateFormat.getDateTimeInstance(
+                    DateFormat.SHORT, DateFormat.SHORT, locale);
+            }
+            return df;
+        }
+
+        /**
+         * The key of a template in the cache.
+         */
+        private static final class Key {
+            final String pattern;
+            final Locale locale;
+            final String zoneId;
+
+            Key(String pattern, Locale locale, String zoneId) {
+                this.pattern = pattern;
+                this.locale = locale;
+                this.zoneId = zoneId;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (!(obj instanceof Key)) {
+                    return false;
+                }
+                Key other = (Key) obj;
+                return pattern.equals(other.pattern)
+                    && locale.equals(other.locale)
+                    && zoneId.equals(other.zoneId);
+            }
+
+            @Override
+            public int hashCode() {
+                return (pattern.hashCode() * 31 + locale.hashCode()) * 31
+                    + zoneId.hashCode();
+            }
+        }
+    }
+
     // ===========================privates============================
 
     /**
@@ -30,6 +30,8 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -66,6 +68,11 @@ import java.nio.charset.StandardCharsets;
  *     ignored in decoding operation.</p></li>
  * </ul>
  *
+ * <p> Data that arrives in pieces, in heap or direct byte buffers, can be
+ * encoded and decoded incrementally from one {@link ByteBuffer} to another
+ * with a {@link BufferEncoder} or a {@link BufferDecoder}, without copying
+ * it through intermediate arrays.
+ *
  * <p> Unless otherwise noted, passing a {@code null} argument to a
  * method of this class will cause a {@link java.lang.NullPointerException
  * NullPointerException} to be thrown.
@@ -341,15 +348,26 @@ public class Base64 {
                               dst);
                 buffer.position(buffer.limit());
             } else {
-                byte[] src = new byte[buffer.remaining()];
-                buffer.get(src);
-                ret = encode0(src, 0, src.length, dst);
+                ByteBuffer out = ByteBuffer.wrap(dst);
+                newBufferEncoder().encode(buffer, out, true);
+                ret = out.position();
             }
             if (ret != dst.length)
                  dst = Arrays.copyOf(dst, ret);
             return ByteBuffer.wrap(dst);
         }
 
+        /**
+         * Returns a new {@link BufferEncoder} that incrementally encodes
+         * byte buffers with the encoding scheme of this encoder.
+         *
+         * @return  A new buffer encoder
+         */
+        public BufferEncoder newBufferEncoder() {
+            return new BufferEncoder(isURL ? toBase64URL : toBase64,
+                                     newline, linemax, doPadding);
+        }
+
         /**
          * Wraps an output stream for encoding byte data using the {@link Base64}
          * encoding scheme.
@@ -606,19 +624,22 @@ public class Base64 {
         public ByteBuffer decode(ByteBuffer buffer) {
             int pos0 = buffer.position();
             try {
-                byte[] src;
-                int sp, sl;
-                if (buffer.hasArray()) {
-                    src = buffer.array();
-                    sp = buffer.arrayOffset() + buffer.position();
-                    sl = buffer.arrayOffset() + buffer.limit();
-                    buffer.position(buffer.limit());
-                } else {
-                    src = new byte[buffer.remaining()];
-                    buffer.get(src);
-                    sp = 0;
-                    sl = src.length;
+                if (!buffer.hasArray()) {
+                    // Decode without copying the input; the output is at most 3
+                    // bytes for every 4 bytes of input
+                    int len = buffer.remaining();
+                    if (len == 1 && !isMIME)
+                        throw new IllegalArgumentException(
+                            "Input byte[] should at least have 2 bytes for base64 bytes");
+                    byte[] dst = new byte[(len + 3) / 4 * 3];
+                    ByteBuffer out = ByteBuffer.wrap(dst);
+                    newBufferDecoder().decode(buffer, out, true);
+                    return ByteBuffer.wrap(dst, 0, out.position());
                 }
+                byte[] src = buffer.array();
+                int sp = buffer.arrayOffset() + buffer.position();
+                int sl = buffer.arrayOffset() + buffer.limit();
+                buffer.position(buffer.limit());
                 byte[] dst = new byte[outLength(src, sp, sl)];
                 return ByteBuffer.wrap(dst, 0, decode0(src, sp, sl, dst));
             } catch (IllegalArgumentException iae) {
@@ -647,6 +668,16 @@ public class Base64 {
             return new DecInputStream(is, isURL ? fromBase64URL : fromBase64, isMIME);
         }
 
+        /**
+         * Returns a new {@link BufferDecoder} that incrementally decodes
+         * byte buffers with the decoding scheme of this decoder.
+         *
+         * @return  A new buffer decoder
+         */
+        public BufferDecoder newBufferDecoder() {
+            return new BufferDecoder(isURL ? fromBase64URL : fromBase64, isMIME);
+        }
+
         private int outLength(byte[] src, int sp, int sl) {
             int[] base64 = isURL ? fromBase64URL : fromBase64;
             int paddings = 0;
@@ -691,6 +722,25 @@ public class Base64 {
             int bits = 0;
             int shiftto = 18;       // pos of first byte of 4-byte atom
             while (sp < sl) {
+                if (shiftto == 18) {
+                    // Whole units of four alphabet bytes at a time; any
+                    // other byte makes the unit negative
+                    int sl0 = sp + ((sl - sp) & ~3);
+                    while (sp < sl0) {
+                        int unit = base64[src[sp] & 0xff] << 18 |
+                                   base64[src[sp + 1] & 0xff] << 12 |
+                                   base64[src[sp + 2] & 0xff] << 6 |
+                                   base64[src[sp + 3] & 0xff];
+                        if (unit < 0)
+                            break;
+                        dst[dp++] = (byte)(unit >> 16);
+                        dst[dp++] = (byte)(unit >>  8);
+                        dst[dp++] = (byte)(unit);
+                        sp += 4;
+                    }
+                    if (sp >= sl)
+                        break;
+                }
                 int b = src[sp++] & 0xff;
                 if ((b = base64[b]) < 0) {
                     if (b == -2) {         // padding byte '='
@@ -737,7 +787,7 @@ public class Base64 {
             // anything left is invalid, if is not MIME.
             // if MIME, ignore all non-base64 character
             while (sp < sl) {
-                if (isMIME && base64[src[sp++]] < 0)
+                if (isMIME && base64[src[sp++] & 0xff] < 0)
                     continue;
                 throw new IllegalArgumentException(
                     "Input byte array has incorrect ending byte at " + sp);
@@ -746,6 +796,534 @@ public class Base64 {
         }
     }
 
+    /**
+     * An encoder that incrementally encodes bytes from one {@link ByteBuffer}
+     * into another using the {@link Base64} encoding scheme of the
+     * {@link Encoder} that created it.
+     *
+     * <p> Input may be supplied in any number of pieces; bytes of an
+     * incomplete 3-byte group are held by the encoder until the rest of the
+     * group arrives or the end of input is signalled. Output that does not
+     * fit into the destination buffer is likewise held back and written by
+     * the next invocation. Heap buffers are encoded directly on their
+     * backing arrays and other buffers are accessed eight bytes at a time,
+     * so neither is copied into a temporary array.
+     *
+     * <p> Instances of this class are not safe for use by multiple
+     * concurrent threads.
+     *
+     * @see     Encoder#newBufferEncoder()
+     * @since   1.8
+     */
+    public static final class BufferEncoder {
+
+        private final char[] base64;    // byte->base64 mapping
+        private final byte[] newline;   // line separator, if needed
+        private final int linemax;
+        private final boolean doPadding;// whether or not to pad
+
+        private int leftover;           // bytes of an incomplete group
+        private int b0, b1;
+        private int linepos;
+
+        private final byte[] pending;   // output that did not fit yet
+        private int pendpos, pendlen;
+
+        BufferEncoder(char[] base64, byte[] newline, int linemax,
+                      boolean doPadding) {
+            this.base64 = base64;
+            this.newline = newline;
+            this.linemax = linemax;
+            this.doPadding = doPadding;
+            this.pending = new byte[newline == null ? 4
+                                    : Math.max(4, newline.length)];
+        }
+
+        /**
+         * Encodes as many bytes as possible from the source buffer into the
+         * destination buffer.
+         *
+         * <p> The buffers are read and written starting at their current
+         * positions, which are advanced past the bytes consumed and
+         * produced. If {@code endOfInput} is {@code true} the remaining
+         * bytes of the source buffer are the last of the input and the final
+         * unit, including any padding, is written once they are consumed.
+         * The encoder should be {@linkplain #reset reset} before it is used
+         * for new input.
+         *
+         * @param   src
+         *          the buffer to read bytes from
+         * @param   dst
+         *          the buffer to write the encoded bytes to
+         * @param   endOfInput
+         *          {@code true} if no input follows the remaining bytes of
+         *          {@code src}
+         * @return  {@code true} if the source buffer has been consumed and
+         *          all resulting bytes have been written, and {@code false}
+         *          if the destination buffer filled up first and this method
+         *          must be invoked again with more room
+         *
+         * @throws  ReadOnlyBufferException
+         *          if {@code dst} is read-only
+         */
+        public boolean encode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+            if (dst.isReadOnly())
+                throw new ReadOnlyBufferException();
+            if (!flush(dst))
+                return false;
+            while (leftover != 0 && src.hasRemaining()) {
+                if (leftover == 1) {
+                    b1 = src.get() & 0xff;
+                    leftover = 2;
+                } else {
+                    if (!newline(dst))
+                        return false;
+                    put(dst, b0 << 16 | b1 << 8 | (src.get() & 0xff), 4);
+                    leftover = 0;
+                    if (!flush(dst))
+                        return false;
+                }
+            }
+            while (src.remaining() >= 3) {
+                if (!newline(dst))
+                    return false;
+                int n = Math.min(src.remaining() / 3, dst.remaining() / 4);
+                if (linemax > 0)
+                    n = Math.min(n, (linemax - linepos) / 4);
+                if (n > 0) {
+                    encodeBlocks(src, dst, n);
+                    linepos += n * 4;
+                } else {
+                    int bits = (src.get() & 0xff) << 16 |
+                               (src.get() & 0xff) <<  8 |
+                               (src.get() & 0xff);
+                    put(dst, bits, 4);
+                    if (!flush(dst))
+                        return false;
+                }
+            }
+            while (src.hasRemaining()) {
+                if (leftover++ == 0)
+                    b0 = src.get() & 0xff;
+                else
+                    b1 = src.get() & 0xff;
+            }
+            if (endOfInput && leftover != 0) {
+                if (!newline(dst))
+                    return false;
+                if (leftover == 1)
+                    put(dst, b0 << 16, 2);
+                else
+                    put(dst, b0 << 16 | b1 << 8, 3);
+                leftover = 0;
+            }
+            return flush(dst);
+        }
+
+        /**
+         * Resets this encoder, discarding any input and output it holds.
+         *
+         * @return  This encoder
+         */
+        public BufferEncoder reset() {
+            leftover = 0;
+            linepos = 0;
+            pendpos = pendlen = 0;
+            return this;
+        }
+
+        /*
+         * Encodes n whole groups, for which both buffers have room.
+         */
+        private void encodeBlocks(ByteBuffer src, ByteBuffer dst, int n) {
+            char[] base64 = this.base64;
+            int sp = src.position();
+            int dp = dst.position();
+            if (src.hasArray() && dst.hasArray()) {
+                byte[] sa = src.array();
+                byte[] da = dst.array();
+                int si = src.arrayOffset() + sp;
+                int sl = si + n * 3;
+                int di = dst.arrayOffset() + dp;
+                while (si < sl) {
+                    int bits = (sa[si++] & 0xff) << 16 |
+                               (sa[si++] & 0xff) <<  8 |
+                               (sa[si++] & 0xff);
+                    da[di++] = (byte)base64[(bits >>> 18) & 0x3f];
+                    da[di++] = (byte)base64[(bits >>> 12) & 0x3f];
+                    da[di++] = (byte)base64[(bits >>> 6)  & 0x3f];
+                    da[di++] = (byte)base64[bits & 0x3f];
+                }
+            } else {
+                // Two groups per word: read eight bytes, of which six are
+                // encoded, and write the eight resulting bytes at once
+                boolean sswap = src.order() != ByteOrder.BIG_ENDIAN;
+                boolean dswap = dst.order() != ByteOrder.BIG_ENDIAN;
+                int sl = sp + n * 3;
+                int sw = Math.min(sl, src.limit() - 2) - 6;
+                int si = sp, di = dp;
+                while (si <= sw) {
+                    long v = src.getLong(si);
+                    if (sswap)
+                        v = Long.reverseBytes(v);
+                    long w = (long)unit((int)(v >>> 40)) << 32 |
+                             (unit((int)(v >>> 16)) & 0xffffffffL);
+                    dst.putLong(di, dswap ? Long.reverseBytes(w) : w);
+                    si += 6;
+                    di += 8;
+                }
+                while (si < sl) {
+                    int bits = (src.get(si++) & 0xff) << 16 |
+                               (src.get(si++) & 0xff) <<  8 |
+                               (src.get(si++) & 0xff);
+                    dst.put(di++, (byte)base64[(bits >>> 18) & 0x3f]);
+                    dst.put(di++, (byte)base64[(bits >>> 12) & 0x3f]);
+                    dst.put(di++, (byte)base64[(bits >>> 6)  & 0x3f]);
+                    dst.put(di++, (byte)base64[bits & 0x3f]);
+                }
+            }
+            src.position(sp + n * 3);
+            dst.position(dp + n * 4);
+        }
+
+        /*
+         * Returns the four encoded bytes of the low 24 bits of bits, the
+         * first in the most significant position.
+         */
+        private int unit(int bits) {
+            char[] base64 = this.base64;
+            return base64[(bits >>> 18) & 0x3f] << 24 |
+                   base64[(bits >>> 12) & 0x3f] << 16 |
+                   base64[(bits >>> 6)  & 0x3f] <<  8 |
+                   base64[bits & 0x3f];
+        }
+
+        /*
+         * Writes the line separator if the current line is full, since a
+         * unit follows. Returns false if it did not fit in full.
+         */
+        private boolean newline(ByteBuffer dst) {
+            if (linemax <= 0 || linepos < linemax)
+                return true;
+            linepos = 0;
+            int n = newline.length;
+            if (dst.remaining() >= n) {
+                dst.put(newline);
+                return true;
+            }
+            System.arraycopy(newline, 0, pending, 0, n);
+            pendpos = 0;
+            pendlen = n;
+            return flush(dst);
+        }
+
+        /*
+         * Writes the first len encoded bytes of the group in the high
+         * bits of bits, followed by padding for a partial group.
+         */
+        private void put(ByteBuffer dst, int bits, int len) {
+            byte[] buf = pending;
+            int n = 0;
+            buf[n++] = (byte)base64[(bits >>> 18) & 0x3f];
+            buf[n++] = (byte)base64[(bits >>> 12) & 0x3f];
+            if (len > 2)
+                buf[n++] = (byte)base64[(bits >>> 6) & 0x3f];
+            if (len > 3)
+                buf[n++] = (byte)base64[bits & 0x3f];
+            else if (doPadding)
+                while (n < 4)
+                    buf[n++] = '=';
+            linepos += 4;
+            pendpos = 0;
+            pendlen = n;
+            flush(dst);
+        }
+
+        /*
+         * Writes as much of the held back output as fits. Returns true
+         * if none is left.
+         */
+        private boolean flush(ByteBuffer dst) {
+            int n = Math.min(pendlen - pendpos, dst.remaining());
+            if (n > 0) {
+                dst.put(pending, pendpos, n);
+                pendpos += n;
+            }
+            return pendpos == pendlen;
+        }
+    }
+
+    /**
+     * A decoder that incrementally decodes bytes from one {@link ByteBuffer}
+     * into another using the {@link Base64} encoding scheme of the
+     * {@link Decoder} that created it.
+     *
+     * <p> Input may be supplied in any number of pieces, split at any byte;
+     * the bits of an incomplete 4-byte unit are held by the decoder until
+     * the rest of the unit arrives or the end of input is signalled. Output
+     * that does not fit into the destination buffer is likewise held back
+     * and written by the next invocation. The input is validated as by
+     * {@link Decoder#decode(byte[])}; the padding character {@code '='} and
+     * any bytes following it are checked as they arrive.
+     *
+     * <p> Instances of this class are not safe for use by multiple
+     * concurrent threads.
+     *
+     * @see     Decoder#newBufferDecoder()
+     * @since   1.8
+     */
+    public static final class BufferDecoder {
+
+        private static final int DATA = 0;      // reading alphabet bytes
+        private static final int PAD = 1;       // one '=' read, one due
+        private static final int DONE = 2;      // padding complete
+
+        private final int[] base64;
+        private final boolean isMIME;
+
+        private int bits;
+        private int shiftto = 18;       // pos of next byte of 4-byte atom
+        private int state = DATA;
+
+        private final byte[] pending = new byte[3];
+        private int pendpos, pendlen;
+
+        BufferDecoder(int[] base64, boolean isMIME) {
+            this.base64 = base64;
+            this.isMIME = isMIME;
+        }
+
+        /**
+         * Decodes as many bytes as possible from the source buffer into the
+         * destination buffer.
+         *
+         * <p> The buffers are read and written starting at their current
+         * positions, which are advanced past the bytes consumed and
+         * produced. If {@code endOfInput} is {@code true} the remaining
+         * bytes of the source buffer are the last of the input, and an
+         * incomplete final unit is decoded once they are consumed. The
+         * decoder should be {@linkplain #reset reset} before it is used for
+         * new input.
+         *
+         * <p> If the input is not in valid Base64 scheme, an
+         * {@code IllegalArgumentException} is thrown with the position of
+         * the source buffer at the offending byte.
+         *
+         * @param   src
+         *          the buffer to read bytes from
+         * @param   dst
+         *          the buffer to write the decoded bytes to
+         * @param   endOfInput
+         *          {@code true} if no input follows the remaining bytes of
+         *          {@code src}
+         * @return  {@code true} if the source buffer has been consumed and
+         *          all resulting bytes have been written, and {@code false}
+         *          if the destination buffer filled up first and this method
+         *          must be invoked again with more room
+         *
+         * @throws  IllegalArgumentException
+         *          if the input is not in valid Base64 scheme
+         * @throws  ReadOnlyBufferException
+         *          if {@code dst} is read-only
+         */
+        public boolean decode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+            if (dst.isReadOnly())
+                throw new ReadOnlyBufferException();
+            int[] base64 = this.base64;
+            if (!flush(dst))
+                return false;
+            while (src.hasRemaining()) {
+                int sp = src.position();
+                if (shiftto == 18 && state == DATA) {
+                    int n = Math.min(src.remaining() / 4, dst.remaining() / 3);
+                    if (n > 0 && decodeBlocks(src, dst, n) == n)
+                        continue;
+                    if (!src.hasRemaining())
+                        break;
+                    sp = src.position();
+                }
+                int c = src.get(sp);
+                int b = base64[c & 0xff];
+                if (state == DONE) {
+                    // anything left is invalid, if is not MIME.
+                    // if MIME, ignore all non-base64 character
+                    if (isMIME && b < 0) {
+                        src.position(sp + 1);
+                        continue;
+                    }
+                    throw new IllegalArgumentException(
+                        "Input byte array has incorrect ending byte at " + sp);
+                }
+                if (state == PAD) {
+                    if (c != '=')
+                        throw new IllegalArgumentException(
+                            "Input byte array has wrong 4-byte ending unit");
+                    src.position(sp + 1);
+                    end(dst);
+                    if (!flush(dst))
+                        return false;
+                    continue;
+                }
+                if (b < 0) {
+                    if (b == -2) {         // padding byte '='
+                        // =     shiftto==18 unnecessary padding
+                        // x=    shiftto==12 a dangling single x
+                        // xx=   shiftto==6 one more = to follow
+                        if (shiftto == 18)
+                            throw new IllegalArgumentException(
+                                "Input byte array has wrong 4-byte ending unit");
+                        if (shiftto == 12)
+                            throw new IllegalArgumentException(
+                                "Last unit does not have enough valid bits");
+                        src.position(sp + 1);
+                        if (shiftto == 6) {
+                            state = PAD;
+                            continue;
+                        }
+                        end(dst);
+                        if (!flush(dst))
+                            return false;
+                        continue;
+                    }
+                    if (isMIME) {   // skip if for rfc2045
+                        src.position(sp + 1);
+                        continue;
+                    }
+                    throw new IllegalArgumentException(
+                        "Illegal base64 character " + Integer.toString(c, 16));
+                }
+                src.position(sp + 1);
+                bits |= (b << shiftto);
+                shiftto -= 6;
+                if (shiftto < 0) {
+                    put(dst, bits, 3);
+                    shiftto = 18;
+                    bits = 0;
+                    if (!flush(dst))
+                        return false;
+                }
+            }
+            if (endOfInput) {
+                if (state == PAD)
+                    throw new IllegalArgumentException(
+                        "Input byte array has wrong 4-byte ending unit");
+                if (shiftto == 12)
+                    // dangling single "x", incorrectly encoded.
+                    throw new IllegalArgumentException(
+                        "Last unit does not have enough valid bits");
+                if (state == DATA && shiftto != 18)
+                    end(dst);
+            }
+            return flush(dst);
+        }
+
+        /**
+         * Resets this decoder, discarding any input and output it holds.
+         *
+         * @return  This decoder
+         */
+        public BufferDecoder reset() {
+            bits = 0;
+            shiftto = 18;
+            state = DATA;
+            pendpos = pendlen = 0;
+            return this;
+        }
+
+        /*
+         * Decodes up to n whole units of alphabet bytes, for which the
+         * destination has room, stopping before the first unit holding
+         * any other byte. Returns the number of units decoded.
+         */
+        private int decodeBlocks(ByteBuffer src, ByteBuffer dst, int n) {
+            int[] base64 = this.base64;
+            int sp = src.position();
+            int dp = dst.position();
+            int i = 0;
+            if (src.hasArray() && dst.hasArray()) {
+                byte[] sa = src.array();
+                byte[] da = dst.array();
+                int si = src.arrayOffset() + sp;
+                int di = dst.arrayOffset() + dp;
+                for (; i < n; i++, si += 4) {
+                    int unit = base64[sa[si] & 0xff] << 18 |
+                               base64[sa[si + 1] & 0xff] << 12 |
+                               base64[sa[si + 2] & 0xff] << 6 |
+                               base64[sa[si + 3] & 0xff];
+                    if (unit < 0)
+                        break;
+                    da[di++] = (byte)(unit >> 16);
+                    da[di++] = (byte)(unit >>  8);
+                    da[di++] = (byte)(unit);
+                }
+            } else {
+                // Read each unit as one word
+                boolean swap = src.order() != ByteOrder.BIG_ENDIAN;
+                for (int si = sp, di = dp; i < n; i++, si += 4) {
+                    int w = src.getInt(si);
+                    if (swap)
+                        w = Integer.reverseBytes(w);
+                    int unit = base64[w >>> 24] << 18 |
+                               base64[(w >>> 16) & 0xff] << 12 |
+                               base64[(w >>> 8) & 0xff] << 6 |
+                               base64[w & 0xff];
+                    if (unit < 0)
+                        break;
+                    dst.put(di++, (byte)(unit >> 16));
+                    dst.put(di++, (byte)(unit >>  8));
+                    dst.put(di++, (byte)(unit));
+                }
+            }
+            src.position(sp + i * 4);
+            dst.position(dp + i * 3);
+            return i;
+        }
+
+        /*
+         * Writes the bytes of the final, incomplete unit.
+         */
+        private void end(ByteBuffer dst) {
+            put(dst, bits, shiftto == 6 ? 1 : 2);
+            bits = 0;
+            shiftto = 18;
+            state = DONE;
+        }
+
+        /*
+         * Writes the first len of the three bytes in the low 24 bits of
+         * bits.
+         */
+        private void put(ByteBuffer dst, int bits, int len) {
+            if (dst.remaining() >= len) {
+                dst.put((byte)(bits >> 16));
+                if (len > 1)
+                    dst.put((byte)(bits >> 8));
+                if (len > 2)
+                    dst.put((byte)(bits));
+                return;
+            }
+            pending[0] = (byte)(bits >> 16);
+            pending[1] = (byte)(bits >> 8);
+            pending[2] = (byte)(bits);
+            pendpos = 0;
+            pendlen = len;
+            flush(dst);
+        }
+
+        /*
+         * Writes as much of the held back output as fits. Returns true
+         * if none is left.
+         */
+        private boolean flush(ByteBuffer dst) {
+            int n = Math.min(pendlen - pendpos, dst.remaining());
+            if (n > 0) {
+                dst.put(pending, pendpos, n);
+                pendpos += n;
+            }
+            return pendpos == pendlen;
+        }
+    }
+
     /*
      * An output stream for encoding bytes into the Base64.
      */
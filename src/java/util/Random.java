@@ -599,6 +599,289 @@ class Random implements java.io.Serializable {
         }
     }
 
+    // bulk methods
+
+    /**
+     * The number of values generated by the bulk methods of class
+     * {@code Random} for each atomic update of the seed.
+     */
+    private static final int BULK_SIZE = 256;
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values.
+     *
+     * <p>The method {@code nextInts} fills the array as if by calling
+     * {@link #nextInt()} for each element in turn. Class {@code Random}
+     * itself updates the seed only once for each run of up to 256
+     * elements, so that concurrent use of a shared instance contends far
+     * less than with one call per element; each run is a consecutive part
+     * of the sequence.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextInts(int[] array) {
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = nextInt();
+            return;
+        }
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    s = (s * multiplier + addend) & mask;
+                    array[j] = (int)(s >>> 16);         // next(32)
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive). The values are generated as by the stream returned by
+     * {@link #ints(int, int) ints(origin, bound)}. Class {@code
+     * Random} itself updates the seed once for each run of up to 256
+     * elements, as {@link #nextInts(int[])} does.
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     * @since 1.8
+     */
+    public void nextInts(int[] array, int origin, int bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = internalNextInt(origin, bound);
+            return;
+        }
+        // internalNextInt, as nextInt(n) + origin when n is representable
+        int n = bound - origin, m = n - 1;
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    int r;
+                    if (n > 0) {
+                        for (;;) {
+                            // next(31)
+                            int u = (int)((s = (s * multiplier + addend) & mask) >>> 17);
+                            if ((n & m) == 0) {
+                                r = (int)((n * (long)u) >> 31);
+                                break;
+                            }
+                            if (u - (r = u % n) + m >= 0)
+                                break;
+                        }
+                        r += origin;
+                    } else {
+                        do {
+                            // next(32)
+                            r = (int)((s = (s * multiplier + addend) & mask) >>> 16);
+                        } while (r < origin || r >= bound);
+                    }
+                    array[j] = r;
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values.
+     *
+     * <p>The method {@code nextLongs} fills the array as if by calling
+     * {@link #nextLong()} for each element in turn. Class {@code Random}
+     * itself updates the seed only once for each run of up to 256
+     * elements, so that concurrent use of a shared instance contends far
+     * less than with one call per element; each run is a consecutive part
+     * of the sequence.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextLongs(long[] array) {
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = nextLong();
+            return;
+        }
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    int hi = (int)((s = (s * multiplier + addend) & mask) >>> 16);
+                    int lo = (int)((s = (s * multiplier + addend) & mask) >>> 16);
+                    array[j] = ((long)hi << 32) + lo;
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive). The values are generated as by the stream returned by
+     * {@link #longs(long, long) longs(origin, bound)}. Class {@code
+     * Random} itself updates the seed once for each run of up to 256
+     * elements, as {@link #nextLongs(long[])} does.
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     * @since 1.8
+     */
+    public void nextLongs(long[] array, long origin, long bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = internalNextLong(origin, bound);
+            return;
+        }
+        // internalNextLong, with each candidate drawn as by nextLong()
+        long n = bound - origin, m = n - 1;
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    long r;
+                    for (;;) {
+                        int hi = (int)((s = (s * multiplier + addend) & mask) >>> 16);
+                        int lo = (int)((s = (s * multiplier + addend) & mask) >>> 16);
+                        r = ((long)hi << 32) + lo;
+                        if ((n & m) == 0L) {        // power of two
+                            r = (r & m) + origin;
+                            break;
+                        } else if (n > 0L) {        // reject over-represented candidates
+                            long u = r >>> 1;
+                            if (u + m - (r = u % n) >= 0L) {
+                                r += origin;
+                                break;
+                            }
+                        } else if (r >= origin && r < bound) {
+                            break;
+                        }
+                    }
+                    array[j] = r;
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values
+     * between zero (inclusive) and one (exclusive).
+     *
+     * <p>The method {@code nextDoubles} fills the array as if by calling
+     * {@link #nextDouble()} for each element in turn. Class {@code Random}
+     * itself updates the seed only once for each run of up to 256
+     * elements, so that concurrent use of a shared instance contends far
+     * less than with one call per element; each run is a consecutive part
+     * of the sequence.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextDoubles(double[] array) {
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = nextDouble();
+            return;
+        }
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    long hi = (s = (s * multiplier + addend) & mask) >>> 22;
+                    long lo = (s = (s * multiplier + addend) & mask) >>> 21;
+                    array[j] = ((hi << 27) + lo) * DOUBLE_UNIT;
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive). The values are generated as by the stream returned by
+     * {@link #doubles(double, double) doubles(origin, bound)}. Class {@code
+     * Random} itself updates the seed once for each run of up to 256
+     * elements, as {@link #nextDoubles(double[])} does.
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}
+     * @since 1.8
+     */
+    public void nextDoubles(double[] array, double origin, double bound) {
+        if (!(origin < bound))
+            throw new IllegalArgumentException(BadRange);
+        int len = array.length;
+        if (getClass() != Random.class) {
+            for (int i = 0; i < len; i++)
+                array[i] = internalNextDouble(origin, bound);
+            return;
+        }
+        double scale = bound - origin;
+        AtomicLong seed = this.seed;
+        for (int i = 0; i < len; ) {
+            int end = (len - i > BULK_SIZE) ? i + BULK_SIZE : len;
+            long oldseed, s;
+            do {
+                s = oldseed = seed.get();
+                for (int j = i; j < end; j++) {
+                    long hi = (s = (s * multiplier + addend) & mask) >>> 22;
+                    long lo = (s = (s * multiplier + addend) & mask) >>> 21;
+                    double r = ((hi << 27) + lo) * DOUBLE_UNIT * scale + origin;
+                    if (r >= bound) // correct for rounding
+                        r = Double.longBitsToDouble(Double.doubleToLongBits(bound) - 1);
+                    array[j] = r;
+                }
+            } while (!seed.compareAndSet(oldseed, s));
+            i = end;
+        }
+    }
+
     // stream methods, coded in a way intended to better isolate for
     // maintenance purposes the small differences across forms.
 
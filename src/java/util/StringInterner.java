@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of strings, in which equal strings are represented by a single
+ * canonical instance, like the pool maintained by {@link String#intern()}.
+ * <p>
+ * Unlike {@code String.intern()}, whose pool has a fixed size and is
+ * maintained by the virtual machine, a {@code StringInterner} is an
+ * ordinary object that can be sized, bounded and discarded by its owner.
+ * Strings in the pool are only weakly referenced, so that a string no
+ * longer used elsewhere is removed from the pool once it is garbage
+ * collected.
+ * <p>
+ * Besides strings, the pool can be searched for a {@link CharSequence}, a
+ * range of a {@code char} array or a range of a {@code byte} array, so
+ * that a parser can obtain the canonical instance of a token without first
+ * creating a string for it; a string is only created when the token is not
+ * yet in the pool.
+ * <p>
+ * The pool is divided into stripes, each with its own lock and reference
+ * queue.  Lookups of strings already in the pool do not take any lock;
+ * adding a string only locks one stripe.
+ * <p>
+ * A pool may be given a maximum size.  Once the pool is full, strings that
+ * are not yet in the pool are returned without being added, until strings
+ * are removed from it by the garbage collector.
+ *
+ * @apiNote
+ * <p>The canonical instance of a token read into a buffer may be obtained
+ * as follows:
+ *
+ * <pre> {@code
+ * StringInterner names = new StringInterner();
+ * ...
+ * String name = names.intern(buf, start, end - start);
+ * }</pre>
+ *
+ * @since 1.8
+ */
+public final class StringInterner {
+
+    /*
+     * Each stripe is a hash table of weak references, in chains linked
+     * through volatile fields.  Readers traverse the table without
+     * locking; writers hold the stripe's lock.  A reader that misses an
+     * entry because of a concurrent change falls back to the locked path,
+     * which looks again before adding a string, so a string is never added
+     * twice.  The hash of a string is that of String.hashCode, so that it
+     * can be computed for any form of the key.
+     */
+
+    private static final int MAX_STRIPES = 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final Stripe[] stripes;
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cleared = new LongAdder();
+
+    /**
+     * Creates an unbounded {@code StringInterner}.
+     */
+    public StringInterner() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a {@code StringInterner} that holds at most the given number
+     * of strings.
+     *
+     * @param maxSize the maximum number of strings in the pool
+     * @throws IllegalArgumentException if {@code maxSize} is not positive
+     */
+    public StringInterner(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        this.maxSize = maxSize;
+        int n = 1;
+        int target = Math.min(Runtime.getRuntime().availableProcessors() * 2,
+                              MAX_STRIPES);
+        while (n < target)
+            n <<= 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * Returns the canonical instance of the given string.  If the pool does
+     * not yet contain an equal string, the given string is added to the
+     * pool, if there is room, and returned.
+     *
+     * @param s the string
+     * @return a string equal to {@code s}, which is the same instance
+     *         for all equal strings while the string is in the pool
+     * @throws NullPointerException if {@code s} is null
+     */
+    public String intern(String s) {
+        int h = s.hashCode();
+        String r = stripeFor(h).find(h, s, 0, s.length());
+        if (r != null) {
+            hits.increment();
+            return r;
+        }
+        return add(h, s, 0, s.length(), s);
+    }
+
+    /**
+     * Returns the canonical instance of the string with the chars of the
+     * given sequence.  A string is created only if the pool does not yet
+     * contain an equal string.
+     *
+     * @param cs the char sequence
+     * @return a string whose chars are those of {@code cs}
+     * @throws NullPointerException if {@code cs} is null
+     */
+    public String intern(CharSequence cs) {
+        if (cs instanceof String)
+            return intern((String)cs);
+        int len = cs.length();
+        int h = 0;
+        for (int i = 0; i < len; i++)
+            h = 31 * h + cs.charAt(i);
+        String r = stripeFor(h).find(h, cs, 0, len);
+        if (r != null) {
+            hits.increment();
+            return r;
+        }
+        return add(h, cs, 0, len, null);
+    }
+
+    /**
+     * Returns the canonical instance of the string with the given chars.
+     * A string is created only if the pool does not yet contain an equal
+     * string.
+     *
+     * @param chars the array that contains the chars
+     * @param off the index of the first char
+     * @param len the number of chars
+     * @return a string whose chars are {@code chars[off]} through
+     *         {@code chars[off + len - 1]}
+     * @throws NullPointerException if {@code chars} is null
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     *         negative, or {@code off + len} is greater than
+     *         {@code chars.length}
+     */
+    public String intern(char[] chars, int off, int len) {
+        checkFromIndexSize(off, len, chars.length);
+        int h = 0;
+        for (int i = off, end = off + len; i < end; i++)
+            h = 31 * h + chars[i];
+        String r = stripeFor(h).find(h, chars, off, len);
+        if (r != null) {
+            hits.increment();
+            return r;
+        }
+        return add(h, chars, off, len, null);
+    }
+
+    /**
+     * Returns the canonical instance of the string with the chars given by
+     * the bytes of the given array, decoded as ISO-8859-1, which includes
+     * ASCII.  A string is created only if the pool does not yet contain an
+     * equal string.
+     *
+     * @param bytes the array that contains the bytes
+     * @param off the index of the first byte
+     * @param len the number of bytes
+     * @return a string whose chars are the ISO-8859-1 chars of
+     *         {@code bytes[off]} through {@code bytes[off + len - 1]}
+     * @throws NullPointerException if {@code bytes} is null
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     *         negative, or {@code off + len} is greater than
+     *         {@code bytes.length}
+     */
+    public String intern(byte[] bytes, int off, int len) {
+        checkFromIndexSize(off, len, bytes.length);
+        int h = 0;
+        for (int i = off, end = off + len; i < end; i++)
+            h = 31 * h + (bytes[i] & 0xff);
+        String r = stripeFor(h).find(h, bytes, off, len);
+        if (r != null) {
+            hits.increment();
+            return r;
+        }
+        return add(h, bytes, off, len, null);
+    }
+
+    /**
+     * Returns the number of strings in the pool.  Strings that have been
+     * garbage collected but not yet removed from the pool are included.
+     *
+     * @return the number of strings in the pool
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the maximum number of strings in the pool.
+     *
+     * @return the maximum number of strings in the pool, or
+     *         {@code Integer.MAX_VALUE} if the pool is unbounded
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of lookups that found a string in the pool.
+     *
+     * @return the number of lookups that found a string in the pool
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that added a string to the pool.
+     *
+     * @return the number of lookups that added a string to the pool
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a string in the
+     * pool, and did not add one because the pool was full.
+     *
+     * @return the number of strings not added because the pool was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of strings removed from the pool after being
+     * garbage collected.
+     *
+     * @return the number of strings removed from the pool
+     */
+    public long getClearedCount() {
+        return cleared.sum();
+    }
+
+    /**
+     * Returns a string identifying this pool and its statistics.
+     *
+     * @return a string representation of this pool
+     */
+    public String toString() {
+        return super.toString() + "[size=" + size() +
+            ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+            ", rejected=" + getRejectedCount() +
+            ", cleared=" + getClearedCount() + "]";
+    }
+
+    /**
+     * Reserves room for a string in the pool; returns false if it is full.
+     */
+    private boolean reserve() {
+        for (;;) {
+            int c = size.get();
+            if (c >= maxSize)
+                return false;
+            if (size.compareAndSet(c, c + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Adds a string that was not found in the pool.  If the pool is full,
+     * the strings garbage collected in every stripe are removed before
+     * the string is rejected, as they may be queued in other stripes than
+     * the one the string belongs to.
+     */
+    private String add(int h, Object key, int off, int len, String s) {
+        Stripe stripe = stripeFor(h);
+        String r = stripe.add(this, h, key, off, len, s, false);
+        if (r == null) {
+            for (Stripe other : stripes)
+                other.expungeAll(this);
+            r = stripe.add(this, h, key, off, len, s, true);
+        }
+        return r;
+    }
+
+    private Stripe stripeFor(int h) {
+        // use different bits than the bucket index within the stripe
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9;
+        return stripes[(h >>> 16) & (stripes.length - 1)];
+    }
+
+    private static void checkFromIndexSize(int off, int len, int length) {
+        if (off < 0 || len < 0 || off > length - len)
+            throw new IndexOutOfBoundsException(
+                "off: " + off + ", len: " + len + ", length: " + length);
+    }
+
+    /**
+     * Returns true if the given string has the chars of the given key,
+     * which is a String or CharSequence from {@code off}, or a range of a
+     * char or byte array.
+     */
+    private static boolean matches(String s, Object key, int off, int len) {
+        if (s.length() != len)
+            return false;
+        if (key instanceof char[]) {
+            char[] chars = (char[]) key;
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) != chars[off + i])
+                    return false;
+            }
+        } else if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) != (char) (bytes[off + i] & 0xff))
+                    return false;
+            }
+        } else if (key instanceof String) {
+            return s.equals(key);
+        } else {
+            CharSequence cs = (CharSequence) key;
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) != cs.charAt(off + i))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the string for the given key.
+     */
+    private static String newString(Object key, int off, int len) {
+        if (key instanceof char[])
+            return new String((char[]) key, off, len);
+        if (key instanceof byte[])
+            return new String((byte[]) key, off, len,
+                              StandardCharsets.ISO_8859_1);
+        return key.toString();
+    }
+
+    /**
+     * A weak reference to a string in the pool.
+     */
+    private static final class Entry extends WeakReference<String> {
+        final int hash;
+        volatile Entry next;
+
+        Entry(String s, int hash, Entry next, ReferenceQueue<String> queue) {
+            super(s, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A part of the pool, with its own lock and reference queue.
+     */
+    private static final class Stripe {
+        private volatile AtomicReferenceArray<Entry> table =
+            new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        private final ReferenceQueue<String> queue = new ReferenceQueue<>();
+        // guarded by this
+        private int count;
+
+        /**
+         * Returns the string in this stripe with the given hash and chars,
+         * or null.  Does not lock.
+         */
+        String find(int h, Object key, int off, int len) {
+            AtomicReferenceArray<Entry> tab = table;
+            for (Entry e = tab.get(h & (tab.length() - 1)); e != null;
+                 e = e.next) {
+                if (e.hash == h) {
+                    String s = e.get();
+                    if (s != null && matches(s, key, off, len))
+                        return s;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Looks for the string again while holding the lock, and adds it
+         * if it is not found and the pool has room.  The string to add is
+         * {@code s}, or a new string created from the key if {@code s} is
+         * null.  If the pool is full, returns null, or the string without
+         * adding it if {@code reject} is true.
+         */
+        synchronized String add(StringInterner pool, int h, Object key,
+                                int off, int len, String s, boolean reject) {
+            expunge(pool);
+            String r = find(h, key, off, len);
+            if (r != null) {
+                pool.hits.increment();
+                return r;
+            }
+            if (!pool.reserve()) {
+                if (!reject)
+                    return null;
+                pool.rejected.increment();
+                return (s != null) ? s : newString(key, off, len);
+            }
+            if (s == null)
+                s = newString(key, off, len);
+            AtomicReferenceArray<Entry> tab = table;
+            if (count >= tab.length() - (tab.length() >>> 2) &&
+                tab.length() < MAXIMUM_CAPACITY) {
+                tab = resize(tab);
+            }
+            int i = h & (tab.length() - 1);
+            tab.set(i, new Entry(s, h, tab.get(i), queue));
+            count++;
+            pool.misses.increment();
+            return s;
+        }
+
+        /**
+         * Moves the entries into a table of twice the size.  Readers of
+         * the old table may miss entries while they are moved.
+         */
+        private AtomicReferenceArray<Entry> resize(AtomicReferenceArray<Entry> old) {
+            int n = old.length() << 1;
+            AtomicReferenceArray<Entry> tab = new AtomicReferenceArray<>(n);
+            for (int j = 0; j < old.length(); j++) {
+                Entry e = old.get(j);
+                while (e != null) {
+                    Entry next = e.next;
+                    int i = e.hash & (n - 1);
+                    e.next = tab.get(i);
+                    tab.set(i, e);
+                    e = next;
+                }
+            }
+            table = tab;
+            return tab;
+        }
+
+        /**
+         * Removes the entries whose strings have been garbage collected,
+         * while holding the lock.
+         */
+        synchronized void expungeAll(StringInterner pool) {
+            expunge(pool);
+        }
+
+        /**
+         * Removes the entries whose strings have been garbage collected.
+         */
+        private void expunge(StringInterner pool) {
+            Object x;
+            while ((x = queue.poll()) != null) {
+                Entry e = (Entry) x;
+                AtomicReferenceArray<Entry> tab = table;
+                int i = e.hash & (tab.length() - 1);
+                Entry prev = null;
+                for (Entry p = tab.get(i); p != null; prev = p, p = p.next) {
+                    if (p == e) {
+                        if (prev == null)
+                            tab.set(i, e.next);
+                        else
+                            prev.next = e.next;
+                        count--;
+                        pool.size.decrementAndGet();
+                        pool.cleared.increment();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast generator of uniform pseudorandom values with a period of
+ * 2<sup>256</sup>&nbsp;&minus;&nbsp;1, implementing the xoshiro256++
+ * algorithm of Blackman and Vigna. Class {@code XoshiroRandom} supports
+ * methods for producing pseudorandom numbers of type {@code int},
+ * {@code long} and {@code double} with the same usages and the same
+ * bounded forms as class {@link SplittableRandom}, and methods that fill
+ * whole arrays with such values.
+ *
+ * <p>A generator can be <em>jumped</em>: method {@link #jump} advances
+ * it by 2<sup>128</sup> values at the cost of a few hundred ordinary
+ * steps. Method {@link #copyAndJump} returns a copy of a generator and
+ * then jumps the generator, so repeated calls hand out generators whose
+ * series of values are guaranteed not to overlap for 2<sup>128</sup>
+ * values each. Because the result depends only on the initial seed and
+ * the number of calls, parallel computations that give each task the
+ * generator for its index produce the same values on every run,
+ * however the tasks are scheduled. Method {@link #split} instead seeds a
+ * new generator from this one, which suits computations that create
+ * subtasks recursively, as with {@code SplittableRandom}.
+ *
+ * <p>Instances of {@code XoshiroRandom} are <em>not</em> thread-safe.
+ * Like instances of {@code SplittableRandom}, they are designed to be
+ * handed to, not shared across, threads, so no synchronization is
+ * needed to use them.
+ *
+ * <p>Instances of {@code XoshiroRandom} are not cryptographically
+ * secure.  Consider instead using {@link java.security.SecureRandom}
+ * in security-sensitive applications.
+ *
+ * @see     SplittableRandom
+ * @since   1.8
+ */
+public final class XoshiroRandom {
+
+    /*
+     * Implementation Overview.
+     *
+     * The state is 256 bits in four longs, updated by the xorshift-
+     * style linear transformation of xoshiro256 and scrambled into
+     * results with the "++" output function (a rotation and two
+     * additions), as described in "Scrambled Linear Pseudorandom
+     * Number Generators" by David Blackman and Sebastiano Vigna,
+     * ACM Transactions on Mathematical Software, 2021.
+     *
+     * Because the update is linear over GF(2), advancing the state by
+     * 2^128 steps is a polynomial in the update, whose coefficients
+     * are the JUMP constants; jump() evaluates it with 256 steps.
+     *
+     * Seeds are expanded into the four state words with the
+     * SplitMix64 generator (the algorithm of SplittableRandom), which
+     * cannot produce four zero words from any seed in practice; the
+     * all-zero state, which xoshiro never leaves, is nonetheless
+     * excluded explicitly.
+     *
+     * The bulk methods copy the state into locals for the duration of
+     * the loop so that it stays in registers.
+     */
+
+    /**
+     * The golden ratio scaled to 64bits, the SplitMix64 increment.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The least non-zero value returned by nextDouble(). This value
+     * is scaled by a random value of 53 bits to produce a result.
+     */
+    private static final double DOUBLE_UNIT = 0x1.0p-53; // 1.0 / (1L << 53);
+
+    /**
+     * The coefficients of the jump polynomial, for 2^128 steps.
+     */
+    private static final long[] JUMP = {
+        0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL,
+        0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+    };
+
+    /**
+     * The state, never all zero.
+     */
+    private long s0, s1, s2, s3;
+
+    /**
+     * Internal constructor used by all others.
+     */
+    private XoshiroRandom(long s0, long s1, long s2, long s3) {
+        if ((s0 | s1 | s2 | s3) == 0L)
+            s0 = GOLDEN_GAMMA;
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    /**
+     * Computes Stafford variant 13 of 64bit mix function.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The seed generator for default constructors.
+     */
+    private static final AtomicLong defaultGen =
+        new AtomicLong(mix64(System.currentTimeMillis()) ^
+                       mix64(System.nanoTime()));
+
+    // IllegalArgumentException messages
+    static final String BadBound = "bound must be positive";
+    static final String BadRange = "bound must be greater than origin";
+
+    /**
+     * Internal forms of the bounded nextX methods, the same as those of
+     * SplittableRandom.
+     */
+    private long internalNextLong(long origin, long bound) {
+        long r = nextLong();
+        long n = bound - origin, m = n - 1;
+        if ((n & m) == 0L)  // power of two
+            r = (r & m) + origin;
+        else if (n > 0L) {  // reject over-represented candidates
+            for (long u = r >>> 1;            // ensure nonnegative
+                 u + m - (r = u % n) < 0L;    // rejection check
+                 u = nextLong() >>> 1) // retry
+                ;
+            r += origin;
+        }
+        else {              // range not representable as long
+            while (r < origin || r >= bound)
+                r = nextLong();
+        }
+        return r;
+    }
+
+    private int internalNextInt(int origin, int bound) {
+        int r = nextInt();
+        int n = bound - origin, m = n - 1;
+        if ((n & m) == 0)
+            r = (r & m) + origin;
+        else if (n > 0) {
+            for (int u = r >>> 1;
+                 u + m - (r = u % n) < 0;
+                 u = nextInt() >>> 1)
+                ;
+            r += origin;
+        }
+        else {
+            while (r < origin || r >= bound)
+                r = nextInt();
+        }
+        return r;
+    }
+
+    private double internalNextDouble(double origin, double bound) {
+        double r = (nextLong() >>> 11) * DOUBLE_UNIT;
+        r = r * (bound - origin) + origin;
+        if (r >= bound) // correct for rounding
+            r = Double.longBitsToDouble(Double.doubleToLongBits(bound) - 1);
+        return r;
+    }
+
+    /* ---------------- public methods ---------------- */
+
+    /**
+     * Creates a new XoshiroRandom instance using the specified
+     * initial seed. XoshiroRandom instances created with the same
+     * seed in the same program generate identical sequences of values.
+     *
+     * @param seed the initial seed
+     */
+    public XoshiroRandom(long seed) {
+        this(mix64(seed += GOLDEN_GAMMA), mix64(seed += GOLDEN_GAMMA),
+             mix64(seed += GOLDEN_GAMMA), mix64(seed + GOLDEN_GAMMA));
+    }
+
+    /**
+     * Creates a new XoshiroRandom instance that is likely to
+     * generate sequences of values that are statistically independent
+     * of those of any other instances in the current program; and
+     * may, and typically does, vary across program invocations.
+     */
+    public XoshiroRandom() {
+        this(defaultGen.getAndAdd(4 * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Returns a new XoshiroRandom instance with the same state as
+     * this one, which generates the same values as this instance
+     * would from now on.
+     *
+     * @return the new XoshiroRandom instance
+     */
+    public XoshiroRandom copy() {
+        return new XoshiroRandom(s0, s1, s2, s3);
+    }
+
+    /**
+     * Advances this generator by 2<sup>128</sup> values, as if by that
+     * many calls to {@link #nextLong()}.
+     */
+    public void jump() {
+        long t0 = 0L, t1 = 0L, t2 = 0L, t3 = 0L;
+        for (long j : JUMP) {
+            for (int b = 0; b < 64; b++) {
+                if ((j & (1L << b)) != 0L) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    /**
+     * Returns a copy of this generator, then {@linkplain #jump jumps}
+     * this generator. The values generated by the copies returned by
+     * successive calls do not overlap for the first 2<sup>128</sup>
+     * values of each copy.
+     *
+     * @return a copy of this generator before the jump
+     */
+    public XoshiroRandom copyAndJump() {
+        XoshiroRandom r = copy();
+        jump();
+        return r;
+    }
+
+    /**
+     * Constructs and returns a new XoshiroRandom instance that shares
+     * no mutable state with this instance. The new instance is seeded
+     * from values generated by this one, so with very high probability
+     * the values collectively generated by both have the same
+     * statistical properties as if the same quantity of values were
+     * generated by a single instance. Unlike with {@link #copyAndJump},
+     * this is not guaranteed.
+     *
+     * @return the new XoshiroRandom instance
+     */
+    public XoshiroRandom split() {
+        return new XoshiroRandom(mix64(nextLong()), mix64(nextLong()),
+                                 mix64(nextLong()), mix64(nextLong()));
+    }
+
+    /**
+     * Returns a pseudorandom {@code int} value.
+     *
+     * @return a pseudorandom {@code int} value
+     */
+    public int nextInt() {
+        return (int)(nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a pseudorandom {@code int} value between zero (inclusive)
+     * and the specified bound (exclusive).
+     *
+     * @param bound the upper bound (exclusive).  Must be positive.
+     * @return a pseudorandom {@code int} value between zero
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code bound} is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException(BadBound);
+        return internalNextInt(0, bound);
+    }
+
+    /**
+     * Returns a pseudorandom {@code int} value between the specified
+     * origin (inclusive) and the specified bound (exclusive).
+     *
+     * @param origin the least value returned
+     * @param bound the upper bound (exclusive)
+     * @return a pseudorandom {@code int} value between the origin
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     */
+    public int nextInt(int origin, int bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        return internalNextInt(origin, bound);
+    }
+
+    /**
+     * Returns a pseudorandom {@code long} value.
+     *
+     * @return a pseudorandom {@code long} value
+     */
+    public long nextLong() {
+        long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+        long r = Long.rotateLeft(s0 + s3, 23) + s0;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        this.s1 = s1 ^ s2;
+        this.s0 = s0 ^ s3;
+        this.s2 = s2 ^ t;
+        this.s3 = Long.rotateLeft(s3, 45);
+        return r;
+    }
+
+    /**
+     * Returns a pseudorandom {@code long} value between zero (inclusive)
+     * and the specified bound (exclusive).
+     *
+     * @param bound the upper bound (exclusive).  Must be positive.
+     * @return a pseudorandom {@code long} value between zero
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code bound} is not positive
+     */
+    public long nextLong(long bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException(BadBound);
+        return internalNextLong(0L, bound);
+    }
+
+    /**
+     * Returns a pseudorandom {@code long} value between the specified
+     * origin (inclusive) and the specified bound (exclusive).
+     *
+     * @param origin the least value returned
+     * @param bound the upper bound (exclusive)
+     * @return a pseudorandom {@code long} value between the origin
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     */
+    public long nextLong(long origin, long bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        return internalNextLong(origin, bound);
+    }
+
+    /**
+     * Returns a pseudorandom {@code double} value between zero
+     * (inclusive) and one (exclusive).
+     *
+     * @return a pseudorandom {@code double} value between zero
+     *         (inclusive) and one (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns a pseudorandom {@code double} value between 0.0
+     * (inclusive) and the specified bound (exclusive).
+     *
+     * @param bound the upper bound (exclusive).  Must be positive.
+     * @return a pseudorandom {@code double} value between zero
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code bound} is not positive
+     */
+    public double nextDouble(double bound) {
+        if (!(bound > 0.0))
+            throw new IllegalArgumentException(BadBound);
+        double result = (nextLong() >>> 11) * DOUBLE_UNIT * bound;
+        return (result < bound) ?  result : // correct for rounding
+            Double.longBitsToDouble(Double.doubleToLongBits(bound) - 1);
+    }
+
+    /**
+     * Returns a pseudorandom {@code double} value between the specified
+     * origin (inclusive) and bound (exclusive).
+     *
+     * @param origin the least value returned
+     * @param bound the upper bound (exclusive)
+     * @return a pseudorandom {@code double} value between the origin
+     *         (inclusive) and the bound (exclusive)
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     */
+    public double nextDouble(double origin, double bound) {
+        if (!(origin < bound))
+            throw new IllegalArgumentException(BadRange);
+        return internalNextDouble(origin, bound);
+    }
+
+    /**
+     * Returns a pseudorandom {@code boolean} value.
+     *
+     * @return a pseudorandom {@code boolean} value
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0L;
+    }
+
+    // bulk methods
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values.
+     * The values are the same as those of successive calls of
+     * {@link #nextInt()}.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     */
+    public void nextInts(int[] array) {
+        long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+        for (int i = 0, len = array.length; i < len; i++) {
+            array[i] = (int)((Long.rotateLeft(s0 + s3, 23) + s0) >>> 32);
+            long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+        }
+        this.s0 = s0; this.s1 = s1; this.s2 = s2; this.s3 = s3;
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     */
+    public void nextInts(int[] array, int origin, int bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = internalNextInt(origin, bound);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values.
+     * The values are the same as those of successive calls of
+     * {@link #nextLong()}.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     */
+    public void nextLongs(long[] array) {
+        long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+        for (int i = 0, len = array.length; i < len; i++) {
+            array[i] = Long.rotateLeft(s0 + s3, 23) + s0;
+            long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+        }
+        this.s0 = s0; this.s1 = s1; this.s2 = s2; this.s3 = s3;
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     */
+    public void nextLongs(long[] array, long origin, long bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = internalNextLong(origin, bound);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values
+     * between zero (inclusive) and one (exclusive).
+     * The values are the same as those of successive calls of
+     * {@link #nextDouble()}.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     */
+    public void nextDoubles(double[] array) {
+        long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+        for (int i = 0, len = array.length; i < len; i++) {
+            array[i] = ((Long.rotateLeft(s0 + s3, 23) + s0) >>> 11)
+                       * DOUBLE_UNIT;
+            long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+        }
+        this.s0 = s0; this.s1 = s1; this.s2 = s2; this.s3 = s3;
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}
+     */
+    public void nextDoubles(double[] array, double origin, double bound) {
+        if (!(origin < bound))
+            throw new IllegalArgumentException(BadRange);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = internalNextDouble(origin, bound);
+    }
+}
@@ -513,6 +513,172 @@ public class ThreadLocalRandom extends Random {
         return v1 * multiplier;
     }
 
+    // bulk methods
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values.
+     * The values are the same as those of successive calls of
+     * {@link #nextInt()}, but the seed of the current thread is read
+     * and written only once.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextInts(int[] array) {
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = mix32(s += GAMMA);
+        UNSAFE.putLong(t, SEED, s);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code int} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     * @since 1.8
+     */
+    public void nextInts(int[] array, int origin, int bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        // internalNextInt, keeping the seed in a local
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        int n = bound - origin, m = n - 1;
+        for (int i = 0, len = array.length; i < len; i++) {
+            int r = mix32(s += GAMMA);
+            if ((n & m) == 0)
+                r = (r & m) + origin;
+            else if (n > 0) {
+                for (int u = r >>> 1;
+                     u + m - (r = u % n) < 0;
+                     u = mix32(s += GAMMA) >>> 1)
+                    ;
+                r += origin;
+            }
+            else {
+                while (r < origin || r >= bound)
+                    r = mix32(s += GAMMA);
+            }
+            array[i] = r;
+        }
+        UNSAFE.putLong(t, SEED, s);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values.
+     * The values are the same as those of successive calls of
+     * {@link #nextLong()}, but the seed of the current thread is read
+     * and written only once.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextLongs(long[] array) {
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = mix64(s += GAMMA);
+        UNSAFE.putLong(t, SEED, s);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code long} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is greater than
+     *         or equal to {@code bound}
+     * @since 1.8
+     */
+    public void nextLongs(long[] array, long origin, long bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException(BadRange);
+        // internalNextLong, keeping the seed in a local
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        long n = bound - origin, m = n - 1;
+        for (int i = 0, len = array.length; i < len; i++) {
+            long r = mix64(s += GAMMA);
+            if ((n & m) == 0L)  // power of two
+                r = (r & m) + origin;
+            else if (n > 0L) {  // reject over-represented candidates
+                for (long u = r >>> 1;
+                     u + m - (r = u % n) < 0L;
+                     u = mix64(s += GAMMA) >>> 1)
+                    ;
+                r += origin;
+            }
+            else {              // range not representable as long
+                while (r < origin || r >= bound)
+                    r = mix64(s += GAMMA);
+            }
+            array[i] = r;
+        }
+        UNSAFE.putLong(t, SEED, s);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values
+     * between zero (inclusive) and one (exclusive).
+     * The values are the same as those of successive calls of
+     * {@link #nextDouble()}, but the seed of the current thread is read
+     * and written only once.
+     *
+     * @param array the array to fill
+     * @throws NullPointerException if the array is null
+     * @since 1.8
+     */
+    public void nextDoubles(double[] array) {
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        for (int i = 0, len = array.length; i < len; i++)
+            array[i] = (mix64(s += GAMMA) >>> 11) * DOUBLE_UNIT;
+        UNSAFE.putLong(t, SEED, s);
+    }
+
+    /**
+     * Fills the given array with pseudorandom {@code double} values, each
+     * between the specified origin (inclusive) and the specified bound
+     * (exclusive).
+     *
+     * @param array the array to fill
+     * @param origin the least value
+     * @param bound the upper bound (exclusive)
+     * @throws NullPointerException if the array is null
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}
+     * @since 1.8
+     */
+    public void nextDoubles(double[] array, double origin, double bound) {
+        if (!(origin < bound))
+            throw new IllegalArgumentException(BadRange);
+        // internalNextDouble, keeping the seed in a local
+        Thread t = Thread.currentThread();
+        long s = UNSAFE.getLong(t, SEED);
+        double scale = bound - origin;
+        for (int i = 0, len = array.length; i < len; i++) {
+            double r = (mix64(s += GAMMA) >>> 11) * DOUBLE_UNIT * scale + origin;
+            if (r >= bound) // correct for rounding
+                r = Double.longBitsToDouble(Double.doubleToLongBits(bound) - 1);
+            array[i] = r;
+        }
+        UNSAFE.putLong(t, SEED, s);
+    }
+
     // stream methods, coded in a way intended to better isolate for
     // maintenance purposes the small differences across forms.
 
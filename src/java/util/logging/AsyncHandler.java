@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.logging;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <tt>Handler</tt> that publishes requests to a target <tt>Handler</tt>
+ * on a background thread.
+ * <p>
+ * The <tt>publish</tt> method of an <tt>AsyncHandler</tt> only places the
+ * incoming <tt>LogRecord</tt> in a bounded ring buffer, without taking
+ * any lock, and returns.  A single writer thread removes the records from
+ * the buffer in batches and publishes them to the target <tt>Handler</tt>,
+ * so that the threads that log never wait on the target's monitor or on
+ * its output.  The message of a record, including its parameters, is
+ * formatted by the target on the writer thread; callers should therefore
+ * not modify the parameters of a record after logging it.  The source
+ * class and method names are inferred on the calling thread before the
+ * record is queued, as they cannot be inferred from the writer thread.
+ * <p>
+ * When the buffer is full, incoming records are either discarded or the
+ * logging thread waits for room in the buffer, depending on the
+ * <tt>block</tt> policy.  The number of records discarded and queued may
+ * be monitored with {@link #getDroppedCount} and {@link #getQueuedCount}.
+ * <p>
+ * <b>Configuration:</b>
+ * By default each <tt>AsyncHandler</tt> is initialized using the following
+ * <tt>LogManager</tt> configuration properties where <tt>&lt;handler-name&gt;</tt>
+ * refers to the fully-qualified class name of the handler.
+ * If properties are not defined
+ * (or have invalid values) then the specified default values are used.
+ * If no default value is defined then a RuntimeException is thrown.
+ * <ul>
+ * <li>   &lt;handler-name&gt;.level
+ *        specifies the level for the <tt>Handler</tt>
+ *        (defaults to <tt>Level.ALL</tt>). </li>
+ * <li>   &lt;handler-name&gt;.filter
+ *        specifies the name of a <tt>Filter</tt> class to use
+ *        (defaults to no <tt>Filter</tt>). </li>
+ * <li>   &lt;handler-name&gt;.size
+ *        defines the buffer size, rounded up to a power of two
+ *        (defaults to 1024). </li>
+ * <li>   &lt;handler-name&gt;.batch
+ *        defines the maximum number of records published to the target
+ *        before it is flushed (defaults to 64). </li>
+ * <li>   &lt;handler-name&gt;.block
+ *        specifies whether logging threads wait for room in a full buffer,
+ *        rather than discarding the record (defaults to false). </li>
+ * <li>   &lt;handler-name&gt;.target
+ *        specifies the name of the target <tt>Handler </tt> class.
+ *        (no default). </li>
+ * </ul>
+ * <p>
+ * For example, the properties for {@code AsyncHandler} would be:
+ * <ul>
+ * <li>   java.util.logging.AsyncHandler.target=java.util.logging.FileHandler </li>
+ * <li>   java.util.logging.AsyncHandler.size=8192 </li>
+ * </ul>
+ *
+ * @since 1.8
+ */
+
+public class AsyncHandler extends Handler {
+    private final static int DEFAULT_SIZE = 1024;
+    private final static int DEFAULT_BATCH = 64;
+    private final static int MAX_SIZE = 1 << 30;
+    // time for which blocked logging threads and flush park at most
+    // before checking the buffer again
+    private final static long PARK_NANOS = 1000L * 1000L;
+
+    private Handler target;
+    private int size;
+    private int batch;
+    private volatile boolean block;
+    private RingBuffer buffer;
+    private Thread writer;
+
+    // set by the writer thread when it is about to park on an empty buffer;
+    // a thread that then fills the buffer must unpark the writer
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+
+    // Private method to configure an AsyncHandler from LogManager
+    // properties and/or default values as specified in the class
+    // javadoc.
+    private void configure() {
+        LogManager manager = LogManager.getLogManager();
+        String cname = getClass().getName();
+
+        size = manager.getIntProperty(cname + ".size", DEFAULT_SIZE);
+        if (size <= 0) {
+            size = DEFAULT_SIZE;
+        }
+        batch = manager.getIntProperty(cname + ".batch", DEFAULT_BATCH);
+        if (batch <= 0) {
+            batch = DEFAULT_BATCH;
+        }
+        block = manager.getBooleanProperty(cname + ".block", false);
+        setLevel(manager.getLevelProperty(cname +".level", Level.ALL));
+        setFilter(manager.getFilterProperty(cname +".filter", null));
+    }
+
+    /**
+     * Create an <tt>AsyncHandler</tt> and configure it based on
+     * <tt>LogManager</tt> configuration properties.
+     */
+    public AsyncHandler() {
+        sealed = false;
+        configure();
+        sealed = true;
+
+        LogManager manager = LogManager.getLogManager();
+        String handlerName = getClass().getName();
+        String targetName = manager.getProperty(handlerName+".target");
+        if (targetName == null) {
+            throw new RuntimeException("The handler " + handlerName
+                    + " does not specify a target");
+        }
+        Class<?> clz;
+        try {
+            clz = ClassLoader.getSystemClassLoader().loadClass(targetName);
+            target = (Handler) clz.newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("AsyncHandler can't load handler target \"" + targetName + "\"" , e);
+        }
+        init();
+    }
+
+    /**
+     * Create an <tt>AsyncHandler</tt>.
+     * <p>
+     * The <tt>AsyncHandler</tt> is configured based on <tt>LogManager</tt>
+     * properties (or their default values) except that the given buffer
+     * size and <tt>block</tt> policy are used.
+     *
+     * @param target  the Handler to which to publish output.
+     * @param size    the number of log records to buffer (must be greater
+     *                than zero); rounded up to a power of two
+     * @param block   true if logging threads wait for room when the buffer
+     *                is full, false if the record is discarded
+     *
+     * @throws IllegalArgumentException if {@code size is <= 0}
+     */
+    public AsyncHandler(Handler target, int size, boolean block) {
+        if (target == null) {
+            throw new NullPointerException();
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException();
+        }
+        sealed = false;
+        configure();
+        sealed = true;
+        this.target = target;
+        this.size = size;
+        this.block = block;
+        init();
+    }
+
+    // Initialize.  Size is a count of LogRecords.
+    private void init() {
+        int capacity = 1;
+        while (capacity < Math.min(size, MAX_SIZE)) {
+            capacity <<= 1;
+        }
+        size = capacity;
+        buffer = new RingBuffer(capacity);
+        writer = AccessController.doPrivileged(new PrivilegedAction<Thread>() {
+            public Thread run() {
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        processRecords();
+                    }
+                }, "AsyncHandler writer");
+                t.setDaemon(true);
+                t.setContextClassLoader(null);
+                return t;
+            }
+        });
+        writer.start();
+    }
+
+    /**
+     * Queue a <tt>LogRecord</tt> for publication by the writer thread.
+     * <p>
+     * If there is a <tt>Filter</tt>, its <tt>isLoggable</tt>
+     * method is called to check if the given log record is loggable.
+     * If not we return.  Otherwise the source class and method names
+     * of the record are inferred, if need be, and the record is placed
+     * in the buffer.  If the buffer is full the record is discarded, or,
+     * if the <tt>block</tt> policy is set, the calling thread waits until
+     * there is room in the buffer or the handler is closed.
+     *
+     * @param  record  description of the log event. A null record is
+     *                 silently ignored and is not published
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (record == null || closed || !isLoggable(record)) {
+            return;
+        }
+        // infer the caller while the calling frames are still on the stack
+        record.getSourceClassName();
+
+        long pos = buffer.offer(record);
+        if (pos < 0) {
+            if (!block) {
+                dropped.incrementAndGet();
+                return;
+            }
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, PARK_NANOS);
+                if (closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            } while ((pos = buffer.offer(record)) < 0);
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        // If the handler was closed meanwhile, the writer may already have
+        // drained the buffer for the last time; once it has terminated, a
+        // record it did not reach is counted as dropped
+        if (closed && Thread.currentThread() != writer) {
+            while (writer.isAlive()) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            if (buffer.head() <= pos) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /*
+     * Writer thread loop: publishes batches of records to the target until
+     * the handler is closed and the buffer has been drained.
+     */
+    private void processRecords() {
+        for (;;) {
+            int n = 0;
+            LogRecord record;
+            while (n < batch && (record = buffer.poll()) != null) {
+                try {
+                    target.publish(record);
+                } catch (RuntimeException ex) {
+                    reportError(null, ex, ErrorManager.WRITE_FAILURE);
+                }
+                n++;
+            }
+            if (n > 0) {
+                published.addAndGet(n);
+                flushTarget();
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            // publish and close check the flag after updating the buffer
+            // or the closed state, so one of the two sides sees the other
+            writerParked = true;
+            if (buffer.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+            writerParked = false;
+        }
+    }
+
+    private void flushTarget() {
+        try {
+            target.flush();
+        } catch (RuntimeException ex) {
+            reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * Waits until all records queued before this call have been published
+     * to the target <tt>Handler</tt>, and then flushes the target.
+     */
+    @Override
+    public void flush() {
+        if (Thread.currentThread() != writer) {
+            long last = buffer.tail();
+            while (buffer.head() < last && writer.isAlive()) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        flushTarget();
+    }
+
+    /**
+     * Close the <tt>Handler</tt> and free all associated resources.
+     * The records in the buffer are published to the target
+     * <tt>Handler</tt>, which is then closed.
+     *
+     * @exception  SecurityException  if a security manager exists and if
+     *             the caller does not have <tt>LoggingPermission("control")</tt>.
+     */
+    @Override
+    public void close() throws SecurityException {
+        setLevel(Level.OFF);
+        closed = true;
+        if (Thread.currentThread() != writer) {
+            LockSupport.unpark(writer);
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        target.close();
+    }
+
+    /**
+     * Set the <tt>block</tt> policy, which determines whether a
+     * logging thread waits for room in a full buffer or discards its
+     * record.
+     *
+     * @param block true to wait for room in a full buffer, false to
+     *              discard records that do not fit
+     * @exception  SecurityException  if a security manager exists and if
+     *             the caller does not have <tt>LoggingPermission("control")</tt>.
+     */
+    public void setBlock(boolean block) throws SecurityException {
+        checkPermission();
+        this.block = block;
+    }
+
+    /**
+     * Get the <tt>block</tt> policy.
+     *
+     * @return true if logging threads wait for room in a full buffer
+     */
+    public boolean getBlock() {
+        return block;
+    }
+
+    /**
+     * Returns the number of records discarded because the buffer was
+     * full, or because the handler was closed while a logging thread
+     * was waiting for room in the buffer or adding its record to it.
+     *
+     * @return the number of records discarded
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of records currently in the buffer, waiting to
+     * be published to the target <tt>Handler</tt>.
+     *
+     * @return the number of records queued
+     */
+    public int getQueuedCount() {
+        return (int) (buffer.tail() - buffer.head());
+    }
+
+    /**
+     * Returns the number of records published to the target
+     * <tt>Handler</tt> so far.
+     *
+     * @return the number of records published
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Bounded ring buffer for many producers and a single consumer.  Each
+     * slot carries a sequence number: a producer claims the slot for
+     * position {@code p} when its sequence is {@code p}, and publishes the
+     * record by setting it to {@code p + 1}; the consumer frees the slot by
+     * setting it to {@code p + capacity}.
+     */
+    private static final class RingBuffer {
+        private final LogRecord[] records;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        // next position to claim, and next position to consume
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        RingBuffer(int capacity) {
+            records = new LogRecord[capacity];
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+            mask = capacity - 1;
+        }
+
+        // Returns the position of the record, or -1 if the buffer is full.
+        long offer(LogRecord record) {
+            long pos;
+            int index;
+            for (;;) {
+                pos = tail.get();
+                index = (int) pos & mask;
+                long seq = sequences.get(index);
+                if (seq == pos) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        break;
+                    }
+                } else if (seq < pos) {
+                    return -1;      // slot not yet freed: buffer is full
+                }
+            }
+            records[index] = record;
+            sequences.set(index, pos + 1);
+            return pos;
+        }
+
+        // Must only be called by the consumer thread.
+        LogRecord poll() {
+            long pos = head;
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                return null;
+            }
+            LogRecord record = records[index];
+            records[index] = null;
+            sequences.lazySet(index, pos + records.length);
+            head = pos + 1;
+            return record;
+        }
+
+        boolean isEmpty() {
+            long pos = head;
+            return sequences.get((int) pos & mask) != pos + 1;
+        }
+
+        long head() {
+            return head;
+        }
+
+        long tail() {
+            return tail.get();
+        }
+    }
+}
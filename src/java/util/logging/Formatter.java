@@ -61,6 +61,47 @@ public abstract class Formatter {
      */
     public abstract String format(LogRecord record);
 
+    /**
+     * Format the given log record and append the formatted string to the
+     * given {@code StringBuilder}.
+     * <p>
+     * Handlers that keep a buffer for their output call this method in
+     * place of {@link #format}, so that a formatter that overrides it can
+     * write the record directly into the buffer without creating an
+     * intermediate String.  This base class appends the result of
+     * {@code format(record)}.
+     *
+     * @param record the log record to be formatted.
+     * @param sb the builder to which the formatted log record is appended
+     * @since 1.8
+     */
+    public void formatTo(LogRecord record, StringBuilder sb) {
+        sb.append(format(record));
+    }
+
+    // Whether a formatter class overrides formatTo; handlers only format
+    // into their buffer for formatters that can write into it directly
+    private static final ClassValue<Boolean> overridesFormatTo =
+        new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                try {
+                    return type.getMethod("formatTo", LogRecord.class,
+                                          StringBuilder.class)
+                               .getDeclaringClass() != Formatter.class;
+                } catch (NoSuchMethodException ex) {
+                    throw new InternalError(ex);
+                }
+            }
+        };
+
+    /**
+     * Returns true if this formatter overrides {@link #formatTo}.
+     */
+    boolean overridesFormatTo() {
+        return overridesFormatTo.get(getClass());
+    }
+
 
     /**
      * Return the header string for a set of formatted records.
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Format a LogRecord as a single-line JSON object.
+ * <p>
+ * Each record is written as an object with the members {@code time}
+ * (an ISO-8601 instant in UTC), {@code sequence}, {@code level},
+ * {@code logger}, {@code thread}, {@code class}, {@code method},
+ * {@code message} (localized and formatted as by
+ * {@link Formatter#formatMessage}), {@code parameters} and
+ * {@code thrown} (the stack trace of the record's throwable), followed by
+ * a line separator.  Members whose value is null are omitted.  Numeric
+ * and boolean parameters are written as JSON numbers and booleans, and
+ * all other parameters as strings.
+ * <p>
+ * This formatter writes records directly into the buffer passed to
+ * {@link #formatTo}, and caches the formatted time, so that formatting a
+ * record creates no intermediate Strings in the common case.
+ *
+ * @since 1.8
+ */
+public final class JsonFormatter extends Formatter {
+    private final TimestampCache timestamps = new TimestampCache();
+
+    /**
+     * Create a {@code JsonFormatter}.
+     */
+    public JsonFormatter() {
+    }
+
+    /**
+     * Format the given LogRecord as a JSON object.
+     *
+     * @param record the log record to be formatted.
+     * @return a formatted log record
+     */
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(256);
+        formatTo(record, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Format the given LogRecord as a JSON object, appending it to the
+     * given builder.
+     *
+     * @param record the log record to be formatted.
+     * @param sb the builder to which the formatted log record is appended
+     */
+    @Override
+    public void formatTo(LogRecord record, StringBuilder sb) {
+        sb.append("{\"time\":\"");
+        timestamps.appendTo(record.getMillis(), sb);
+        sb.append("\",\"sequence\":").append(record.getSequenceNumber());
+        sb.append(",\"level\":");
+        appendString(record.getLevel().getName(), sb);
+        if (record.getLoggerName() != null) {
+            sb.append(",\"logger\":");
+            appendString(record.getLoggerName(), sb);
+        }
+        sb.append(",\"thread\":").append(record.getThreadID());
+        if (record.getSourceClassName() != null) {
+            sb.append(",\"class\":");
+            appendString(record.getSourceClassName(), sb);
+        }
+        if (record.getSourceMethodName() != null) {
+            sb.append(",\"method\":");
+            appendString(record.getSourceMethodName(), sb);
+        }
+        if (record.getMessage() != null) {
+            sb.append(",\"message\":\"");
+            int start = sb.length();
+            sb.append(formatMessage(record));
+            escape(sb, start);
+            sb.append('"');
+        }
+        Object[] parameters = record.getParameters();
+        if (parameters != null && parameters.length != 0) {
+            sb.append(",\"parameters\":[");
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendValue(parameters[i], sb);
+            }
+            sb.append(']');
+        }
+        if (record.getThrown() != null) {
+            StringWriter sw = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(sw)) {
+                record.getThrown().printStackTrace(pw);
+            }
+            sb.append(",\"thrown\":");
+            appendString(sw.toString(), sb);
+        }
+        sb.append('}').append(System.lineSeparator());
+    }
+
+    /**
+     * Appends a parameter value as a JSON value.
+     */
+    private static void appendValue(Object value, StringBuilder sb) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Integer || value instanceof Long ||
+                   value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                sb.append('"').append(d).append('"');
+            } else if (value instanceof Float) {
+                sb.append(((Float) value).floatValue());
+            } else {
+                sb.append(d);
+            }
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else {
+            sb.append('"');
+            int start = sb.length();
+            if (value instanceof CharSequence) {
+                sb.append((CharSequence) value);
+            } else {
+                sb.append(value);
+            }
+            escape(sb, start);
+            sb.append('"');
+        }
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     */
+    private static void appendString(String s, StringBuilder sb) {
+        sb.append('"');
+        int start = sb.length();
+        sb.append(s);
+        escape(sb, start);
+        sb.append('"');
+    }
+
+    /**
+     * Escapes the characters of the builder from the given index to its
+     * end as required in a JSON string.  Text that needs no escaping, as
+     * is usual, is left in place.
+     */
+    private static void escape(StringBuilder sb, int start) {
+        int end = sb.length();
+        int i = start;
+        while (i < end) {
+            char c = sb.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                break;
+            }
+            i++;
+        }
+        if (i == end) {
+            return;
+        }
+        String raw = sb.substring(i);
+        sb.setLength(i);
+        for (int j = 0; j < raw.length(); j++) {
+            char c = raw.charAt(j);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16));
+                        sb.append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+}
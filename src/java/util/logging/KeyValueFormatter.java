@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Format a LogRecord as a single line of {@code key=value} pairs.
+ * <p>
+ * Each record is written as the pairs {@code time} (an ISO-8601 instant in
+ * UTC), {@code level}, {@code logger}, {@code thread}, {@code source} (the
+ * source class and method names), {@code message} (localized and formatted
+ * as by {@link Formatter#formatMessage}), {@code param0}, {@code param1},
+ * and so on for the record's parameters, and {@code thrown} (the stack
+ * trace of the record's throwable), separated by spaces and followed by a
+ * line separator.  Pairs whose value is null are omitted.  The message,
+ * and any other value that contains a space, a quote, an equals sign or a
+ * control character, is written in double quotes, with quotes, backslashes
+ * and control characters escaped by a backslash.  For example:
+ * <pre>
+ * time=2014-03-18T10:15:30.123Z level=INFO logger=com.foo thread=1 source=com.foo.Bar.run message="started" param0=42
+ * </pre>
+ * <p>
+ * This formatter writes records directly into the buffer passed to
+ * {@link #formatTo}, and caches the formatted time, so that formatting a
+ * record creates no intermediate Strings in the common case.
+ *
+ * @since 1.8
+ */
+public final class KeyValueFormatter extends Formatter {
+    private final TimestampCache timestamps = new TimestampCache();
+
+    /**
+     * Create a {@code KeyValueFormatter}.
+     */
+    public KeyValueFormatter() {
+    }
+
+    /**
+     * Format the given LogRecord as a line of key=value pairs.
+     *
+     * @param record the log record to be formatted.
+     * @return a formatted log record
+     */
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(256);
+        formatTo(record, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Format the given LogRecord as a line of key=value pairs, appending
+     * it to the given builder.
+     *
+     * @param record the log record to be formatted.
+     * @param sb the builder to which the formatted log record is appended
+     */
+    @Override
+    public void formatTo(LogRecord record, StringBuilder sb) {
+        sb.append("time=");
+        timestamps.appendTo(record.getMillis(), sb);
+        sb.append(" level=").append(record.getLevel().getName());
+        if (record.getLoggerName() != null) {
+            sb.append(" logger=");
+            appendValue(record.getLoggerName(), sb);
+        }
+        sb.append(" thread=").append(record.getThreadID());
+        String sourceClass = record.getSourceClassName();
+        if (sourceClass != null) {
+            sb.append(" source=");
+            int start = sb.length();
+            sb.append(sourceClass);
+            if (record.getSourceMethodName() != null) {
+                sb.append('.').append(record.getSourceMethodName());
+            }
+            quoteIfNeeded(sb, start, false);
+        }
+        if (record.getMessage() != null) {
+            sb.append(" message=");
+            int start = sb.length();
+            sb.append(formatMessage(record));
+            quoteIfNeeded(sb, start, true);
+        }
+        Object[] parameters = record.getParameters();
+        if (parameters != null) {
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] != null) {
+                    sb.append(" param").append(i).append('=');
+                    appendValue(parameters[i], sb);
+                }
+            }
+        }
+        if (record.getThrown() != null) {
+            StringWriter sw = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(sw)) {
+                record.getThrown().printStackTrace(pw);
+            }
+            sb.append(" thrown=");
+            appendValue(sw.toString(), sb);
+        }
+        sb.append(System.lineSeparator());
+    }
+
+    /**
+     * Appends a value, in quotes if need be.  Numbers and booleans are
+     * appended without creating a String.
+     */
+    private static void appendValue(Object value, StringBuilder sb) {
+        if (value instanceof Integer || value instanceof Long ||
+            value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            sb.append(((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            sb.append(((Float) value).floatValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else {
+            int start = sb.length();
+            if (value instanceof CharSequence) {
+                sb.append((CharSequence) value);
+            } else {
+                sb.append(value);
+            }
+            quoteIfNeeded(sb, start, false);
+        }
+    }
+
+    /**
+     * Quotes and escapes the characters of the builder from the given
+     * index to its end if they contain a character that would make the
+     * value ambiguous, or if {@code always} is true.  A value that needs
+     * no quoting, as is usual, is left in place.
+     */
+    private static void quoteIfNeeded(StringBuilder sb, int start,
+                                      boolean always) {
+        int end = sb.length();
+        int i = start;
+        while (i < end) {
+            char c = sb.charAt(i);
+            if (c <= ' ' || c == '"' || c == '\\' || c == '=') {
+                break;
+            }
+            i++;
+        }
+        if (i == end && !always && end > start) {
+            return;
+        }
+        String raw = sb.substring(i);
+        sb.setLength(i);
+        sb.insert(start, '"');
+        for (int j = 0; j < raw.length(); j++) {
+            char c = raw.charAt(j);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16));
+                        sb.append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
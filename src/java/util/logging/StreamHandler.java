@@ -73,9 +73,15 @@ import java.io.*;
  */
 
 public class StreamHandler extends Handler {
+    // initial and maximum retained size of the formatting buffers
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_BUFFER_SIZE = 8192;
     private OutputStream output;
     private boolean doneHeader;
     private volatile Writer writer;
+    // buffers reused to format and write records, guarded by this
+    private StringBuilder buffer;
+    private char[] chars;
 
     // Private method to configure a StreamHandler from LogManager
     // properties and/or default values as specified in the class
@@ -206,9 +212,22 @@ public class StreamHandler extends Handler {
         if (!isLoggable(record)) {
             return;
         }
-        String msg;
+        // Only a formatter that overrides formatTo gains from formatting
+        // into the buffer; others return a String that is written as is.
+        Formatter formatter = getFormatter();
+        String msg = null;
+        StringBuilder sb = null;
         try {
-            msg = getFormatter().format(record);
+            if (formatter.overridesFormatTo()) {
+                sb = buffer;
+                if (sb == null || sb.capacity() > MAX_BUFFER_SIZE) {
+                    buffer = sb = new StringBuilder(INITIAL_BUFFER_SIZE);
+                }
+                sb.setLength(0);
+                formatter.formatTo(record, sb);
+            } else {
+                msg = formatter.format(record);
+            }
         } catch (Exception ex) {
             // We don't want to throw an exception here, but we
             // report the exception to any registered ErrorManager.
@@ -218,10 +237,23 @@ public class StreamHandler extends Handler {
 
         try {
             if (!doneHeader) {
-                writer.write(getFormatter().getHead(this));
+                writer.write(formatter.getHead(this));
                 doneHeader = true;
             }
-            writer.write(msg);
+            if (sb == null) {
+                writer.write(msg);
+            } else {
+                // copy into a reused array rather than creating a String
+                int len = sb.length();
+                if (chars == null || chars.length < len) {
+                    chars = new char[Math.max(len, INITIAL_BUFFER_SIZE)];
+                }
+                sb.getChars(0, len, chars, 0);
+                writer.write(chars, 0, len);
+                if (chars.length > MAX_BUFFER_SIZE) {
+                    chars = null;
+                }
+            }
         } catch (Exception ex) {
             // We don't want to throw an exception here, but we
             // report the exception to any registered ErrorManager.
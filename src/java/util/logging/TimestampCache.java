@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.logging;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats the event times of log records as ISO-8601 instants in UTC,
+ * such as {@code 2014-03-18T10:15:30.123Z}.  The date and time up to the
+ * second are formatted once per second and cached, so that records
+ * logged within the same second only append the cached text and the
+ * milliseconds.
+ */
+final class TimestampCache {
+    private static final DateTimeFormatter SECONDS =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    /**
+     * The formatted date and time of a second since the epoch.
+     */
+    private static final class Second {
+        final long epochSecond;
+        final String text;
+
+        Second(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+
+    private volatile Second last;
+
+    /**
+     * Appends the given time, in milliseconds since the epoch, to the
+     * given builder.
+     */
+    void appendTo(long millis, StringBuilder sb) {
+        long epochSecond = Math.floorDiv(millis, 1000L);
+        int ms = (int) Math.floorMod(millis, 1000L);
+        Second s = last;
+        if (s == null || s.epochSecond != epochSecond) {
+            LocalDateTime time =
+                LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            last = s = new Second(epochSecond, SECONDS.format(time));
+        }
+        sb.append(s.text).append('.');
+        if (ms < 100) {
+            sb.append('0');
+            if (ms < 10) {
+                sb.append('0');
+            }
+        }
+        sb.append(ms).append('Z');
+    }
+}
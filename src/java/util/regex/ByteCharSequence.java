@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.regex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only {@link CharSequence} view of encoded bytes, allowing a
+ * {@link Matcher} to run directly over a byte array or a {@link ByteBuffer}
+ * without first decoding it into a {@link String}.
+ *
+ * <p> Two encodings are supported.  A {@linkplain #latin1(byte[], int, int)
+ * Latin-1} view maps every byte to the char with the same unsigned value;
+ * it is the natural view of ASCII text.  A {@linkplain #utf8(byte[], int,
+ * int) UTF-8} view decodes on demand: creating it makes one pass over the
+ * bytes to count the chars, and keeps a byte offset for every 64th char so
+ * that any char is at most 63 code points away from a known position.
+ * Sequential access, as done by a matcher, decodes each byte about once.
+ * If the bytes are all ASCII the UTF-8 view is as cheap as the Latin-1 one.
+ * Malformed UTF-8 input is decoded as one <tt>'&#92;uFFFD'</tt> for every
+ * byte that does not start a well-formed sequence.
+ *
+ * <p> Match results are char indexes into the view; {@link #byteOffset}
+ * converts them back into offsets into the underlying bytes:
+ *
+ * <blockquote><pre>
+ * ByteCharSequence seq = ByteCharSequence.utf8(buffer);
+ * Matcher m = pattern.matcher(seq);
+ * while (m.find())
+ *     process(buffer, seq.byteOffset(m.start()), seq.byteOffset(m.end()));
+ * </pre></blockquote>
+ *
+ * <p> The view reads the bytes when they are accessed, so they must not be
+ * modified while it is in use.  A view keeps a decoding position and is
+ * not safe for use by multiple concurrent threads.
+ *
+ * @see Pattern#matcher(CharSequence)
+ * @since 1.8
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    /**
+     * The number of chars between two checkpoints of a UTF-8 view.
+     */
+    private static final int CHECKPOINT_SHIFT = 6;
+
+    private final byte[] array;        // backing array, or null
+    private final ByteBuffer buffer;   // backing buffer if array is null
+    private final int start;           // first byte in the backing storage
+    private final int end;             // byte after the last one
+    private final int length;          // length in chars
+    private final boolean direct;      // one byte per char
+
+    // For UTF-8 views that are not pure ASCII: the byte offset and char
+    // index of the code point boundary at or before every 64th char
+    private final int[] checkByte;
+    private final int[] checkChar;
+
+    // The boundary last decoded from
+    private int curChar;
+    private int curByte;
+
+    private ByteCharSequence(byte[] array, ByteBuffer buffer,
+                             int start, int end, boolean utf8) {
+        this.array = array;
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        boolean ascii = true;
+        if (utf8) {
+            for (int p = start; p < end; p++) {
+                if (byteAt(p) < 0) {
+                    ascii = false;
+                    break;
+                }
+            }
+        }
+        if (!utf8 || ascii) {
+            direct = true;
+            length = end - start;
+            checkByte = null;
+            checkChar = null;
+        } else {
+            direct = false;
+            int[] cb = new int[((end - start) >> CHECKPOINT_SHIFT) + 1];
+            int[] cc = new int[cb.length];
+            int k = 0;
+            int c = 0;
+            for (int p = start; p < end; ) {
+                int d = decode(p);
+                int n = (d >>> 3) >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 2 : 1;
+                // a code point holds at most two chars, so it contains at
+                // most one multiple of 64, including at the very end
+                if (((c + n - 1) >> CHECKPOINT_SHIFT) >= k) {
+                    cb[k] = p;
+                    cc[k++] = c;
+                }
+                c += n;
+                p += d & 7;
+            }
+            length = c;
+            checkByte = cb;
+            checkChar = cc;
+            curByte = start;
+        }
+    }
+
+    /**
+     * Returns a Latin-1 view of the given bytes; each byte is one char.
+     *
+     * @param  bytes
+     *         The bytes
+     *
+     * @return  A view of the bytes
+     */
+    public static ByteCharSequence latin1(byte[] bytes) {
+        return new ByteCharSequence(bytes, null, 0, bytes.length, false);
+    }
+
+    /**
+     * Returns a Latin-1 view of a range of the given bytes; each byte is one
+     * char.
+     *
+     * @param  bytes
+     *         The bytes
+     * @param  offset
+     *         The index of the first byte of the view
+     * @param  length
+     *         The number of bytes in the view
+     *
+     * @return  A view of the bytes
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the offset and length do not denote a range of the array
+     */
+    public static ByteCharSequence latin1(byte[] bytes, int offset, int length) {
+        checkRange(bytes, offset, length);
+        return new ByteCharSequence(bytes, null, offset, offset + length, false);
+    }
+
+    /**
+     * Returns a Latin-1 view of the remaining bytes of the given buffer;
+     * each byte is one char.  The position and limit of the buffer are not
+     * changed, and later changes to them do not affect the view.
+     *
+     * @param  buffer
+     *         The buffer
+     *
+     * @return  A view of the remaining bytes
+     */
+    public static ByteCharSequence latin1(ByteBuffer buffer) {
+        return of(buffer, false);
+    }
+
+    /**
+     * Returns a UTF-8 view of the given bytes.
+     *
+     * @param  bytes
+     *         The bytes
+     *
+     * @return  A view of the bytes
+     */
+    public static ByteCharSequence utf8(byte[] bytes) {
+        return new ByteCharSequence(bytes, null, 0, bytes.length, true);
+    }
+
+    /**
+     * Returns a UTF-8 view of a range of the given bytes.
+     *
+     * @param  bytes
+     *         The bytes
+     * @param  offset
+     *         The index of the first byte of the view
+     * @param  length
+     *         The number of bytes in the view
+     *
+     * @return  A view of the bytes
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the offset and length do not denote a range of the array
+     */
+    public static ByteCharSequence utf8(byte[] bytes, int offset, int length) {
+        checkRange(bytes, offset, length);
+        return new ByteCharSequence(bytes, null, offset, offset + length, true);
+    }
+
+    /**
+     * Returns a UTF-8 view of the remaining bytes of the given buffer.  The
+     * position and limit of the buffer are not changed, and later changes
+     * to them do not affect the view.
+     *
+     * @param  buffer
+     *         The buffer
+     *
+     * @return  A view of the remaining bytes
+     */
+    public static ByteCharSequence utf8(ByteBuffer buffer) {
+        return of(buffer, true);
+    }
+
+    private static ByteCharSequence of(ByteBuffer buffer, boolean utf8) {
+        int pos = buffer.position();
+        int lim = buffer.limit();
+        if (buffer.hasArray()) {
+            int off = buffer.arrayOffset();
+            return new ByteCharSequence(buffer.array(), null,
+                                        off + pos, off + lim, utf8);
+        }
+        return new ByteCharSequence(null, buffer, pos, lim, utf8);
+    }
+
+    private static void checkRange(byte[] bytes, int offset, int length) {
+        if ((offset | length) < 0 || offset > bytes.length - length)
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", length " + length
+                + ", array length " + bytes.length);
+    }
+
+    private byte byteAt(int p) {
+        return array != null ? array[p] : buffer.get(p);
+    }
+
+    private boolean isContinuation(int p) {
+        return p < end && (byteAt(p) & 0xc0) == 0x80;
+    }
+
+    /**
+     * Decodes the code point at byte p. Returns the code point shifted
+     * left by three bits, or'ed with the number of bytes it occupies.
+     */
+    private int decode(int p) {
+        int b0 = byteAt(p) & 0xff;
+        if (b0 < 0x80)
+            return (b0 << 3) | 1;
+        if (b0 >= 0xc2 && b0 <= 0xdf) {
+            if (isContinuation(p + 1))
+                return ((((b0 & 0x1f) << 6) | (byteAt(p + 1) & 0x3f)) << 3) | 2;
+        } else if (b0 >= 0xe0 && b0 <= 0xef) {
+            if (isContinuation(p + 1) && isContinuation(p + 2)) {
+                int b1 = byteAt(p + 1) & 0xff;
+                if ((b0 != 0xe0 || b1 >= 0xa0) && (b0 != 0xed || b1 < 0xa0))
+                    return ((((b0 & 0x0f) << 12) | ((b1 & 0x3f) << 6)
+                             | (byteAt(p + 2) & 0x3f)) << 3) | 3;
+            }
+        } else if (b0 >= 0xf0 && b0 <= 0xf4) {
+            if (isContinuation(p + 1) && isContinuation(p + 2)
+                && isContinuation(p + 3)) {
+                int b1 = byteAt(p + 1) & 0xff;
+                if ((b0 != 0xf0 || b1 >= 0x90) && (b0 != 0xf4 || b1 < 0x90))
+                    return ((((b0 & 0x07) << 18) | ((b1 & 0x3f) << 12)
+                             | ((byteAt(p + 2) & 0x3f) << 6)
+                             | (byteAt(p + 3) & 0x3f)) << 3) | 4;
+            }
+        }
+        return (0xfffd << 3) | 1;
+    }
+
+    /**
+     * Moves the decoding position to the code point containing the char
+     * at the given index.
+     */
+    private void seek(int index) {
+        int c = curChar;
+        int p = curByte;
+        if (index < c || index - c > (1 << CHECKPOINT_SHIFT)) {
+            int k = index >> CHECKPOINT_SHIFT;
+            c = checkChar[k];
+            p = checkByte[k];
+        }
+        for (;;) {
+            int d = decode(p);
+            int n = (d >>> 3) >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 2 : 1;
+            if (index < c + n)
+                break;
+            c += n;
+            p += d & 7;
+        }
+        curChar = c;
+        curByte = p;
+    }
+
+    /**
+     * Returns the length of this view in chars.
+     *
+     * @return  The number of chars in this view
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the char at the given index of this view.
+     *
+     * @param  index
+     *         The index of the char
+     *
+     * @return  The char
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the index is negative or not less than the length
+     */
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new StringIndexOutOfBoundsException(index);
+        if (direct)
+            return (char)(byteAt(start + index) & 0xff);
+        seek(index);
+        int cp = decode(curByte) >>> 3;
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+            return (char)cp;
+        return index == curChar ? Character.highSurrogate(cp)
+                                : Character.lowSurrogate(cp);
+    }
+
+    /**
+     * Returns the offset, relative to the first byte of this view, of the
+     * byte that starts the char at the given index.  For the second char of
+     * a surrogate pair this is the offset of the four-byte sequence that
+     * encodes the pair.  The length of this view maps to the number of
+     * bytes in it.
+     *
+     * @param  index
+     *         The char index, from zero to the length inclusive
+     *
+     * @return  The byte offset
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the index is negative or greater than the length
+     */
+    public int byteOffset(int index) {
+        if (index < 0 || index > length)
+            throw new StringIndexOutOfBoundsException(index);
+        if (direct)
+            return index;
+        if (index == length)
+            return end - start;
+        seek(index);
+        return curByte - start;
+    }
+
+    /**
+     * Returns the chars from start to end as a string.
+     *
+     * @param  start
+     *         The start index, inclusive
+     * @param  end
+     *         The end index, exclusive
+     *
+     * @return  The specified subsequence
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the indexes are negative, end is greater than the length
+     *          or start is greater than end
+     */
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new StringIndexOutOfBoundsException(
+                "start " + start + ", end " + end + ", length " + length);
+        if (direct) {
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = (char)(byteAt(this.start + start + i) & 0xff);
+            return new String(chars);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++)
+            sb.append(charAt(i));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the chars of this view as a string.
+     *
+     * @return  The decoded string
+     */
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -35,6 +35,8 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -917,6 +919,50 @@ public final class Pattern
      */
     public static final int UNICODE_CHARACTER_CLASS = 0x100;
 
+    /**
+     * Enables the linear-time matching engine.
+     *
+     * <p> When this flag is specified the pattern is compiled into an
+     * automaton instead of a backtracking matcher, and every match
+     * operation runs in time proportional to the product of the length
+     * of the input and the size of the pattern.  Alternatives and greedy or
+     * reluctant quantifiers are prioritized as they would be tried by
+     * backtracking, so matches are generally the same as those of the
+     * backtracking matcher.  They differ for some quantified groups whose
+     * operand can match the empty string: the backtracking matcher ends
+     * the repetition as soon as an iteration matches the empty string,
+     * even before the minimum count is reached, which this engine only
+     * follows where the outcome does not depend on the position, as it
+     * does with a boundary matcher in the group.  For example
+     * <tt>(?:^[ab]??){2}</tt> matches <tt>"b"</tt> only with this flag,
+     * and <tt>(?:\ba?){2}.</tt> finds <tt>"aa"</tt> rather than
+     * <tt>"a"</tt> in <tt>"aa a"</tt>.  Capturing groups get the same
+     * values, except that a group nested in a quantifier whose operand can
+     * match the empty string may report an earlier iteration.  Since all
+     * alternatives are followed at once, {@link Matcher#hitEnd hitEnd} may
+     * return {@code true} where the backtracking matcher would return
+     * {@code false}.
+     *
+     * <p> Only constructs that can be expressed without backtracking are
+     * accepted: back references, look-ahead, look-behind, independent
+     * groups and possessive quantifiers cause {@link #compile(String,int)}
+     * to throw a {@link PatternSyntaxException}.  Character classes,
+     * boundary matchers, groups, alternation and greedy or reluctant
+     * quantifiers are supported.  Counted repetitions are expanded, so
+     * very large repetition counts may also be rejected.
+     *
+     * <p> Input is consumed one code point at a time.  Patterns without
+     * boundary matchers additionally use a lazily built deterministic
+     * automaton to reject non-matching input and to answer
+     * {@link Matcher#matches()} without tracking groups where possible.
+     *
+     * <p> There is no embedded flag character for enabling linear
+     * matching.
+     *
+     * @since 1.8
+     */
+    public static final int LINEAR = 0x200;
+
     /* Pattern has only two serialized components: The pattern string
      * and the flags, which are all that is needed to recompile the pattern
      * when it is deserialized.
@@ -963,6 +1009,21 @@ public final class Pattern
      */
     transient Node matchRoot;
 
+    /**
+     * The longest literal that every match must contain, or null.
+     */
+    transient Prefilter prefilter;
+
+    /**
+     * The number of released matchers retained for reuse.
+     */
+    private static final int MATCHER_POOL_SIZE = 8;
+
+    /**
+     * Released matchers, created on first release.
+     */
+    private transient volatile AtomicReferenceArray<Matcher> matcherPool;
+
     /**
      * Temporary storage used by parsing pattern slice.
      */
@@ -1039,8 +1100,8 @@ public final class Pattern
      *         Match flags, a bit mask that may include
      *         {@link #CASE_INSENSITIVE}, {@link #MULTILINE}, {@link #DOTALL},
      *         {@link #UNICODE_CASE}, {@link #CANON_EQ}, {@link #UNIX_LINES},
-     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS}
-     *         and {@link #COMMENTS}
+     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS},
+     *         {@link #LINEAR} and {@link #COMMENTS}
      *
      * @return the given regular expression compiled into a pattern with the given flags
      * @throws  IllegalArgumentException
@@ -1094,6 +1155,71 @@ public final class Pattern
         return m;
     }
 
+    /**
+     * Returns a matcher for the given input, reusing a matcher previously
+     * returned to this pattern by {@link #releaseMatcher releaseMatcher}
+     * when one is available.
+     *
+     * <p> The returned matcher is in the same state as one returned by
+     * {@link #matcher(CharSequence) matcher(input)}, but reusing it avoids
+     * allocating the group and local state arrays for every match
+     * operation.  Pooled matchers are held by the pattern itself rather than
+     * by threads, so a matcher released by one thread may be acquired by
+     * another.
+     *
+     * @param  input
+     *         The character sequence to be matched
+     *
+     * @return  A matcher for this pattern, owned by the caller until it is
+     *          released
+     * @since 1.8
+     */
+    public Matcher acquireMatcher(CharSequence input) {
+        AtomicReferenceArray<Matcher> pool = matcherPool;
+        if (pool != null) {
+            for (int i = 0; i < MATCHER_POOL_SIZE; i++) {
+                Matcher m = pool.get(i);
+                if (m != null && pool.compareAndSet(i, m, null)) {
+                    m.transparentBounds = false;
+                    m.anchoringBounds = true;
+                    return m.reset(input);
+                }
+            }
+        }
+        return matcher(input);
+    }
+
+    /**
+     * Returns a matcher to this pattern for reuse by {@link
+     * #acquireMatcher acquireMatcher}.
+     *
+     * <p> The matcher is reset and no longer refers to its input.  It must
+     * not be used by the caller after this method returns.  Matchers that
+     * were created by another pattern or switched to another pattern by
+     * {@link Matcher#usePattern usePattern} are ignored, as are matchers in
+     * excess of the small number this pattern retains.
+     *
+     * @param  matcher
+     *         The matcher to be released
+     * @since 1.8
+     */
+    public void releaseMatcher(Matcher matcher) {
+        if (matcher.pattern() != this)
+            return;
+        matcher.reset("");
+        AtomicReferenceArray<Matcher> pool = matcherPool;
+        if (pool == null)
+            matcherPool = pool = new AtomicReferenceArray<>(MATCHER_POOL_SIZE);
+        for (int i = 0; i < MATCHER_POOL_SIZE; i++) {
+            if (pool.get(i) == matcher)
+                return;   // released twice
+        }
+        for (int i = 0; i < MATCHER_POOL_SIZE; i++) {
+            if (pool.get(i) == null && pool.compareAndSet(i, null, matcher))
+                return;
+        }
+    }
+
     /**
      * Returns this pattern's match flags.
      *
@@ -1203,25 +1329,29 @@ public final class Pattern
         int index = 0;
         boolean matchLimited = limit > 0;
         ArrayList<String> matchList = new ArrayList<>();
-        Matcher m = matcher(input);
+        Matcher m = acquireMatcher(input);
 
         // Add segments before each match found
-        while(m.find()) {
-            if (!matchLimited || matchList.size() < limit - 1) {
-                if (index == 0 && index == m.start() && m.start() == m.end()) {
-                    // no empty leading substring included for zero-width match
-                    // at the beginning of the input char sequence.
-                    continue;
+        try {
+            while(m.find()) {
+                if (!matchLimited || matchList.size() < limit - 1) {
+                    if (index == 0 && index == m.start() && m.start() == m.end()) {
+                        // no empty leading substring included for zero-width match
+                        // at the beginning of the input char sequence.
+                        continue;
+                    }
+                    String match = input.subSequence(index, m.start()).toString();
+                    matchList.add(match);
+                    index = m.end();
+                } else if (matchList.size() == limit - 1) { // last one
+                    String match = input.subSequence(index,
+                                                     input.length()).toString();
+                    matchList.add(match);
+                    index = m.end();
                 }
-                String match = input.subSequence(index, m.start()).toString();
-                matchList.add(match);
-                index = m.end();
-            } else if (matchList.size() == limit - 1) { // last one
-                String match = input.subSequence(index,
-                                                 input.length()).toString();
-                matchList.add(match);
-                index = m.end();
             }
+        } finally {
+            releaseMatcher(m);
         }
 
         // If no match was found, return this
@@ -1241,6 +1371,78 @@ public final class Pattern
         return matchList.subList(0, resultSize).toArray(result);
     }
 
+    /**
+     * Splits the given input sequence around matches of this pattern and
+     * returns the bounds of the substrings instead of the substrings.
+     *
+     * <p> The substrings are determined exactly as by {@link
+     * #split(java.lang.CharSequence, int) split(input, limit)}.  The start
+     * and end index of the <i>i</i>th substring are stored at indexes
+     * <tt>2*</tt><i>i</i> and <tt>2*</tt><i>i</i><tt>+1</tt> of the
+     * returned array, so that no substring is created.  For example,
+     * splitting <tt>"boo:and:foo"</tt> around <tt>":"</tt> yields
+     * <tt>{ 0, 3, 4, 7, 8, 11 }</tt>.
+     *
+     * @param  input
+     *         The character sequence to be split
+     *
+     * @param  limit
+     *         The result threshold, as described for {@link
+     *         #split(java.lang.CharSequence, int) split}
+     *
+     * @return  The start and end indexes of the substrings computed by
+     *          splitting the input around matches of this pattern
+     * @since 1.8
+     */
+    public int[] splitOffsets(CharSequence input, int limit) {
+        int index = 0;
+        boolean matchLimited = limit > 0;
+        int[] offsets = new int[16];
+        int count = 0;
+        Matcher m = acquireMatcher(input);
+        try {
+            while (m.find()) {
+                if (!matchLimited || count < limit - 1) {
+                    if (index == 0 && index == m.start() && m.start() == m.end()) {
+                        // no empty leading substring, as in split
+                        continue;
+                    }
+                    offsets = addOffsets(offsets, count++, index, m.start());
+                    index = m.end();
+                } else {
+                    // last one
+                    offsets = addOffsets(offsets, count++, index, input.length());
+                    index = m.end();
+                    break;
+                }
+            }
+        } finally {
+            releaseMatcher(m);
+        }
+
+        // If no match was found, return the whole input
+        if (index == 0)
+            return new int[] { 0, input.length() };
+
+        // Add remaining segment
+        if (!matchLimited || count < limit)
+            offsets = addOffsets(offsets, count++, index, input.length());
+
+        // Drop trailing empty substrings
+        if (limit == 0)
+            while (count > 0 && offsets[2 * count - 2] == offsets[2 * count - 1])
+                count--;
+        return Arrays.copyOf(offsets, 2 * count);
+    }
+
+    private static int[] addOffsets(int[] offsets, int n, int start, int end) {
+        if (2 * n + 2 > offsets.length)
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[2 * n] = start;
+        offsets[2 * n + 1] = end;
+        return offsets;
+    }
+
     /**
      * Splits the given input sequence around matches of this pattern.
      *
@@ -1707,15 +1909,22 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
         }
 
         // Peephole optimization
-        if (matchRoot instanceof Slice) {
+        prefilter = Prefilter.of(matchRoot);
+        if (has(LINEAR)) {
+            LinearProgram prog = new LinearProgram(matchRoot, localCount,
+                                                   capturingGroupCount,
+                                                   normalizedPattern);
+            root = new LinearNode(prog, false, prefilter);
+            matchRoot = new LinearNode(prog, true, null);
+        } else if (matchRoot instanceof Slice) {
             root = BnM.optimize(matchRoot);
             if (root == matchRoot) {
-                root = hasSupplementary ? new StartS(matchRoot) : new Start(matchRoot);
+                root = newStart(matchRoot);
             }
         } else if (matchRoot instanceof Begin || matchRoot instanceof First) {
             root = matchRoot;
         } else {
-            root = hasSupplementary ? new StartS(matchRoot) : new Start(matchRoot);
+            root = newStart(matchRoot);
         }
 
         // Release temporary storage
@@ -1726,6 +1935,18 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
         compiled = true;
     }
 
+    /**
+     * Returns the Start node for a find operation, using the required
+     * literal of the pattern to skip positions where no match can begin.
+     */
+    private Node newStart(Node node) {
+        if (hasSupplementary)
+            return new StartS(node);
+        if (prefilter != null)
+            return new PrefilterStart(node, prefilter);
+        return new Start(node);
+    }
+
     Map<String, Integer> namedGroups() {
         if (namedGroups == null)
             namedGroups = new HashMap<>(2);
@@ -3515,6 +3736,185 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
         }
     }
 
+    /**
+     * A literal that every match of a pattern must contain, together with
+     * the bounds of its offset from the start of the match. The literal is
+     * extracted from the top level sequence of the node tree, where every
+     * node is required; groups that are not repeated are looked into.
+     */
+    static final class Prefilter {
+        final String literal;
+        final int minOffset;
+        final int maxOffset;
+        final boolean maxValid;
+
+        Prefilter(String literal, int minOffset, int maxOffset,
+                  boolean maxValid) {
+            this.literal = literal;
+            this.minOffset = minOffset;
+            this.maxOffset = maxOffset;
+            this.maxValid = maxValid;
+        }
+
+        /**
+         * Returns the prefilter for the node sequence starting at node,
+         * or null if the sequence requires no case sensitive literal.
+         */
+        static Prefilter of(Node node) {
+            StringBuilder run = new StringBuilder();
+            int runMin = 0, runMax = 0;
+            boolean runValid = true;
+            Prefilter best = null;
+            int min = 0, max = 0;
+            boolean valid = true;
+            while (node != null && node != accept
+                   && !(node instanceof LastNode)) {
+                if (node instanceof Single || node instanceof Slice) {
+                    if (run.length() == 0) {
+                        runMin = min;
+                        runMax = max;
+                        runValid = valid;
+                    }
+                    int len;
+                    if (node instanceof Single) {
+                        run.append((char)((Single)node).c);
+                        len = 1;
+                    } else {
+                        int[] buf = ((Slice)node).buffer;
+                        for (int c : buf)
+                            run.append((char)c);
+                        len = buf.length;
+                    }
+                    min += len;
+                    max += len;
+                    node = node.next;
+                    continue;
+                }
+                if (node instanceof GroupHead || node instanceof GroupTail
+                    || node instanceof Begin || node instanceof End
+                    || node instanceof Caret || node instanceof UnixCaret
+                    || node instanceof Dollar || node instanceof UnixDollar
+                    || node instanceof LastMatch || node instanceof Bound) {
+                    // Zero width; the literal run may continue
+                    node = node.next;
+                    continue;
+                }
+                best = better(best, run, runMin, runMax, runValid);
+                run.setLength(0);
+                if (node instanceof Branch) {
+                    valid = false;
+                    node = ((Branch)node).conn.next;
+                    continue;
+                }
+                if (node instanceof Prolog) {
+                    valid = false;
+                    node = ((Prolog)node).loop.next;
+                    continue;
+                }
+                if (node instanceof CharProperty) {
+                    min += 1;
+                    max += (node instanceof BmpCharProperty) ? 1 : 2;
+                } else if (node instanceof Curly
+                           && ((Curly)node).atom instanceof CharProperty
+                           && ((Curly)node).cmax != MAX_REPS) {
+                    Curly c = (Curly)node;
+                    int width = (c.atom instanceof BmpCharProperty) ? 1 : 2;
+                    long m = (long)max + (long)c.cmax * width;
+                    if (m <= Integer.MAX_VALUE) {
+                        min += c.cmin;
+                        max = (int)m;
+                    } else {
+                        valid = false;
+                    }
+                } else {
+                    // Unknown width of at least zero
+                    valid = false;
+                }
+                node = node.next;
+            }
+            return better(best, run, runMin, runMax, runValid);
+        }
+
+        private static Prefilter better(Prefilter best, StringBuilder run,
+                                        int min, int max, boolean valid) {
+            int len = run.length();
+            if (len == 0)
+                return best;
+            if (best != null && (best.literal.length() > len ||
+                                 best.literal.length() == len
+                                 && (best.maxValid || !valid)))
+                return best;
+            return new Prefilter(run.toString(), min, max, valid);
+        }
+
+        /**
+         * Returns the index of the first occurrence of the literal that
+         * starts at or after from and ends at or before to, or -1.
+         * Strings are searched with String.indexOf, which the VM
+         * implements with vector instructions where available.
+         */
+        int indexOf(CharSequence seq, int from, int to) {
+            String lit = literal;
+            int n = lit.length();
+            int last = to - n;
+            if (from > last)
+                return -1;
+            if (seq instanceof String) {
+                int i = ((String)seq).indexOf(lit, from);
+                return i <= last ? i : -1;
+            }
+            char first = lit.charAt(0);
+            for (int i = from; i <= last; i++) {
+                if (seq.charAt(i) != first)
+                    continue;
+                int j = 1;
+                while (j < n && seq.charAt(i + j) == lit.charAt(j))
+                    j++;
+                if (j == n)
+                    return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A Start node that only tries positions from which the required
+     * literal of the pattern can be reached. The next occurrence of the
+     * literal is found once and reused until the position passes it.
+     */
+    static final class PrefilterStart extends Start {
+        final Prefilter prefilter;
+        PrefilterStart(Node node, Prefilter prefilter) {
+            super(node);
+            this.prefilter = prefilter;
+        }
+        boolean match(Matcher matcher, int i, CharSequence seq) {
+            Prefilter pf = prefilter;
+            int guard = matcher.to - minLength;
+            int p = -1;
+            for (; i <= guard; i++) {
+                if (p < i + pf.minOffset) {
+                    p = pf.indexOf(seq, i + pf.minOffset, matcher.to);
+                    if (p < 0)
+                        break;
+                }
+                if (pf.maxValid && i < p - pf.maxOffset) {
+                    i = p - pf.maxOffset;
+                    if (i > guard)
+                        break;
+                }
+                if (next.match(matcher, i, seq)) {
+                    matcher.first = i;
+                    matcher.groups[0] = matcher.first;
+                    matcher.groups[1] = matcher.last;
+                    return true;
+                }
+            }
+            matcher.hitEnd = true;
+            return false;
+        }
+    }
+
     /**
      * Node to anchor at the beginning of input. This object implements the
      * match for a \A sequence, and the caret anchor will use this if not in
@@ -5539,6 +5939,695 @@ NEXT:       while (i <= last) {
         }
     }
 
+    /**
+     * Matches a single code point of a literal sequence. Used by the
+     * linear engine to split the Slice nodes into single steps.
+     */
+    static final class SliceChar extends CharProperty {
+        static final int EXACT = 0;
+        static final int ASCII_FOLD = 1;
+        static final int UNICODE_FOLD = 2;
+        final int c;
+        final int fold;
+        SliceChar(int c, int fold) {
+            this.c = c;
+            this.fold = fold;
+        }
+        boolean isSatisfiedBy(int ch) {
+            if (c == ch)
+                return true;
+            switch (fold) {
+            case ASCII_FOLD:
+                return c == ASCII.toLower(ch);
+            case UNICODE_FOLD:
+                return c == Character.toLowerCase(Character.toUpperCase(ch));
+            default:
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The root node of a pattern compiled with the LINEAR flag. The
+     * anchored instance is used as the matchRoot and the unanchored one
+     * as the root of a find operation.
+     */
+    static final class LinearNode extends Node {
+        final LinearProgram prog;
+        final boolean anchored;
+        final Prefilter prefilter;
+        LinearNode(LinearProgram prog, boolean anchored, Prefilter prefilter) {
+            this.prog = prog;
+            this.anchored = anchored;
+            this.prefilter = prefilter;
+        }
+        boolean match(Matcher matcher, int i, CharSequence seq) {
+            if (prefilter != null && prefilter.indexOf(seq,
+                    i + prefilter.minOffset, matcher.to) < 0) {
+                matcher.hitEnd = true;
+                return false;
+            }
+            return prog.match(matcher, i, seq, anchored);
+        }
+        boolean study(TreeInfo info) {
+            info.maxValid = false;
+            info.deterministic = false;
+            return false;
+        }
+    }
+
+    /**
+     * A Thompson automaton translated from the node tree of a pattern
+     * compiled with the LINEAR flag.
+     *
+     * The tree is flattened into a program of CHAR, SPLIT, JMP, SAVE,
+     * ASSERT and MATCH instructions. SPLIT prefers its first target, so
+     * running all threads of the program in priority order (a Pike VM)
+     * yields the same leftmost match and the same group values as the
+     * backtracking nodes would, while visiting every (instruction,
+     * position) pair at most once.
+     *
+     * Zero-width assertions are evaluated by the original nodes, whose
+     * continuation is replaced by assertAccept once the translation is
+     * done. Programs without assertions are also run through a lazily
+     * built DFA that rejects non-matching input without tracking groups.
+     */
+    static final class LinearProgram {
+        static final int CHAR   = 0;
+        static final int MATCH  = 1;
+        static final int SPLIT  = 2;
+        static final int JMP    = 3;
+        static final int SAVE   = 4;
+        static final int ASSERT = 5;
+        static final int NOP    = 6;
+        static final int LOOP   = 7;
+
+        /**
+         * Upper bound of the program size; counted repetitions are
+         * expanded, so this guards against patterns like a{100000}.
+         */
+        static final int MAX_SIZE = 1 << 16;
+
+        int[] op = new int[16];
+        int[] x = new int[16];
+        int[] y = new int[16];
+        Node[] node = new Node[16];
+        int size;
+
+        /**
+         * The number of group slots, including the two of group zero.
+         */
+        final int slots;
+
+        /**
+         * The DFA, or null if the program contains assertions.
+         */
+        final LinearDfa dfa;
+
+        // Translation state, released after the constructor
+        private String pattern;
+        private int[] heads;
+        private boolean[] suppressed;
+        private ArrayList<Node> asserts = new ArrayList<>();
+
+        LinearProgram(Node matchRoot, int localCount, int groupCount,
+                      String pattern) {
+            this.slots = groupCount * 2;
+            this.pattern = pattern;
+            this.heads = new int[localCount];
+            this.suppressed = new boolean[localCount];
+            Arrays.fill(heads, -1);
+            emitChain(matchRoot, null);
+            for (int pc = 0; pc < size; pc++) {
+                if (op[pc] == SAVE && x[pc] < 0)
+                    op[pc] = NOP;   // anonymous group
+            }
+            for (Node n : asserts)
+                n.next = assertAccept;
+            dfa = asserts.isEmpty() ? new LinearDfa(this) : null;
+            this.pattern = null;
+            this.heads = null;
+            this.suppressed = null;
+            this.asserts = null;
+        }
+
+        private PatternSyntaxException unsupported(String what) {
+            return new PatternSyntaxException(what
+                + " requires backtracking and is not supported by LINEAR",
+                pattern, -1);
+        }
+
+        private int emit(int code, int a, int b, Node n) {
+            if (size == op.length) {
+                if (size >= MAX_SIZE)
+                    throw new PatternSyntaxException(
+                        "Pattern is too large for LINEAR", pattern, -1);
+                int len = size * 2;
+                op = Arrays.copyOf(op, len);
+                x = Arrays.copyOf(x, len);
+                y = Arrays.copyOf(y, len);
+                node = Arrays.copyOf(node, len);
+            }
+            op[size] = code;
+            x[size] = a;
+            y[size] = b;
+            node[size] = n;
+            return size++;
+        }
+
+        /**
+         * Translates the chain of nodes starting at n up to, but not
+         * including, stop. A null stop translates up to the LastNode.
+         */
+        private void emitChain(Node n, Node stop) {
+            while (n != stop) {
+                if (n instanceof LastNode) {
+                    emit(MATCH, 0, 0, null);
+                    return;
+                } else if (n == accept) {
+                    return;
+                } else if (n instanceof CharProperty) {
+                    emit(CHAR, 0, 0, n);
+                } else if (n instanceof SliceNode) {
+                    emitSlice((SliceNode)n);
+                } else if (n instanceof Begin || n instanceof End
+                           || n instanceof Caret || n instanceof UnixCaret
+                           || n instanceof Dollar || n instanceof UnixDollar
+                           || n instanceof LastMatch || n instanceof Bound) {
+                    asserts.add(n);
+                    emit(ASSERT, 0, 0, n);
+                } else if (n instanceof LineEnding) {
+                    // \r\n is preferred over a single line terminator
+                    int split = emit(SPLIT, size + 1, 0, null);
+                    emit(CHAR, 0, 0, new Single('\r'));
+                    emit(CHAR, 0, 0, new Single('\n'));
+                    int jmp = emit(JMP, 0, 0, null);
+                    y[split] = emit(CHAR, 0, 0, new VertWS());
+                    x[jmp] = size;
+                } else if (n instanceof GroupHead) {
+                    heads[((GroupHead)n).localIndex] = emit(SAVE, -1, 0, null);
+                } else if (n instanceof GroupTail) {
+                    GroupTail tail = (GroupTail)n;
+                    int head = heads[tail.localIndex];
+                    if (!suppressed[tail.localIndex] && head >= 0) {
+                        heads[tail.localIndex] = -1;
+                        if (tail.groupIndex > 0) {
+                            x[head] = tail.groupIndex;
+                            emit(SAVE, tail.groupIndex + 1, 0, null);
+                        }
+                    }
+                } else if (n instanceof Branch) {
+                    Branch b = (Branch)n;
+                    int[] jumps = new int[b.size];
+                    for (int k = 0; k < b.size; k++) {
+                        int split = -1;
+                        if (k < b.size - 1)
+                            split = emit(SPLIT, size + 1, 0, null);
+                        if (b.atoms[k] != null)
+                            emitChain(b.atoms[k], b.conn);
+                        jumps[k] = emit(JMP, 0, 0, null);
+                        if (split >= 0)
+                            y[split] = size;
+                    }
+                    for (int jmp : jumps)
+                        x[jmp] = size;
+                    n = b.conn;
+                } else if (n instanceof Ques) {
+                    Ques q = (Ques)n;
+                    if (q.type == POSSESSIVE)
+                        throw unsupported("Possessive quantifier");
+                    if (q.type == INDEPENDENT)
+                        throw unsupported("Independent group");
+                    emitRepeat(q.atom, accept, 0, 1, q.type == GREEDY, -1);
+                } else if (n instanceof Curly) {
+                    Curly c = (Curly)n;
+                    if (c.type == POSSESSIVE)
+                        throw unsupported("Possessive quantifier");
+                    emitRepeat(c.atom, accept, c.cmin, c.cmax,
+                               c.type == GREEDY, -1);
+                } else if (n instanceof GroupCurly) {
+                    GroupCurly gc = (GroupCurly)n;
+                    if (gc.type == POSSESSIVE)
+                        throw unsupported("Possessive quantifier");
+                    suppressed[gc.localIndex] = true;
+                    emitRepeat(gc.atom, accept, gc.cmin, gc.cmax,
+                               gc.type == GREEDY,
+                               gc.capture ? gc.groupIndex : -1);
+                    suppressed[gc.localIndex] = false;
+                } else if (n instanceof Prolog) {
+                    Loop loop = ((Prolog)n).loop;
+                    emitRepeat(loop.body, loop, loop.cmin, loop.cmax,
+                               !(loop instanceof LazyLoop), -1);
+                    n = loop;
+                } else if (n instanceof BackRef || n instanceof CIBackRef
+                           || n instanceof GroupRef) {
+                    throw unsupported("Back reference");
+                } else if (n instanceof Pos || n instanceof Neg) {
+                    throw unsupported("Look-ahead");
+                } else if (n instanceof Behind || n instanceof NotBehind
+                           || n instanceof BehindS
+                           || n instanceof NotBehindS) {
+                    throw unsupported("Look-behind");
+                } else {
+                    throw unsupported("Construct");
+                }
+                n = n.next;
+            }
+        }
+
+        private void emitSlice(SliceNode slice) {
+            int fold;
+            if (slice instanceof SliceUS || slice instanceof SliceU)
+                fold = SliceChar.UNICODE_FOLD;
+            else if (slice instanceof SliceIS || slice instanceof SliceI)
+                fold = SliceChar.ASCII_FOLD;
+            else
+                fold = SliceChar.EXACT;
+            for (int c : slice.buffer)
+                emit(CHAR, 0, 0, new SliceChar(c, fold));
+        }
+
+        /**
+         * Emits cmin copies of the atom followed by either a loop or
+         * cmax - cmin nested optional copies. If slot is not negative
+         * each copy records its bounds in that group.
+         */
+        private void emitRepeat(Node atom, Node stop, int cmin, int cmax,
+                                boolean greedy, int slot) {
+            for (int k = 0; k < cmin; k++)
+                emitAtom(atom, stop, slot);
+            if (cmax == MAX_REPS) {
+                int split = emit(SPLIT, 0, 0, null);
+                emitAtom(atom, stop, slot);
+                int loop = emit(LOOP, split, 0, null);
+                patchSplit(split, greedy);
+                y[loop] = size;
+            } else if (cmax > cmin) {
+                int[] splits = new int[cmax - cmin];
+                for (int k = 0; k < splits.length; k++) {
+                    splits[k] = emit(SPLIT, 0, 0, null);
+                    emitAtom(atom, stop, slot);
+                }
+                for (int split : splits)
+                    patchSplit(split, greedy);
+            }
+        }
+
+        private void patchSplit(int split, boolean greedy) {
+            x[split] = greedy ? split + 1 : size;
+            y[split] = greedy ? size : split + 1;
+        }
+
+        private void emitAtom(Node atom, Node stop, int slot) {
+            if (slot >= 0)
+                emit(SAVE, slot, 0, null);
+            emitChain(atom, stop);
+            if (slot >= 0)
+                emit(SAVE, slot + 1, 0, null);
+        }
+
+        boolean match(Matcher matcher, int from, CharSequence seq,
+                      boolean anchored) {
+            boolean endAnchor = matcher.acceptMode == Matcher.ENDANCHOR;
+            if (dfa != null) {
+                int r = dfa.scan(matcher, from, seq, anchored, endAnchor);
+                if (r == LinearDfa.NO_MATCH)
+                    return false;
+                if (r == LinearDfa.MATCH && anchored && endAnchor
+                    && slots == 2) {
+                    // matches() without groups; the DFA is exact
+                    matcher.first = from;
+                    matcher.last = matcher.to;
+                    matcher.groups[0] = from;
+                    matcher.groups[1] = matcher.to;
+                    return true;
+                }
+            }
+            return run(matcher, from, seq, anchored, endAnchor);
+        }
+
+        /**
+         * Runs all threads of the program in lockstep over the input,
+         * keeping them in priority order. Once a thread matches, all
+         * threads of lower priority are dropped and no new threads are
+         * started, so the surviving threads can only produce a match
+         * that backtracking would have preferred.
+         */
+        private boolean run(Matcher matcher, int from, CharSequence seq,
+                            boolean anchored, boolean endAnchor) {
+            int to = matcher.to;
+            Threads clist = new Threads(size);
+            Threads nlist = new Threads(size);
+            int[] stackPc = new int[2 * size + 1];
+            int[][] stackCaps = new int[2 * size + 1][];
+            int[] result = null;
+            for (int i = from; ; ) {
+                if (result == null && (!anchored || i == from)) {
+                    int[] caps = new int[slots];
+                    Arrays.fill(caps, -1);
+                    caps[0] = i;
+                    addThread(clist, 0, i, caps, matcher, seq,
+                              stackPc, stackCaps);
+                }
+                if (clist.size == 0 && (result != null || anchored))
+                    break;
+                int c = 0;
+                int ni = i;
+                if (i < to) {
+                    c = Character.codePointAt(seq, i);
+                    ni = i + Character.charCount(c);
+                }
+                for (int k = 0; k < clist.size; k++) {
+                    int pc = clist.pcs[k];
+                    if (op[pc] == CHAR) {
+                        if (i >= to)
+                            matcher.hitEnd = true;
+                        else if (((CharProperty)node[pc]).isSatisfiedBy(c))
+                            addThread(nlist, pc + 1, ni, clist.caps[k],
+                                      matcher, seq, stackPc, stackCaps);
+                    } else if (op[pc] == MATCH) {
+                        if (endAnchor && i != to)
+                            continue;
+                        result = clist.caps[k].clone();
+                        result[1] = i;
+                        break;
+                    }
+                }
+                Threads tmp = clist;
+                clist = nlist;
+                nlist = tmp;
+                nlist.clear();
+                if (i >= to)
+                    break;
+                i = ni;
+            }
+            if (result == null)
+                return false;
+            matcher.first = result[0];
+            matcher.last = result[1];
+            System.arraycopy(result, 0, matcher.groups, 0, slots);
+            return true;
+        }
+
+        /**
+         * Adds the thread at pc and everything reachable from it without
+         * consuming input, in priority order.
+         */
+        private void addThread(Threads list, int pc, int pos, int[] caps,
+                               Matcher matcher, CharSequence seq,
+                               int[] stackPc, int[][] stackCaps) {
+            int sp = 0;
+            stackPc[sp] = pc;
+            stackCaps[sp++] = caps;
+            while (sp > 0) {
+                pc = stackPc[--sp];
+                caps = stackCaps[sp];
+                stackCaps[sp] = null;
+                if (list.contains(pc))
+                    continue;
+                list.add(pc, caps);
+                switch (op[pc]) {
+                case JMP:
+                    stackPc[sp] = x[pc];
+                    stackCaps[sp++] = caps;
+                    break;
+                case LOOP:
+                    // Like Loop, leave after an iteration that consumed
+                    // nothing; the loop head is then already in the list
+                    stackPc[sp] = list.contains(x[pc]) ? y[pc] : x[pc];
+                    stackCaps[sp++] = caps;
+                    break;
+                case SPLIT:
+                    stackPc[sp] = y[pc];
+                    stackCaps[sp++] = caps;
+                    stackPc[sp] = x[pc];
+                    stackCaps[sp++] = caps;
+                    break;
+                case SAVE:
+                    caps = caps.clone();
+                    caps[x[pc]] = pos;
+                    stackPc[sp] = pc + 1;
+                    stackCaps[sp++] = caps;
+                    break;
+                case NOP:
+                    stackPc[sp] = pc + 1;
+                    stackCaps[sp++] = caps;
+                    break;
+                case ASSERT:
+                    if (node[pc].match(matcher, pos, seq)) {
+                        stackPc[sp] = pc + 1;
+                        stackCaps[sp++] = caps;
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        /**
+         * An ordered set of threads, one per instruction, implemented as a
+         * sparse set so that clearing it is constant time.
+         */
+        static final class Threads {
+            final int[] pcs;
+            final int[] index;
+            final int[][] caps;
+            int size;
+            Threads(int n) {
+                pcs = new int[n];
+                index = new int[n];
+                caps = new int[n][];
+            }
+            boolean contains(int pc) {
+                int k = index[pc];
+                return k < size && pcs[k] == pc;
+            }
+            void add(int pc, int[] c) {
+                index[pc] = size;
+                pcs[size] = pc;
+                caps[size++] = c;
+            }
+            void clear() {
+                Arrays.fill(caps, 0, size, null);
+                size = 0;
+            }
+        }
+    }
+
+    /**
+     * A lazily built DFA over the instructions of a LinearProgram without
+     * assertions. A state is the set of CHAR and MATCH instructions that
+     * are alive; states are created on first use and shared by all
+     * matchers of the pattern. Transitions for ASCII characters are
+     * cached in each state, other characters remember only the most
+     * recent transition. If the number of states exceeds MAX_STATES the
+     * DFA gives up for good and the program falls back to the thread
+     * simulation.
+     */
+    static final class LinearDfa {
+        static final int NO_MATCH = 0;
+        static final int MATCH    = 1;
+        static final int UNKNOWN  = -1;
+
+        static final int MAX_STATES = 4096;
+
+        final LinearProgram prog;
+        final ConcurrentHashMap<StateKey, State> states =
+            new ConcurrentHashMap<>();
+        final int[] startSet;
+        final State anchoredStart;
+        final State floatingStart;
+        volatile boolean failed;
+
+        LinearDfa(LinearProgram prog) {
+            this.prog = prog;
+            boolean[] on = new boolean[prog.size];
+            closure(0, on);
+            startSet = collect(on);
+            anchoredStart = intern(startSet, false);
+            floatingStart = intern(startSet, true);
+        }
+
+        static final class StateKey {
+            final int[] pcs;
+            final boolean floating;
+            final int hash;
+            StateKey(int[] pcs, boolean floating) {
+                this.pcs = pcs;
+                this.floating = floating;
+                this.hash = Arrays.hashCode(pcs) * 31 + (floating ? 1 : 0);
+            }
+            public int hashCode() {
+                return hash;
+            }
+            public boolean equals(Object o) {
+                if (!(o instanceof StateKey))
+                    return false;
+                StateKey k = (StateKey)o;
+                return floating == k.floating && Arrays.equals(pcs, k.pcs);
+            }
+        }
+
+        static final class Transition {
+            final int ch;
+            final State target;
+            Transition(int ch, State target) {
+                this.ch = ch;
+                this.target = target;
+            }
+        }
+
+        static final class State {
+            final StateKey key;
+            final boolean accepting;
+            final boolean consuming;
+            final State[] ascii = new State[128];
+            volatile Transition last;
+            State(StateKey key, boolean accepting, boolean consuming) {
+                this.key = key;
+                this.accepting = accepting;
+                this.consuming = consuming;
+            }
+        }
+
+        /**
+         * Scans the input from the given index and reports whether a
+         * match exists, without computing where it starts.
+         */
+        int scan(Matcher matcher, int i, CharSequence seq,
+                 boolean anchored, boolean endAnchor) {
+            if (failed)
+                return UNKNOWN;
+            int to = matcher.to;
+            State s = anchored ? anchoredStart : floatingStart;
+            for (;;) {
+                if (s.accepting && !endAnchor)
+                    return MATCH;
+                if (i >= to)
+                    break;
+                if (!s.consuming)
+                    return NO_MATCH;
+                int c = Character.codePointAt(seq, i);
+                State t;
+                if (c < 128) {
+                    t = s.ascii[c];
+                    if (t == null) {
+                        if ((t = step(s, c)) == null)
+                            return UNKNOWN;
+                        s.ascii[c] = t;
+                    }
+                } else {
+                    Transition tr = s.last;
+                    if (tr != null && tr.ch == c) {
+                        t = tr.target;
+                    } else {
+                        if ((t = step(s, c)) == null)
+                            return UNKNOWN;
+                        s.last = new Transition(c, t);
+                    }
+                }
+                s = t;
+                i += Character.charCount(c);
+            }
+            if (s.consuming)
+                matcher.hitEnd = true;
+            return s.accepting ? MATCH : NO_MATCH;
+        }
+
+        private State step(State s, int c) {
+            boolean[] on = new boolean[prog.size];
+            for (int pc : s.key.pcs) {
+                if (prog.op[pc] == LinearProgram.CHAR
+                    && ((CharProperty)prog.node[pc]).isSatisfiedBy(c))
+                    closure(pc + 1, on);
+            }
+            if (s.key.floating) {
+                for (int pc : startSet)
+                    on[pc] = true;
+            }
+            return intern(collect(on), s.key.floating);
+        }
+
+        private State intern(int[] pcs, boolean floating) {
+            StateKey key = new StateKey(pcs, floating);
+            State s = states.get(key);
+            if (s != null)
+                return s;
+            if (states.size() >= MAX_STATES) {
+                failed = true;
+                return null;
+            }
+            boolean accepting = false;
+            boolean consuming = false;
+            for (int pc : pcs) {
+                if (prog.op[pc] == LinearProgram.MATCH)
+                    accepting = true;
+                else
+                    consuming = true;
+            }
+            s = new State(key, accepting, consuming);
+            State prev = states.putIfAbsent(key, s);
+            return prev != null ? prev : s;
+        }
+
+        /**
+         * Marks the CHAR and MATCH instructions reachable from pc without
+         * consuming input. Other instructions are marked as well to stop
+         * cycles and are dropped by collect.
+         */
+        private void closure(int pc, boolean[] on) {
+            int[] stack = new int[2 * prog.size + 1];
+            int sp = 0;
+            stack[sp++] = pc;
+            while (sp > 0) {
+                pc = stack[--sp];
+                if (on[pc])
+                    continue;
+                on[pc] = true;
+                switch (prog.op[pc]) {
+                case LinearProgram.JMP:
+                    stack[sp++] = prog.x[pc];
+                    break;
+                case LinearProgram.LOOP:
+                    stack[sp++] = prog.x[pc];
+                    stack[sp++] = prog.y[pc];
+                    break;
+                case LinearProgram.SPLIT:
+                    stack[sp++] = prog.x[pc];
+                    stack[sp++] = prog.y[pc];
+                    break;
+                case LinearProgram.SAVE:
+                case LinearProgram.NOP:
+                    stack[sp++] = pc + 1;
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        private int[] collect(boolean[] on) {
+            int n = 0;
+            for (int pc = 0; pc < on.length; pc++) {
+                if (on[pc] && isState(pc))
+                    n++;
+            }
+            int[] pcs = new int[n];
+            n = 0;
+            for (int pc = 0; pc < on.length; pc++) {
+                if (on[pc] && isState(pc))
+                    pcs[n++] = pc;
+            }
+            return pcs;
+        }
+
+        private boolean isState(int pc) {
+            int code = prog.op[pc];
+            return code == LinearProgram.CHAR || code == LinearProgram.MATCH;
+        }
+    }
+
 ///////////////////////////////////////////////////////////////////////////////
 ///////////////////////////////////////////////////////////////////////////////
 
@@ -5549,6 +6638,15 @@ NEXT:       while (i <= last) {
 
     static Node lastAccept = new LastNode();
 
+    /**
+     * The continuation of the assertion nodes of a LINEAR pattern.
+     */
+    static Node assertAccept = new Node() {
+            boolean match(Matcher matcher, int i, CharSequence seq) {
+                return true;
+            }
+        };
+
     private static class CharPropertyNames {
 
         static CharProperty charPropertyFor(String name) {
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of compiled regular expressions that are searched for together.
+ *
+ * <p> The {@link #find(CharSequence)} method reports every pattern of the set
+ * that {@linkplain Matcher#find() finds} a match in the input.  Instead of
+ * running each pattern over the input in turn, the required literal of
+ * every pattern, the longest run of characters that all of its matches
+ * must contain, is located by a single pass of an Aho-Corasick automaton
+ * over the input.  Only the patterns whose literal occurs, and the patterns
+ * that require no literal at all, are then verified with a matcher.  Sets
+ * of patterns such as log scanning rules, which usually contain a distinct
+ * keyword each, are thus handled in time mostly independent of the number
+ * of patterns.
+ *
+ * <blockquote><pre>
+ * PatternSet rules = PatternSet.compile("ERROR \\d+", "timeout after \\d+ms");
+ * for (int i : rules.find(line))
+ *     handle(rules.pattern(i), line);
+ * </pre></blockquote>
+ *
+ * <p> Instances of this class are immutable and are safe for use by multiple
+ * concurrent threads.
+ *
+ * @see Pattern
+ * @since 1.8
+ */
+public final class PatternSet {
+
+    private final Pattern[] patterns;
+
+    /**
+     * Indexes of the patterns without a required literal, which have to
+     * be verified for every input.
+     */
+    private final int[] unfiltered;
+
+    /**
+     * The number of patterns with a required literal.
+     */
+    private final int filtered;
+
+    // The automaton. State 0 is the root.
+    private final char[][] keys;       // sorted labels of the goto edges
+    private final int[][] targets;     // targets of the goto edges
+    private final int[] fail;          // failure links
+    private final int[][] outputs;     // patterns whose literal ends here
+    private final int[] ascii;         // full transitions for chars < 128
+
+    private PatternSet(Pattern[] patterns) {
+        this.patterns = patterns;
+        int n = patterns.length;
+
+        // Build the trie of the required literals
+        ArrayList<TreeMap<Character, Integer>> edges = new ArrayList<>();
+        ArrayList<int[]> out = new ArrayList<>();
+        edges.add(new TreeMap<>());
+        out.add(null);
+        int[] none = new int[n];
+        int noneCount = 0;
+        int withLiteral = 0;
+        for (int i = 0; i < n; i++) {
+            Pattern.Prefilter pf = patterns[i].prefilter;
+            if (pf == null) {
+                none[noneCount++] = i;
+                continue;
+            }
+            withLiteral++;
+            int s = 0;
+            for (int k = 0; k < pf.literal.length(); k++) {
+                Character c = pf.literal.charAt(k);
+                Integer t = edges.get(s).get(c);
+                if (t == null) {
+                    t = edges.size();
+                    edges.get(s).put(c, t);
+                    edges.add(new TreeMap<>());
+                    out.add(null);
+                }
+                s = t;
+            }
+            out.set(s, append(out.get(s), i));
+        }
+        this.unfiltered = Arrays.copyOf(none, noneCount);
+        this.filtered = withLiteral;
+
+        int states = edges.size();
+        keys = new char[states][];
+        targets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            TreeMap<Character, Integer> m = edges.get(s);
+            keys[s] = new char[m.size()];
+            targets[s] = new int[m.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> e : m.entrySet()) {
+                keys[s][k] = e.getKey();
+                targets[s][k++] = e.getValue();
+            }
+        }
+
+        // Failure links and outputs in breadth first order, so that the
+        // failure state of every state is complete before the state
+        fail = new int[states];
+        outputs = new int[states][];
+        ascii = new int[states * 128];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int s = queue[head++];
+            int[] o = out.get(s);
+            if (s != 0 && outputs[fail[s]] != null)
+                o = merge(o, outputs[fail[s]]);
+            outputs[s] = o;
+            for (int c = 0; c < 128; c++) {
+                int t = child(s, (char)c);
+                if (t < 0)
+                    t = (s == 0) ? 0 : ascii[fail[s] * 128 + c];
+                ascii[s * 128 + c] = t;
+            }
+            for (int k = 0; k < keys[s].length; k++) {
+                int t = targets[s][k];
+                fail[t] = (s == 0) ? 0 : step(fail[s], keys[s][k]);
+                queue[tail++] = t;
+            }
+        }
+    }
+
+    private static int[] append(int[] a, int v) {
+        if (a == null)
+            return new int[] { v };
+        a = Arrays.copyOf(a, a.length + 1);
+        a[a.length - 1] = v;
+        return a;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (a == null)
+            return b;
+        int[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    private int child(int s, char c) {
+        int k = Arrays.binarySearch(keys[s], c);
+        return k >= 0 ? targets[s][k] : -1;
+    }
+
+    private int step(int s, char c) {
+        if (c < 128)
+            return ascii[s * 128 + c];
+        for (;;) {
+            int t = child(s, c);
+            if (t >= 0)
+                return t;
+            if (s == 0)
+                return 0;
+            s = fail[s];
+        }
+    }
+
+    /**
+     * Compiles the given regular expressions into a pattern set.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     *
+     * @return the given regular expressions compiled into a pattern set
+     *
+     * @throws  PatternSyntaxException
+     *          If the syntax of any expression is invalid
+     */
+    public static PatternSet compile(String... regexes) {
+        return compile(Arrays.asList(regexes), 0);
+    }
+
+    /**
+     * Compiles the given regular expressions into a pattern set with the
+     * given flags.  The patterns are indexed in iteration order.
+     *
+     * @param  regexes
+     *         The expressions to be compiled
+     *
+     * @param  flags
+     *         Match flags applied to every expression, as accepted by
+     *         {@link Pattern#compile(String, int)}
+     *
+     * @return the given regular expressions compiled into a pattern set
+     *
+     * @throws  PatternSyntaxException
+     *          If the syntax of any expression is invalid
+     */
+    public static PatternSet compile(Collection<String> regexes, int flags) {
+        Pattern[] patterns = new Pattern[regexes.size()];
+        int i = 0;
+        for (String regex : regexes)
+            patterns[i++] = Pattern.compile(regex, flags);
+        return new PatternSet(patterns);
+    }
+
+    /**
+     * Returns the number of patterns in this set.
+     *
+     * @return  The number of patterns
+     */
+    public int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Returns the pattern with the given index.
+     *
+     * @param  index
+     *         The index of the pattern
+     *
+     * @return  The pattern
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the index is negative or not less than {@link #size()}
+     */
+    public Pattern pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * Returns the indexes of all patterns that find a match in the given
+     * input, in increasing order.  A pattern is reported if, and only if,
+     * <tt>pattern(i).matcher(input).find()</tt> would return <tt>true</tt>.
+     *
+     * @param  input
+     *         The character sequence to be searched
+     *
+     * @return  The indexes of the matching patterns; an empty array if
+     *          none matches
+     */
+    public int[] find(CharSequence input) {
+        boolean[] candidate = candidates(input);
+        int[] result = new int[patterns.length];
+        int count = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (candidate[i] && patterns[i].matcher(input).find())
+                result[count++] = i;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Tells whether any pattern of this set finds a match in the given
+     * input.
+     *
+     * @param  input
+     *         The character sequence to be searched
+     *
+     * @return  <tt>true</tt> if, and only if, at least one pattern finds a
+     *          match
+     */
+    public boolean findAny(CharSequence input) {
+        boolean[] candidate = candidates(input);
+        for (int i = 0; i < patterns.length; i++) {
+            if (candidate[i] && patterns[i].matcher(input).find())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Scans the input once with the automaton and marks the patterns
+     * whose required literal occurs, along with those without one.
+     */
+    private boolean[] candidates(CharSequence input) {
+        boolean[] candidate = new boolean[patterns.length];
+        for (int i : unfiltered)
+            candidate[i] = true;
+        int remaining = filtered;
+        int s = 0;
+        int len = input.length();
+        for (int k = 0; k < len && remaining > 0; k++) {
+            s = step(s, input.charAt(k));
+            int[] o = outputs[s];
+            if (o != null) {
+                for (int i : o) {
+                    if (!candidate[i]) {
+                        candidate[i] = true;
+                        remaining--;
+                    }
+                }
+            }
+        }
+        return candidate;
+    }
+}
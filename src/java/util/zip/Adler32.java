@@ -134,6 +134,42 @@ class Adler32 implements Checksum {
         return (long)adler & 0xffffffffL;
     }
 
+    /**
+     * Returns the Adler-32 checksum of the concatenation of two blocks of
+     * data, given the checksum of each block and the length of the second.
+     *
+     * <p> This allows the checksum of data to be computed in independent
+     * pieces, possibly in parallel, and the results to be joined in order;
+     * the result equals the checksum computed over the whole data in one
+     * pass.
+     *
+     * @param adler1 the Adler-32 checksum of the first block
+     * @param adler2 the Adler-32 checksum of the second block
+     * @param len2 the length of the second block, in bytes
+     * @return the Adler-32 checksum of the first block followed by the
+     *         second
+     * @throws IllegalArgumentException if {@code len2} is negative
+     * @since 1.8
+     */
+    public static long combine(long adler1, long adler2, long len2) {
+        if (len2 < 0)
+            throw new IllegalArgumentException("len2 < 0");
+        final int BASE = 65521;     // largest prime smaller than 65536
+        // the sums of the first block, extended by len2 bytes, plus those
+        // of the second; both initial sums of 1 are counted once
+        long rem = len2 % BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = rem * sum1 % BASE;
+        sum1 += (adler2 & 0xffff) + BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff)
+                + BASE - rem;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum2 >= (BASE << 1)) sum2 -= (BASE << 1);
+        if (sum2 >= BASE) sum2 -= BASE;
+        return sum1 | (sum2 << 16);
+    }
+
     private native static int update(int adler, int b);
     private native static int updateBytes(int adler, byte[] b, int off,
                                           int len);
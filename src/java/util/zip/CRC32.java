@@ -131,6 +131,83 @@ class CRC32 implements Checksum {
         return (long)crc & 0xffffffffL;
     }
 
+    /**
+     * Returns the CRC-32 of the concatenation of two blocks of data,
+     * given the CRC-32 of each block and the length of the second.
+     *
+     * <p> This allows the checksum of data to be computed in independent
+     * pieces, possibly in parallel, and the results to be joined in order;
+     * the result equals the CRC-32 computed over the whole data in one
+     * pass.
+     *
+     * @param crc1 the CRC-32 of the first block
+     * @param crc2 the CRC-32 of the second block
+     * @param len2 the length of the second block, in bytes
+     * @return the CRC-32 of the first block followed by the second
+     * @throws IllegalArgumentException if {@code len2} is negative
+     * @since 1.8
+     */
+    public static long combine(long crc1, long crc2, long len2) {
+        return (long)combine(0xedb88320, (int)crc1, (int)crc2, len2)
+               & 0xffffffffL;
+    }
+
+    /*
+     * Combines two CRCs of the reflected polynomial poly by running the
+     * first through len2 zero bytes and adding the second, in GF(2).
+     * The operator for appending zero bits is a 32x32 bit matrix that is
+     * squared repeatedly to append 2^n bytes, so this takes O(log len2)
+     * matrix products.
+     */
+    static int combine(int poly, int crc1, int crc2, long len2) {
+        if (len2 < 0)
+            throw new IllegalArgumentException("len2 < 0");
+        if (len2 == 0)
+            return crc1;
+        int[] even = new int[32];   // even-power-of-two zeros operator
+        int[] odd = new int[32];    // odd-power-of-two zeros operator
+
+        // put operator for one zero bit in odd
+        odd[0] = poly;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // put operator for two zero bits in even
+        gf2MatrixSquare(odd, even); // put operator for four zero bits in odd
+
+        // apply len2 zeros to crc1 (first square will put the operator
+        // for one zero byte, eight zero bits, in even)
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(even, crc1);
+            len2 >>>= 1;
+            if (len2 == 0)
+                break;
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(odd, crc1);
+            len2 >>>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static int gf2MatrixTimes(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(int[] square, int[] mat) {
+        for (int n = 0; n < 32; n++)
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+
     private native static int update(int crc, int b);
     private native static int updateBytes(int crc, byte[] b, int off, int len);
 
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.util.zip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import sun.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * A class that can be used to compute the CRC-32C of a data stream.
+ *
+ * <p> CRC-32C is a cyclic redundancy check with the Castagnoli polynomial
+ * {@code 0x1EDC6F41}, as used by iSCSI (RFC 3720), SCTP and a number of
+ * storage formats. It has better error detection properties than the
+ * CRC-32 computed by {@link CRC32}, from which its values differ.
+ *
+ * <p> Passing a {@code null} argument to a method in this class will cause
+ * a {@link NullPointerException} to be thrown.
+ *
+ * @see         Checksum
+ * @since       1.8
+ */
+public final class CRC32C implements Checksum {
+
+    /*
+     * This CRC-32C implementation uses the 'slicing-by-8' algorithm
+     * described in the paper "A Systematic Approach to Building High
+     * Performance Software-Based CRC Generators" by Michael E. Kounavis
+     * and Frank L. Berry, Intel Research and Development
+     */
+
+    private static final Unsafe UNSAFE = Unsafe.getUnsafe();
+
+    // CRC-32C polynomial, bit reversed
+    private static final int CRC32C_POLY = 0x82F63B78;
+
+    /*
+     * byteTables[k][n] is the CRC-32C of the byte n followed by k zero
+     * bytes, with neither the initial nor the final complement applied.
+     */
+    private static final int[][] byteTables = new int[8][256];
+    private static final int[] byteTable0 = byteTables[0];
+    private static final int[] byteTable1 = byteTables[1];
+    private static final int[] byteTable2 = byteTables[2];
+    private static final int[] byteTable3 = byteTables[3];
+    private static final int[] byteTable4 = byteTables[4];
+    private static final int[] byteTable5 = byteTables[5];
+    private static final int[] byteTable6 = byteTables[6];
+    private static final int[] byteTable7 = byteTables[7];
+
+    private static final boolean BIG_ENDIAN =
+        ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    static {
+        for (int index = 0; index < 256; index++) {
+            int r = index;
+            for (int i = 0; i < 8; i++) {
+                if ((r & 1) != 0) {
+                    r = (r >>> 1) ^ CRC32C_POLY;
+                } else {
+                    r >>>= 1;
+                }
+            }
+            byteTables[0][index] = r;
+        }
+        for (int index = 0; index < 256; index++) {
+            int r = byteTables[0][index];
+            for (int k = 1; k < 8; k++) {
+                r = byteTables[0][r & 0xFF] ^ (r >>> 8);
+                byteTables[k][index] = r;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Creates a new CRC32C object.
+     */
+    public CRC32C() {
+    }
+
+    /**
+     * Updates the CRC-32C checksum with the specified byte (the low
+     * eight bits of the argument b).
+     *
+     * @param b the byte to update the checksum with
+     */
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ byteTable0[(crc ^ (b & 0xFF)) & 0xFF];
+    }
+
+    /**
+     * Updates the CRC-32C checksum with the specified array of bytes.
+     *
+     * @throws  ArrayIndexOutOfBoundsException
+     *          if {@code off} is negative, or {@code len} is negative,
+     *          or {@code off+len} is greater than the length of the
+     *          array {@code b}
+     */
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        long offset = Unsafe.ARRAY_BYTE_BASE_OFFSET + off;
+        crc = updateBytes(crc, b, offset, offset + len);
+    }
+
+    /**
+     * Updates the CRC-32C checksum with the bytes from the specified
+     * buffer.
+     *
+     * The checksum is updated using
+     * buffer.{@link java.nio.Buffer#remaining() remaining()}
+     * bytes starting at
+     * buffer.{@link java.nio.Buffer#position() position()}
+     * Upon return, the buffer's position will be updated to its
+     * limit; its limit will not have been changed.
+     *
+     * @param buffer the ByteBuffer to update the checksum with
+     */
+    @Override
+    public void update(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        assert (pos <= limit);
+        int rem = limit - pos;
+        if (rem <= 0)
+            return;
+        if (buffer instanceof DirectBuffer) {
+            long address = ((DirectBuffer)buffer).address();
+            crc = updateBytes(crc, null, address + pos, address + limit);
+        } else if (buffer.hasArray()) {
+            long offset = Unsafe.ARRAY_BYTE_BASE_OFFSET
+                          + buffer.arrayOffset() + pos;
+            crc = updateBytes(crc, buffer.array(), offset, offset + rem);
+        } else {
+            byte[] b = new byte[rem];
+            buffer.get(b);
+            long offset = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+            crc = updateBytes(crc, b, offset, offset + rem);
+        }
+        buffer.position(limit);
+    }
+
+    /**
+     * Resets CRC-32C to initial value.
+     */
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    /**
+     * Returns CRC-32C value.
+     */
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Returns the CRC-32C of the concatenation of two blocks of data,
+     * given the CRC-32C of each block and the length of the second.
+     *
+     * <p> This allows the checksum of data to be computed in independent
+     * pieces, possibly in parallel, and the results to be joined in order;
+     * the result equals the CRC-32C computed over the whole data in one
+     * pass.
+     *
+     * @param crc1 the CRC-32C of the first block
+     * @param crc2 the CRC-32C of the second block
+     * @param len2 the length of the second block, in bytes
+     * @return the CRC-32C of the first block followed by the second
+     * @throws IllegalArgumentException if {@code len2} is negative
+     */
+    public static long combine(long crc1, long crc2, long len2) {
+        return (long)CRC32.combine(CRC32C_POLY, (int)crc1, (int)crc2, len2)
+               & 0xFFFFFFFFL;
+    }
+
+    /*
+     * Updates crc with the bytes from offset to end of base, which is
+     * null for an absolute address. Eight bytes are processed at a time,
+     * read as two ints from 8-byte aligned addresses.
+     */
+    private static int updateBytes(int crc, Object base, long off, long end) {
+        // Do only byte reads for ranges too short to be aligned
+        if (end - off >= 16) {
+            int alignLength = (8 - (int)(off & 0x7)) & 0x7;
+            for (long alignEnd = off + alignLength; off < alignEnd; off++) {
+                crc = (crc >>> 8)
+                      ^ byteTable0[(crc ^ UNSAFE.getByte(base, off)) & 0xFF];
+            }
+            for (; off <= end - 8; off += 8) {
+                int firstHalf = UNSAFE.getInt(base, off);
+                int secondHalf = UNSAFE.getInt(base, off + 4);
+                if (BIG_ENDIAN) {
+                    firstHalf = Integer.reverseBytes(firstHalf);
+                    secondHalf = Integer.reverseBytes(secondHalf);
+                }
+                crc ^= firstHalf;
+                crc = byteTable7[crc & 0xFF]
+                      ^ byteTable6[(crc >>> 8) & 0xFF]
+                      ^ byteTable5[(crc >>> 16) & 0xFF]
+                      ^ byteTable4[crc >>> 24]
+                      ^ byteTable3[secondHalf & 0xFF]
+                      ^ byteTable2[(secondHalf >>> 8) & 0xFF]
+                      ^ byteTable1[(secondHalf >>> 16) & 0xFF]
+                      ^ byteTable0[secondHalf >>> 24];
+            }
+        }
+        for (; off < end; off++) {
+            crc = (crc >>> 8)
+                  ^ byteTable0[(crc ^ UNSAFE.getByte(base, off)) & 0xFF];
+        }
+        return crc;
+    }
+}
@@ -25,9 +25,16 @@
 
 package java.util.zip;
 
+import java.nio.ByteBuffer;
+
 /**
  * An interface representing a data checksum.
  *
+ * <p> Checksums such as {@link CRC32}, {@link CRC32C} and {@link Adler32}
+ * that are computed over consecutive blocks of data independently, for
+ * example in parallel, can be joined with their {@code combine} methods
+ * into the checksum of the concatenated data.
+ *
  * @author      David Connelly
  */
 public
@@ -47,6 +54,54 @@ interface Checksum {
      */
     public void update(byte[] b, int off, int len);
 
+    /**
+     * Updates the current checksum with the specified array of bytes.
+     *
+     * @implSpec This default implementation is equal to calling
+     * {@code update(b, 0, b.length)}.
+     *
+     * @param b the array of bytes to update the checksum with
+     * @since 1.8
+     */
+    default public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    /**
+     * Updates the current checksum with the bytes from the specified buffer.
+     *
+     * The checksum is updated with the remaining bytes in the buffer, starting
+     * at the buffer's position. Upon return, the buffer's position will be
+     * updated to its limit; its limit will not have been changed.
+     *
+     * @implSpec This default implementation passes the backing array of a
+     * buffer that has one to {@link #update(byte[], int, int)}, and otherwise
+     * copies the remaining bytes through a temporary array of at most 4096
+     * bytes.
+     *
+     * @param buffer the ByteBuffer to update the checksum with
+     * @since 1.8
+     */
+    default public void update(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        assert (pos <= limit);
+        int rem = limit - pos;
+        if (rem <= 0)
+            return;
+        if (buffer.hasArray()) {
+            update(buffer.array(), pos + buffer.arrayOffset(), rem);
+        } else {
+            byte[] b = new byte[Math.min(rem, 4096)];
+            while (buffer.hasRemaining()) {
+                int len = Math.min(buffer.remaining(), b.length);
+                buffer.get(b, 0, len);
+                update(b, 0, len);
+            }
+        }
+        buffer.position(limit);
+    }
+
     /**
      * Returns the current checksum value.
      * @return the current checksum value
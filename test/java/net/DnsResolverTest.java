@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ * @test
+ * @summary Check that DnsResolver retries truncated responses over TCP,
+ *          does not cache them as names without addresses, and does not
+ *          share exceptions between failed lookups
+ * @run main DnsResolverTest
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.DnsResolver;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DnsResolverTest {
+
+    // names served by the stub name server
+    private static final String SMALL = "small.test";   // two addresses
+    private static final String LARGE = "large.test";   // truncated over UDP
+    private static final String BROKEN = "broken.test"; // truncated, no TCP answer
+    private static final int LARGE_COUNT = 40;
+
+    private static final AtomicInteger udpQueries = new AtomicInteger();
+    private static final AtomicInteger tcpQueries = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ServerSocket tcp = null;
+        DatagramChannel udp = null;
+        // the UDP and TCP sockets of the name server share a port
+        for (int i = 0; udp == null; i++) {
+            tcp = new ServerSocket(0, 50, loopback);
+            try {
+                udp = DatagramChannel.open();
+                udp.bind(new InetSocketAddress(loopback, tcp.getLocalPort()));
+            } catch (java.net.BindException x) {
+                udp.close();
+                udp = null;
+                tcp.close();
+                if (i == 10)
+                    throw x;
+            }
+        }
+        startUdp(udp);
+        startTcp(tcp);
+
+        DnsResolver resolver = new DnsResolver.Builder()
+            .nameServer(new InetSocketAddress(loopback, tcp.getLocalPort()))
+            .timeout(500, TimeUnit.MILLISECONDS)
+            .attempts(2)
+            .build();
+        try {
+            InetAddress[] addresses = resolver.resolve(SMALL).get();
+            check(addresses.length == 2, "addresses of " + SMALL);
+            check(tcpQueries.get() == 0, "no TCP query for " + SMALL);
+
+            // the truncated response is retried over TCP, for A and AAAA
+            addresses = resolver.resolve(LARGE).get();
+            check(addresses.length == LARGE_COUNT, "addresses of " + LARGE
+                  + ": " + addresses.length);
+            check(tcpQueries.get() == 2, "TCP queries: " + tcpQueries.get());
+            for (int i = 0; i < LARGE_COUNT; i++) {
+                check(addresses[i].getAddress()[3] == (byte)(i + 1),
+                      "address " + i + " of " + LARGE);
+            }
+
+            // a truncated response with no answer over TCP is a server
+            // failure, not a name without addresses, and is not cached
+            int before = udpQueries.get();
+            UnknownHostException first = failure(resolver, BROKEN);
+            check(first.getMessage().contains("No response"),
+                  "failure message: " + first.getMessage());
+            UnknownHostException second = failure(resolver, BROKEN);
+            check(udpQueries.get() - before == 4 * 2,
+                  "queries for " + BROKEN + ": " + (udpQueries.get() - before));
+
+            // failures that are cached are new exceptions each time
+            UnknownHostException missing1 = failure(resolver, "missing.test");
+            UnknownHostException missing2 = failure(resolver, "missing.test");
+            check(missing1.getMessage().contains("does not exist"),
+                  "failure message: " + missing1.getMessage());
+            check(missing1 != missing2, "cached failure shares exception");
+            check(first != second, "failures share exception");
+        } finally {
+            resolver.close();
+            udp.close();
+            tcp.close();
+        }
+    }
+
+    private static UnknownHostException failure(DnsResolver resolver, String host)
+        throws Exception
+    {
+        try {
+            resolver.resolve(host).get();
+        } catch (ExecutionException x) {
+            if (x.getCause() instanceof UnknownHostException)
+                return (UnknownHostException)x.getCause();
+            throw x;
+        }
+        throw new RuntimeException(host + " resolved");
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition)
+            throw new RuntimeException("Failed: " + what);
+    }
+
+    private static void startUdp(final DatagramChannel udp) {
+        Thread t = new Thread(() -> {
+            ByteBuffer bb = ByteBuffer.allocate(512);
+            try {
+                for (;;) {
+                    bb.clear();
+                    SocketAddress sa = udp.receive(bb);
+                    bb.flip();
+                    udpQueries.incrementAndGet();
+                    byte[] query = new byte[bb.remaining()];
+                    bb.get(query);
+                    udp.send(ByteBuffer.wrap(answer(query, true)), sa);
+                }
+            } catch (Exception x) {
+                // closed
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void startTcp(final ServerSocket tcp) {
+        Thread t = new Thread(() -> {
+            try {
+                for (;;) {
+                    try (Socket s = tcp.accept()) {
+                        tcpQueries.incrementAndGet();
+                        DataInputStream in = new DataInputStream(s.getInputStream());
+                        byte[] query = new byte[in.readUnsignedShort()];
+                        in.readFully(query);
+                        byte[] response = answer(query, false);
+                        if (response != null) {
+                            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                            out.writeShort(response.length);
+                            out.write(response);
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (Exception x) {
+                // closed
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Returns the response to a query, or null to close the connection.
+     */
+    private static byte[] answer(byte[] query, boolean udp) {
+        ByteBuffer q = ByteBuffer.wrap(query);
+        q.position(12);
+        StringBuilder name = new StringBuilder();
+        for (int len; (len = q.get()) != 0; ) {
+            if (name.length() > 0)
+                name.append('.');
+            for (int i = 0; i < len; i++)
+                name.append((char)q.get());
+        }
+        int type = q.getShort() & 0xffff;
+        q.getShort();
+        int questionEnd = q.position();
+
+        int count = 0;
+        int rcode = 0;
+        boolean truncated = false;
+        switch (name.toString()) {
+            case SMALL:
+                count = 2;
+                break;
+            case LARGE:
+                count = LARGE_COUNT;
+                truncated = udp;
+                break;
+            case BROKEN:
+                if (!udp)
+                    return null;
+                truncated = true;
+                break;
+            default:
+                rcode = 3;              // NXDOMAIN
+        }
+        if (type != 1)                  // only A records
+            count = 0;
+
+        ByteBuffer r = ByteBuffer.allocate(questionEnd + count * 16);
+        r.put(query, 0, questionEnd);
+        r.putShort(2, (short)(0x8180 | (truncated ? 0x0200 : 0) | rcode));
+        r.putShort(6, (short)(truncated ? 0 : count));
+        if (!truncated) {
+            for (int i = 0; i < count; i++) {
+                r.putShort((short)0xc00c);
+                r.putShort((short)1).putShort((short)1);
+                r.putInt(60);
+                r.putShort((short)4);
+                r.put((byte)10).put((byte)0).put((byte)0).put((byte)(i + 1));
+            }
+        }
+        return java.util.Arrays.copyOf(r.array(), r.position());
+    }
+}
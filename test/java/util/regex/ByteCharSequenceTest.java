@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ * @test
+ * @summary Check that UTF-8 ByteCharSequence views decode every char and
+ *          byte offset correctly, including surrogate pairs that straddle
+ *          a checkpoint at the end of the view
+ * @run main ByteCharSequenceTest
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.ByteCharSequence;
+
+public class ByteCharSequenceTest {
+
+    private static final String PAIR = "\uD83D\uDE00";   // U+1F600
+
+    public static void main(String[] args) throws Exception {
+        // a surrogate pair as the last code point, crossing the boundary
+        // between the second and third checkpoints
+        check(repeat("a", 127) + PAIR, 5);
+        check(repeat("a", 63) + PAIR, 0);
+        check(repeat("a", 63) + PAIR + "b", 0);
+        check(repeat("a", 64) + PAIR, 3);
+        check(repeat("\u00E9", 127) + PAIR, 1);
+        check(repeat(PAIR, 100), 0);
+        check("x" + repeat(PAIR, 100), 2);
+
+        Random rnd = new Random(42);
+        String[] pieces = { "a", "\u00E9", "\u20AC", PAIR };
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = rnd.nextInt(300);
+            for (int j = 0; j < n; j++)
+                sb.append(pieces[rnd.nextInt(pieces.length)]);
+            sb.append("\u00E9");
+            check(sb.toString(), rnd.nextInt(8));
+        }
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append(s);
+        return sb.toString();
+    }
+
+    private static void check(String s, int offset) {
+        byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[offset + encoded.length + 3];
+        System.arraycopy(encoded, 0, bytes, offset, encoded.length);
+        check(s, ByteCharSequence.utf8(bytes, offset, encoded.length));
+        ByteBuffer bb = ByteBuffer.allocateDirect(bytes.length);
+        bb.put(bytes);
+        bb.limit(offset + encoded.length);
+        bb.position(offset);
+        check(s, ByteCharSequence.utf8(bb));
+    }
+
+    private static void check(String s, ByteCharSequence seq) {
+        int len = s.length();
+        if (seq.length() != len)
+            throw new RuntimeException("length " + seq.length()
+                                       + ", expected " + len);
+        // forwards, backwards, and alternating between both ends, so that
+        // both sequential decoding and checkpoint lookups are exercised
+        for (int i = 0; i < len; i++)
+            checkAt(s, seq, i);
+        for (int i = len - 1; i >= 0; i--)
+            checkAt(s, seq, i);
+        for (int i = 0; i < len; i++) {
+            checkAt(s, seq, len - 1 - i);
+            checkAt(s, seq, i);
+        }
+        int bytes = s.getBytes(StandardCharsets.UTF_8).length;
+        if (seq.byteOffset(len) != bytes)
+            throw new RuntimeException("byteOffset(" + len + ") "
+                                       + seq.byteOffset(len)
+                                       + ", expected " + bytes);
+        if (!seq.toString().equals(s))
+            throw new RuntimeException("toString differs");
+    }
+
+    private static void checkAt(String s, ByteCharSequence seq, int i) {
+        if (seq.charAt(i) != s.charAt(i))
+            throw new RuntimeException("charAt(" + i + ") "
+                + Integer.toHexString(seq.charAt(i)) + ", expected "
+                + Integer.toHexString(s.charAt(i)));
+        int start = Character.isLowSurrogate(s.charAt(i)) ? i - 1 : i;
+        int expected = s.substring(0, start)
+                        .getBytes(StandardCharsets.UTF_8).length;
+        if (seq.byteOffset(i) != expected)
+            throw new RuntimeException("byteOffset(" + i + ") "
+                + seq.byteOffset(i) + ", expected " + expected);
+    }
+}